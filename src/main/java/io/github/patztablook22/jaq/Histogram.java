@@ -0,0 +1,226 @@
+package io.github.patztablook22.jaq;
+
+import java.util.Arrays;
+
+
+/**
+ * Outcome counts of repeated {@link Qcircuit} runs.
+ *
+ * <p>
+ *   The outcomes are bit-packed classical registers, see {@link Shots}.
+ *   The counts are stored in an open addressing hash table of primitive
+ *   {@code long} keys and values, so that neither the outcomes
+ *   nor the counts are ever boxed.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    Shots shots = backend.sample(circuit, 1000);
+ *
+ *    shots.histogram().forEach((outcome, count) -&gt;
+ *        System.out.println(Long.toBinaryString(outcome) + ": " + count));
+ * </code></pre>
+ *
+ * */
+public final class Histogram {
+
+    /**
+     * Callback receiving the histogram entries.
+     *
+     * */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * Visits a single histogram entry.
+         *
+         * @param outcome the bit-packed classical register
+         * @param count the number of its occurrences
+         *
+         * */
+        void visit(long outcome, long count);
+    }
+
+    /**
+     * The hash table keys, valid only where {@link #counts} are nonzero.
+     *
+     * */
+    private long[] keys;
+
+    /**
+     * The hash table values, zero marking an empty slot.
+     *
+     * */
+    private long[] counts;
+
+    /**
+     * The number of distinct outcomes.
+     *
+     * */
+    private int size;
+
+    /**
+     * The total number of occurrences.
+     *
+     * */
+    private long total;
+
+    /**
+     * Constructs an empty histogram.
+     *
+     * */
+    public Histogram() {
+        keys = new long[16];
+        counts = new long[16];
+    }
+
+    /**
+     * Adds occurrences of the given outcome.
+     *
+     * @param outcome the bit-packed classical register
+     * @param count the number of occurrences to add
+     *
+     * */
+    public void add(long outcome, long count) {
+        if (count < 0)
+            throw new IllegalArgumentException();
+        if (count == 0)
+            return;
+
+        if (2 * (size + 1) > keys.length)
+            resize(2 * keys.length);
+
+        int slot = slot(outcome);
+        if (counts[slot] == 0) {
+            keys[slot] = outcome;
+            size++;
+        }
+        counts[slot] += count;
+        total += count;
+    }
+
+    /**
+     * Returns the number of occurrences of the given outcome.
+     *
+     * @param outcome the bit-packed classical register
+     * @return the number of its occurrences
+     *
+     * */
+    public long count(long outcome) {
+        return counts[slot(outcome)];
+    }
+
+    /**
+     * Returns the number of distinct outcomes.
+     *
+     * @return the number of distinct outcomes
+     *
+     * */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the total number of occurrences.
+     *
+     * @return the total number of occurrences
+     *
+     * */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the distinct outcomes in ascending unsigned order.
+     *
+     * @return the distinct outcomes
+     *
+     * */
+    public long[] outcomes() {
+        long[] out = new long[size];
+        int i = 0;
+        for (int slot = 0; slot < keys.length; slot++)
+            if (counts[slot] != 0)
+                out[i++] = keys[slot] ^ Long.MIN_VALUE;
+
+        Arrays.sort(out);
+        for (i = 0; i < out.length; i++)
+            out[i] ^= Long.MIN_VALUE;
+        return out;
+    }
+
+    /**
+     * Visits all the entries in no particular order.
+     *
+     * @param visitor the callback
+     *
+     * */
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++)
+            if (counts[slot] != 0)
+                visitor.visit(keys[slot], counts[slot]);
+    }
+
+    /**
+     * Adds all the entries of another histogram.
+     *
+     * @param other the histogram to merge
+     *
+     * */
+    public void merge(Histogram other) {
+        other.forEach(this::add);
+    }
+
+    /**
+     * Returns the slot of the outcome, either its occupied one,
+     * or the empty one it would be inserted into.
+     *
+     * @param outcome the outcome
+     * @return the slot index
+     *
+     * */
+    private int slot(long outcome) {
+        int mask = keys.length - 1;
+        int slot = hash(outcome) & mask;
+        while (counts[slot] != 0 && keys[slot] != outcome)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Grows the hash table to the given capacity.
+     *
+     * @param capacity the new capacity, a power of two
+     *
+     * */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+
+        keys = new long[capacity];
+        counts = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Mixes the bits of the outcome, as the low bits
+     * of the outcomes tend to be highly regular.
+     *
+     * @param outcome the outcome
+     * @return the hash
+     *
+     * */
+    private static int hash(long outcome) {
+        long h = outcome * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
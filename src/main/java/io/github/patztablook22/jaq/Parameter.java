@@ -0,0 +1,80 @@
+package io.github.patztablook22.jaq;
+
+
+/**
+ * Named symbolic parameter of a {@link Qcircuit}.
+ *
+ * <p>
+ *   Parametrized gates, such as
+ *   {@link io.github.patztablook22.jaq.nodes.RotateX RotateX}, can use a
+ *   {@code Parameter} instead of a fixed angle. The circuit is then built
+ *   (and compiled by the backend) only once, and the concrete values are
+ *   supplied for each run, e.g. by {@link Qvm#run(Qcircuit, java.util.Map)}.
+ *   This is the typical pattern of variational algorithms, whose optimizer
+ *   loops rerun the same circuit with many different parameter values.
+ * </p>
+ *
+ * <p>
+ *   Parameters are compared by identity, the name serves merely
+ *   for debugging and other inspection.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    var theta = new Parameter("theta");
+ *
+ *    var circuit = new Qcircuit() {{
+ *        rotateX(0, theta);
+ *        measure(0, 0);
+ *    }};
+ *
+ *    Qvm backend = new SimpleSimulator();
+ *    for (double value = 0; value &lt; Math.PI; value += 0.1)
+ *        backend.run(circuit, Map.of(theta, value));
+ * </code></pre>
+ *
+ * @see Parametric
+ *
+ * */
+public final class Parameter {
+
+    /**
+     * The parameter's name.
+     *
+     * */
+    private final String name;
+
+    /**
+     * Constructs a parameter with the given name.
+     *
+     * @param name the parameter's name
+     *
+     * */
+    public Parameter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the parameter's name.
+     *
+     * @return the parameter's name
+     *
+     * */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the parameter's name.
+     *
+     * @return the parameter's name
+     *
+     * */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.patztablook22.jaq;
+
+
+/**
+ * {@link Qgate} with an angle which can be either fixed
+ * or given by a symbolic {@link Parameter}.
+ *
+ * <p>
+ *   If the gate is parametrized, its effective angle is
+ *   \(
+ *      \theta = c \cdot p
+ *   \)
+ *   where {@code c} is the fixed coefficient returned by {@link #getAngle()}
+ *   and {@code p} is the value bound to the {@link #getParameter() parameter}
+ *   at runtime. Otherwise it is simply the fixed angle.
+ * </p>
+ *
+ * */
+public interface Parametric extends Qgate {
+
+    /**
+     * Returns the fixed angle, or the coefficient of
+     * the parameter if the gate is parametrized.
+     *
+     * @return the fixed angle or the coefficient (in radians)
+     *
+     * */
+    double getAngle();
+
+    /**
+     * Returns the gate's parameter.
+     *
+     * @return the parameter, or {@code null} if the angle is fixed
+     *
+     * */
+    Parameter getParameter();
+}
@@ -0,0 +1,162 @@
+package io.github.patztablook22.jaq;
+
+import io.github.patztablook22.jaq.nodes.PauliRotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Weighted sum of Pauli strings, such as a Hamiltonian or an observable:
+ * \[
+ *      H = \sum_k c_k P_k
+ * \]
+ *
+ * <p>
+ *   Each term consists of a real coefficient \( c_k \) and a Pauli string
+ *   \( P_k \) acting on given qubits, in the same format as in
+ *   {@link io.github.patztablook22.jaq.nodes.PauliRotation}.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    /* transverse field Ising model on 3 qubits &#42;/
+ *    var hamiltonian = new PauliSum()
+ *        .add(-1.0, "ZZ", 0, 1)
+ *        .add(-1.0, "ZZ", 1, 2)
+ *        .add(-0.5, "X", 0)
+ *        .add(-0.5, "X", 1)
+ *        .add(-0.5, "X", 2);
+ * </code></pre>
+ *
+ * */
+public class PauliSum {
+
+    /**
+     * Single weighted Pauli string.
+     *
+     * */
+    public static final class Term {
+
+        /**
+         * The real coefficient.
+         *
+         * */
+        private double coefficient;
+
+        /**
+         * The Pauli string.
+         *
+         * */
+        private String paulis;
+
+        /**
+         * The qubits the individual Pauli matrices act on.
+         *
+         * */
+        private int[] qubits;
+
+        private Term(double coefficient, String paulis, int[] qubits) {
+            this.coefficient = coefficient;
+            this.paulis = paulis;
+            this.qubits = qubits;
+        }
+
+        /**
+         * Returns the real coefficient.
+         *
+         * @return the real coefficient
+         *
+         * */
+        public double getCoefficient() {
+            return coefficient;
+        }
+
+        /**
+         * Returns the Pauli string.
+         *
+         * @return the Pauli string
+         *
+         * */
+        public String getPaulis() {
+            return paulis;
+        }
+
+        /**
+         * Returns the qubits the individual Pauli matrices act on.
+         *
+         * @return the qubits
+         *
+         * */
+        public int[] getQubits() {
+            return qubits.clone();
+        }
+    }
+
+    /**
+     * The terms of the sum.
+     *
+     * */
+    private List<Term> terms = new ArrayList<>();
+
+    /**
+     * Constructs the empty sum.
+     *
+     * */
+    public PauliSum() {
+    }
+
+    /**
+     * Adds a weighted Pauli string term. The {@code paulis} must consist of
+     * {@code IXYZ} characters only, there must be as many of them as
+     * {@code qubits}, and the {@code qubits} must be unique and non-negative.
+     *
+     * @param coefficient the real coefficient
+     * @param paulis the Pauli string
+     * @param qubits the qubits the individual Pauli matrices act on
+     * @return this sum
+     *
+     * */
+    public PauliSum add(double coefficient, String paulis, int... qubits) {
+        if (!PauliRotation.isPauliString(paulis) || paulis.length() != qubits.length)
+            throw new IllegalArgumentException();
+        if (Arrays.stream(qubits).distinct().count() != qubits.length)
+            throw new IllegalArgumentException();
+        for (int q: qubits)
+            if (q < 0)
+                throw new IndexOutOfBoundsException();
+
+        terms.add(new Term(coefficient, paulis, qubits.clone()));
+        return this;
+    }
+
+    /**
+     * Returns the terms of the sum.
+     *
+     * @return unmodifiable list of the terms
+     *
+     * */
+    public List<Term> terms() {
+        return Collections.unmodifiableList(terms);
+    }
+
+    /**
+     * Returns the number of the qubits the sum acts on,
+     * i.e. the highest qubit used plus one.
+     *
+     * @return the number of qubits
+     *
+     * */
+    public int qubits() {
+        int qubits = 0;
+        for (var term: terms)
+            for (int q: term.qubits)
+                qubits = Math.max(qubits, q + 1);
+        return qubits;
+    }
+}
@@ -5,6 +5,10 @@ import io.github.patztablook22.jaq.nodes.*;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
 
 
 /**
@@ -297,6 +301,36 @@ public class Qcircuit {
         nodesList.add(new RotateX(qubit, angle));
     }
 
+    /**
+     * Adds the parametrized {@link io.github.patztablook22.jaq.nodes.RotateX RotateX},
+     * rotating {@code qubit} by the value bound to {@code angle} at runtime.
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var theta = new Parameter("theta");
+     *
+     *    var circuit = new Qcircuit() {{
+     *        /* ... &#42;/
+     *
+     *        rotateX(0, theta);
+     *
+     *        /* ... &#42;/
+     *    }};
+     * </code></pre>
+     *
+     * @param qubit qubit to rotate
+     * @param angle rotation angle parameter
+     * @see Parameter
+     *
+     * */
+    protected void rotateX(int qubit, Parameter angle) {
+        checkQubitRegisterBounds(qubit);
+        nodesList.add(new RotateX(qubit, 1, angle));
+    }
+
     /**
      * Adds the {@link io.github.patztablook22.jaq.nodes.PauliX PauliX} 
      * gate acting individually on the given qubits.
@@ -329,6 +363,415 @@ public class Qcircuit {
         }
     }
 
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.PauliZ PauliZ}
+     * gate acting individually on the given qubits.
+     *
+     * @param qubits individual gate operands
+     *
+     * */
+    protected void pauliZ(int... qubits) {
+        for (int qubit: qubits) {
+            checkQubitRegisterBounds(qubit);
+            nodesList.add(new PauliZ(qubit));
+        }
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.SGate S}
+     * gate acting individually on the given qubits.
+     *
+     * @param qubits individual gate operands
+     *
+     * */
+    protected void sGate(int... qubits) {
+        for (int qubit: qubits) {
+            checkQubitRegisterBounds(qubit);
+            nodesList.add(new SGate(qubit));
+        }
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.TGate T}
+     * gate acting individually on the given qubits.
+     *
+     * @param qubits individual gate operands
+     *
+     * */
+    protected void tGate(int... qubits) {
+        for (int qubit: qubits) {
+            checkQubitRegisterBounds(qubit);
+            nodesList.add(new TGate(qubit));
+        }
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.Phase Phase} gate,
+     * shifting the phase of {@code qubit} by {@code angle}.
+     *
+     * @param qubit qubit to shift
+     * @param angle phase shift angle (in radians)
+     *
+     * */
+    protected void phase(int qubit, double angle) {
+        checkQubitRegisterBounds(qubit);
+        nodesList.add(new Phase(qubit, angle));
+    }
+
+    /**
+     * Adds the parametrized {@link io.github.patztablook22.jaq.nodes.Phase Phase} gate,
+     * shifting the phase of {@code qubit} by the value bound to {@code angle} at runtime.
+     *
+     * @param qubit qubit to shift
+     * @param angle phase shift angle parameter
+     * @see Parameter
+     *
+     * */
+    protected void phase(int qubit, Parameter angle) {
+        checkQubitRegisterBounds(qubit);
+        nodesList.add(new Phase(qubit, 1, angle));
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.RotateZ RotateZ},
+     * rotating {@code qubit} by {@code angle}.
+     *
+     * @param qubit qubit to rotate
+     * @param angle rotation angle (in radians)
+     *
+     * */
+    protected void rotateZ(int qubit, double angle) {
+        checkQubitRegisterBounds(qubit);
+        nodesList.add(new RotateZ(qubit, angle));
+    }
+
+    /**
+     * Adds the parametrized {@link io.github.patztablook22.jaq.nodes.RotateZ RotateZ},
+     * rotating {@code qubit} by the value bound to {@code angle} at runtime.
+     *
+     * @param qubit qubit to rotate
+     * @param angle rotation angle parameter
+     * @see Parameter
+     *
+     * */
+    protected void rotateZ(int qubit, Parameter angle) {
+        checkQubitRegisterBounds(qubit);
+        nodesList.add(new RotateZ(qubit, 1, angle));
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.ControlledPhase ControlledPhase}
+     * gate controlled by {@code controlQubit}, shifting the phase of
+     * {@code targetQubit} by {@code angle}.
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var circuit = new Qcircuit() {{
+     *        /* ... &#42;/
+     *
+     *        /* the controlled-S gate &#42;/
+     *        controlledPhase(0, 1, Math.PI / 2);
+     *
+     *        /* ... &#42;/
+     *    }};
+     * </code></pre>
+     *
+     * @param controlQubit the control qubit
+     * @param targetQubit the target qubit
+     * @param angle phase shift angle (in radians)
+     *
+     * */
+    protected void controlledPhase(int controlQubit, int targetQubit, double angle) {
+        checkQubitRegisterBounds(controlQubit);
+        checkQubitRegisterBounds(targetQubit);
+        nodesList.add(new ControlledPhase(controlQubit, targetQubit, angle));
+    }
+
+    /**
+     * Adds the parametrized
+     * {@link io.github.patztablook22.jaq.nodes.ControlledPhase ControlledPhase}
+     * gate controlled by {@code controlQubit}, shifting the phase of
+     * {@code targetQubit} by the value bound to {@code angle} at runtime.
+     *
+     * @param controlQubit the control qubit
+     * @param targetQubit the target qubit
+     * @param angle phase shift angle parameter
+     * @see Parameter
+     *
+     * */
+    protected void controlledPhase(int controlQubit, int targetQubit, Parameter angle) {
+        checkQubitRegisterBounds(controlQubit);
+        checkQubitRegisterBounds(targetQubit);
+        nodesList.add(new ControlledPhase(controlQubit, targetQubit, 1, angle));
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.QuantumFourierTransform QFT}
+     * acting on the register formed by the given qubits, the first one
+     * being the most significant.
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var circuit = new Qcircuit() {{
+     *        /* ... &#42;/
+     *
+     *        qft(0, 1, 2, 3);
+     *
+     *        /* ... &#42;/
+     *    }};
+     * </code></pre>
+     *
+     * @param qubits the register qubits
+     * @see #inverseQft(int...)
+     *
+     * */
+    protected void qft(int... qubits) {
+        for (int q: qubits) checkQubitRegisterBounds(q);
+        nodesList.add(new QuantumFourierTransform(qubits, false));
+    }
+
+    /**
+     * Adds the inverse
+     * {@link io.github.patztablook22.jaq.nodes.QuantumFourierTransform QFT}
+     * acting on the register formed by the given qubits, the first one
+     * being the most significant.
+     *
+     * @param qubits the register qubits
+     * @see #qft(int...)
+     *
+     * */
+    protected void inverseQft(int... qubits) {
+        for (int q: qubits) checkQubitRegisterBounds(q);
+        nodesList.add(new QuantumFourierTransform(qubits, true));
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.PauliRotation PauliRotation}
+     * \( e^{-i \theta P} \) generated by the Pauli string {@code paulis}, the
+     * {@code j}-th Pauli matrix acting on the {@code j}-th of the given qubits.
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var circuit = new Qcircuit() {{
+     *        /* ... &#42;/
+     *
+     *        /* XX coupling of the first and the third qubit &#42;/
+     *        pauliRotation("XX", 0.25, 0, 2);
+     *
+     *        /* ... &#42;/
+     *    }};
+     * </code></pre>
+     *
+     * @param paulis the Pauli string
+     * @param angle rotation angle (in radians)
+     * @param qubits the qubits the individual Pauli matrices act on
+     *
+     * */
+    protected void pauliRotation(String paulis, double angle, int... qubits) {
+        for (int q: qubits) checkQubitRegisterBounds(q);
+        nodesList.add(new PauliRotation(paulis, qubits, angle));
+    }
+
+    /**
+     * Adds the parametrized
+     * {@link io.github.patztablook22.jaq.nodes.PauliRotation PauliRotation}
+     * rotating by the value bound to {@code angle} at runtime.
+     *
+     * @param paulis the Pauli string
+     * @param angle rotation angle parameter
+     * @param qubits the qubits the individual Pauli matrices act on
+     * @see Parameter
+     *
+     * */
+    protected void pauliRotation(String paulis, Parameter angle, int... qubits) {
+        for (int q: qubits) checkQubitRegisterBounds(q);
+        nodesList.add(new PauliRotation(paulis, qubits, 1, angle));
+    }
+
+    /**
+     * Adds the time evolution \( e^{-i H t} \) under the given
+     * {@link PauliSum} Hamiltonian, approximated by the first order
+     * Trotter-Suzuki decomposition:
+     * \[
+     *      e^{-i H t} \approx \left( \prod_k e^{-i c_k P_k t / r} \right)^r
+     * \]
+     *
+     * where {@code r} is the number of {@code steps}. Each factor is added as
+     * a single {@link io.github.patztablook22.jaq.nodes.PauliRotation PauliRotation}.
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var hamiltonian = new PauliSum()
+     *        .add(-1.0, "ZZ", 0, 1)
+     *        .add(-0.5, "X", 0)
+     *        .add(-0.5, "X", 1);
+     *
+     *    var circuit = new Qcircuit() {{
+     *        evolve(hamiltonian, 2.0, 100);
+     *    }};
+     * </code></pre>
+     *
+     * @param hamiltonian the Hamiltonian
+     * @param time the evolution time
+     * @param steps the number of Trotter steps
+     *
+     * */
+    protected void evolve(PauliSum hamiltonian, double time, int steps) {
+        if (steps <= 0)
+            throw new IllegalArgumentException();
+
+        for (int step = 0; step < steps; step++)
+            for (var term: hamiltonian.terms())
+                pauliRotation(term.getPaulis(),
+                              term.getCoefficient() * time / steps,
+                              term.getQubits());
+    }
+
+    /**
+     * Adds the time evolution \( e^{-i H t} \) under the given
+     * {@link PauliSum} Hamiltonian for the time bound to {@code time}
+     * at runtime, approximated by the first order Trotter-Suzuki decomposition.
+     * Useful e.g. for the QAOA, where the evolution times are the optimized
+     * parameters.
+     *
+     * @param hamiltonian the Hamiltonian
+     * @param time the evolution time parameter
+     * @param steps the number of Trotter steps
+     * @see #evolve(PauliSum, double, int)
+     *
+     * */
+    protected void evolve(PauliSum hamiltonian, Parameter time, int steps) {
+        if (steps <= 0)
+            throw new IllegalArgumentException();
+
+        for (int step = 0; step < steps; step++) {
+            for (var term: hamiltonian.terms()) {
+                for (int q: term.getQubits()) checkQubitRegisterBounds(q);
+                nodesList.add(new PauliRotation(term.getPaulis(),
+                                                term.getQubits(),
+                                                term.getCoefficient() / steps,
+                                                time));
+            }
+        }
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.Oracle Oracle}
+     * permuting the computational basis of the register formed by
+     * the given qubits, the first one being the most significant.
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var circuit = new Qcircuit() {{
+     *        /* ... &#42;/
+     *
+     *        /* increment modulo 8 &#42;/
+     *        oracle(x -&gt; (x + 1) % 8, 0, 1, 2);
+     *
+     *        /* ... &#42;/
+     *    }};
+     * </code></pre>
+     *
+     * @param permutation bijection on the register values
+     * @param qubits the register qubits
+     *
+     * */
+    protected void oracle(IntUnaryOperator permutation, int... qubits) {
+        for (int q: qubits) checkQubitRegisterBounds(q);
+        nodesList.add(new Oracle(qubits, permutation));
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.Oracle Oracle}
+     * computing a classical function into an output register:
+     * \(
+     *      \ket{x, y} \mapsto \ket{x, y \oplus f(x)}
+     * \)
+     *
+     * <p>
+     *   Both the {@code inputs} and the {@code outputs} registers have
+     *   the first qubit as the most significant one. The function
+     *   needs not be reversible, only the lowest {@code outputs.length}
+     *   bits of its values are used.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var circuit = new Qcircuit() {{
+     *        /* ... &#42;/
+     *
+     *        /* parity of the first three qubits into the fourth one &#42;/
+     *        oracle(x -&gt; Integer.bitCount(x) % 2,
+     *               new int[] {0, 1, 2},
+     *               new int[] {3});
+     *
+     *        /* ... &#42;/
+     *    }};
+     * </code></pre>
+     *
+     * @param function the classical function
+     * @param inputs the input register qubits
+     * @param outputs the output register qubits
+     *
+     * */
+    protected void oracle(IntUnaryOperator function, int[] inputs, int[] outputs) {
+        int[] qubits = new int[inputs.length + outputs.length];
+        System.arraycopy(inputs, 0, qubits, 0, inputs.length);
+        System.arraycopy(outputs, 0, qubits, inputs.length, outputs.length);
+
+        int width = outputs.length;
+        int outputMask = (1 << width) - 1;
+        oracle(v -> v ^ (function.applyAsInt(v >>> width) & outputMask), qubits);
+    }
+
+    /**
+     * Adds the {@link io.github.patztablook22.jaq.nodes.PhaseOracle PhaseOracle}
+     * flipping the phase of the register values satisfying the {@code predicate}.
+     * The register is formed by the given qubits, the first one being the most
+     * significant.
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    var circuit = new Qcircuit() {{
+     *        /* ... &#42;/
+     *
+     *        /* Grover's search marking 5 &#42;/
+     *        phaseOracle(x -&gt; x == 5, 0, 1, 2);
+     *
+     *        /* ... &#42;/
+     *    }};
+     * </code></pre>
+     *
+     * @param predicate the predicate marking the register values
+     * @param qubits the register qubits
+     *
+     * */
+    protected void phaseOracle(IntPredicate predicate, int... qubits) {
+        for (int q: qubits) checkQubitRegisterBounds(q);
+        nodesList.add(new PhaseOracle(qubits, predicate));
+    }
+
     /**
      * Nests another {@link Qcircuit Qcircuit} at the end of the
      * current circuit. 
@@ -462,6 +905,36 @@ public class Qcircuit {
         return nodesList;
     }
 
+    /**
+     * Returns the distinct {@link Parameter Parameters} of the Qcircuit's
+     * {@link Parametric} gates, including the nested ones, in the order
+     * of their first occurence.
+     *
+     * @return list of the Qcircuit's parameters
+     *
+     * */
+    public List<Parameter> parameters() {
+        var found = new LinkedHashSet<Parameter>();
+        collectParameters(this, found);
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Recursively collects the parameters of given Qcircuit.
+     *
+     * @param circuit the Qcircuit to inspect
+     * @param found the collected parameters
+     *
+     * */
+    private static void collectParameters(Qcircuit circuit, Set<Parameter> found) {
+        for (Qnode node: circuit.nodes()) {
+            if (node instanceof Subcircuit)
+                collectParameters(((Subcircuit) node).getCircuit(), found);
+            else if (node instanceof Parametric && ((Parametric) node).getParameter() != null)
+                found.add(((Parametric) node).getParameter());
+        }
+    }
+
     /**
      * Returns the Qcircuit's name.
      * If the name wasn't set explicitly, the class name is used.
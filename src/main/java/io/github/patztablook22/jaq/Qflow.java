@@ -3,8 +3,11 @@ package io.github.patztablook22.jaq;
 import io.github.patztablook22.jaq.nodes.*;
 import io.github.patztablook22.jaq.Qop;
 
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Stack;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
 
 
 /**
@@ -31,6 +34,7 @@ public abstract class Qflow {
     private Qcircuit circuit;
     private Stack<int[]> qubitScopes = new Stack<>();
     private Stack<int[]> cbitScopes = new Stack<>();
+    private Map<Parameter, Double> bindings;
 
     /**
      * Constructs a {@code Qflow} from given {@link Qcircuit}.
@@ -41,7 +45,23 @@ public abstract class Qflow {
      *
      * */
     protected Qflow(Qcircuit circuit) {
+        this(circuit, Map.of());
+    }
+
+    /**
+     * Constructs a {@code Qflow} from given parametrized {@link Qcircuit}.
+     * The angles of the {@link Parametric} gates are resolved
+     * using the given {@code bindings}.
+     *
+     * @param circuit the underlying Qcircuit
+     * @param bindings the parameter values
+     *
+     * @see #angle(Parametric)
+     *
+     * */
+    protected Qflow(Qcircuit circuit, Map<Parameter, Double> bindings) {
         this.circuit = circuit;
+        this.bindings = bindings;
     }
 
     /**
@@ -112,6 +132,37 @@ public abstract class Qflow {
             return cbitScopes.peek()[c];
     }
 
+    private int[] scopedQubits(int[] qs) {
+        if (qubitScopes.empty())
+            return qs.clone();
+        else
+            return select(qubitScopes.peek(), qs);
+    }
+
+    /**
+     * Resolves the effective angle of a {@link Parametric} gate being fed.
+     * Throws IllegalArgumentException if its parameter is not bound.
+     *
+     * <p>
+     *   Subclasses compiling the flow for later binding can override it
+     *   to keep track of the gate's parameter instead.
+     * </p>
+     *
+     * @param gate the gate being fed
+     * @return the effective angle
+     *
+     * */
+    protected double angle(Parametric gate) {
+        Parameter parameter = gate.getParameter();
+        if (parameter == null)
+            return gate.getAngle();
+
+        Double value = bindings.get(parameter);
+        if (value == null)
+            throw new IllegalArgumentException("unbound parameter: " + parameter);
+        return gate.getAngle() * value;
+    }
+
     /**
      * Recives the next {@link Qop} and feeds it forward into
      * the dedicated method.
@@ -141,7 +192,48 @@ public abstract class Qflow {
         } else if (op instanceof RotateX) {
             var rx = (RotateX) op;
             int qubit = scopedQubit(rx.getQubit());
-            rotateX(qubit, rx.getAngle());
+            rotateX(qubit, angle(rx));
+        } else if (op instanceof PauliZ) {
+            var pz = (PauliZ) op;
+            int qubit = scopedQubit(pz.getQubit());
+            pauliZ(qubit);
+        } else if (op instanceof SGate) {
+            var s = (SGate) op;
+            int qubit = scopedQubit(s.getQubit());
+            sGate(qubit);
+        } else if (op instanceof TGate) {
+            var t = (TGate) op;
+            int qubit = scopedQubit(t.getQubit());
+            tGate(qubit);
+        } else if (op instanceof Phase) {
+            var p = (Phase) op;
+            int qubit = scopedQubit(p.getQubit());
+            phase(qubit, angle(p));
+        } else if (op instanceof RotateZ) {
+            var rz = (RotateZ) op;
+            int qubit = scopedQubit(rz.getQubit());
+            rotateZ(qubit, angle(rz));
+        } else if (op instanceof ControlledPhase) {
+            var cp = (ControlledPhase) op;
+            int control = scopedQubit(cp.getControl());
+            int target = scopedQubit(cp.getTarget());
+            controlledPhase(control, target, angle(cp));
+        } else if (op instanceof QuantumFourierTransform) {
+            var qft = (QuantumFourierTransform) op;
+            int[] qubits = scopedQubits(qft.getQubits());
+            quantumFourierTransform(qubits, qft.isInverse());
+        } else if (op instanceof Oracle) {
+            var o = (Oracle) op;
+            int[] qubits = scopedQubits(o.getQubits());
+            oracle(qubits, o.getFunction());
+        } else if (op instanceof PhaseOracle) {
+            var po = (PhaseOracle) op;
+            int[] qubits = scopedQubits(po.getQubits());
+            phaseOracle(qubits, po.getPredicate());
+        } else if (op instanceof PauliRotation) {
+            var pr = (PauliRotation) op;
+            int[] qubits = scopedQubits(pr.getQubits());
+            pauliRotation(pr.getPaulis(), qubits, angle(pr));
         } else {
             throw new NoSuchElementException();
         }
@@ -189,4 +281,331 @@ public abstract class Qflow {
      *
      * */
     protected abstract void rotateX(int qubit, double angle);
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.PauliZ} gate.
+     *
+     * Defaults to the {@link #phase(int, double) phase} shift by \( \pi \).
+     *
+     * @param qubit the gate's qubit
+     *
+     * */
+    protected void pauliZ(int qubit) {
+        phase(qubit, Math.PI);
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.SGate} gate.
+     *
+     * Defaults to the {@link #phase(int, double) phase} shift by \( \frac{\pi}{2} \).
+     *
+     * @param qubit the gate's qubit
+     *
+     * */
+    protected void sGate(int qubit) {
+        phase(qubit, Math.PI / 2);
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.TGate} gate.
+     *
+     * Defaults to the {@link #phase(int, double) phase} shift by \( \frac{\pi}{4} \).
+     *
+     * @param qubit the gate's qubit
+     *
+     * */
+    protected void tGate(int qubit) {
+        phase(qubit, Math.PI / 4);
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.Phase} gate.
+     *
+     * Defaults to the {@link #rotateZ(int, double) rotateZ} by the same
+     * angle, which differs only by the global phase \( e^{i \theta / 2} \).
+     *
+     * @param qubit the gate's qubit
+     * @param angle the phase shift angle
+     *
+     * */
+    protected void phase(int qubit, double angle) {
+        rotateZ(qubit, angle);
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.RotateZ} gate.
+     *
+     * Defaults to the {@link #rotateX(int, double) rotateX} conjugated
+     * by {@link #hadamard(int) hadamard} gates, as \( H X H = Z \).
+     *
+     * @param qubit the gate's qubit
+     * @param angle the rotation angle
+     *
+     * */
+    protected void rotateZ(int qubit, double angle) {
+        hadamard(qubit);
+        rotateX(qubit, angle);
+        hadamard(qubit);
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.ControlledPhase} gate.
+     *
+     * Defaults to the textbook decomposition into
+     * {@link #phase(int, double) phase} shifts by \( \pm \theta / 2 \)
+     * and two {@link #cnot(int, int) cnot} gates.
+     *
+     * @param control the control qubit
+     * @param target the target qubit
+     * @param angle the phase shift angle
+     *
+     * */
+    protected void controlledPhase(int control, int target, double angle) {
+        phase(control, angle / 2);
+        cnot(control, target);
+        phase(target, -angle / 2);
+        cnot(control, target);
+        phase(target, angle / 2);
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.QuantumFourierTransform} gate.
+     *
+     * <p>
+     *   Defaults to the textbook decomposition into
+     *   {@link #hadamard(int) hadamard} and
+     *   {@link #controlledPhase(int, int, double) controlledPhase} gates,
+     *   followed by reversing the qubits using {@link #cnot(int, int) cnot}
+     *   swaps. Backends capable of executing the transform directly
+     *   should override it.
+     * </p>
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param inverse whether the transform is inverse
+     *
+     * */
+    protected void quantumFourierTransform(int[] qubits, boolean inverse) {
+        int m = qubits.length;
+
+        if (!inverse) {
+            for (int j = 0; j < m; j++) {
+                hadamard(qubits[j]);
+                for (int k = j + 1; k < m; k++)
+                    controlledPhase(qubits[k], qubits[j], Math.PI / (1 << (k - j)));
+            }
+        }
+
+        for (int j = 0; j < m / 2; j++) {
+            int a = qubits[j], b = qubits[m - j - 1];
+            cnot(a, b);
+            cnot(b, a);
+            cnot(a, b);
+        }
+
+        if (inverse) {
+            for (int j = m - 1; j >= 0; j--) {
+                for (int k = m - 1; k > j; k--)
+                    controlledPhase(qubits[k], qubits[j], -Math.PI / (1 << (k - j)));
+                hadamard(qubits[j]);
+            }
+        }
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.Oracle} gate.
+     *
+     * <p>
+     *   Defaults to the decomposition of the permutation into cycles and
+     *   the cycles into transpositions of two register values. Each
+     *   transposition is conjugated by {@link #cnot(int, int) cnot} gates
+     *   into a multi-controlled {@link #pauliX(int) pauliX}, which in turn
+     *   is a {@link #hadamard(int) hadamard}-conjugated multi-controlled
+     *   phase flip, see {@link #phaseOracle(int[], IntPredicate)}. The
+     *   number of the gates thus grows exponentially with the register
+     *   size, backends capable of permuting the amplitudes directly
+     *   should override it.
+     * </p>
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param permutation the permutation of the register values
+     *
+     * */
+    protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+        int m = qubits.length;
+        boolean[] visited = new boolean[1 << m];
+        for (int first = 0; first < visited.length; first++) {
+            visited[first] = true;
+            for (int x = permutation.applyAsInt(first); !visited[x]; x = permutation.applyAsInt(x)) {
+                visited[x] = true;
+                transposition(qubits, first, x);
+            }
+        }
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.PhaseOracle} gate.
+     *
+     * <p>
+     *   Defaults to the exact decomposition of the diagonal into
+     *   {@link #phase(int, double) phase} shifts of the parities of
+     *   the qubit subsets, each computed by a {@link #cnot(int, int) cnot}
+     *   ladder, by the Walsh-Hadamard transform of the phase table.
+     *   The number of the gates thus grows exponentially with the
+     *   register size, backends capable of flipping the amplitudes
+     *   directly should override it.
+     * </p>
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param predicate the predicate marking the register values
+     *
+     * */
+    protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+        double[] angles = new double[1 << qubits.length];
+        for (int x = 0; x < angles.length; x++)
+            angles[x] = predicate.test(x) ? Math.PI : 0;
+        diagonal(qubits, angles);
+    }
+
+    /**
+     * Swaps the two given register values by the elementary gates.
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param a the first register value
+     * @param b the second register value
+     *
+     * */
+    private void transposition(int[] qubits, int a, int b) {
+        int m = qubits.length;
+        int differ = a ^ b;
+        int pivot = Integer.numberOfTrailingZeros(differ);
+        int target = qubits[m - pivot - 1];
+
+        /* make the two values differ in the pivot bit only */
+        for (int j = 0; j < m; j++)
+            if (j != pivot && (differ >>> j & 1) != 0)
+                cnot(target, qubits[m - j - 1]);
+
+        /* the other bits are now those of the value lacking the pivot bit */
+        int rest = (a >>> pivot & 1) == 0 ? a : b;
+        hadamard(target);
+        double[] angles = new double[1 << m];
+        angles[angles.length - 1] = Math.PI;
+        for (int j = 0; j < m; j++)
+            if (j != pivot && (rest >>> j & 1) == 0)
+                pauliX(qubits[m - j - 1]);
+        diagonal(qubits, angles);
+        for (int j = 0; j < m; j++)
+            if (j != pivot && (rest >>> j & 1) == 0)
+                pauliX(qubits[m - j - 1]);
+        hadamard(target);
+
+        for (int j = m - 1; j >= 0; j--)
+            if (j != pivot && (differ >>> j & 1) != 0)
+                cnot(target, qubits[m - j - 1]);
+    }
+
+    /**
+     * Applies the diagonal gate multiplying each register value
+     * \( x \) by \( e^{i \varphi_x} \). As
+     * \(
+     *      \varphi_x = \varphi_0 - 2 \sum_{T \neq \emptyset} \hat\varphi_T \, (\oplus_{j \in T} x_j)
+     * \)
+     * where \( \hat\varphi \) is the normalized Walsh-Hadamard transform of
+     * the table, the gate is a product of the phase shifts of the parities
+     * and the global phase \( e^{i \varphi_0} \).
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param angles the phase angles, indexed by the register values
+     *
+     * */
+    private void diagonal(int[] qubits, double[] angles) {
+        int m = qubits.length;
+        double[] spectrum = angles.clone();
+        for (int h = 1; h < spectrum.length; h <<= 1)
+            for (int i = 0; i < spectrum.length; i += 2 * h)
+                for (int j = i; j < i + h; j++) {
+                    double u = spectrum[j], v = spectrum[j + h];
+                    spectrum[j] = u + v;
+                    spectrum[j + h] = u - v;
+                }
+
+        int[] subset = new int[m];
+        for (int mask = 1; mask < spectrum.length; mask++) {
+            double angle = -2 * spectrum[mask] / spectrum.length;
+            if (Math.abs(angle) < 1e-12)
+                continue;
+
+            int size = 0;
+            for (int j = m - 1; j >= 0; j--)
+                if ((mask >>> j & 1) != 0)
+                    subset[size++] = qubits[m - j - 1];
+
+            for (int j = 0; j + 1 < size; j++)
+                cnot(subset[j], subset[j + 1]);
+            phase(subset[size - 1], angle);
+            for (int j = size - 2; j >= 0; j--)
+                cnot(subset[j], subset[j + 1]);
+        }
+
+        /* the global phase e^{i phi_0}, as X P X P = e^{i phi} I */
+        if (Math.abs(angles[0]) >= 1e-12) {
+            phase(qubits[0], angles[0]);
+            pauliX(qubits[0]);
+            phase(qubits[0], angles[0]);
+            pauliX(qubits[0]);
+        }
+    }
+
+    /**
+     * {@link io.github.patztablook22.jaq.nodes.PauliRotation} gate.
+     *
+     * <p>
+     *   Defaults to the textbook decomposition: rotating the non-identity
+     *   qubits into the Z basis, computing their parity into the last one
+     *   by a {@link #cnot(int, int) cnot} ladder, applying
+     *   {@link #rotateZ(int, double) rotateZ} by {@code 2 * angle}, and
+     *   uncomputing. The global phase of an all-identity string is dropped.
+     *   Backends capable of executing the rotation directly should override it.
+     * </p>
+     *
+     * @param paulis the Pauli string
+     * @param qubits the qubits the individual Pauli matrices act on
+     * @param angle the rotation angle
+     *
+     * */
+    protected void pauliRotation(String paulis, int[] qubits, double angle) {
+        int[] active = new int[qubits.length];
+        int size = 0;
+        for (int i = 0; i < qubits.length; i++)
+            if (paulis.charAt(i) != 'I')
+                active[size++] = i;
+
+        if (size == 0)
+            return;
+
+        /* basis change: H X H = Z, H S^dagger Y S H = Z */
+        for (int j = 0; j < size; j++) {
+            int i = active[j];
+            if (paulis.charAt(i) == 'Y')
+                phase(qubits[i], -Math.PI / 2);
+            if (paulis.charAt(i) != 'Z')
+                hadamard(qubits[i]);
+        }
+
+        for (int j = 0; j + 1 < size; j++)
+            cnot(qubits[active[j]], qubits[active[j + 1]]);
+
+        rotateZ(qubits[active[size - 1]], 2 * angle);
+
+        for (int j = size - 2; j >= 0; j--)
+            cnot(qubits[active[j]], qubits[active[j + 1]]);
+
+        for (int j = 0; j < size; j++) {
+            int i = active[j];
+            if (paulis.charAt(i) != 'Z')
+                hadamard(qubits[i]);
+            if (paulis.charAt(i) == 'Y')
+                phase(qubits[i], Math.PI / 2);
+        }
+    }
 }
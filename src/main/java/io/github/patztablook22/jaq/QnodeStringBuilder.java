@@ -168,21 +168,87 @@ class QnodeStringBuilder {
      *
      * */
     private void dump(Subcircuit subcircuit) {
-        if (subcircuit.getQubits().length == 0 && subcircuit.getCbits().length == 0)
-            return;
+        dumpBox(subcircuit.getCircuit().getName(),
+                subcircuit.getQubits(),
+                subcircuit.getCbits());
+    }
+
+    /**
+     * Dumps the string representation for 
+     * {@link io.github.patztablook22.jaq.nodes.QuantumFourierTransform}
+     * into the internal buffer.
+     *
+     * @param qft the QuantumFourierTransform node
+     *
+     * */
+    private void dump(QuantumFourierTransform qft) {
+        dumpBox(qft.isInverse() ? "QFT†" : "QFT", qft.getQubits(), new int[0]);
+    }
+
+    /**
+     * Dumps the string representation for 
+     * {@link io.github.patztablook22.jaq.nodes.Oracle}
+     * into the internal buffer.
+     *
+     * @param oracle the Oracle node
+     *
+     * */
+    private void dump(Oracle oracle) {
+        dumpBox("Oracle", oracle.getQubits(), new int[0]);
+    }
+
+    /**
+     * Dumps the string representation for 
+     * {@link io.github.patztablook22.jaq.nodes.PhaseOracle}
+     * into the internal buffer.
+     *
+     * @param oracle the PhaseOracle node
+     *
+     * */
+    private void dump(PhaseOracle oracle) {
+        dumpBox("PhaseOracle", oracle.getQubits(), new int[0]);
+    }
+
+    /**
+     * Dumps the string representation for 
+     * {@link io.github.patztablook22.jaq.nodes.PauliRotation}
+     * into the internal buffer.
+     *
+     * @param rotation the PauliRotation node
+     *
+     * */
+    private void dump(PauliRotation rotation) {
+        if (rotation.getQubits().length == 1)
+            dumpSingleQubit(rotation.getQubits()[0], "R" + rotation.getPaulis());
+        else
+            dumpBox("R" + rotation.getPaulis(), rotation.getQubits(), new int[0]);
+    }
 
-        String name = subcircuit.getCircuit().getName();
+    /**
+     * General String representation builder for named blocks
+     * spanning multiple qubits and classical bits, with the
+     * individual operand positions annotated. Dumps the
+     * representation into the internal buffer.
+     *
+     * @param name the block label
+     * @param boxQubits the block's qubit operands
+     * @param boxCbits the block's classical bit operands
+     *
+     * */
+    private void dumpBox(String name, int[] boxQubits, int[] boxCbits) {
+        if (boxQubits.length == 0 && boxCbits.length == 0)
+            return;
 
-        int firstRow = Math.min(min(subcircuit.getQubits()), 
-                                min(subcircuit.getCbits()) + qubits);
+        int firstRow = Math.min(min(boxQubits), 
+                                min(boxCbits) + qubits);
 
-        int lastRow = Math.max(max(subcircuit.getQubits()), 
-                               max(subcircuit.getCbits()) + qubits);
+        int lastRow = Math.max(max(boxQubits), 
+                               max(boxCbits) + qubits);
 
         int height = lastRow - firstRow + 2;
 
-        int argPosWidth = Math.max(Integer.toString(subcircuit.getQubits().length).length(),
-                                   Integer.toString(subcircuit.getCbits().length).length()) + 2;
+        int argPosWidth = Math.max(Integer.toString(boxQubits.length).length(),
+                                   Integer.toString(boxCbits.length).length()) + 2;
 
         int nameWidth = Math.min(name.length(), 2 * height + 3);
         int width = argPosWidth + nameWidth + 1;
@@ -205,12 +271,12 @@ class QnodeStringBuilder {
         for (int i = firstRow; i <= lastRow; i++) {
             String argPos;
             char borderLeft, borderRight;
-            if (i < qubits && contains(subcircuit.getQubits(), i)) {
-                argPos = Integer.toString(indexOf(subcircuit.getQubits(), i));
+            if (i < qubits && contains(boxQubits, i)) {
+                argPos = Integer.toString(indexOf(boxQubits, i));
                 borderLeft = '┤';
                 borderRight = '├';
-            } else if (contains(subcircuit.getCbits(), i - qubits)) {
-                argPos = Integer.toString(indexOf(subcircuit.getCbits(), i - qubits));
+            } else if (contains(boxCbits, i - qubits)) {
+                argPos = Integer.toString(indexOf(boxCbits, i - qubits));
                 borderLeft = '╡';
                 borderRight = '╞';
             } else {
@@ -255,6 +321,28 @@ class QnodeStringBuilder {
         }
     }
 
+    /**
+     * Dumps the string representation for 
+     * {@link io.github.patztablook22.jaq.nodes.ControlledPhase}
+     * into the internal buffer.
+     *
+     * @param cphase the ControlledPhase node
+     *
+     * */
+    private void dump(ControlledPhase cphase) {
+        int control = cphase.getControl(), target = cphase.getTarget();
+        repeat("\n", Math.min(control, target) + 1);
+        if (target < control) {
+            append("P\n");
+            repeat("┊\n", control - target - 1);
+            append("┴\n");
+        } else {
+            append("┬\n");
+            repeat("┊\n", target - control - 1);
+            append("P\n");
+        }
+    }
+
     /**
      * Dumps the string representation for 
      * {@link io.github.patztablook22.jaq.nodes.Measure}
@@ -307,6 +395,26 @@ class QnodeStringBuilder {
             dumpSingleQubit(((RotateX) node).getQubit(), "Rx");
         } else if (node instanceof PauliX) {
             dumpSingleQubit(((PauliX) node).getQubit(), "X");
+        } else if (node instanceof PauliZ) {
+            dumpSingleQubit(((PauliZ) node).getQubit(), "Z");
+        } else if (node instanceof SGate) {
+            dumpSingleQubit(((SGate) node).getQubit(), "S");
+        } else if (node instanceof TGate) {
+            dumpSingleQubit(((TGate) node).getQubit(), "T");
+        } else if (node instanceof Phase) {
+            dumpSingleQubit(((Phase) node).getQubit(), "P");
+        } else if (node instanceof RotateZ) {
+            dumpSingleQubit(((RotateZ) node).getQubit(), "Rz");
+        } else if (node instanceof ControlledPhase) {
+            dump((ControlledPhase) node);
+        } else if (node instanceof QuantumFourierTransform) {
+            dump((QuantumFourierTransform) node);
+        } else if (node instanceof Oracle) {
+            dump((Oracle) node);
+        } else if (node instanceof PhaseOracle) {
+            dump((PhaseOracle) node);
+        } else if (node instanceof PauliRotation) {
+            dump((PauliRotation) node);
         }
 
         return sb.toString();
@@ -1,5 +1,12 @@
 package io.github.patztablook22.jaq;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Quantum virtual machine interface. Represents an abstraction
@@ -134,4 +141,368 @@ public interface Qvm {
             result[i] = run(circuit);
         return result;
     }
+
+    /**
+     * Runs the {@link Qcircuit} repeatedly {@code shots} times
+     * and returns the resulting classical registers bit-packed.
+     *
+     * <p>
+     *   Takes about 8 times less memory than {@link #run(Qcircuit, int)}
+     *   and allows counting the outcomes by {@link Shots#histogram()}.
+     *   Backends are expected to fill the {@link Shots} directly,
+     *   by default simply packs the results of {@link #run(Qcircuit)}.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     Qcircuit circuit = /* ... &#42;/;
+     *
+     *     Qvm backend = /* ... &#42;/;
+     *
+     *     Histogram counts = backend.sample(circuit, 1_000_000).histogram();
+     *  </code></pre>
+     *
+     * @param circuit quantum circuit to run
+     * @param shots the number of repetitions
+     * @return resulting bit-packed classical registers
+     * @see Shots
+     *
+     * */
+    default Shots sample(Qcircuit circuit, int shots) {
+        var result = new Shots(circuit.cbits(), shots);
+        for (int i = 0; i < shots; i++)
+            result.add(run(circuit));
+        return result;
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} with the given
+     * {@link Parameter} values repeatedly {@code shots} times
+     * and returns the resulting classical registers bit-packed.
+     *
+     * @param circuit quantum circuit to run
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return resulting bit-packed classical registers
+     * @see #sample(Qcircuit, int)
+     *
+     * */
+    default Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        var result = new Shots(circuit.cbits(), shots);
+        for (int i = 0; i < shots; i++)
+            result.add(run(circuit, bindings));
+        return result;
+    }
+
+    /**
+     * Runs the {@link Qcircuit} repeatedly {@code shots} times
+     * asynchronously and returns the future resulting classical registers.
+     *
+     * <p>
+     *   Cancelling the returned future cancels the underlying run.
+     *   For details, see {@link #sampleAsync(Qcircuit, int)}.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     Qvm backend = /* ... &#42;/;
+     *
+     *     var futures = new ArrayList&lt;CompletableFuture&lt;byte[][]&gt;&gt;();
+     *     for (Qcircuit circuit: circuits)
+     *         futures.add(backend.runAsync(circuit, 1000));
+     *
+     *     CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+     *  </code></pre>
+     *
+     * @param circuit quantum circuit to run
+     * @param shots the number of repetitions
+     * @return the future resulting classical registers
+     * @see #run(Qcircuit, int)
+     *
+     * */
+    default CompletableFuture<byte[][]> runAsync(Qcircuit circuit, int shots) {
+        return toBytes(sampleAsync(circuit, shots));
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} with the given
+     * {@link Parameter} values repeatedly {@code shots} times
+     * asynchronously and returns the future resulting classical registers.
+     *
+     * @param circuit quantum circuit to run
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return the future resulting classical registers
+     * @see #runAsync(Qcircuit, int)
+     *
+     * */
+    default CompletableFuture<byte[][]> runAsync(Qcircuit circuit, Map<Parameter, Double> bindings,
+                                                 int shots) {
+        return toBytes(sampleAsync(circuit, bindings, shots));
+    }
+
+    /**
+     * Runs the {@link Qcircuit} repeatedly {@code shots} times
+     * asynchronously and returns the future resulting classical
+     * registers bit-packed.
+     *
+     * <p>
+     *   Backends are expected to bound the number of concurrently
+     *   running jobs by their resources and to stop the simulation
+     *   once the returned future is cancelled. By default, runs
+     *   {@link #sample(Qcircuit, int)} on the common
+     *   {@link java.util.concurrent.ForkJoinPool ForkJoinPool},
+     *   the cancellation merely discarding the result.
+     * </p>
+     *
+     * @param circuit quantum circuit to run
+     * @param shots the number of repetitions
+     * @return the future resulting bit-packed classical registers
+     * @see #sample(Qcircuit, int)
+     *
+     * */
+    default CompletableFuture<Shots> sampleAsync(Qcircuit circuit, int shots) {
+        return CompletableFuture.supplyAsync(() -> sample(circuit, shots),
+                                             ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} with the given
+     * {@link Parameter} values repeatedly {@code shots} times
+     * asynchronously and returns the future resulting classical
+     * registers bit-packed.
+     *
+     * @param circuit quantum circuit to run
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return the future resulting bit-packed classical registers
+     * @see #sampleAsync(Qcircuit, int)
+     *
+     * */
+    default CompletableFuture<Shots> sampleAsync(Qcircuit circuit, Map<Parameter, Double> bindings,
+                                                 int shots) {
+        return CompletableFuture.supplyAsync(() -> sample(circuit, bindings, shots),
+                                             ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Unpacks the future shots, propagating the cancellation
+     * of the unpacked future back to the run.
+     *
+     * */
+    private static CompletableFuture<byte[][]> toBytes(CompletableFuture<Shots> shots) {
+        var bytes = shots.thenApply(Shots::toBytes);
+        bytes.whenComplete((data, e) -> {
+            if (bytes.isCancelled())
+                shots.cancel(true);
+        });
+        return bytes;
+    }
+
+    /**
+     * Runs the {@link Qcircuit} repeatedly {@code shots} times
+     * and publishes the resulting classical registers incrementally,
+     * in batches of at most {@code batch} shots.
+     *
+     * <p>
+     *   The batches are produced only as requested by the subscriber,
+     *   so that arbitrarily many shots can be processed in constant
+     *   memory, and the production stops once the subscription is
+     *   cancelled. By default, produces the batches by
+     *   {@link #sample(Qcircuit, int)} on the common
+     *   {@link java.util.concurrent.ForkJoinPool ForkJoinPool}.
+     * </p>
+     *
+     * @param circuit quantum circuit to run
+     * @param shots the number of repetitions
+     * @param batch the maximum number of shots per batch
+     * @return the publisher of the batches
+     * @see ShotPublisher
+     *
+     * */
+    default Flow.Publisher<Shots> stream(Qcircuit circuit, long shots, int batch) {
+        return new ShotPublisher(shots, batch,
+                                 () -> n -> sample(circuit, n),
+                                 ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} with the given
+     * {@link Parameter} values repeatedly {@code shots} times
+     * and publishes the resulting classical registers incrementally.
+     *
+     * @param circuit quantum circuit to run
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @param batch the maximum number of shots per batch
+     * @return the publisher of the batches
+     * @see #stream(Qcircuit, long, int)
+     *
+     * */
+    default Flow.Publisher<Shots> stream(Qcircuit circuit, Map<Parameter, Double> bindings,
+                                         long shots, int batch) {
+        return new ShotPublisher(shots, batch,
+                                 () -> n -> sample(circuit, bindings, n),
+                                 ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} with the given
+     * {@link Parameter} values and returns the resulting
+     * classical register as a byte array.
+     *
+     * <p>
+     *   Backends supporting parametrized circuits are expected to
+     *   compile the circuit only once and merely bind the values
+     *   on subsequent runs. By default, runs circuits without any
+     *   parameters by {@link #run(Qcircuit)}, provided that no values
+     *   are bound, and throws IllegalArgumentException otherwise.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     var theta = new Parameter("theta");
+     *     var circuit = new Qcircuit() {{
+     *         rotateX(0, theta);
+     *         measure(0, 0);
+     *     }};
+     *
+     *     Qvm backend = /* ... &#42;/;
+     *
+     *     byte[] data = backend.run(circuit, Map.of(theta, Math.PI / 3));
+     *  </code></pre>
+     *
+     * @param circuit quantum circuit to run
+     * @param bindings the parameter values
+     * @return resultng classical register
+     * @see Parameter
+     *
+     * */
+    default byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        if (!bindings.isEmpty() || !circuit.parameters().isEmpty())
+            throw new IllegalArgumentException("parametrized circuits not supported: "
+                    + circuit.parameters());
+        return run(circuit);
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} with the given
+     * {@link Parameter} values repeatedly {@code shots} times
+     * and returns the resulting classical registers as
+     * a 2D byte array.
+     *
+     * @param circuit quantum circuit to run
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return resultng classical registers
+     * @see #run(Qcircuit, Map)
+     *
+     * */
+    default byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        byte[][] result = new byte[shots][];
+        for (int i = 0; i < shots; i++)
+            result[i] = run(circuit, bindings);
+        return result;
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} for each of the given
+     * {@link Parameter} bindings repeatedly {@code shots} times.
+     * The {@code i}-th row of {@code bindings} holds the values
+     * of the {@code parameters} for the {@code i}-th sweep point.
+     *
+     * <p>
+     *   Backends are expected to share the compilation of the circuit
+     *   across the whole sweep, and possibly to run the bindings in parallel.
+     *   By default, simply invokes {@link #run(Qcircuit, Map, int)}
+     *   for each binding.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     var theta = new Parameter("theta");
+     *     var circuit = /* ... &#42;/;
+     *
+     *     double[][] bindings = new double[100][1];
+     *     for (int i = 0; i &lt; bindings.length; i++)
+     *         bindings[i][0] = i * Math.PI / 100;
+     *
+     *     Qvm backend = /* ... &#42;/;
+     *
+     *     byte[][][] data = backend.sweep(circuit, new Parameter[] {theta}, bindings, 1000);
+     *  </code></pre>
+     *
+     * @param circuit quantum circuit to run
+     * @param parameters the bound parameters
+     * @param bindings the parameter values, one binding per row
+     * @param shots the number of repetitions per binding
+     * @return resulting classical registers, indexed by binding and shot
+     * @see #run(Qcircuit, Map, int)
+     *
+     * */
+    default byte[][][] sweep(Qcircuit circuit, Parameter[] parameters,
+                             double[][] bindings, int shots) {
+        byte[][][] result = new byte[bindings.length][][];
+        for (int i = 0; i < bindings.length; i++) {
+            if (bindings[i].length != parameters.length)
+                throw new IllegalArgumentException("size mismatch: "
+                        + bindings[i].length + " vs " + parameters.length);
+
+            var binding = new HashMap<Parameter, Double>();
+            for (int j = 0; j < parameters.length; j++)
+                binding.put(parameters[j], bindings[i][j]);
+
+            result[i] = run(circuit, binding, shots);
+        }
+        return result;
+    }
+
+    /**
+     * Runs each of the {@link Qcircuit Qcircuits} repeatedly
+     * {@code shots} times and returns the resulting classical
+     * registers in the order of the circuits.
+     *
+     * <p>
+     *   Backends are expected to run the circuits concurrently as far
+     *   as their resources allow, e.g. to run the small circuits in
+     *   parallel and the large ones one by one. By default, simply
+     *   invokes {@link #run(Qcircuit, int)} for each circuit.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     List&lt;Qcircuit&gt; circuits = /* ... &#42;/;
+     *
+     *     Qvm backend = /* ... &#42;/;
+     *
+     *     List&lt;byte[][]&gt; data = backend.runAll(circuits, 1000);
+     *  </code></pre>
+     *
+     * @param circuits quantum circuits to run
+     * @param shots the number of repetitions per circuit
+     * @return resulting classical registers, one element per circuit
+     * @see #run(Qcircuit, int)
+     *
+     * */
+    default List<byte[][]> runAll(List<? extends Qcircuit> circuits, int shots) {
+        var result = new ArrayList<byte[][]>(circuits.size());
+        for (var circuit: circuits)
+            result.add(run(circuit, shots));
+        return result;
+    }
 }
@@ -0,0 +1,233 @@
+package io.github.patztablook22.jaq;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * Memory-mapped reader of shot logs written by {@link ShotLogWriter}.
+ *
+ * <p>
+ *   Only the header and the block boundaries are read when opened.
+ *   The compressed blocks are memory-mapped and inflated one at a time
+ *   while iterating, so that logs of any size can be processed without
+ *   being loaded.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    try (var log = new ShotLogReader(Path.of("shots.jaqs"))) {
+ *        System.out.println(log.shots() + " shots of " + log.circuitName());
+ *        System.out.println(log.histogram().count(0b11));
+ *    }
+ * </code></pre>
+ *
+ * */
+public class ShotLogReader implements Closeable {
+
+    private final FileChannel channel;
+
+    private final int qubits;
+
+    private final int cbits;
+
+    private final int words;
+
+    private final int blockShots;
+
+    private final String circuitName;
+
+    /**
+     * The file positions of the blocks' compressed data.
+     *
+     * */
+    private final List<long[]> blocks = new ArrayList<>();
+
+    /**
+     * The total number of shots.
+     *
+     * */
+    private long shots;
+
+    /**
+     * Opens the log file and reads its header and block boundaries.
+     *
+     * @param path the log file
+     * @throws IOException if the file cannot be read or is not a valid log
+     *
+     * */
+    public ShotLogReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var header = read(0, 28);
+            if (header.getInt() != ShotLogWriter.MAGIC)
+                throw new IOException("not a shot log: " + path);
+            if (header.getInt() != ShotLogWriter.VERSION)
+                throw new IOException("unsupported shot log version: " + path);
+
+            qubits = header.getInt();
+            cbits = header.getInt();
+            words = header.getInt();
+            blockShots = header.getInt();
+
+            int nameLength = header.getInt();
+            circuitName = StandardCharsets.UTF_8.decode(read(28, nameLength)).toString();
+
+            long position = 28 + nameLength;
+            while (position < channel.size()) {
+                var block = read(position, 8);
+                int size = block.getInt();
+                int length = block.getInt();
+                if (size <= 0 || size > blockShots || length < 0
+                        || position + 8 + length > channel.size())
+                    throw new IOException("corrupted shot log: " + path);
+
+                blocks.add(new long[] {position + 8, length, size});
+                shots += size;
+                position += 8 + length;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the circuit's quantum register.
+     *
+     * @return the number of qubits
+     *
+     * */
+    public int qubits() {
+        return qubits;
+    }
+
+    /**
+     * Returns the size of the circuit's classical register.
+     *
+     * @return the number of classical bits
+     *
+     * */
+    public int cbits() {
+        return cbits;
+    }
+
+    /**
+     * Returns the circuit's name.
+     *
+     * @return the circuit's name
+     *
+     * */
+    public String circuitName() {
+        return circuitName;
+    }
+
+    /**
+     * Returns the total number of shots in the log.
+     *
+     * @return the number of shots
+     *
+     * */
+    public long shots() {
+        return shots;
+    }
+
+    /**
+     * Visits all the blocks in order. The visited {@link Shots}
+     * reuse the same buffer and must not be retained.
+     *
+     * @param visitor the callback
+     * @throws IOException if the file cannot be read or is corrupted
+     *
+     * */
+    public void forEachBlock(Consumer<Shots> visitor) throws IOException {
+        var inflater = new Inflater();
+        var raw = ByteBuffer.allocate(8 * blockShots * words).order(ByteOrder.LITTLE_ENDIAN);
+        long[] data = new long[blockShots * words];
+
+        try {
+            for (long[] block: blocks) {
+                int size = (int) block[2];
+
+                inflater.reset();
+                inflater.setInput(channel.map(FileChannel.MapMode.READ_ONLY, block[0], block[1]));
+
+                raw.clear();
+                raw.limit(8 * size * words);
+                while (raw.hasRemaining() && !inflater.finished())
+                    if (inflater.inflate(raw) == 0 && inflater.needsInput())
+                        break;
+                if (raw.hasRemaining())
+                    throw new IOException("corrupted shot log block at " + block[0]);
+
+                raw.flip();
+                raw.asLongBuffer().get(data, 0, size * words);
+                visitor.accept(new Shots(cbits, data, size));
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Visits all the packed shots in order. Throws IllegalStateException
+     * if the classical register has more than 64 bits.
+     *
+     * @param visitor the callback
+     * @throws IOException if the file cannot be read or is corrupted
+     *
+     * */
+    public void forEach(LongConsumer visitor) throws IOException {
+        if (words != 1)
+            throw new IllegalStateException("more than 64 classical bits");
+
+        forEachBlock(block -> {
+            for (int i = 0; i < block.size(); i++)
+                visitor.accept(block.get(i));
+        });
+    }
+
+    /**
+     * Counts the occurrences of the distinct outcomes. Throws
+     * IllegalStateException if the classical register has more than 64 bits.
+     *
+     * @return the histogram
+     * @throws IOException if the file cannot be read or is corrupted
+     *
+     * */
+    public Histogram histogram() throws IOException {
+        var histogram = new Histogram();
+        forEach(outcome -> histogram.add(outcome, 1));
+        return histogram;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("unexpected end of shot log");
+        return buffer.flip();
+    }
+}
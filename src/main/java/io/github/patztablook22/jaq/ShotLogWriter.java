@@ -0,0 +1,318 @@
+package io.github.patztablook22.jaq;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.zip.Deflater;
+
+
+/**
+ * Writer of shot results into a compact binary log file.
+ *
+ * <p>
+ *   The shots are stored bit-packed as in {@link Shots}, grouped into
+ *   independently deflated blocks. The file starts with a small header
+ *   describing the circuit. All the numbers are little-endian:
+ * </p>
+ *
+ * <pre><code class="plaintext">
+ *    header: int magic "JAQS", int version, int qubits, int cbits,
+ *            int words per shot, int shots per block,
+ *            int name length, UTF-8 circuit name
+ *    block:  int shots, int compressed length, deflated packed words
+ * </code></pre>
+ *
+ * <p>
+ *   The writes and the closing are serialized, so the writer can be shared
+ *   by multiple threads. To directly consume {@link Qvm#stream(Qcircuit, long, int)},
+ *   see {@link #subscriber()}. The log can be read back by {@link ShotLogReader}.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    try (var log = new ShotLogWriter(Path.of("shots.jaqs"), circuit)) {
+ *        for (int i = 0; i &lt; 1000; i++)
+ *            log.write(backend.sample(circuit, 1_000_000));
+ *    }
+ * </code></pre>
+ *
+ * */
+public class ShotLogWriter implements Closeable {
+
+    /**
+     * The file magic number, "JAQS" in ASCII.
+     *
+     * */
+    static final int MAGIC = 0x5351414a;
+
+    /**
+     * The file format version.
+     *
+     * */
+    static final int VERSION = 1;
+
+    /**
+     * The default number of shots per block.
+     *
+     * */
+    public static final int DEFAULT_BLOCK = 1 << 16;
+
+    private final FileChannel channel;
+
+    private final int cbits;
+
+    private final int words;
+
+    /**
+     * The packed shots of the current block.
+     *
+     * */
+    private final long[] block;
+
+    /**
+     * The number of shots in the current block.
+     *
+     * */
+    private int size;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final ByteBuffer raw;
+
+    private ByteBuffer compressed;
+
+    /**
+     * Creates the log file with the default block size,
+     * replacing any existing file.
+     *
+     * @param path the log file
+     * @param circuit the sampled circuit
+     * @throws IOException if the file cannot be written
+     *
+     * */
+    public ShotLogWriter(Path path, Qcircuit circuit) throws IOException {
+        this(path, circuit, DEFAULT_BLOCK);
+    }
+
+    /**
+     * Creates the log file, replacing any existing file.
+     *
+     * @param path the log file
+     * @param circuit the sampled circuit
+     * @param blockShots the number of shots per compressed block
+     * @throws IOException if the file cannot be written
+     *
+     * */
+    public ShotLogWriter(Path path, Qcircuit circuit, int blockShots) throws IOException {
+        if (blockShots <= 0)
+            throw new IllegalArgumentException();
+
+        cbits = circuit.cbits();
+        words = Math.max(1, (cbits + 63) / 64);
+        block = new long[blockShots * words];
+        raw = ByteBuffer.allocate(8 * block.length).order(ByteOrder.LITTLE_ENDIAN);
+        compressed = ByteBuffer.allocate(raw.capacity() / 2 + 64);
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                         StandardOpenOption.WRITE,
+                                         StandardOpenOption.TRUNCATE_EXISTING);
+
+        byte[] name = circuit.getName().getBytes(StandardCharsets.UTF_8);
+        var header = ByteBuffer.allocate(28 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+              .putInt(VERSION)
+              .putInt(circuit.qubits())
+              .putInt(cbits)
+              .putInt(words)
+              .putInt(blockShots)
+              .putInt(name.length)
+              .put(name)
+              .flip();
+        writeFully(header);
+    }
+
+    /**
+     * Appends the given shots.
+     *
+     * @param shots the shots to append
+     * @throws IOException if the file cannot be written
+     *
+     * */
+    public synchronized void write(Shots shots) throws IOException {
+        if (shots.cbits() != cbits)
+            throw new IllegalArgumentException("size mismatch: "
+                    + shots.cbits() + " vs " + cbits);
+
+        for (int i = 0; i < shots.size(); i++) {
+            if (words == 1)
+                block[size] = shots.get(i);
+            else
+                System.arraycopy(shots.getWords(i), 0, block, size * words, words);
+
+            if (++size * words == block.length)
+                flush();
+        }
+    }
+
+    /**
+     * Writes the incomplete block, if any, and closes the file.
+     * Closing an already closed writer has no effect.
+     *
+     * @throws IOException if the file cannot be written
+     *
+     * */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen())
+            return;
+        try {
+            flush();
+        } finally {
+            channel.close();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns a new {@link java.util.concurrent.Flow.Subscriber Subscriber}
+     * appending the published shots to this log.
+     *
+     * <p>
+     *   The subscriber requests the shots one batch at a time, and cancels
+     *   the subscription once a write fails. Its completion should be awaited
+     *   before closing the writer, which is left to the owner.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     * <pre><code class="language-java">
+     *    try (var log = new ShotLogWriter(Path.of("shots.jaqs"), circuit)) {
+     *        var subscriber = log.subscriber();
+     *        backend.stream(circuit, 1_000_000_000L, 1 &lt;&lt; 20).subscribe(subscriber);
+     *        subscriber.getCompletion().join();
+     *    }
+     * </code></pre>
+     *
+     * @return the subscriber
+     *
+     * */
+    public Subscriber subscriber() {
+        return new Subscriber();
+    }
+
+    /**
+     * {@link java.util.concurrent.Flow.Subscriber Subscriber}
+     * appending the published shots to the log.
+     *
+     * */
+    public final class Subscriber implements Flow.Subscriber<Shots> {
+
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        private volatile Flow.Subscription subscription;
+
+        private Subscriber() {
+        }
+
+        /**
+         * Returns the future completed once the publisher completes,
+         * or completed exceptionally once it fails or a write fails.
+         *
+         * @return the completion
+         *
+         * */
+        public CompletableFuture<Void> getCompletion() {
+            return completion;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(Shots shots) {
+            if (completion.isDone())
+                return;
+            try {
+                write(shots);
+            } catch (IOException | RuntimeException e) {
+                completion.completeExceptionally(e);
+                subscription.cancel();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            completion.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+
+    /**
+     * Compresses and writes the current block.
+     *
+     * @throws IOException if the file cannot be written
+     *
+     * */
+    private void flush() throws IOException {
+        if (size == 0)
+            return;
+
+        raw.clear();
+        raw.asLongBuffer().put(block, 0, size * words);
+        raw.limit(8 * size * words);
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+
+        compressed.clear();
+        compressed.position(8);
+        while (!deflater.finished()) {
+            if (!compressed.hasRemaining()) {
+                var larger = ByteBuffer.allocate(2 * compressed.capacity());
+                compressed.flip();
+                larger.put(compressed);
+                compressed = larger;
+            }
+            deflater.deflate(compressed);
+        }
+
+        compressed.flip();
+        compressed.order(ByteOrder.LITTLE_ENDIAN)
+                  .putInt(0, size)
+                  .putInt(4, compressed.limit() - 8);
+        writeFully(compressed);
+
+        size = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
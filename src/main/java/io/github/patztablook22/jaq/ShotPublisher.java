@@ -0,0 +1,296 @@
+package io.github.patztablook22.jaq;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * {@link java.util.concurrent.Flow.Publisher Publisher} of shot results
+ * produced incrementally in batches.
+ *
+ * <p>
+ *   Each subscriber receives the given total number of shots as a sequence
+ *   of {@link Shots} batches. A batch is produced only once requested by the
+ *   subscriber, so the results are never materialized all at once and any
+ *   number of shots can be processed in constant memory. Cancelling the
+ *   subscription stops the production after the batch in progress, and so
+ *   does a subscriber's method throwing an exception. A failure of the
+ *   source, or of its factory, is signalled by {@code onError}.
+ *   The {@link Source} of a terminated subscription is closed.
+ * </p>
+ *
+ * <p>
+ *   The batches are produced and delivered sequentially on the given
+ *   {@link Executor}, each subscription using its own {@link Source}.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    Qvm backend = /* ... &#42;/;
+ *
+ *    var counts = new Histogram();
+ *    backend.stream(circuit, 100_000_000, 10_000).subscribe(new Flow.Subscriber&lt;Shots&gt;() {
+ *        private Flow.Subscription subscription;
+ *
+ *        public void onSubscribe(Flow.Subscription subscription) {
+ *            this.subscription = subscription;
+ *            subscription.request(1);
+ *        }
+ *
+ *        public void onNext(Shots batch) {
+ *            counts.merge(batch.histogram());
+ *            subscription.request(1);
+ *        }
+ *
+ *        public void onError(Throwable error) { /* ... &#42;/ }
+ *        public void onComplete() { /* ... &#42;/ }
+ *    });
+ * </code></pre>
+ *
+ * @see Qvm#stream(Qcircuit, long, int)
+ *
+ * */
+public final class ShotPublisher implements Flow.Publisher<Shots> {
+
+    /**
+     * Producer of consecutive shot batches.
+     *
+     * */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * Produces the next batch.
+         *
+         * @param shots the number of shots in the batch
+         * @return the batch
+         *
+         * */
+        Shots next(int shots);
+
+        /**
+         * Releases the resources held by the source. Called once, by the
+         * thread producing the batches, after the subscription completes,
+         * fails or is cancelled. Does nothing by default.
+         *
+         * */
+        default void close() {
+        }
+    }
+
+    /**
+     * The total number of shots per subscriber.
+     *
+     * */
+    private final long shots;
+
+    /**
+     * The maximum number of shots per batch.
+     *
+     * */
+    private final int batch;
+
+    /**
+     * The factory of per-subscription sources.
+     *
+     * */
+    private final Supplier<Source> sources;
+
+    /**
+     * The executor producing and delivering the batches.
+     *
+     * */
+    private final Executor executor;
+
+    /**
+     * Constructs the publisher.
+     *
+     * @param shots the total number of shots per subscriber
+     * @param batch the maximum number of shots per batch
+     * @param sources the factory of per-subscription sources
+     * @param executor the executor producing and delivering the batches
+     *
+     * */
+    public ShotPublisher(long shots, int batch, Supplier<Source> sources, Executor executor) {
+        if (shots < 0 || batch <= 0)
+            throw new IllegalArgumentException();
+
+        this.shots = shots;
+        this.batch = batch;
+        this.sources = sources;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Shots> subscriber) {
+        BatchSubscription subscription;
+        try {
+            subscription = new BatchSubscription(subscriber, sources.get());
+        } catch (RuntimeException e) {
+            /* the failure may be signalled only after onSubscribe */
+            subscription = new BatchSubscription(subscriber, null);
+            subscription.error = e;
+        }
+
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    /**
+     * Subscription producing the batches on demand.
+     *
+     * */
+    private class BatchSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Shots> subscriber;
+
+        /**
+         * The source, null if the factory failed.
+         *
+         * */
+        private final Source source;
+
+        /**
+         * The number of requested, not yet delivered batches.
+         *
+         * */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * The number of pending drain requests. Only the caller
+         * incrementing it from zero schedules the drain loop.
+         *
+         * */
+        private final AtomicInteger work = new AtomicInteger();
+
+        /**
+         * The number of shots not yet produced. Accessed by the drain loop only.
+         *
+         * */
+        private long remaining = shots;
+
+        private volatile boolean done;
+
+        /**
+         * Whether the source has been closed. Accessed by the drain loop only.
+         *
+         * */
+        private boolean closed;
+
+        /**
+         * The signal to deliver instead of the batches, if any.
+         *
+         * */
+        private volatile Throwable error;
+
+        BatchSubscription(Flow.Subscriber<? super Shots> subscriber, Source source) {
+            this.subscriber = subscriber;
+            this.source = source;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                error = new IllegalArgumentException("non-positive request: " + n);
+            else
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            drain();
+        }
+
+        /**
+         * Schedules the drain loop unless already running.
+         *
+         * */
+        void drain() {
+            if (work.getAndIncrement() == 0)
+                executor.execute(this::run);
+        }
+
+        /**
+         * Delivers as many batches as requested. A signal throwing
+         * an exception cancels the subscription, the exception
+         * propagating to the executor.
+         *
+         * */
+        private void run() {
+            boolean returned = false;
+            try {
+                loop();
+                returned = true;
+            } finally {
+                if (!returned) {
+                    done = true;
+                    try {
+                        close();
+                    } finally {
+                        work.set(0);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The drain loop, returning once no drain requests are pending.
+         *
+         * */
+        private void loop() {
+            int missed = 1;
+            while (true) {
+                while (!done && error == null && remaining > 0 && demand.get() > 0) {
+                    int n = (int) Math.min(batch, remaining);
+
+                    Shots next;
+                    try {
+                        next = source.next(n);
+                    } catch (RuntimeException e) {
+                        error = e;
+                        break;
+                    }
+
+                    remaining -= n;
+                    demand.decrementAndGet();
+                    subscriber.onNext(next);
+                }
+
+                if (!done && error != null) {
+                    done = true;
+                    subscriber.onError(error);
+                } else if (!done && remaining == 0) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+
+                if (done)
+                    close();
+
+                missed = work.addAndGet(-missed);
+                if (missed == 0)
+                    return;
+            }
+        }
+
+        /**
+         * Closes the source unless already closed.
+         *
+         * */
+        private void close() {
+            if (!closed) {
+                closed = true;
+                if (source != null)
+                    source.close();
+            }
+        }
+    }
+}
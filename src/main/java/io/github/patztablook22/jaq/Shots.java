@@ -0,0 +1,292 @@
+package io.github.patztablook22.jaq;
+
+import java.util.Arrays;
+
+
+/**
+ * Bit-packed classical registers of repeated {@link Qcircuit} runs.
+ *
+ * <p>
+ *   Each shot is stored as {@link #words()} consecutive {@code long} words,
+ *   the {@code i}-th classical bit being the {@code (i % 64)}-th lowest bit of
+ *   the {@code (i / 64)}-th word. Registers of at most 64 bits thus take a
+ *   single {@code long} per shot, instead of a {@code byte} per bit and an
+ *   array header per shot as in {@link Qvm#run(Qcircuit, int)}.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    Qvm backend = /* ... &#42;/;
+ *
+ *    Shots shots = backend.sample(circuit, 1_000_000);
+ *
+ *    for (int i = 0; i &lt; shots.size(); i++)
+ *        if (shots.bit(i, 0) == 1)
+ *            /* ... &#42;/;
+ *
+ *    System.out.println(shots.histogram().count(0b101));
+ * </code></pre>
+ *
+ * @see Histogram
+ *
+ * */
+public final class Shots {
+
+    /**
+     * The size of the classical register.
+     *
+     * */
+    private final int cbits;
+
+    /**
+     * The number of words per shot.
+     *
+     * */
+    private final int words;
+
+    /**
+     * The packed shots.
+     *
+     * */
+    private long[] data;
+
+    /**
+     * The number of shots.
+     *
+     * */
+    private int size;
+
+    /**
+     * Constructs an empty container.
+     *
+     * @param cbits the size of the classical register
+     * @param capacity the expected number of shots
+     *
+     * */
+    public Shots(int cbits, int capacity) {
+        if (cbits < 0 || capacity < 0)
+            throw new IllegalArgumentException();
+
+        this.cbits = cbits;
+        this.words = Math.max(1, (cbits + 63) / 64);
+        this.data = new long[words * capacity];
+    }
+
+    /**
+     * Wraps already packed shots.
+     *
+     * @param cbits the size of the classical register
+     * @param data the packed shots
+     * @param size the number of shots
+     *
+     * */
+    Shots(int cbits, long[] data, int size) {
+        this.cbits = cbits;
+        this.words = Math.max(1, (cbits + 63) / 64);
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Returns the size of the classical register.
+     *
+     * @return the number of classical bits
+     *
+     * */
+    public int cbits() {
+        return cbits;
+    }
+
+    /**
+     * Returns the number of {@code long} words per shot.
+     *
+     * @return the number of words
+     *
+     * */
+    public int words() {
+        return words;
+    }
+
+    /**
+     * Returns the number of shots.
+     *
+     * @return the number of shots
+     *
+     * */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a shot given as an unpacked classical register,
+     * i.e. one byte per classical bit.
+     *
+     * @param register the classical register
+     *
+     * */
+    public void add(byte[] register) {
+        if (register.length != cbits)
+            throw new IllegalArgumentException("size mismatch: "
+                    + register.length + " vs " + cbits);
+
+        int base = reserve();
+        for (int i = 0; i < cbits; i++)
+            if (register[i] != 0)
+                data[base + (i >>> 6)] |= 1L << (i & 63);
+    }
+
+    /**
+     * Appends a shot given as packed words.
+     *
+     * @param packed the packed classical register
+     *
+     * */
+    public void add(long... packed) {
+        if (packed.length != words)
+            throw new IllegalArgumentException("size mismatch: "
+                    + packed.length + " vs " + words);
+
+        int base = reserve();
+        System.arraycopy(packed, 0, data, base, words);
+    }
+
+    /**
+     * Appends all the shots of another container.
+     *
+     * @param other the shots to append
+     *
+     * */
+    public void addAll(Shots other) {
+        if (other.cbits != cbits)
+            throw new IllegalArgumentException("size mismatch: "
+                    + other.cbits + " vs " + cbits);
+
+        int n = other.size * words;
+        if (size * words + n > data.length)
+            data = Arrays.copyOf(data, Math.max(2 * data.length, size * words + n));
+
+        System.arraycopy(other.data, 0, data, size * words, n);
+        size += other.size;
+    }
+
+    /**
+     * Returns the packed classical register of the given shot.
+     * Throws IllegalStateException if the register has more than 64 bits,
+     * see {@link #getWords(int)}.
+     *
+     * @param shot the shot index
+     * @return the packed classical register
+     *
+     * */
+    public long get(int shot) {
+        if (words != 1)
+            throw new IllegalStateException("more than 64 classical bits");
+
+        return data[check(shot)];
+    }
+
+    /**
+     * Returns a copy of the packed words of the given shot.
+     *
+     * @param shot the shot index
+     * @return the packed classical register
+     *
+     * */
+    public long[] getWords(int shot) {
+        int base = check(shot) * words;
+        return Arrays.copyOfRange(data, base, base + words);
+    }
+
+    /**
+     * Returns the value of a single classical bit of the given shot.
+     *
+     * @param shot the shot index
+     * @param cbit the classical bit
+     * @return the bit's value, either 0 or 1
+     *
+     * */
+    public int bit(int shot, int cbit) {
+        if (cbit < 0 || cbit >= cbits)
+            throw new IndexOutOfBoundsException();
+
+        return (int) (data[check(shot) * words + (cbit >>> 6)] >>> (cbit & 63)) & 1;
+    }
+
+    /**
+     * Unpacks the given shot into a classical register
+     * with one byte per classical bit.
+     *
+     * @param shot the shot index
+     * @return the classical register
+     *
+     * */
+    public byte[] toBytes(int shot) {
+        byte[] out = new byte[cbits];
+        for (int i = 0; i < cbits; i++)
+            out[i] = (byte) bit(shot, i);
+        return out;
+    }
+
+    /**
+     * Unpacks all the shots, in the format of {@link Qvm#run(Qcircuit, int)}.
+     *
+     * @return the classical registers
+     *
+     * */
+    public byte[][] toBytes() {
+        byte[][] out = new byte[size][];
+        for (int i = 0; i < size; i++)
+            out[i] = toBytes(i);
+        return out;
+    }
+
+    /**
+     * Counts the occurrences of the distinct outcomes.
+     * Throws IllegalStateException if the register has more than 64 bits.
+     *
+     * @return the histogram
+     *
+     * */
+    public Histogram histogram() {
+        if (words != 1)
+            throw new IllegalStateException("more than 64 classical bits");
+
+        var histogram = new Histogram();
+        for (int i = 0; i < size; i++)
+            histogram.add(data[i], 1);
+        return histogram;
+    }
+
+    /**
+     * Reserves zeroed words for a new shot, growing the buffer if needed.
+     *
+     * @return the index of the first reserved word
+     *
+     * */
+    private int reserve() {
+        int base = size * words;
+        if (base + words > data.length)
+            data = Arrays.copyOf(data, Math.max(2 * data.length, base + words));
+        else
+            Arrays.fill(data, base, base + words, 0);
+
+        size++;
+        return base;
+    }
+
+    /**
+     * Checks the shot index.
+     *
+     * @param shot the shot index
+     * @return the shot index
+     *
+     * */
+    private int check(int shot) {
+        if (shot < 0 || shot >= size)
+            throw new IndexOutOfBoundsException();
+        return shot;
+    }
+}
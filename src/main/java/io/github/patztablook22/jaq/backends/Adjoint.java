@@ -0,0 +1,77 @@
+package io.github.patztablook22.jaq.backends;
+
+
+/**
+ * Adjoint differentiation of expectation values of compiled {@link Plan Plans}.
+ *
+ * <p>
+ *   For a state \( \ket{\psi} = U_n \dots U_1 \ket{0} \) and an observable
+ *   \( H \), the derivative of \( \bra{\psi} H \ket{\psi} \) with respect to
+ *   a parameter of \( U_j \) is
+ *   \[
+ *      2 \Re \bra{\lambda_j} \frac{\partial U_j}{\partial \theta} \ket{\psi_{j-1}},
+ *      \quad
+ *      \bra{\lambda_j} = \bra{\psi} H U_n \dots U_{j+1},
+ *      \quad
+ *      \ket{\psi_{j-1}} = U_{j-1} \dots U_1 \ket{0}
+ *   \]
+ *
+ *   Both states are obtained from \( \ket{\psi} \) and \( H \ket{\psi} \)
+ *   by undoing the gates one by one. The whole gradient thus costs a single
+ *   forward and a single backward pass, regardless of the number of parameters.
+ * </p>
+ *
+ * */
+final class Adjoint {
+
+    private Adjoint() {
+    }
+
+    /**
+     * Computes the gradient of the expectation value of the observable
+     * in the final state of the plan, ignoring the trailing measurements.
+     * Throws IllegalArgumentException if any measurement is followed
+     * by other instructions.
+     *
+     * @param plan the compiled circuit
+     * @param observable the compiled observable
+     * @param values the parameter values
+     * @param buffers the pool of the state buffers
+     * @return the derivatives, indexed by the plan's parameters
+     *
+     * */
+    static double[] gradient(Plan plan, Observable observable, double[] values,
+                             BufferPool buffers) {
+        int end = plan.unitaryLength();
+        var ket = plan.simulate(values, end, buffers);
+        var bra = buffers.acquire(ket.getDim());
+        var spare = buffers.acquire(ket.getDim());
+        try {
+            observable.apply(ket, bra);
+
+            double[] gradient = new double[plan.parameters.length];
+            for (int i = end - 1; i >= 0; i--) {
+                var unitary = (Plan.Unitary) plan.instructions[i];
+
+                unitary.differentiate(bra, ket, gradient);
+
+                var next = unitary.applyInverse(ket, spare, values);
+                if (next == spare) {
+                    spare = ket;
+                    ket = next;
+                }
+
+                next = unitary.applyInverse(bra, spare, values);
+                if (next == spare) {
+                    spare = bra;
+                    bra = next;
+                }
+            }
+            return gradient;
+        } finally {
+            buffers.release(ket);
+            buffers.release(bra);
+            buffers.release(spare);
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qvm;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Parametric;
+import io.github.patztablook22.jaq.Shots;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+
+/**
+ * Vectorized state vector simulator of many runs of the same circuit
+ * with different parameter values or inputs.
+ *
+ * <p>
+ *   The circuit is flattened by a {@link Qflow} only once, the angles of the
+ *   {@link Parametric} gates being kept symbolic. The runs are then simulated
+ *   in blocks of {@code lanes} state vectors stored in the structure-of-arrays
+ *   layout, see {@link BatchState}, each gate being applied to the whole block
+ *   in a single vectorizable pass. The blocks are simulated in parallel.
+ *   Unlike {@link SimpleSimulator}, there is no per-run compilation, worker
+ *   or allocation, which dominate the cost of small circuits.
+ * </p>
+ *
+ * <p>
+ *   If no measurement is followed by a gate, every run is simulated once
+ *   by a single lane and its shots are sampled from the final state.
+ *   Otherwise, every shot is simulated by its own lane, collapsing it on
+ *   each measurement. A block takes \( 8 B 2^N \) bytes, where \( B \)
+ *   is the number of lanes and \( N \) the number of qubits, so the
+ *   simulator is meant for circuits of up to about 16 qubits.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     var theta = new Parameter("theta");
+ *     var circuit = /* ... &#42;/;
+ *
+ *     double[][] bindings = new double[10_000][1];
+ *     for (int i = 0; i &lt; bindings.length; i++)
+ *         bindings[i][0] = i * Math.PI / bindings.length;
+ *
+ *     var simulator = new BatchSimulator(64, 42);
+ *     byte[][][] data = simulator.sweep(circuit, new Parameter[] {theta}, bindings, 100);
+ *  </code></pre>
+ *
+ * */
+public class BatchSimulator implements Qvm {
+
+    /**
+     * The default number of lanes per block.
+     *
+     * */
+    public static final int DEFAULT_LANES = 64;
+
+    /**
+     * The number of lanes per block.
+     *
+     * */
+    private final int lanes;
+
+    /**
+     * The generator of the per-block random streams.
+     *
+     * */
+    private final SplittableRandom seeds;
+
+    /**
+     * Constructs a {@code BatchSimulator} with a randomly
+     * seeded internal random number generator.
+     *
+     * */
+    public BatchSimulator() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs a {@code BatchSimulator} with the specified
+     * seed for the internal random number generator.
+     *
+     * @param seed randomness seed
+     *
+     * */
+    public BatchSimulator(long seed) {
+        this(DEFAULT_LANES, seed);
+    }
+
+    /**
+     * Constructs a {@code BatchSimulator} with the specified number of
+     * lanes per block and the specified seed for the internal random
+     * number generator.
+     *
+     * @param lanes the number of state vectors simulated together
+     * @param seed randomness seed
+     *
+     * */
+    public BatchSimulator(int lanes, long seed) {
+        if (lanes < 1)
+            throw new IllegalArgumentException("invalid lanes: " + lanes);
+
+        this.lanes = lanes;
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit) {
+        return run(circuit, Map.of());
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, int shots) {
+        return run(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        return run(circuit, bindings, 1)[0];
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        var parameters = bindings.keySet().toArray(new Parameter[0]);
+        double[] row = new double[parameters.length];
+        for (int i = 0; i < row.length; i++)
+            row[i] = bindings.get(parameters[i]);
+
+        return sweep(circuit, parameters, new double[][] {row}, null, shots)[0];
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, int shots) {
+        return sample(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        var data = run(circuit, bindings, shots);
+        var out = new Shots(circuit.cbits(), shots);
+        for (byte[] classical: data)
+            out.add(classical);
+        return out;
+    }
+
+    @Override
+    public byte[][][] sweep(Qcircuit circuit, Parameter[] parameters,
+                            double[][] bindings, int shots) {
+        return sweep(circuit, parameters, bindings, null, shots);
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} with each of the given bindings,
+     * starting from the given basis state, repeatedly {@code shots} times.
+     * The input is the index of the basis state, the qubit 0 being its most
+     * significant bit.
+     *
+     * @param circuit quantum circuit to run
+     * @param parameters the bound parameters
+     * @param bindings the parameter values, one binding per row
+     * @param inputs the initial basis state per row, or {@code null} for zeros
+     * @param shots the number of repetitions per row
+     * @return resulting classical registers, indexed by row and shot
+     *
+     * */
+    public byte[][][] sweep(Qcircuit circuit, Parameter[] parameters,
+                            double[][] bindings, int[] inputs, int shots) {
+        var recorder = new Recorder(circuit);
+        recorder.flow();
+
+        int n = circuit.qubits();
+        if (inputs != null) {
+            if (inputs.length != bindings.length)
+                throw new IllegalArgumentException("size mismatch: "
+                        + inputs.length + " vs " + bindings.length);
+            for (int input: inputs)
+                if (input < 0 || input >= 1 << n)
+                    throw new IllegalArgumentException("invalid input: " + input);
+        }
+
+        double[][] values = recorder.bind(parameters, bindings);
+        boolean collapsing = recorder.collapsing;
+
+        /* the lanes: rows, or their shots if collapsing */
+        long total = collapsing ? (long) values.length * shots : values.length;
+        if (total > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many runs: " + total);
+
+        int width = (int) Math.max(1, Math.min(Math.min(lanes, total), (1 << 30) >> n));
+        int blocks = (int) ((total + width - 1) / width);
+
+        var randoms = new SplittableRandom[blocks];
+        for (int b = 0; b < blocks; b++)
+            randoms[b] = nextRandom();
+
+        byte[][][] data = new byte[values.length][][];
+        if (collapsing)
+            for (int r = 0; r < data.length; r++)
+                data[r] = new byte[shots][];
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int first = b * width;
+            int size = (int) Math.min(width, total - first);
+            var block = new Block(recorder, n, size, randoms[b]);
+
+            for (int l = 0; l < size; l++) {
+                int row = collapsing ? (first + l) / shots : first + l;
+                block.values[l] = values[row];
+                block.inputs[l] = inputs == null ? 0 : inputs[row];
+            }
+            block.run();
+
+            if (collapsing) {
+                for (int l = 0; l < size; l++)
+                    data[(first + l) / shots][(first + l) % shots] = block.classical[l];
+            } else {
+                for (int l = 0; l < size; l++)
+                    data[first + l] = block.sample(l, shots);
+            }
+        });
+
+        return data;
+    }
+
+    private synchronized SplittableRandom nextRandom() {
+        return seeds.split();
+    }
+
+    /**
+     * A gate applied to a whole block.
+     *
+     * */
+    private interface Operation {
+        void apply(Block block);
+    }
+
+    /**
+     * Block of lanes being simulated together.
+     *
+     * */
+    private static final class Block {
+
+        final Recorder recorder;
+        final BatchState state;
+        final SplittableRandom random;
+
+        /**
+         * The parameter values of each lane, in the recorder's order.
+         *
+         * */
+        final double[][] values;
+
+        /**
+         * The initial basis state of each lane.
+         *
+         * */
+        final int[] inputs;
+
+        /**
+         * The classical register of each lane.
+         *
+         * */
+        final byte[][] classical;
+
+        /**
+         * The per-lane cosines and sines of the gate being applied.
+         *
+         * */
+        final float[] cos;
+        final float[] sin;
+
+        Block(Recorder recorder, int qubits, int size, SplittableRandom random) {
+            this.recorder = recorder;
+            this.random = random;
+            state = new BatchState(qubits, size);
+            values = new double[size][];
+            inputs = new int[size];
+            classical = new byte[size][recorder.getCircuit().cbits()];
+            cos = new float[size];
+            sin = new float[size];
+        }
+
+        void run() {
+            state.reset(inputs);
+            for (var operation: recorder.operations)
+                operation.apply(this);
+        }
+
+        /**
+         * Resolves the per-lane cosines and sines of a possibly
+         * parametrized angle.
+         *
+         * @param coefficient the fixed angle or the parameter's coefficient
+         * @param param the parameter index, or -1 if fixed
+         *
+         * */
+        void angles(double coefficient, int param) {
+            for (int l = 0; l < cos.length; l++) {
+                double angle = param < 0 ? coefficient : coefficient * values[l][param];
+                cos[l] = (float) Math.cos(angle);
+                sin[l] = (float) Math.sin(angle);
+            }
+        }
+
+        /**
+         * Measures the qubit in each lane, collapsing it.
+         *
+         * */
+        void measure(int bit, int target) {
+            int size = cos.length;
+            double[] p = new double[size];
+            state.probability(bit, p);
+
+            float[] zero = new float[size], one = new float[size];
+            for (int l = 0; l < size; l++) {
+                boolean result = random.nextDouble() < p[l];
+                classical[l][target] = (byte) (result ? 1 : 0);
+                if (result)
+                    one[l] = (float) (1 / Math.sqrt(p[l]));
+                else
+                    zero[l] = (float) (1 / Math.sqrt(1 - p[l]));
+            }
+            state.collapse(bit, zero, one);
+        }
+
+        /**
+         * Samples the trailing measurements of the lane.
+         *
+         * */
+        byte[][] sample(int lane, int shots) {
+            double[] cumulative = new double[1 << state.qubits];
+            state.cumulative(lane, cumulative);
+            double norm = cumulative[cumulative.length - 1];
+
+            byte[][] out = new byte[shots][];
+            for (int shot = 0; shot < shots; shot++) {
+                int k = Arrays.binarySearch(cumulative, random.nextDouble() * norm);
+                k = Math.min(k < 0 ? -k - 1 : k, cumulative.length - 1);
+
+                byte[] register = new byte[classical[lane].length];
+                for (int[] m: recorder.trailing)
+                    register[m[1]] = (byte) ((k & m[0]) == 0 ? 0 : 1);
+                out[shot] = register;
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Translates the circuit into {@link Operation Operations},
+     * keeping the trailing measurements separately.
+     *
+     * */
+    private static class Recorder extends Qflow {
+
+        private final int qubits;
+
+        /**
+         * The distinct parameters encountered so far.
+         *
+         * */
+        private final List<Parameter> parameters = new ArrayList<>();
+
+        /**
+         * The parameter index of the gate being fed, or -1.
+         *
+         * */
+        private int pendingParameter = -1;
+
+        final List<Operation> operations = new ArrayList<>();
+
+        /**
+         * The measurements not followed by any gate so far,
+         * as pairs of the qubit's state index bit and the target.
+         *
+         * */
+        final List<int[]> trailing = new ArrayList<>();
+
+        /**
+         * Whether any measurement is followed by a gate.
+         *
+         * */
+        boolean collapsing;
+
+        Recorder(Qcircuit circuit) {
+            super(circuit);
+            qubits = circuit.qubits();
+        }
+
+        @Override
+        protected double angle(Parametric gate) {
+            Parameter parameter = gate.getParameter();
+            if (parameter == null) {
+                pendingParameter = -1;
+            } else {
+                pendingParameter = parameters.indexOf(parameter);
+                if (pendingParameter < 0) {
+                    pendingParameter = parameters.size();
+                    parameters.add(parameter);
+                }
+            }
+            return gate.getAngle();
+        }
+
+        private int takeParameter() {
+            int p = pendingParameter;
+            pendingParameter = -1;
+            return p;
+        }
+
+        /**
+         * Resolves a matrix of bindings into the parameter values
+         * in the recorder's order, see {@link Plan#bind(Parameter[], double[][])}.
+         *
+         * */
+        double[][] bind(Parameter[] columns, double[][] rows) {
+            int[] column = new int[parameters.size()];
+            for (int i = 0; i < column.length; i++) {
+                column[i] = Arrays.asList(columns).indexOf(parameters.get(i));
+                if (column[i] < 0)
+                    throw new IllegalArgumentException("unbound parameter: " + parameters.get(i));
+            }
+
+            double[][] values = new double[rows.length][column.length];
+            for (int r = 0; r < rows.length; r++) {
+                if (rows[r].length != columns.length)
+                    throw new IllegalArgumentException("size mismatch: "
+                            + rows[r].length + " vs " + columns.length);
+
+                for (int i = 0; i < column.length; i++)
+                    values[r][i] = rows[r][column[i]];
+            }
+            return values;
+        }
+
+        private int bit(int qubit) {
+            return 1 << (qubits - qubit - 1);
+        }
+
+        private void add(Operation operation) {
+            if (!trailing.isEmpty()) {
+                collapsing = true;
+                for (int[] m: trailing)
+                    operations.add(block -> block.measure(m[0], m[1]));
+                trailing.clear();
+            }
+            operations.add(operation);
+        }
+
+        @Override
+        public void flow() {
+            super.flow();
+            if (collapsing) {
+                for (int[] m: trailing)
+                    operations.add(block -> block.measure(m[0], m[1]));
+                trailing.clear();
+            }
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            int bit = bit(qubit);
+            add(block -> block.state.hadamard(bit));
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            trailing.add(new int[] {bit(source), target});
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            int c = bit(control), t = bit(target);
+            add(block -> block.state.cnot(c, t));
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            int bit = bit(qubit);
+            add(block -> block.state.pauliX(bit));
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            int bit = bit(qubit), param = takeParameter();
+            add(block -> {
+                block.angles(angle / 2, param);
+                block.state.rotateX(bit, block.cos, block.sin);
+            });
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            int bit = bit(qubit), param = takeParameter();
+            add(block -> {
+                block.angles(angle, param);
+                block.state.phase(bit, block.cos, block.sin);
+            });
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            int bit = bit(qubit), param = takeParameter();
+            add(block -> {
+                block.angles(angle / 2, param);
+                block.state.rotateZ(bit, block.cos, block.sin);
+            });
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            int mask = bit(control) | bit(target), param = takeParameter();
+            add(block -> {
+                block.angles(angle, param);
+                block.state.phase(mask, block.cos, block.sin);
+            });
+        }
+
+        @Override
+        protected void pauliRotation(String paulis, int[] qubits, double angle) {
+            int param = takeParameter();
+            int x = 0, z = 0, y = 0;
+            for (int i = 0; i < qubits.length; i++) {
+                char p = paulis.charAt(i);
+                if (p == 'X' || p == 'Y')
+                    x |= bit(qubits[i]);
+                if (p == 'Z' || p == 'Y')
+                    z |= bit(qubits[i]);
+                if (p == 'Y')
+                    y++;
+            }
+
+            int fx = x, fz = z, fy = y;
+            add(block -> {
+                block.angles(angle, param);
+                block.state.pauliRotation(fx, fz, fy, block.cos, block.sin);
+            });
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            int[] image = new int[1 << this.qubits];
+            for (int k = 0; k < image.length; k++) {
+                int in = 0;
+                for (int q: qubits)
+                    in = in << 1 | ((k & bit(q)) == 0 ? 0 : 1);
+
+                int out = permutation.applyAsInt(in), j = k;
+                for (int i = qubits.length - 1; i >= 0; i--, out >>= 1)
+                    j = (out & 1) == 0 ? j & ~bit(qubits[i]) : j | bit(qubits[i]);
+                image[k] = j;
+            }
+            add(block -> block.state.permute(image));
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            int[] marked = IntStream.range(0, 1 << this.qubits).filter(k -> {
+                int in = 0;
+                for (int q: qubits)
+                    in = in << 1 | ((k & bit(q)) == 0 ? 0 : 1);
+                return predicate.test(in);
+            }).toArray();
+            add(block -> block.state.negate(marked));
+        }
+    }
+}
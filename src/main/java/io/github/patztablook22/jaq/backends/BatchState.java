@@ -0,0 +1,358 @@
+package io.github.patztablook22.jaq.backends;
+
+import java.util.Arrays;
+
+
+/**
+ * Batch of state vectors of the same number of qubits
+ * in the structure-of-arrays layout.
+ *
+ * <p>
+ *   The amplitude \( k \) of the lane \( l \) is stored at the index
+ *   \( k B + l \), where \( B \) is the number of lanes, so that the
+ *   amplitudes of all the lanes at the same basis state are contiguous.
+ *   Every gate is applied to all the lanes in a single pass over the basis
+ *   states, the innermost loop running over the lanes without any branches,
+ *   which lets the JIT compiler vectorize it. The angles may differ per lane,
+ *   they are passed as the per-lane cosines and sines.
+ * </p>
+ *
+ * */
+class BatchState {
+
+    /**
+     * The number of qubits of every lane.
+     *
+     * */
+    final int qubits;
+
+    /**
+     * The number of lanes.
+     *
+     * */
+    final int lanes;
+
+    private final int dim;
+
+    private float[] real;
+    private float[] imag;
+
+    /**
+     * Spare buffers for the permutations, allocated on demand.
+     *
+     * */
+    private float[] spareReal;
+    private float[] spareImag;
+
+    /**
+     * Constructs a {@code BatchState} of the given shape,
+     * every lane being in the zero state.
+     *
+     * @param qubits the number of qubits
+     * @param lanes the number of lanes
+     *
+     * */
+    BatchState(int qubits, int lanes) {
+        if (qubits < 0 || qubits > 30 || (long) lanes << qubits > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("invalid batch shape: " + lanes + " x " + qubits);
+
+        this.qubits = qubits;
+        this.lanes = lanes;
+        this.dim = 1 << qubits;
+        real = new float[dim * lanes];
+        imag = new float[dim * lanes];
+        reset(null);
+    }
+
+    /**
+     * Resets the lanes to the given basis states.
+     *
+     * @param inputs the basis state index of each lane, or {@code null} for zeros
+     *
+     * */
+    void reset(int[] inputs) {
+        Arrays.fill(real, 0);
+        Arrays.fill(imag, 0);
+        for (int l = 0; l < lanes; l++)
+            real[(inputs == null ? 0 : inputs[l]) * lanes + l] = 1;
+    }
+
+    /**
+     * Applies the Hadamard gate to all the lanes.
+     *
+     * @param bit the qubit's state index bit
+     *
+     * */
+    void hadamard(int bit) {
+        final float r = (float) Math.sqrt(0.5);
+        for (int high = 0; high < dim; high += bit << 1) {
+            for (int k = high; k < high + bit; k++) {
+                int i0 = k * lanes, i1 = (k | bit) * lanes;
+                for (int l = 0; l < lanes; l++) {
+                    float ar = real[i0 + l], ai = imag[i0 + l];
+                    float br = real[i1 + l], bi = imag[i1 + l];
+                    real[i0 + l] = (ar + br) * r;
+                    imag[i0 + l] = (ai + bi) * r;
+                    real[i1 + l] = (ar - br) * r;
+                    imag[i1 + l] = (ai - bi) * r;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the Pauli X gate to all the lanes.
+     *
+     * @param bit the qubit's state index bit
+     *
+     * */
+    void pauliX(int bit) {
+        cnot(0, bit);
+    }
+
+    /**
+     * Applies the CNOT gate to all the lanes.
+     *
+     * @param control the control qubit's state index bit, or 0 for none
+     * @param target the target qubit's state index bit
+     *
+     * */
+    void cnot(int control, int target) {
+        for (int high = 0; high < dim; high += target << 1) {
+            for (int k = high; k < high + target; k++) {
+                if ((k & control) != control)
+                    continue;
+                int i0 = k * lanes, i1 = (k | target) * lanes;
+                for (int l = 0; l < lanes; l++) {
+                    float ar = real[i0 + l], ai = imag[i0 + l];
+                    real[i0 + l] = real[i1 + l];
+                    imag[i0 + l] = imag[i1 + l];
+                    real[i1 + l] = ar;
+                    imag[i1 + l] = ai;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies \( \cos \theta_l \, I - i \sin \theta_l \, X \) to each lane.
+     *
+     * @param bit the qubit's state index bit
+     * @param cos the cosines of the lanes' angles
+     * @param sin the sines of the lanes' angles
+     *
+     * */
+    void rotateX(int bit, float[] cos, float[] sin) {
+        for (int high = 0; high < dim; high += bit << 1) {
+            for (int k = high; k < high + bit; k++) {
+                int i0 = k * lanes, i1 = (k | bit) * lanes;
+                for (int l = 0; l < lanes; l++) {
+                    float c = cos[l], s = sin[l];
+                    float ar = real[i0 + l], ai = imag[i0 + l];
+                    float br = real[i1 + l], bi = imag[i1 + l];
+                    real[i0 + l] = c * ar + s * bi;
+                    imag[i0 + l] = c * ai - s * br;
+                    real[i1 + l] = c * br + s * ai;
+                    imag[i1 + l] = c * bi - s * ar;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies the amplitudes whose index has all the {@code mask}
+     * bits set by \( e^{i \theta_l} \) in each lane.
+     *
+     * @param mask the bits which must be set
+     * @param cos the cosines of the lanes' angles
+     * @param sin the sines of the lanes' angles
+     *
+     * */
+    void phase(int mask, float[] cos, float[] sin) {
+        for (int k = mask; k < dim; k = (k + 1) | mask)
+            multiply(k * lanes, cos, sin, 1);
+    }
+
+    /**
+     * Applies \( \mathrm{diag}(e^{-i \theta_l}, e^{i \theta_l}) \) to each lane.
+     *
+     * @param bit the qubit's state index bit
+     * @param cos the cosines of the lanes' angles
+     * @param sin the sines of the lanes' angles
+     *
+     * */
+    void rotateZ(int bit, float[] cos, float[] sin) {
+        for (int k = 0; k < dim; k++)
+            multiply(k * lanes, cos, sin, (k & bit) == 0 ? -1 : 1);
+    }
+
+    private void multiply(int offset, float[] cos, float[] sin, float sign) {
+        for (int l = 0; l < lanes; l++) {
+            float c = cos[l], s = sign * sin[l];
+            float ar = real[offset + l], ai = imag[offset + l];
+            real[offset + l] = c * ar - s * ai;
+            imag[offset + l] = c * ai + s * ar;
+        }
+    }
+
+    /**
+     * Applies \( \cos \theta_l \, I - i \sin \theta_l \, P \) to each lane,
+     * where \( P = i^{y} X^{x} Z^{z} \) is a Pauli string, i.e. the product
+     * of the X gates on the {@code x} bits, the Z gates on the {@code z} bits
+     * and the phase \( i^y \) making it Hermitian.
+     *
+     * @param x the bits of the X and Y factors
+     * @param z the bits of the Z and Y factors
+     * @param y the number of the Y factors
+     * @param cos the cosines of the lanes' angles
+     * @param sin the sines of the lanes' angles
+     *
+     * */
+    void pauliRotation(int x, int z, int y, float[] cos, float[] sin) {
+        if (x == 0) {
+            for (int k = 0; k < dim; k++)
+                multiply(k * lanes, cos, sin, (Integer.bitCount(k & z) & 1) == 0 ? -1 : 1);
+            return;
+        }
+
+        /* P |j> = i^y (-1)^{|j & z|} |j ^ x>, the phase is thus a power of i */
+        int top = Integer.highestOneBit(x);
+        for (int k = 0; k < dim; k++) {
+            if ((k & top) != 0)
+                continue;
+            int j = k ^ x;
+            int pk = (y + 2 * Integer.bitCount(k & z)) & 3;
+            int pj = (y + 2 * Integer.bitCount(j & z)) & 3;
+            rotatePair(k * lanes, j * lanes, pj, pk, cos, sin);
+        }
+    }
+
+    /**
+     * Applies the rotation to the amplitudes \( a \) of \( \ket{k} \) and
+     * \( b \) of \( \ket{j} \) coupled by \( P \ket{j} = i^{pj} \ket{k} \)
+     * and \( P \ket{k} = i^{pk} \ket{j} \).
+     *
+     * */
+    private void rotatePair(int ik, int ij, int pj, int pk, float[] cos, float[] sin) {
+        /* -i * i^p = i^{p - 1} */
+        float jr = unitReal(pj - 1), ji = unitImag(pj - 1);
+        float kr = unitReal(pk - 1), ki = unitImag(pk - 1);
+        for (int l = 0; l < lanes; l++) {
+            float c = cos[l], s = sin[l];
+            float ar = real[ik + l], ai = imag[ik + l];
+            float br = real[ij + l], bi = imag[ij + l];
+            real[ik + l] = c * ar + s * (jr * br - ji * bi);
+            imag[ik + l] = c * ai + s * (jr * bi + ji * br);
+            real[ij + l] = c * br + s * (kr * ar - ki * ai);
+            imag[ij + l] = c * bi + s * (kr * ai + ki * ar);
+        }
+    }
+
+    private static float unitReal(int power) {
+        switch (power & 3) {
+            case 0: return 1;
+            case 2: return -1;
+            default: return 0;
+        }
+    }
+
+    private static float unitImag(int power) {
+        switch (power & 3) {
+            case 1: return 1;
+            case 3: return -1;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Permutes the basis states of all the lanes.
+     *
+     * @param permutation the image of each basis state
+     *
+     * */
+    void permute(int[] permutation) {
+        if (spareReal == null) {
+            spareReal = new float[real.length];
+            spareImag = new float[imag.length];
+        }
+        for (int k = 0; k < dim; k++) {
+            System.arraycopy(real, k * lanes, spareReal, permutation[k] * lanes, lanes);
+            System.arraycopy(imag, k * lanes, spareImag, permutation[k] * lanes, lanes);
+        }
+
+        float[] swap = real;
+        real = spareReal;
+        spareReal = swap;
+        swap = imag;
+        imag = spareImag;
+        spareImag = swap;
+    }
+
+    /**
+     * Negates the amplitudes of the given basis states of all the lanes.
+     *
+     * @param marked the negated basis states
+     *
+     * */
+    void negate(int[] marked) {
+        for (int k: marked) {
+            int offset = k * lanes;
+            for (int l = 0; l < lanes; l++) {
+                real[offset + l] = -real[offset + l];
+                imag[offset + l] = -imag[offset + l];
+            }
+        }
+    }
+
+    /**
+     * Computes the probability of measuring 1 on the given qubit in each lane.
+     *
+     * @param bit the qubit's state index bit
+     * @param out the per-lane probabilities
+     *
+     * */
+    void probability(int bit, double[] out) {
+        Arrays.fill(out, 0);
+        for (int k = bit; k < dim; k = (k + 1) | bit) {
+            int offset = k * lanes;
+            for (int l = 0; l < lanes; l++)
+                out[l] += real[offset + l] * real[offset + l]
+                        + imag[offset + l] * imag[offset + l];
+        }
+    }
+
+    /**
+     * Collapses each lane to the given outcome of measuring the given qubit.
+     *
+     * @param bit the qubit's state index bit
+     * @param zero the per-lane factors of the amplitudes of the outcome 0
+     * @param one the per-lane factors of the amplitudes of the outcome 1
+     *
+     * */
+    void collapse(int bit, float[] zero, float[] one) {
+        for (int k = 0; k < dim; k++) {
+            float[] factor = (k & bit) == 0 ? zero : one;
+            int offset = k * lanes;
+            for (int l = 0; l < lanes; l++) {
+                real[offset + l] *= factor[l];
+                imag[offset + l] *= factor[l];
+            }
+        }
+    }
+
+    /**
+     * Computes the cumulative distribution of the basis states of the lane.
+     *
+     * @param lane the lane
+     * @param out the cumulative probabilities, of the dimension of the lane
+     *
+     * */
+    void cumulative(int lane, double[] out) {
+        double sum = 0;
+        for (int k = 0; k < dim; k++) {
+            int i = k * lanes + lane;
+            sum += real[i] * real[i] + imag[i] * imag[i];
+            out[k] = sum;
+        }
+    }
+}
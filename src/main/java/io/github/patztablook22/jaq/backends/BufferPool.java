@@ -0,0 +1,161 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.backends.lingebra.Ket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Bounded pool of reusable state buffers, keyed by their dimension.
+ *
+ * <p>
+ *   The total size of the retained buffers never exceeds the given
+ *   capacity. Once a released buffer would exceed it, the buffers of
+ *   the least recently used dimensions are evicted first and left
+ *   to the garbage collector. The pool is lock-free, so that
+ *   concurrent runs do not contend on it.
+ * </p>
+ *
+ * <p>
+ *   The acquired buffers are not zeroed, their users are expected
+ *   to overwrite them anyway.
+ * </p>
+ *
+ * */
+class BufferPool {
+
+    /**
+     * The default capacity, a quarter of the maximum heap size.
+     *
+     * */
+    static final long DEFAULT_CAPACITY = Runtime.getRuntime().maxMemory() / 4;
+
+    /**
+     * The free buffers, by dimension.
+     *
+     * */
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedDeque<Ket>> free =
+        new ConcurrentHashMap<>();
+
+    /**
+     * The logical time of the last use of each dimension.
+     *
+     * */
+    private final ConcurrentHashMap<Integer, Long> lastUse = new ConcurrentHashMap<>();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * The total size of the retained buffers in bytes.
+     *
+     * */
+    private final AtomicLong retained = new AtomicLong();
+
+    /**
+     * The maximum total size of the retained buffers in bytes.
+     *
+     * */
+    private final long capacity;
+
+    /**
+     * Constructs an empty pool.
+     *
+     * @param capacity the maximum total size of the retained buffers in bytes
+     *
+     * */
+    BufferPool(long capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException();
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Takes a buffer of the given dimension,
+     * allocating a new one if none is available.
+     *
+     * @param dim the dimension
+     * @return the buffer, with unspecified contents
+     *
+     * */
+    Ket acquire(int dim) {
+        lastUse.put(dim, clock.incrementAndGet());
+
+        var buffers = free.get(dim);
+        var ket = buffers == null ? null : buffers.poll();
+        if (ket == null)
+            return new Ket(dim);
+
+        retained.addAndGet(-bytes(dim));
+        return ket;
+    }
+
+    /**
+     * Returns a buffer to the pool, possibly evicting others.
+     * The buffer must not be used afterwards.
+     *
+     * @param ket the buffer
+     *
+     * */
+    void release(Ket ket) {
+        int dim = ket.getDim();
+        if (bytes(dim) > capacity)
+            return;
+
+        free.computeIfAbsent(dim, d -> new ConcurrentLinkedDeque<>()).push(ket);
+        retained.addAndGet(bytes(dim));
+
+        while (retained.get() > capacity && evict())
+            ;
+    }
+
+    /**
+     * Returns the total size of the retained buffers.
+     *
+     * @return the size in bytes
+     *
+     * */
+    long retained() {
+        return retained.get();
+    }
+
+    /**
+     * Drops a single buffer of the least recently used dimension.
+     *
+     * @return whether there was any buffer to drop
+     *
+     * */
+    private boolean evict() {
+        int victim = -1;
+        long oldest = Long.MAX_VALUE;
+        for (var entry: free.entrySet()) {
+            if (entry.getValue().isEmpty())
+                continue;
+
+            long time = lastUse.getOrDefault(entry.getKey(), 0L);
+            if (time < oldest) {
+                oldest = time;
+                victim = entry.getKey();
+            }
+        }
+        if (victim < 0)
+            return false;
+
+        if (free.get(victim).pollLast() != null)
+            retained.addAndGet(-bytes(victim));
+        return true;
+    }
+
+    /**
+     * Returns the size of a buffer of the given dimension.
+     *
+     * @param dim the dimension
+     * @return the size in bytes
+     *
+     * */
+    private static long bytes(int dim) {
+        return 8L * dim;
+    }
+}
@@ -0,0 +1,291 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Binary encoding of bound circuits, to be executed by another process.
+ *
+ * <p>
+ *   The circuit is flattened by a {@link Qflow} with the parameters bound,
+ *   the oracles being tabulated, so that the encoding is self-contained and
+ *   equal circuits have equal encodings. All the numbers are big-endian:
+ * </p>
+ *
+ * <pre><code class="plaintext">
+ *    header:     int qubits, int cbits
+ *    operations: byte code, operands
+ * </code></pre>
+ *
+ * */
+final class CircuitCodec {
+
+    private static final byte HADAMARD = 1;
+    private static final byte MEASURE = 2;
+    private static final byte CNOT = 3;
+    private static final byte PAULI_X = 4;
+    private static final byte ROTATE_X = 5;
+    private static final byte PHASE = 6;
+    private static final byte ROTATE_Z = 7;
+    private static final byte CONTROLLED_PHASE = 8;
+    private static final byte ORACLE = 9;
+    private static final byte PHASE_ORACLE = 10;
+    private static final byte FOURIER = 11;
+    private static final byte PAULI_ROTATION = 12;
+
+    private CircuitCodec() {
+    }
+
+    /**
+     * Encodes the circuit with the given parameter values.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @return the encoding
+     *
+     * */
+    static byte[] encode(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(circuit.qubits());
+            out.writeInt(circuit.cbits());
+            new Encoder(circuit, bindings, out).flow();
+            out.flush();
+        } catch (UncheckedIOException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the circuit.
+     *
+     * @param encoding the encoding
+     * @return the circuit
+     *
+     * */
+    static Qcircuit decode(byte[] encoding) {
+        var in = new DataInputStream(new ByteArrayInputStream(encoding));
+        try {
+            return new Decoded(in, in.readInt(), in.readInt());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("malformed circuit encoding", e);
+        }
+    }
+
+    private static final class Decoded extends Qcircuit {
+
+        Decoded(DataInputStream in, int width, int cbits) throws IOException {
+            super(width, cbits);
+            while (in.available() > 0) {
+                byte code = in.readByte();
+                switch (code) {
+                    case HADAMARD:
+                        hadamard(in.readInt());
+                        break;
+                    case MEASURE:
+                        measure(in.readInt(), in.readInt());
+                        break;
+                    case CNOT:
+                        cnot(in.readInt(), in.readInt());
+                        break;
+                    case PAULI_X:
+                        pauliX(in.readInt());
+                        break;
+                    case ROTATE_X:
+                        rotateX(in.readInt(), in.readDouble());
+                        break;
+                    case PHASE:
+                        phase(in.readInt(), in.readDouble());
+                        break;
+                    case ROTATE_Z:
+                        rotateZ(in.readInt(), in.readDouble());
+                        break;
+                    case CONTROLLED_PHASE:
+                        controlledPhase(in.readInt(), in.readInt(), in.readDouble());
+                        break;
+                    case ORACLE: {
+                        int[] qubits = readInts(in, in.readInt());
+                        int[] table = readInts(in, 1 << qubits.length);
+                        oracle(x -> table[x], qubits);
+                        break;
+                    }
+                    case PHASE_ORACLE: {
+                        int[] qubits = readInts(in, in.readInt());
+                        byte[] marked = new byte[1 << qubits.length];
+                        in.readFully(marked);
+                        phaseOracle(x -> marked[x] != 0, qubits);
+                        break;
+                    }
+                    case FOURIER: {
+                        boolean inverse = in.readBoolean();
+                        int[] qubits = readInts(in, in.readInt());
+                        if (inverse)
+                            inverseQft(qubits);
+                        else
+                            qft(qubits);
+                        break;
+                    }
+                    case PAULI_ROTATION: {
+                        String paulis = in.readUTF();
+                        double angle = in.readDouble();
+                        pauliRotation(paulis, angle, readInts(in, paulis.length()));
+                        break;
+                    }
+                    default:
+                        throw new IOException("unknown operation: " + code);
+                }
+            }
+        }
+
+        private static int[] readInts(DataInputStream in, int n) throws IOException {
+            int[] out = new int[n];
+            for (int i = 0; i < n; i++)
+                out[i] = in.readInt();
+            return out;
+        }
+    }
+
+    /**
+     * Writes the flattened operations.
+     *
+     * */
+    private static final class Encoder extends Qflow {
+
+        private final DataOutputStream out;
+
+        Encoder(Qcircuit circuit, Map<Parameter, Double> bindings, DataOutputStream out) {
+            super(circuit, bindings);
+            this.out = out;
+        }
+
+        private interface Write {
+            void to(DataOutputStream out) throws IOException;
+        }
+
+        private void write(byte code, Write operands) {
+            try {
+                out.writeByte(code);
+                operands.to(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+            out.writeInt(values.length);
+            for (int v: values)
+                out.writeInt(v);
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            write(HADAMARD, o -> o.writeInt(qubit));
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            write(MEASURE, o -> {
+                o.writeInt(source);
+                o.writeInt(target);
+            });
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            write(CNOT, o -> {
+                o.writeInt(control);
+                o.writeInt(target);
+            });
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            write(PAULI_X, o -> o.writeInt(qubit));
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            write(ROTATE_X, o -> {
+                o.writeInt(qubit);
+                o.writeDouble(angle);
+            });
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            write(PHASE, o -> {
+                o.writeInt(qubit);
+                o.writeDouble(angle);
+            });
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            write(ROTATE_Z, o -> {
+                o.writeInt(qubit);
+                o.writeDouble(angle);
+            });
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            write(CONTROLLED_PHASE, o -> {
+                o.writeInt(control);
+                o.writeInt(target);
+                o.writeDouble(angle);
+            });
+        }
+
+        @Override
+        protected void quantumFourierTransform(int[] qubits, boolean inverse) {
+            write(FOURIER, o -> {
+                o.writeBoolean(inverse);
+                writeInts(o, qubits);
+            });
+        }
+
+        @Override
+        protected void pauliRotation(String paulis, int[] qubits, double angle) {
+            write(PAULI_ROTATION, o -> {
+                o.writeUTF(paulis);
+                o.writeDouble(angle);
+                for (int q: qubits)
+                    o.writeInt(q);
+            });
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            write(ORACLE, o -> {
+                writeInts(o, qubits);
+                for (int x = 0; x < 1 << qubits.length; x++)
+                    o.writeInt(permutation.applyAsInt(x));
+            });
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            write(PHASE_ORACLE, o -> {
+                writeInts(o, qubits);
+                for (int x = 0; x < 1 << qubits.length; x++)
+                    o.writeBoolean(predicate.test(x));
+            });
+        }
+    }
+}
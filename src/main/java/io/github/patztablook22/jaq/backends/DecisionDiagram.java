@@ -0,0 +1,602 @@
+package io.github.patztablook22.jaq.backends;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Edge-weighted decision diagram package representing state vectors
+ * of a register of qubits.
+ *
+ * <p>
+ *   A state is represented by a weighted {@link Edge} pointing to a {@link Node}
+ *   of the top level. A node of the {@code k}-th level splits the state by the
+ *   value of the {@code k}-th qubit into two weighted edges, pointing to the
+ *   nodes of the next level. The amplitude of a basis state is the product
+ *   of the weights along the path selected by the qubit values:
+ *   \[
+ *      \psi_{s_0 \dots s_{N-1}} = w \, w^{[0]}_{s_0} \, w^{[1]}_{s_1} \dots w^{[N-1]}_{s_{N-1}}
+ *   \]
+ *
+ *   Zero edges point directly to the terminal node. The outgoing weights
+ *   of each node are normalized by the one of the larger magnitude, and all
+ *   nodes are interned in the unique table, so that sub-vectors equal up to
+ *   a factor are stored only once. The memory therefore follows the structure
+ *   of the state rather than its dimension; e.g. the GHZ state of any number
+ *   of qubits takes just two nodes per level.
+ * </p>
+ *
+ * <p>
+ *   The operations work recursively on the shared nodes. The results of
+ *   additions are memoized in the compute cache, the results of the other
+ *   operations per operation, so that each shared node is processed only
+ *   once. Nodes are immutable; those no longer reachable from any live state
+ *   are removed from the unique table by {@link #collect(Collection)}.
+ * </p>
+ *
+ * <p>
+ *   The package is not thread-safe.
+ * </p>
+ *
+ * */
+class DecisionDiagram {
+
+    /**
+     * The weights of smaller magnitude are considered zero.
+     *
+     * */
+    private static final double EPSILON = 1e-14;
+
+    /**
+     * The resolution of the weights compared by the tables.
+     *
+     * */
+    private static final double RESOLUTION = 1e-10;
+
+    /**
+     * Node of the diagram.
+     *
+     * */
+    static final class Node {
+
+        /**
+         * The level, i.e. the qubit the node splits the state by.
+         *
+         * */
+        final int var;
+
+        /**
+         * The outgoing edges for the qubit values 0 and 1.
+         *
+         * */
+        final Edge e0, e1;
+
+        /**
+         * The squared norm of the represented sub-vector, or -1 if not computed yet.
+         *
+         * */
+        private double norm = -1;
+
+        private final int hash;
+
+        Node(int var, Edge e0, Edge e1) {
+            this.var = var;
+            this.e0 = e0;
+            this.e1 = e1;
+            this.hash = 31 * (31 * var + e0.hashCode()) + e1.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Node))
+                return false;
+            var node = (Node) other;
+            return var == node.var && e0.equals(node.e0) && e1.equals(node.e1);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Weighted edge pointing to a node.
+     *
+     * */
+    static final class Edge {
+
+        final Node node;
+        final double re, im;
+
+        Edge(Node node, double re, double im) {
+            this.node = node;
+            this.re = re;
+            this.im = im;
+        }
+
+        boolean isZero() {
+            return re == 0 && im == 0;
+        }
+
+        double magnitude() {
+            return re * re + im * im;
+        }
+
+        /**
+         * Compares the target nodes by identity, as they are interned,
+         * and the weights up to the {@link DecisionDiagram#RESOLUTION}.
+         *
+         * */
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Edge))
+                return false;
+            var edge = (Edge) other;
+            return node == edge.node
+                && round(re) == round(edge.re)
+                && round(im) == round(edge.im);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(node) + Long.hashCode(round(re)))
+                + Long.hashCode(round(im));
+        }
+    }
+
+    /**
+     * Key of the compute cache: two nodes and a weight.
+     *
+     * */
+    private static final class Key {
+
+        private final Node a, b;
+        private final long re, im;
+
+        Key(Node a, Node b, double re, double im) {
+            this.a = a;
+            this.b = b;
+            this.re = round(re);
+            this.im = round(im);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key))
+                return false;
+            var key = (Key) other;
+            return a == key.a && b == key.b && re == key.re && im == key.im;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(a);
+            h = 31 * h + System.identityHashCode(b);
+            h = 31 * h + Long.hashCode(re);
+            return 31 * h + Long.hashCode(im);
+        }
+    }
+
+    /**
+     * The number of qubits.
+     *
+     * */
+    private final int n;
+
+    /**
+     * The terminal node, at the level {@code n}.
+     *
+     * */
+    private final Node terminal;
+
+    /**
+     * The zero edge.
+     *
+     * */
+    private final Edge zero;
+
+    /**
+     * The unique table interning all the nodes.
+     *
+     * */
+    private final Map<Node, Node> unique = new HashMap<>();
+
+    /**
+     * The compute cache of the additions.
+     *
+     * */
+    private final Map<Key, Edge> additions = new HashMap<>();
+
+    /**
+     * The table statistics, reported by {@link DecisionDiagramSimulator}.
+     *
+     * */
+    long uniqueLookups, uniqueHits;
+    long computeLookups, computeHits;
+    long collections, collected;
+    int peakNodes;
+
+    /**
+     * Constructs an empty package for the given number of qubits.
+     *
+     * @param n the number of qubits
+     *
+     * */
+    DecisionDiagram(int n) {
+        this.n = n;
+        terminal = new Node(n, new Edge(null, 0, 0), new Edge(null, 0, 0));
+        terminal.norm = 1;
+        zero = new Edge(terminal, 0, 0);
+    }
+
+    /**
+     * Returns the state \( \ket{0 \dots 0} \).
+     *
+     * @return the state
+     *
+     * */
+    Edge basis() {
+        var e = new Edge(terminal, 1, 0);
+        for (int q = n - 1; q >= 0; q--)
+            e = node(q, e, zero);
+        return e;
+    }
+
+    /**
+     * Returns the number of the nodes in the unique table.
+     *
+     * @return the number of the nodes
+     *
+     * */
+    int size() {
+        return unique.size();
+    }
+
+    /**
+     * Returns the number of the entries in the compute cache.
+     *
+     * @return the number of the cached results
+     *
+     * */
+    int cacheSize() {
+        return additions.size();
+    }
+
+    /**
+     * Removes all the nodes not reachable from the given states
+     * from the unique table, and clears the compute cache.
+     *
+     * @param roots the live states
+     *
+     * */
+    void collect(Collection<Edge> roots) {
+        var live = new IdentityHashMap<Node, Boolean>();
+        var stack = new ArrayDeque<Node>();
+        for (var root: roots)
+            stack.push(root.node);
+
+        while (!stack.isEmpty()) {
+            var node = stack.pop();
+            if (node == terminal || live.put(node, Boolean.TRUE) != null)
+                continue;
+            stack.push(node.e0.node);
+            stack.push(node.e1.node);
+        }
+
+        int before = unique.size();
+        unique.keySet().removeIf(node -> !live.containsKey(node));
+        additions.clear();
+
+        collections++;
+        collected += before - unique.size();
+    }
+
+    /**
+     * Returns the normalized, interned node with the given outgoing edges,
+     * together with the weight factored out.
+     *
+     * @param var the level
+     * @param e0 the edge for the qubit value 0
+     * @param e1 the edge for the qubit value 1
+     * @return the edge pointing to the node
+     *
+     * */
+    Edge node(int var, Edge e0, Edge e1) {
+        if (e0.isZero() && e1.isZero())
+            return zero;
+
+        /* normalize by the weight of the larger magnitude,
+         * i.e. multiply by its inverse conj(w) / |w|^2 */
+        var top = e0.magnitude() >= e1.magnitude() * (1 - RESOLUTION) ? e0 : e1;
+        double m = top.magnitude();
+        double wRe = top.re / m, wIm = -top.im / m;
+
+        var candidate = new Node(var,
+                                 e0 == top ? new Edge(e0.node, 1, 0) : scale(e0, wRe, wIm),
+                                 e1 == top ? new Edge(e1.node, 1, 0) : scale(e1, wRe, wIm));
+
+        uniqueLookups++;
+        var node = unique.putIfAbsent(candidate, candidate);
+        if (node != null)
+            uniqueHits++;
+        else
+            peakNodes = Math.max(peakNodes, unique.size());
+
+        return new Edge(node == null ? candidate : node, top.re, top.im);
+    }
+
+    /**
+     * Returns the edge with the weight multiplied by the given factor.
+     *
+     * @param e the edge
+     * @param re the real component of the factor
+     * @param im the imaginary component of the factor
+     * @return the scaled edge
+     *
+     * */
+    Edge scale(Edge e, double re, double im) {
+        double outRe = e.re * re - e.im * im;
+        double outIm = e.re * im + e.im * re;
+        if (outRe * outRe + outIm * outIm < EPSILON * EPSILON)
+            return zero;
+        return new Edge(e.node, outRe, outIm);
+    }
+
+    /**
+     * Adds the two states.
+     *
+     * @param a the first state
+     * @param b the second state
+     * @return the sum
+     *
+     * */
+    Edge add(Edge a, Edge b) {
+        if (a.isZero())
+            return b;
+        if (b.isZero())
+            return a;
+        if (a.node == b.node) {
+            var sum = new Edge(a.node, a.re + b.re, a.im + b.im);
+            return sum.magnitude() < EPSILON * EPSILON ? zero : sum;
+        }
+
+        /* a + b = w_a (A + (w_b / w_a) B) */
+        double m = a.magnitude();
+        double rRe = (b.re * a.re + b.im * a.im) / m;
+        double rIm = (b.im * a.re - b.re * a.im) / m;
+
+        var key = new Key(a.node, b.node, rRe, rIm);
+        computeLookups++;
+        var result = additions.get(key);
+        if (result != null) {
+            computeHits++;
+        } else {
+            var x = a.node;
+            var y = b.node;
+            result = node(x.var,
+                          add(x.e0, scale(y.e0, rRe, rIm)),
+                          add(x.e1, scale(y.e1, rRe, rIm)));
+            additions.put(key, result);
+        }
+        return scale(result, a.re, a.im);
+    }
+
+    /**
+     * Applies a single-qubit gate, optionally controlled by another qubit.
+     *
+     * @param state the state
+     * @param target the target qubit
+     * @param control the control qubit, or -1 if uncontrolled
+     * @param gRe the real components of the 2x2 gate matrix, row-major
+     * @param gIm the imaginary components of the 2x2 gate matrix, row-major
+     * @return the transformed state
+     *
+     * */
+    Edge gate(Edge state, int target, int control, double[] gRe, double[] gIm) {
+        if (control > target) {
+            /* P_0 psi + U P_1 psi */
+            var kept = project(state, control, 0);
+            var changed = gate(project(state, control, 1), target, -1, gRe, gIm);
+            return add(kept, changed);
+        }
+        return gate(state, target, control, gRe, gIm, new HashMap<>());
+    }
+
+    private Edge gate(Edge e, int target, int control, double[] gRe, double[] gIm,
+                      Map<Node, Edge> memo) {
+        if (e.isZero())
+            return zero;
+
+        var result = memo.get(e.node);
+        if (result == null) {
+            var x = e.node;
+            if (x.var == target) {
+                result = node(x.var,
+                              add(scale(x.e0, gRe[0], gIm[0]), scale(x.e1, gRe[1], gIm[1])),
+                              add(scale(x.e0, gRe[2], gIm[2]), scale(x.e1, gRe[3], gIm[3])));
+            } else if (x.var == control) {
+                result = node(x.var, x.e0, gate(x.e1, target, control, gRe, gIm, memo));
+            } else {
+                result = node(x.var,
+                              gate(x.e0, target, control, gRe, gIm, memo),
+                              gate(x.e1, target, control, gRe, gIm, memo));
+            }
+            memo.put(e.node, result);
+        }
+        return scale(result, e.re, e.im);
+    }
+
+    /**
+     * Projects the state onto the subspace where the qubit has the given value.
+     *
+     * @param state the state
+     * @param qubit the qubit
+     * @param value the value
+     * @return the unnormalized projected state
+     *
+     * */
+    Edge project(Edge state, int qubit, int value) {
+        return project(state, qubit, value, new HashMap<>());
+    }
+
+    private Edge project(Edge e, int qubit, int value, Map<Node, Edge> memo) {
+        if (e.isZero())
+            return zero;
+
+        var result = memo.get(e.node);
+        if (result == null) {
+            var x = e.node;
+            if (x.var == qubit)
+                result = node(x.var, value == 0 ? x.e0 : zero, value == 1 ? x.e1 : zero);
+            else
+                result = node(x.var,
+                              project(x.e0, qubit, value, memo),
+                              project(x.e1, qubit, value, memo));
+            memo.put(e.node, result);
+        }
+        return scale(result, e.re, e.im);
+    }
+
+    /**
+     * Flips the phase of the basis states whose register value satisfies the predicate.
+     *
+     * <p>
+     *   The predicate being opaque, the state is decomposed by the register
+     *   value, but only the smaller of the marked and unmarked sets is visited:
+     *   \( \psi - 2 \sum_{x \in M} P_x \psi \), or
+     *   \( -\psi + 2 \sum_{x \notin M} P_x \psi \) respectively.
+     *   Typical oracles marking a few values thus cost just a few projections.
+     * </p>
+     *
+     * @param state the state
+     * @param qubits the register qubits, the most significant first
+     * @param predicate the predicate marking the register values
+     * @return the transformed state
+     *
+     * */
+    Edge phaseOracle(Edge state, int[] qubits, IntPredicate predicate) {
+        int[] position = positions(qubits);
+        int m = qubits.length;
+
+        int marked = 0;
+        for (int x = 0; x < 1 << m; x++)
+            if (predicate.test(x))
+                marked++;
+        boolean complement = 2 * marked > 1 << m;
+
+        var out = complement ? scale(state, -1, 0) : state;
+        for (int x = 0; x < 1 << m; x++) {
+            if (predicate.test(x) == complement)
+                continue;
+            var projected = move(state, position, m, x, x, new HashMap<>());
+            out = add(out, scale(projected, complement ? 2 : -2, 0));
+        }
+        return out;
+    }
+
+    /**
+     * Permutes the register values of the basis states, by moving each
+     * register value's component of the state to its image.
+     *
+     * @param state the state
+     * @param qubits the register qubits, the most significant first
+     * @param permutation the permutation of the register values
+     * @return the transformed state
+     *
+     * */
+    Edge oracle(Edge state, int[] qubits, IntUnaryOperator permutation) {
+        int[] position = positions(qubits);
+        int m = qubits.length;
+
+        var out = zero;
+        for (int x = 0; x < 1 << m; x++)
+            out = add(out, move(state, position, m, x, permutation.applyAsInt(x), new HashMap<>()));
+        return out;
+    }
+
+    private Edge move(Edge e, int[] position, int m, int from, int to, Map<Node, Edge> memo) {
+        if (e.isZero())
+            return zero;
+        if (e.node == terminal)
+            return e;
+
+        var result = memo.get(e.node);
+        if (result == null) {
+            var x = e.node;
+            int p = position[x.var];
+            if (p < 0) {
+                result = node(x.var,
+                              move(x.e0, position, m, from, to, memo),
+                              move(x.e1, position, m, from, to, memo));
+            } else {
+                int shift = m - p - 1;
+                var child = move((from >> shift & 1) == 0 ? x.e0 : x.e1, position, m, from, to, memo);
+                result = (to >> shift & 1) == 0 ? node(x.var, child, zero) : node(x.var, zero, child);
+            }
+            memo.put(e.node, result);
+        }
+        return scale(result, e.re, e.im);
+    }
+
+    /**
+     * Returns the squared norm of the state.
+     *
+     * @param state the state
+     * @return the squared norm
+     *
+     * */
+    double norm(Edge state) {
+        return state.isZero() ? 0 : state.magnitude() * norm(state.node);
+    }
+
+    private double norm(Node node) {
+        if (node.norm < 0)
+            node.norm = norm(node.e0) + norm(node.e1);
+        return node.norm;
+    }
+
+    /**
+     * Samples the values of all the qubits, without collapsing the state.
+     *
+     * @param state the state
+     * @param random uniformly distributed values in the range [0, 1), one per qubit
+     * @param out the sampled values
+     *
+     * */
+    void sample(Edge state, double[] random, byte[] out) {
+        var node = state.node;
+        while (node != terminal) {
+            double p0 = norm(node.e0), p1 = norm(node.e1);
+            int s = random[node.var] * (p0 + p1) < p1 ? 1 : 0;
+            out[node.var] = (byte) s;
+            node = s == 0 ? node.e0.node : node.e1.node;
+        }
+    }
+
+    /**
+     * Returns the index of each qubit in the register, or -1.
+     *
+     * */
+    private int[] positions(int[] qubits) {
+        int[] position = new int[n];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < qubits.length; i++)
+            position[qubits[i]] = i;
+        return position;
+    }
+
+    /**
+     * Rounds the weight component to the {@link #RESOLUTION}.
+     *
+     * */
+    private static long round(double x) {
+        return Math.round(x / RESOLUTION);
+    }
+}
@@ -0,0 +1,539 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qvm;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Shots;
+import io.github.patztablook22.jaq.backends.DecisionDiagram.Edge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Decision diagram based quantum computer simulator.
+ *
+ * <p>
+ *   The global state is stored as an edge-weighted decision diagram,
+ *   in which the sub-vectors equal up to a factor are stored only once.
+ *   The memory and time thus follow the structure of the state rather
+ *   than its dimension \( 2^N \). Highly regular states, such as the ones
+ *   produced by arithmetic circuits, Grover's algorithm with structured
+ *   oracles or GHZ-like preparations, take just a handful of nodes per
+ *   qubit, while random states degrade to the full dimension.
+ * </p>
+ *
+ * <p>
+ *   The nodes are interned in a unique table, and the results of the
+ *   additions are memoized in a compute cache. Once the unique table grows
+ *   over the garbage collection threshold, the nodes no longer reachable
+ *   from the live states are removed and the cache is cleared; the threshold
+ *   then adapts to twice the number of the surviving nodes. The table sizes
+ *   and hit rates are reported with each {@link Result} for tuning.
+ * </p>
+ *
+ * <p>
+ *   The trailing measurements are sampled from a single simulated state,
+ *   each shot in time linear in the number of qubits. Circuits measuring in
+ *   the middle are simulated from the first measurement on once per shot.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     var simulator = new DecisionDiagramSimulator();
+ *     var result = simulator.execute(circuit, Map.of(), 1000);
+ *
+ *     System.out.println(result.getShots().histogram().size());
+ *     System.out.println(result.getStatistics());
+ *  </code></pre>
+ *
+ * */
+public class DecisionDiagramSimulator implements Qvm {
+
+    /**
+     * The default initial garbage collection threshold.
+     *
+     * */
+    public static final int DEFAULT_GC_THRESHOLD = 1 << 16;
+
+    /**
+     * The initial garbage collection threshold.
+     *
+     * */
+    private final int gcThreshold;
+
+    /**
+     * The generator of the per-run random streams.
+     *
+     * */
+    private final SplittableRandom seeds;
+
+    /**
+     * Constructs a {@code DecisionDiagramSimulator} with a randomly
+     * seeded internal random number generator.
+     *
+     * */
+    public DecisionDiagramSimulator() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs a {@code DecisionDiagramSimulator} with the specified
+     * seed for the internal random number generator.
+     *
+     * @param seed randomness seed
+     *
+     * */
+    public DecisionDiagramSimulator(long seed) {
+        this(seed, DEFAULT_GC_THRESHOLD);
+    }
+
+    /**
+     * Constructs a {@code DecisionDiagramSimulator} with the specified
+     * seed for the internal random number generator and the specified
+     * initial garbage collection threshold.
+     *
+     * @param seed randomness seed
+     * @param gcThreshold the number of nodes triggering the first garbage collection
+     *
+     * */
+    public DecisionDiagramSimulator(long seed, int gcThreshold) {
+        if (gcThreshold < 1)
+            throw new IllegalArgumentException("invalid threshold: " + gcThreshold);
+
+        this.gcThreshold = gcThreshold;
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit) {
+        return run(circuit, Map.of());
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, int shots) {
+        return run(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        return sample(circuit, bindings, 1).toBytes(0);
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return sample(circuit, bindings, shots).toBytes();
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, int shots) {
+        return sample(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return execute(circuit, bindings, shots).getShots();
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} repeatedly {@code shots} times
+     * and returns the resulting classical registers together with the
+     * decision diagram statistics.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return the result
+     *
+     * */
+    public Result execute(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        var recorder = new Recorder(circuit, bindings);
+        recorder.flow();
+
+        var random = nextRandom();
+        var run = new Run(new DecisionDiagram(circuit.qubits()), gcThreshold);
+        var ops = recorder.ops;
+
+        run.state = run.dd.basis();
+        int first = 0;
+        while (first < ops.size() && !(ops.get(first) instanceof Measure))
+            run.execute(ops.get(first++), random, null);
+        run.initial = run.state;
+
+        var out = new Shots(circuit.cbits(), shots);
+        byte[] classical = new byte[circuit.cbits()];
+        byte[] sampled = new byte[circuit.qubits()];
+        double[] uniform = new double[circuit.qubits()];
+
+        for (int shot = 0; shot < shots; shot++) {
+            run.state = run.initial;
+            for (int i = first; i < ops.size(); i++)
+                run.execute(ops.get(i), random, classical);
+
+            for (int q = 0; q < uniform.length; q++)
+                uniform[q] = random.nextDouble();
+            run.dd.sample(run.state, uniform, sampled);
+            for (int[] m: recorder.trailing)
+                classical[m[1]] = sampled[m[0]];
+
+            out.add(classical);
+        }
+
+        return new Result(out, new Statistics(run.dd));
+    }
+
+    /**
+     * Returns the next independent random stream.
+     *
+     * @return the random stream
+     *
+     * */
+    private synchronized SplittableRandom nextRandom() {
+        return seeds.split();
+    }
+
+    /**
+     * The result of a run of {@link DecisionDiagramSimulator}.
+     *
+     * */
+    public static final class Result {
+
+        private final Shots shots;
+        private final Statistics statistics;
+
+        private Result(Shots shots, Statistics statistics) {
+            this.shots = shots;
+            this.statistics = statistics;
+        }
+
+        /**
+         * Returns the bit-packed classical registers.
+         *
+         * @return the shots
+         *
+         * */
+        public Shots getShots() {
+            return shots;
+        }
+
+        /**
+         * Returns the decision diagram statistics of the run.
+         *
+         * @return the statistics
+         *
+         * */
+        public Statistics getStatistics() {
+            return statistics;
+        }
+    }
+
+    /**
+     * Unique table and compute cache statistics of a run.
+     *
+     * */
+    public static final class Statistics {
+
+        private final int nodes, peakNodes, cacheEntries;
+        private final long uniqueLookups, uniqueHits;
+        private final long computeLookups, computeHits;
+        private final long collections, collected;
+
+        private Statistics(DecisionDiagram dd) {
+            nodes = dd.size();
+            peakNodes = dd.peakNodes;
+            cacheEntries = dd.cacheSize();
+            uniqueLookups = dd.uniqueLookups;
+            uniqueHits = dd.uniqueHits;
+            computeLookups = dd.computeLookups;
+            computeHits = dd.computeHits;
+            collections = dd.collections;
+            collected = dd.collected;
+        }
+
+        /**
+         * Returns the number of the nodes in the unique table at the end of the run.
+         *
+         * @return the number of the nodes
+         *
+         * */
+        public int getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Returns the largest number of the nodes in the unique table.
+         *
+         * @return the peak number of the nodes
+         *
+         * */
+        public int getPeakNodes() {
+            return peakNodes;
+        }
+
+        /**
+         * Returns the number of the entries in the compute cache at the end of the run.
+         *
+         * @return the number of the cached results
+         *
+         * */
+        public int getCacheEntries() {
+            return cacheEntries;
+        }
+
+        /**
+         * Returns the number of the unique table lookups.
+         *
+         * @return the number of the lookups
+         *
+         * */
+        public long getUniqueLookups() {
+            return uniqueLookups;
+        }
+
+        /**
+         * Returns the number of the unique table lookups finding an existing node.
+         *
+         * @return the number of the hits
+         *
+         * */
+        public long getUniqueHits() {
+            return uniqueHits;
+        }
+
+        /**
+         * Returns the number of the compute cache lookups.
+         *
+         * @return the number of the lookups
+         *
+         * */
+        public long getComputeLookups() {
+            return computeLookups;
+        }
+
+        /**
+         * Returns the number of the compute cache lookups finding a cached result.
+         *
+         * @return the number of the hits
+         *
+         * */
+        public long getComputeHits() {
+            return computeHits;
+        }
+
+        /**
+         * Returns the number of the garbage collections.
+         *
+         * @return the number of the collections
+         *
+         * */
+        public long getCollections() {
+            return collections;
+        }
+
+        /**
+         * Returns the total number of the nodes removed by the garbage collections.
+         *
+         * @return the number of the collected nodes
+         *
+         * */
+        public long getCollected() {
+            return collected;
+        }
+
+        @Override
+        public String toString() {
+            return "nodes: " + nodes + " (peak " + peakNodes + ")"
+                + ", unique: " + uniqueHits + "/" + uniqueLookups
+                + ", compute: " + computeHits + "/" + computeLookups
+                + " (" + cacheEntries + " cached)"
+                + ", gc: " + collections + " (" + collected + " collected)";
+        }
+    }
+
+    /**
+     * The decision diagram package and the live states of a run.
+     *
+     * */
+    private static final class Run {
+
+        private final DecisionDiagram dd;
+        private int gcThreshold;
+
+        /**
+         * The state preceding the first measurement.
+         *
+         * */
+        private Edge initial;
+
+        /**
+         * The current state.
+         *
+         * */
+        private Edge state;
+
+        Run(DecisionDiagram dd, int gcThreshold) {
+            this.dd = dd;
+            this.gcThreshold = gcThreshold;
+        }
+
+        /**
+         * Executes the operation, collecting the garbage
+         * if the unique table grew over the threshold.
+         *
+         * */
+        void execute(Op op, SplittableRandom random, byte[] classical) {
+            state = op.apply(dd, state, random, classical);
+
+            if (dd.size() > gcThreshold) {
+                var roots = new ArrayList<Edge>();
+                roots.add(state);
+                if (initial != null)
+                    roots.add(initial);
+
+                dd.collect(roots);
+                gcThreshold = Math.max(gcThreshold, 2 * dd.size());
+            }
+        }
+    }
+
+    /**
+     * A recorded operation of the circuit.
+     *
+     * */
+    private interface Op {
+        Edge apply(DecisionDiagram dd, Edge state, SplittableRandom random, byte[] classical);
+    }
+
+    /**
+     * A recorded measurement followed by further operations.
+     *
+     * */
+    private static final class Measure implements Op {
+
+        private final int source, target;
+
+        Measure(int source, int target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public Edge apply(DecisionDiagram dd, Edge state, SplittableRandom random, byte[] classical) {
+            var one = dd.project(state, source, 1);
+            double p = dd.norm(one) / dd.norm(state);
+            int result = random.nextDouble() < p ? 1 : 0;
+
+            var collapsed = result == 1 ? one : dd.project(state, source, 0);
+            double scale = 1 / Math.sqrt(dd.norm(collapsed));
+            classical[target] = (byte) result;
+            return dd.scale(collapsed, scale, 0);
+        }
+    }
+
+    /**
+     * Records the circuit as the decision diagram operations,
+     * separating the trailing measurements to be sampled.
+     *
+     * */
+    private static class Recorder extends Qflow {
+
+        /**
+         * The operations preceding the trailing measurements.
+         *
+         * */
+        private final List<Op> ops = new ArrayList<>();
+
+        /**
+         * The trailing measurements, as (source, target) pairs.
+         *
+         * */
+        private final List<int[]> trailing = new ArrayList<>();
+
+        Recorder(Qcircuit circuit, Map<Parameter, Double> bindings) {
+            super(circuit, bindings);
+        }
+
+        /**
+         * Records an operation, turning the so far trailing
+         * measurements into mid-circuit ones.
+         *
+         * */
+        private void add(Op op) {
+            for (int[] m: trailing)
+                ops.add(new Measure(m[0], m[1]));
+            trailing.clear();
+            ops.add(op);
+        }
+
+        private void gate(int target, int control, double[] re, double[] im) {
+            add((dd, state, random, classical) -> dd.gate(state, target, control, re, im));
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            double h = Math.sqrt(0.5);
+            gate(qubit, -1, new double[] {h, h, h, -h}, new double[4]);
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            trailing.add(new int[] {source, target});
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            gate(target, control, new double[] {0, 1, 1, 0}, new double[4]);
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            gate(qubit, -1, new double[] {0, 1, 1, 0}, new double[4]);
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            /* R_X(theta) = e^{-i theta X / 2} */
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            gate(qubit, -1, new double[] {c, 0, 0, c}, new double[] {0, -s, -s, 0});
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            gate(qubit, -1, new double[] {1, 0, 0, Math.cos(angle)},
+                            new double[] {0, 0, 0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            gate(qubit, -1, new double[] {c, 0, 0, c}, new double[] {-s, 0, 0, s});
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            /* symmetric in the two qubits, so the upper one controls */
+            gate(Math.max(control, target), Math.min(control, target),
+                 new double[] {1, 0, 0, Math.cos(angle)},
+                 new double[] {0, 0, 0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            add((dd, state, random, classical) -> dd.oracle(state, qubits, permutation));
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            add((dd, state, random, classical) -> dd.phaseOracle(state, qubits, predicate));
+        }
+    }
+}
@@ -0,0 +1,827 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qvm;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Shots;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Distributed state vector quantum computer simulator.
+ *
+ * <p>
+ *   The state vector is sharded among \( 2^G \) {@link ShardWorker} processes,
+ *   possibly on different machines, by the top \( G \) bits of the state index,
+ *   so that each holds only \( 2^{N - G} \) amplitudes. The qubits stored in
+ *   the top bits are <i>global</i>, the others <i>local</i>. Gates on local
+ *   qubits and diagonal gates, i.e. phases and phase oracles, are applied
+ *   by every worker to its shard without any communication, and so are the
+ *   gates controlled by a global qubit. Oracles on more qubits than
+ *   the local ones are decomposed by the {@link Qflow} defaults.
+ * </p>
+ *
+ * <p>
+ *   Before any other gate acting on a global qubit, the qubit is swapped
+ *   with a local one, each worker exchanging half of its shard with the
+ *   worker differing in the swapped global bit. The qubit assignment then
+ *   stays, and the swapped-out local qubit is the one whose next such use
+ *   lies farthest in the future, which minimizes the number of the swaps
+ *   for the given circuit. As the whole circuit is known ahead, the swaps
+ *   are scheduled once per run.
+ * </p>
+ *
+ * <p>
+ *   The trailing measurements are sampled from a single simulated state,
+ *   each worker drawing the shots falling into its shard. Circuits measuring
+ *   in the middle are simulated from the first measurement on once per shot,
+ *   starting from a state saved by the workers.
+ * </p>
+ *
+ * <p>
+ *   The workers are started either manually, e.g. one per machine by
+ * </p>
+ *
+ * <pre><code class="plaintext">
+ *    java -cp jaq.jar io.github.patztablook22.jaq.backends.ShardWorker 5000 0.0.0.0
+ * </code></pre>
+ *
+ * <p>
+ *   and passed to the constructor, or spawned as local JVM processes by
+ *   {@link #local(int, String...)}. The number of the workers must be a power
+ *   of two. The simulator executes a single circuit at a time.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     try (var simulator = DistributedSimulator.local(4, "-Xmx2g")) {
+ *         var result = simulator.execute(circuit, Map.of(), 1000);
+ *         System.out.println(result.getSwaps());
+ *     }
+ *  </code></pre>
+ *
+ * */
+public class DistributedSimulator implements Qvm, Closeable {
+
+    private final Socket[] sockets;
+    private final DataInputStream[] in;
+    private final DataOutputStream[] out;
+
+    /**
+     * The spawned local worker processes, or {@code null}.
+     *
+     * */
+    private final Process[] processes;
+
+    /**
+     * The number of the global qubits.
+     *
+     * */
+    private final int global;
+
+    /**
+     * The generator of the per-run random streams.
+     *
+     * */
+    private final SplittableRandom seeds;
+
+    /**
+     * Constructs a {@code DistributedSimulator} connected to the running
+     * workers, with a randomly seeded internal random number generator.
+     *
+     * @param workers the addresses of the workers, a power of two of them
+     * @throws IOException if the workers cannot be connected
+     *
+     * */
+    public DistributedSimulator(List<InetSocketAddress> workers) throws IOException {
+        this(workers, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs a {@code DistributedSimulator} connected to the running
+     * workers, with the specified seed for the internal random number generator.
+     *
+     * @param workers the addresses of the workers, a power of two of them
+     * @param seed randomness seed
+     * @throws IOException if the workers cannot be connected
+     *
+     * */
+    public DistributedSimulator(List<InetSocketAddress> workers, long seed) throws IOException {
+        this(workers, seed, null);
+    }
+
+    private DistributedSimulator(List<InetSocketAddress> workers, long seed,
+                                 Process[] processes) throws IOException {
+        int n = workers.size();
+        if (n < 1 || Integer.bitCount(n) != 1)
+            throw new IllegalArgumentException("invalid number of workers: " + n);
+
+        this.global = Integer.numberOfTrailingZeros(n);
+        this.processes = processes;
+        this.seeds = new SplittableRandom(seed);
+        sockets = new Socket[n];
+        in = new DataInputStream[n];
+        out = new DataOutputStream[n];
+
+        try {
+            for (int r = 0; r < n; r++) {
+                var address = workers.get(r);
+                sockets[r] = new Socket(address.getAddress(), address.getPort());
+                sockets[r].setTcpNoDelay(true);
+                in[r] = new DataInputStream(new BufferedInputStream(sockets[r].getInputStream()));
+                out[r] = new DataOutputStream(new BufferedOutputStream(sockets[r].getOutputStream(), 1 << 16));
+                out[r].writeInt(-1);
+            }
+
+            for (int r = 0; r < n; r++) {
+                out[r].writeByte(ShardWorker.CONNECT);
+                out[r].writeInt(r);
+                out[r].writeInt(n);
+                for (var address: workers) {
+                    out[r].writeUTF(address.getHostString());
+                    out[r].writeInt(address.getPort());
+                }
+            }
+            flush();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Spawns the given number of local worker JVM processes and
+     * constructs a {@code DistributedSimulator} connected to them,
+     * with a randomly seeded internal random number generator.
+     * The workers are terminated by {@link #close()}.
+     *
+     * @param workers the number of the workers, a power of two
+     * @param jvmOptions the options of the worker JVMs, e.g. the heap size
+     * @return the simulator
+     * @throws IOException if the workers cannot be started
+     *
+     * */
+    public static DistributedSimulator local(int workers, String... jvmOptions) throws IOException {
+        return local(workers, ThreadLocalRandom.current().nextLong(), jvmOptions);
+    }
+
+    /**
+     * Spawns the given number of local worker JVM processes and
+     * constructs a {@code DistributedSimulator} connected to them,
+     * with the specified seed for the internal random number generator.
+     *
+     * @param workers the number of the workers, a power of two
+     * @param seed randomness seed
+     * @param jvmOptions the options of the worker JVMs, e.g. the heap size
+     * @return the simulator
+     * @throws IOException if the workers cannot be started
+     * @see #local(int, String...)
+     *
+     * */
+    public static DistributedSimulator local(int workers, long seed, String... jvmOptions) throws IOException {
+        if (workers < 1 || Integer.bitCount(workers) != 1)
+            throw new IllegalArgumentException("invalid number of workers: " + workers);
+
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(jvmOptions));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+
+        var processes = new Process[workers];
+        var addresses = new ArrayList<InetSocketAddress>();
+        try {
+            for (int r = 0; r < workers; r++) {
+                processes[r] = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+
+                var reader = new BufferedReader(new InputStreamReader(processes[r].getInputStream(),
+                                                                      StandardCharsets.UTF_8));
+                String line = reader.readLine();
+                if (line == null)
+                    throw new IOException("worker " + r + " failed to start");
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                                    Integer.parseInt(line.trim())));
+            }
+            return new DistributedSimulator(addresses, seed, processes);
+        } catch (IOException | RuntimeException e) {
+            for (var process: processes)
+                if (process != null)
+                    process.destroyForcibly();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of the workers.
+     *
+     * @return the number of the workers
+     *
+     * */
+    public int workers() {
+        return sockets.length;
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit) {
+        return run(circuit, Map.of());
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, int shots) {
+        return run(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        return sample(circuit, bindings, 1).toBytes(0);
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return sample(circuit, bindings, shots).toBytes();
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, int shots) {
+        return sample(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return execute(circuit, bindings, shots).getShots();
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} repeatedly {@code shots} times
+     * and returns the resulting classical registers together with the
+     * communication statistics. Throws UncheckedIOException if
+     * the communication with the workers fails.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return the result
+     *
+     * */
+    public synchronized Result execute(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        int n = circuit.qubits();
+        int local = n - global;
+        if (local < 1)
+            throw new IllegalArgumentException("too few qubits: " + n + " for " + workers() + " workers");
+
+        var recorder = new Recorder(circuit, bindings, local);
+        recorder.flow();
+        var program = new Schedule(recorder.ops, n, global);
+
+        var random = nextRandom();
+        var classical = new byte[circuit.cbits()];
+        var result = new Shots(circuit.cbits(), shots);
+
+        try {
+            broadcast(o -> {
+                o.writeByte(ShardWorker.RESET);
+                o.writeInt(local);
+            });
+
+            int first = 0;
+            while (first < program.commands.size() && program.commands.get(first).code != ShardWorker.MEASURE)
+                send(program.commands.get(first++));
+
+            if (first == program.commands.size()) {
+                for (long index: sample(shots, local, random)) {
+                    trailing(recorder, program, index, classical);
+                    result.add(classical);
+                }
+            } else {
+                broadcast(o -> o.writeByte(ShardWorker.SAVE));
+                for (int shot = 0; shot < shots; shot++) {
+                    broadcast(o -> o.writeByte(ShardWorker.RESTORE));
+                    for (int i = first; i < program.commands.size(); i++) {
+                        var command = program.commands.get(i);
+                        if (command.code == ShardWorker.MEASURE)
+                            classical[command.target] = (byte) measure(command.positions[0], random);
+                        else
+                            send(command);
+                    }
+
+                    trailing(recorder, program, sample(1, local, random)[0], classical);
+                    result.add(classical);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new Result(result, program.swaps);
+    }
+
+    /**
+     * Copies the trailing measurements of the global index to the classical register.
+     *
+     * */
+    private static void trailing(Recorder recorder, Schedule program, long index, byte[] classical) {
+        for (int[] m: recorder.trailing)
+            classical[m[1]] = (byte) (index >>> program.positions[m[0]] & 1);
+    }
+
+    /**
+     * Measures the position across the workers, collapsing the state.
+     *
+     * */
+    private int measure(int position, SplittableRandom random) throws IOException {
+        broadcast(o -> {
+            o.writeByte(ShardWorker.MEASURE);
+            o.writeInt(position);
+        });
+        flush();
+
+        double probability = 0;
+        for (var i: in)
+            probability += i.readDouble();
+
+        int outcome = random.nextDouble() < probability ? 1 : 0;
+        double p = outcome == 1 ? probability : 1 - probability;
+        broadcast(o -> {
+            o.writeByte(ShardWorker.COLLAPSE);
+            o.writeInt(position);
+            o.writeInt(outcome);
+            o.writeDouble(1 / Math.sqrt(p));
+        });
+        return outcome;
+    }
+
+    /**
+     * Draws the global indices of the shots, first the shard of each
+     * shot by the shard norms, then the indices within the shards.
+     *
+     * */
+    private long[] sample(int shots, int local, SplittableRandom random) throws IOException {
+        broadcast(o -> o.writeByte(ShardWorker.NORM));
+        flush();
+
+        double[] cumulative = new double[in.length];
+        for (int r = 0; r < in.length; r++)
+            cumulative[r] = (r > 0 ? cumulative[r - 1] : 0) + in[r].readDouble();
+
+        int[] shard = new int[shots];
+        int[] counts = new int[in.length];
+        for (int i = 0; i < shots; i++) {
+            double u = random.nextDouble() * cumulative[in.length - 1];
+            int r = 0;
+            while (r + 1 < in.length && cumulative[r] <= u)
+                r++;
+            shard[i] = r;
+            counts[r]++;
+        }
+
+        for (int r = 0; r < out.length; r++) {
+            out[r].writeByte(ShardWorker.SAMPLE);
+            out[r].writeInt(counts[r]);
+            out[r].writeLong(random.nextLong());
+        }
+        flush();
+
+        int[][] indices = new int[in.length][];
+        for (int r = 0; r < in.length; r++) {
+            indices[r] = new int[counts[r]];
+            for (int i = 0; i < counts[r]; i++)
+                indices[r][i] = in[r].readInt();
+        }
+
+        long[] result = new long[shots];
+        int[] next = new int[in.length];
+        for (int i = 0; i < shots; i++) {
+            int r = shard[i];
+            result[i] = (long) r << local | indices[r][next[r]++];
+        }
+        return result;
+    }
+
+    private interface Write {
+        void to(DataOutputStream out) throws IOException;
+    }
+
+    private void broadcast(Write write) throws IOException {
+        for (var o: out)
+            write.to(o);
+    }
+
+    private void flush() throws IOException {
+        for (var o: out)
+            o.flush();
+    }
+
+    /**
+     * Sends the command to all the workers. The swaps are flushed
+     * right away, as they block the workers until the partner
+     * receives them too.
+     *
+     * */
+    private void send(Command command) throws IOException {
+        broadcast(command::write);
+        if (command.code == ShardWorker.SWAP)
+            flush();
+    }
+
+    /**
+     * Returns the next independent random stream.
+     *
+     * @return the random stream
+     *
+     * */
+    private synchronized SplittableRandom nextRandom() {
+        return seeds.split();
+    }
+
+    /**
+     * Shuts the workers down, terminating the spawned local ones.
+     *
+     * @throws IOException if the connections cannot be closed
+     *
+     * */
+    @Override
+    public void close() throws IOException {
+        for (int r = 0; r < sockets.length; r++) {
+            if (sockets[r] == null)
+                continue;
+            try {
+                out[r].writeByte(ShardWorker.SHUTDOWN);
+                out[r].flush();
+            } catch (IOException e) {
+                /* already gone */
+            }
+            sockets[r].close();
+        }
+
+        if (processes == null)
+            return;
+        for (var process: processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS))
+                    process.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The result of a run of {@link DistributedSimulator}.
+     *
+     * */
+    public static final class Result {
+
+        private final Shots shots;
+        private final int swaps;
+
+        private Result(Shots shots, int swaps) {
+            this.shots = shots;
+            this.swaps = swaps;
+        }
+
+        /**
+         * Returns the bit-packed classical registers.
+         *
+         * @return the shots
+         *
+         * */
+        public Shots getShots() {
+            return shots;
+        }
+
+        /**
+         * Returns the number of the global-local qubit swaps per simulation,
+         * each exchanging half of every shard between pairs of workers.
+         *
+         * @return the number of the swaps
+         *
+         * */
+        public int getSwaps() {
+            return swaps;
+        }
+    }
+
+    /**
+     * A worker command, or a recorded gate of the circuit
+     * with qubits in place of the positions.
+     *
+     * */
+    private static final class Command {
+
+        final byte code;
+        final int[] positions;
+        final double[] re, im;
+        final int[] table;
+        final int target;
+
+        Command(byte code, int[] positions, double[] re, double[] im, int[] table, int target) {
+            this.code = code;
+            this.positions = positions;
+            this.re = re;
+            this.im = im;
+            this.table = table;
+            this.target = target;
+        }
+
+        Command(byte code, int[] positions, double[] re, double[] im) {
+            this(code, positions, re, im, null, -1);
+        }
+
+        /**
+         * Returns the qubits which must be local, i.e. those
+         * the non-diagonal part of the gate acts on.
+         *
+         * */
+        int[] local() {
+            switch (code) {
+                case ShardWorker.UNITARY:
+                    return positions;
+                case ShardWorker.CONTROLLED:
+                    return new int[] {positions[1]};
+                case ShardWorker.PERMUTE:
+                    return positions;
+                default:
+                    return new int[0];
+            }
+        }
+
+        /**
+         * Returns the command with the qubits replaced by their positions.
+         *
+         * */
+        Command at(int[] position) {
+            int[] mapped = new int[positions.length];
+            for (int i = 0; i < mapped.length; i++)
+                mapped[i] = position[positions[i]];
+            return new Command(code, mapped, re, im, table, target);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(code);
+            switch (code) {
+                case ShardWorker.UNITARY:
+                case ShardWorker.CONTROLLED:
+                    for (int p: positions)
+                        out.writeInt(p);
+                    for (double x: re)
+                        out.writeDouble(x);
+                    for (double x: im)
+                        out.writeDouble(x);
+                    break;
+                case ShardWorker.DIAGONAL:
+                    out.writeInt(positions.length);
+                    for (int p: positions)
+                        out.writeInt(p);
+                    for (double x: re)
+                        out.writeDouble(x);
+                    for (double x: im)
+                        out.writeDouble(x);
+                    break;
+                case ShardWorker.PERMUTE:
+                    out.writeInt(positions.length);
+                    for (int p: positions)
+                        out.writeInt(p);
+                    for (int x: table)
+                        out.writeInt(x);
+                    break;
+                case ShardWorker.SWAP:
+                    out.writeInt(positions[0]);
+                    out.writeInt(positions[1]);
+                    break;
+                default:
+                    throw new IllegalStateException("not a gate: " + code);
+            }
+        }
+    }
+
+    /**
+     * The worker commands of a circuit, with the swaps
+     * making the qubits of each gate local inserted.
+     *
+     * */
+    private static final class Schedule {
+
+        private final List<Command> commands = new ArrayList<>();
+
+        /**
+         * The final position of each qubit.
+         *
+         * */
+        private final int[] positions;
+
+        private int swaps;
+
+        Schedule(List<Command> ops, int n, int global) {
+            int local = n - global;
+            positions = new int[n];
+            int[] qubits = new int[n];
+            for (int q = 0; q < n; q++) {
+                positions[q] = n - q - 1;
+                qubits[n - q - 1] = q;
+            }
+
+            for (int i = 0; i < ops.size(); i++) {
+                var op = ops.get(i);
+                int[] needed = op.local();
+                if (needed.length > local)
+                    throw new IllegalArgumentException("gate on " + needed.length
+                            + " qubits exceeds the " + local + " local qubits");
+
+                for (int q: needed) {
+                    if (positions[q] < local)
+                        continue;
+
+                    int victim = victim(ops, i, needed, qubits, local);
+                    int g = positions[q];
+                    commands.add(new Command(ShardWorker.SWAP, new int[] {g, victim}, null, null));
+                    swaps++;
+
+                    int other = qubits[victim];
+                    qubits[victim] = q;
+                    qubits[g] = other;
+                    positions[q] = victim;
+                    positions[other] = g;
+                }
+
+                commands.add(op.at(positions));
+            }
+        }
+
+        /**
+         * Returns the local position to swap out, the one whose qubit is
+         * not needed by the current gate and is needed locally again the
+         * latest, or never.
+         *
+         * */
+        private static int victim(List<Command> ops, int current, int[] needed,
+                                  int[] qubits, int local) {
+            int best = -1, bestUse = -1;
+            for (int p = 0; p < local; p++) {
+                int q = qubits[p];
+                if (Arrays.stream(needed).anyMatch(x -> x == q))
+                    continue;
+
+                int use = current + 1;
+                while (use < ops.size() && Arrays.stream(ops.get(use).local()).noneMatch(x -> x == q))
+                    use++;
+                if (use > bestUse) {
+                    best = p;
+                    bestUse = use;
+                }
+                if (use == ops.size())
+                    break;
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Records the circuit as the worker commands on the qubits,
+     * separating the trailing measurements to be sampled.
+     *
+     * */
+    private static class Recorder extends Qflow {
+
+        /**
+         * The gates and the mid-circuit measurements.
+         *
+         * */
+        private final List<Command> ops = new ArrayList<>();
+
+        /**
+         * The trailing measurements, as (source, target) pairs.
+         *
+         * */
+        private final List<int[]> trailing = new ArrayList<>();
+
+        /**
+         * The number of the local qubits, bounding the oracles applied at once.
+         *
+         * */
+        private final int local;
+
+        Recorder(Qcircuit circuit, Map<Parameter, Double> bindings, int local) {
+            super(circuit, bindings);
+            this.local = local;
+        }
+
+        /**
+         * Records a gate, turning the so far trailing
+         * measurements into mid-circuit ones.
+         *
+         * */
+        private void add(Command op) {
+            for (int[] m: trailing)
+                ops.add(new Command(ShardWorker.MEASURE, new int[] {m[0]}, null, null, null, m[1]));
+            trailing.clear();
+            ops.add(op);
+        }
+
+        private void unitary(int qubit, double[] re, double[] im) {
+            add(new Command(ShardWorker.UNITARY, new int[] {qubit}, re, im));
+        }
+
+        private void diagonal(int[] qubits, double[] re, double[] im) {
+            add(new Command(ShardWorker.DIAGONAL, qubits, re, im));
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            double h = Math.sqrt(0.5);
+            unitary(qubit, new double[] {h, h, h, -h}, new double[4]);
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            trailing.add(new int[] {source, target});
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            add(new Command(ShardWorker.CONTROLLED, new int[] {control, target},
+                            new double[] {0, 1, 1, 0}, new double[4]));
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            unitary(qubit, new double[] {0, 1, 1, 0}, new double[4]);
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            /* R_X(theta) = e^{-i theta X / 2} */
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            unitary(qubit, new double[] {c, 0, 0, c}, new double[] {0, -s, -s, 0});
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            diagonal(new int[] {qubit}, new double[] {1, Math.cos(angle)},
+                                        new double[] {0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            diagonal(new int[] {qubit}, new double[] {c, c}, new double[] {-s, s});
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            diagonal(new int[] {control, target}, new double[] {1, 1, 1, Math.cos(angle)},
+                                                  new double[] {0, 0, 0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            if (qubits.length > local) {
+                super.oracle(qubits, permutation);
+                return;
+            }
+
+            int[] table = new int[1 << qubits.length];
+            for (int x = 0; x < table.length; x++)
+                table[x] = permutation.applyAsInt(x);
+            add(new Command(ShardWorker.PERMUTE, qubits.clone(), null, null, table, -1));
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            double[] re = new double[1 << qubits.length];
+            for (int x = 0; x < re.length; x++)
+                re[x] = predicate.test(x) ? -1 : 1;
+            diagonal(qubits.clone(), re, new double[re.length]);
+        }
+    }
+}
@@ -0,0 +1,699 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qvm;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Shots;
+import io.github.patztablook22.jaq.backends.StabilizerState.Pauli;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Extended stabilizer quantum computer simulator for Clifford
+ * circuits with a few non-Clifford gates.
+ *
+ * <p>
+ *   The Clifford gates, i.e. the Hadamard, CNOT and Pauli gates and the
+ *   rotations by multiples of \( \pi / 2 \), are applied to a single
+ *   stabilizer state \( \ket{\phi} \) in time polynomial in the number
+ *   of qubits. Each of the remaining gates is a Pauli rotation
+ *   \( R_j = \cos(\theta_j / 2) I - i \sin(\theta_j / 2) Q_j \), which is
+ *   commuted through the subsequent Clifford gates, so that the final state is
+ * </p>
+ *
+ * \[
+ *     \ket{\psi} = R_t \cdots R_1 \ket{\phi}
+ *                = \sum_{b \in \{0, 1\}^t} c_b \, Q_t^{b_t} \cdots Q_1^{b_1} \ket{\phi},
+ * \]
+ *
+ * <p>
+ *   a weighted sum of at most \( 2^t \) stabilizer states, fewer once the
+ *   terms differing by a stabilizer of \( \ket{\phi} \) are merged. The cost
+ *   thus grows exponentially only with the number \( t \) of the non-Clifford
+ *   gates. With a positive {@code accuracy} \( \delta \), a sum of more terms is
+ *   replaced by \( k = \lceil \|c\|_1^2 / \delta \rceil \) terms sampled with
+ *   probabilities proportional to \( |c_b| \), which approximates the state
+ *   within the squared distance of about \( \delta \).
+ * </p>
+ *
+ * <p>
+ *   The shots are sampled by a Metropolis chain over the basis states,
+ *   proposing moves within and between the supports of the terms and
+ *   performing {@code mixing} steps per shot. Purely Clifford circuits are
+ *   sampled exactly. Measurements in the middle of the circuit are not
+ *   supported. Oracles are decomposed into the elementary gates by the
+ *   {@link Qflow} defaults, so their non-Clifford phases count towards
+ *   the rotations.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     var circuit = new Qcircuit(100, 100) {{
+ *         for (int i = 0; i &lt; 100; i++)
+ *             hadamard(i);
+ *         for (int i = 0; i + 1 &lt; 100; i++)
+ *             cnot(i, i + 1);
+ *         for (int i = 0; i &lt; 8; i++)
+ *             rotateX(10 * i, 0.3);
+ *         for (int i = 0; i &lt; 100; i++)
+ *             measure(i, i);
+ *     }};
+ *
+ *     var simulator = new ExtendedStabilizerSimulator(0.01, 100, 42);
+ *     var shots = simulator.sample(circuit, 1000);
+ *  </code></pre>
+ *
+ * */
+public class ExtendedStabilizerSimulator implements Qvm {
+
+    /**
+     * The default number of the Metropolis steps per shot.
+     *
+     * */
+    public static final int DEFAULT_MIXING = 100;
+
+    /**
+     * The largest number of the stabilizer terms.
+     *
+     * */
+    public static final int MAX_TERMS = 1 << 20;
+
+    private static final double EPSILON = 1e-12;
+
+    /**
+     * The approximation accuracy, zero meaning exact.
+     *
+     * */
+    private final double accuracy;
+
+    /**
+     * The number of the Metropolis steps per shot.
+     *
+     * */
+    private final int mixing;
+
+    /**
+     * The generator of the per-run random streams.
+     *
+     * */
+    private final SplittableRandom seeds;
+
+    /**
+     * Constructs an exact {@code ExtendedStabilizerSimulator} with
+     * a randomly seeded internal random number generator.
+     *
+     * */
+    public ExtendedStabilizerSimulator() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs an exact {@code ExtendedStabilizerSimulator} with
+     * the specified seed for the internal random number generator.
+     *
+     * @param seed randomness seed
+     *
+     * */
+    public ExtendedStabilizerSimulator(long seed) {
+        this(0, DEFAULT_MIXING, seed);
+    }
+
+    /**
+     * Constructs an {@code ExtendedStabilizerSimulator} with the specified
+     * seed for the internal random number generator.
+     *
+     * @param accuracy the squared distance of the approximate state, zero for exact
+     * @param mixing the number of the Metropolis steps per shot
+     * @param seed randomness seed
+     *
+     * */
+    public ExtendedStabilizerSimulator(double accuracy, int mixing, long seed) {
+        if (!(accuracy >= 0 && accuracy < 1))
+            throw new IllegalArgumentException("invalid accuracy: " + accuracy);
+        if (mixing < 1)
+            throw new IllegalArgumentException("invalid mixing: " + mixing);
+
+        this.accuracy = accuracy;
+        this.mixing = mixing;
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit) {
+        return run(circuit, Map.of());
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, int shots) {
+        return run(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        return sample(circuit, bindings, 1).toBytes(0);
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return sample(circuit, bindings, shots).toBytes();
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, int shots) {
+        return sample(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        var recorder = new Recorder(circuit, bindings);
+        recorder.flow();
+
+        var random = nextRandom();
+        var state = recorder.decompose(accuracy, random);
+
+        var out = new Shots(circuit.cbits(), shots);
+        byte[] classical = new byte[circuit.cbits()];
+        long[] x = state.initial(random);
+        double[] p = {state.probability(x)};
+
+        /* the burn-in */
+        for (int step = 0; step < mixing && state.terms() > 1; step++)
+            x = state.step(x, p, random);
+
+        for (int shot = 0; shot < shots; shot++) {
+            if (state.terms() == 1)
+                x = state.initial(random);
+            else
+                for (int step = 0; step < mixing; step++)
+                    x = state.step(x, p, random);
+
+            for (int[] m: recorder.trailing)
+                classical[m[1]] = (byte) (x[m[0] >> 6] >>> m[0] & 1);
+            out.add(classical);
+        }
+
+        return out;
+    }
+
+    /**
+     * Returns the probability of measuring the given bitstring
+     * on all the qubits, the character {@code i} of which
+     * corresponds to the qubit {@code i}.
+     *
+     * @param circuit the circuit
+     * @param bitstring the bitstring
+     * @return the probability
+     *
+     * */
+    public double probability(Qcircuit circuit, String bitstring) {
+        return probability(circuit, Map.of(), bitstring);
+    }
+
+    /**
+     * Returns the probability of measuring the given bitstring
+     * on all the qubits, the character {@code i} of which
+     * corresponds to the qubit {@code i}. Only the amplitude of
+     * the bitstring is computed, regardless of the number of qubits.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param bitstring the bitstring
+     * @return the probability
+     *
+     * */
+    public double probability(Qcircuit circuit, Map<Parameter, Double> bindings, String bitstring) {
+        var recorder = new Recorder(circuit, bindings);
+        recorder.flow();
+
+        int n = circuit.qubits();
+        if (bitstring.length() != n)
+            throw new IllegalArgumentException("dimension mismatch: " + bitstring.length() + " vs " + n);
+
+        long[] x = new long[(n + 63) / 64];
+        for (int q = 0; q < n; q++) {
+            char c = bitstring.charAt(q);
+            if (c != '0' && c != '1')
+                throw new IllegalArgumentException("invalid bitstring: " + bitstring);
+            if (c == '1')
+                x[q >> 6] |= 1L << q;
+        }
+
+        return recorder.decompose(accuracy, nextRandom()).probability(x);
+    }
+
+    /**
+     * Returns the number of the stabilizer states the final state
+     * of the circuit is decomposed into.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @return the number of the terms
+     *
+     * */
+    public int stabilizerRank(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        var recorder = new Recorder(circuit, bindings);
+        recorder.flow();
+        return recorder.decompose(accuracy, nextRandom()).terms();
+    }
+
+    /**
+     * Returns the next independent random stream.
+     *
+     * @return the random stream
+     *
+     * */
+    private synchronized SplittableRandom nextRandom() {
+        return seeds.split();
+    }
+
+    /**
+     * Final state decomposed into the sum \( \sum_j c_j P_j \ket{\phi} \)
+     * of the stabilizer state \( \ket{\phi} \) transformed by Pauli strings.
+     *
+     * */
+    private static final class Decomposition {
+
+        private final StabilizerState phi;
+        private final Pauli[] paulis;
+        private final double[] re, im;
+
+        /**
+         * The distinct supports of the terms, as the reduced shifts.
+         *
+         * */
+        private final List<long[]> cosets = new ArrayList<>();
+
+        Decomposition(StabilizerState phi, Map<Pauli, double[]> terms) {
+            this.phi = phi;
+
+            var list = new ArrayList<Pauli>();
+            var coefs = new ArrayList<double[]>();
+            for (var entry: terms.entrySet()) {
+                double[] c = entry.getValue();
+                if (Math.hypot(c[0], c[1]) < EPSILON)
+                    continue;
+                list.add(entry.getKey());
+                coefs.add(c);
+            }
+
+            paulis = list.toArray(new Pauli[0]);
+            re = new double[paulis.length];
+            im = new double[paulis.length];
+            for (int j = 0; j < paulis.length; j++) {
+                re[j] = coefs.get(j)[0];
+                im[j] = coefs.get(j)[1];
+            }
+
+            var distinct = new HashSet<List<Long>>();
+            for (var pauli: paulis) {
+                long[] shift = phi.reduce(pauli.x);
+                var key = new ArrayList<Long>();
+                for (long w: shift)
+                    key.add(w);
+                if (distinct.add(key))
+                    cosets.add(shift);
+            }
+        }
+
+        int terms() {
+            return paulis.length;
+        }
+
+        /**
+         * Computes \( \braket{x | P | \phi} = (-1)^{z \cdot (x \oplus a)}
+         * \braket{x \oplus a | \phi} \) for each \( P = X^a Z^z \) and sums them.
+         *
+         * */
+        private void amplitude(long[] x, double[] out) {
+            double sumRe = 0, sumIm = 0;
+            double[] amp = new double[2];
+            long[] shifted = new long[x.length];
+
+            for (int j = 0; j < paulis.length; j++) {
+                int sign = 0;
+                for (int w = 0; w < x.length; w++) {
+                    shifted[w] = x[w] ^ paulis[j].x[w];
+                    sign += Long.bitCount(paulis[j].z[w] & shifted[w]);
+                }
+
+                phi.amplitude(shifted, amp);
+                if (amp[0] == 0 && amp[1] == 0)
+                    continue;
+                double s = (sign & 1) == 0 ? 1 : -1;
+                sumRe += s * (re[j] * amp[0] - im[j] * amp[1]);
+                sumIm += s * (re[j] * amp[1] + im[j] * amp[0]);
+            }
+
+            out[0] = sumRe;
+            out[1] = sumIm;
+        }
+
+        double probability(long[] x) {
+            double[] amp = new double[2];
+            amplitude(x, amp);
+            return amp[0] * amp[0] + amp[1] * amp[1];
+        }
+
+        /**
+         * Returns a basis state in the union of the supports of the terms,
+         * retrying to find one of a nonzero probability.
+         *
+         * */
+        long[] initial(SplittableRandom random) {
+            long[] x = null;
+            for (int attempt = 0; attempt < 64; attempt++) {
+                x = random(random);
+                if (paulis.length == 1 || probability(x) > EPSILON * EPSILON)
+                    break;
+            }
+            return x;
+        }
+
+        /**
+         * Returns a uniformly random basis state from the union of the supports
+         * of the terms. The supports are the cosets of the same subspace,
+         * so that a random one of the distinct ones is chosen first.
+         *
+         * */
+        private long[] random(SplittableRandom random) {
+            long[] x = phi.randomShift(random);
+            long[] origin = phi.origin();
+            long[] shift = cosets.get(random.nextInt(cosets.size()));
+            for (int w = 0; w < x.length; w++)
+                x[w] ^= origin[w] ^ shift[w];
+            return x;
+        }
+
+        /**
+         * Performs a single Metropolis step from the basis state {@code x},
+         * proposing a uniformly random state from the union of the supports,
+         * a symmetric proposal.
+         *
+         * @param x the current basis state
+         * @param p the probability of the current basis state, updated
+         * @param random the randomness source
+         * @return the next basis state
+         *
+         * */
+        long[] step(long[] x, double[] p, SplittableRandom random) {
+            long[] proposal = random(random);
+            double q = probability(proposal);
+            if (q >= p[0] || random.nextDouble() * p[0] < q) {
+                p[0] = q;
+                return proposal;
+            }
+            return x;
+        }
+    }
+
+    /**
+     * Records the circuit, applying the Clifford gates to the stabilizer
+     * state and collecting the non-Clifford gates as Pauli rotations.
+     *
+     * */
+    private static class Recorder extends Qflow {
+
+        private final StabilizerState state;
+
+        /**
+         * The Pauli rotations, conjugated by the subsequent Clifford gates.
+         *
+         * */
+        private final List<Pauli> rotations = new ArrayList<>();
+
+        /**
+         * The angles of the rotations.
+         *
+         * */
+        private final List<Double> angles = new ArrayList<>();
+
+        /**
+         * The trailing measurements, as (source, target) pairs.
+         *
+         * */
+        private final List<int[]> trailing = new ArrayList<>();
+
+        Recorder(Qcircuit circuit, Map<Parameter, Double> bindings) {
+            super(circuit, bindings);
+            state = new StabilizerState(circuit.qubits());
+        }
+
+        private void gate() {
+            if (!trailing.isEmpty())
+                throw new UnsupportedOperationException(
+                        "mid-circuit measurement not supported by ExtendedStabilizerSimulator");
+        }
+
+        /**
+         * Returns the number of the quarter turns if the angle
+         * is a multiple of \( \pi / 2 \), or {@code -1}.
+         *
+         * */
+        private static int quarters(double angle) {
+            double m = Math.rint(angle / (Math.PI / 2));
+            if (Math.abs(angle - m * Math.PI / 2) > EPSILON)
+                return -1;
+            return (int) Math.floorMod((long) m, 4L);
+        }
+
+        private void h(int q) {
+            state.h(q);
+            for (var p: rotations)
+                p.h(q);
+        }
+
+        private void s(int q) {
+            state.s(q);
+            for (var p: rotations)
+                p.s(q);
+        }
+
+        private void cz(int c, int t) {
+            h(t);
+            cnot(c, t);
+            h(t);
+        }
+
+        /**
+         * Records the rotation \( e^{-i \theta Q / 2} \), applying
+         * it directly if Clifford up to a global phase.
+         *
+         * */
+        private void rotation(Pauli pauli, double angle) {
+            if (pauli.isIdentity())
+                return;
+
+            switch (quarters(angle / 2)) {
+                case 0:
+                case 2:
+                    return;
+                case 1:
+                case 3:
+                    /* e^{-i pi Q / 2} = -i Q */
+                    state.pauli(pauli);
+                    for (var p: rotations)
+                        p.conjugate(pauli);
+                    return;
+                default:
+                    rotations.add(pauli);
+                    angles.add(angle);
+            }
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            gate();
+            h(qubit);
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            trailing.add(new int[] {source, target});
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            gate();
+            state.cnot(control, target);
+            for (var p: rotations)
+                p.cnot(control, target);
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            gate();
+            state.pauliX(qubit);
+            for (var p: rotations)
+                p.pauliX(qubit);
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            gate();
+            int m = quarters(angle);
+            if (m < 0) {
+                rotation(Pauli.of(state.qubits(), "X", qubit), angle);
+                return;
+            }
+
+            /* R_X(m pi / 2) = H S^m H up to a global phase */
+            h(qubit);
+            for (int i = 0; i < m; i++)
+                s(qubit);
+            h(qubit);
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            rotateZ(qubit, angle);
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            gate();
+            int m = quarters(angle);
+            if (m < 0) {
+                rotation(Pauli.of(state.qubits(), "Z", qubit), angle);
+                return;
+            }
+
+            for (int i = 0; i < m; i++)
+                s(qubit);
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            gate();
+            int m = quarters(angle);
+            if (m == 0)
+                return;
+            if (m == 2) {
+                cz(control, target);
+                return;
+            }
+
+            /* CP(theta) = e^{i theta / 4} R_Z(theta / 2) R_Z(theta / 2) R_ZZ(-theta / 2) */
+            int n = state.qubits();
+            rotation(Pauli.of(n, "Z", control), angle / 2);
+            rotation(Pauli.of(n, "Z", target), angle / 2);
+            rotation(Pauli.of(n, "ZZ", control, target), -angle / 2);
+        }
+
+        @Override
+        protected void pauliRotation(String paulis, int[] qubits, double angle) {
+            gate();
+            rotation(Pauli.of(state.qubits(), paulis, qubits), 2 * angle);
+        }
+
+        /**
+         * Expands the recorded rotations into the sum of stabilizer states,
+         * exactly or by sampling the terms if fewer suffice for the accuracy.
+         *
+         * @param accuracy the accuracy, zero for exact
+         * @param random the randomness source
+         * @return the decomposition
+         *
+         * */
+        private Decomposition decompose(double accuracy, SplittableRandom random) {
+            double norm = 1;
+            for (double angle: angles)
+                norm *= Math.abs(Math.cos(angle / 2)) + Math.abs(Math.sin(angle / 2));
+
+            state.freeze();
+            int limit = accuracy > 0 ? (int) Math.min(Math.ceil(norm * norm / accuracy), MAX_TERMS) : MAX_TERMS;
+            var terms = expand(limit);
+            if (terms != null)
+                return new Decomposition(state, terms);
+            if (accuracy == 0)
+                throw new IllegalStateException("too many stabilizer terms: more than " + limit);
+            return new Decomposition(state, sparsify(limit, norm, random));
+        }
+
+        /**
+         * Merges the term into the sum, folding its phase into the coefficient.
+         * The terms equal up to the stabilizers of the state are merged too.
+         *
+         * */
+        private void merge(Map<Pauli, double[]> terms, Pauli pauli, double re, double im) {
+            state.canonicalize(pauli);
+            for (int i = 0; i < pauli.k; i++) {
+                double t = re;
+                re = -im;
+                im = t;
+            }
+            pauli.k = 0;
+
+            double[] c = terms.computeIfAbsent(pauli, p -> new double[2]);
+            c[0] += re;
+            c[1] += im;
+        }
+
+        /**
+         * Expands the rotations exactly, or returns null
+         * if the number of the terms exceeds the limit.
+         *
+         * */
+        private Map<Pauli, double[]> expand(int limit) {
+            Map<Pauli, double[]> terms = new LinkedHashMap<>();
+            terms.put(new Pauli(state.qubits()), new double[] {1, 0});
+
+            for (int j = 0; j < rotations.size(); j++) {
+                double c = Math.cos(angles.get(j) / 2), s = Math.sin(angles.get(j) / 2);
+                Map<Pauli, double[]> next = new LinkedHashMap<>();
+
+                for (var entry: terms.entrySet()) {
+                    double[] coef = entry.getValue();
+                    merge(next, new Pauli(entry.getKey()), c * coef[0], c * coef[1]);
+
+                    /* -i s Q P */
+                    var product = new Pauli(rotations.get(j));
+                    product.multiply(entry.getKey());
+                    merge(next, product, s * coef[1], -s * coef[0]);
+                }
+                if (next.size() > limit)
+                    return null;
+                terms = next;
+            }
+            return terms;
+        }
+
+        private Map<Pauli, double[]> sparsify(int samples, double norm, SplittableRandom random) {
+            Map<Pauli, double[]> terms = new LinkedHashMap<>();
+            double weight = norm / samples;
+
+            for (int i = 0; i < samples; i++) {
+                var pauli = new Pauli(state.qubits());
+                double re = weight, im = 0;
+
+                for (int j = 0; j < rotations.size(); j++) {
+                    double c = Math.cos(angles.get(j) / 2), s = Math.sin(angles.get(j) / 2);
+                    if (random.nextDouble() * (Math.abs(c) + Math.abs(s)) < Math.abs(s)) {
+                        /* -i sign(s) Q P */
+                        var product = new Pauli(rotations.get(j));
+                        product.multiply(pauli);
+                        pauli = product;
+                        double t = re;
+                        re = Math.signum(s) * im;
+                        im = -Math.signum(s) * t;
+                    } else if (c < 0) {
+                        re = -re;
+                        im = -im;
+                    }
+                }
+                merge(terms, pauli, re, im);
+            }
+            return terms;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.backends.lingebra.Ket;
+
+import java.util.stream.IntStream;
+
+
+/**
+ * Read-only view of the final state of a simulated {@link io.github.patztablook22.jaq.Qcircuit},
+ * i.e. of the global state after its unitary part.
+ *
+ * <p>
+ *   The queries are evaluated exactly on the state vector, so that
+ *   the probabilities need not be reconstructed from a large number
+ *   of shots. The basis states are identified by bitstrings, the
+ *   {@code i}-th character of which is the value of the {@code i}-th qubit.
+ *   Likewise, the values of a qubit subset are indexed with the first
+ *   qubit of the subset being the most significant digit.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ * <pre><code class="language-java">
+ *    var circuit = new Qcircuit() {{
+ *        hadamard(0);
+ *        cnot(0, 1);
+ *        hadamard(2);
+ *    }};
+ *
+ *    var state = new SimpleSimulator().state(circuit);
+ *
+ *    /* [0.5, 0.0, 0.0, 0.5] &#42;/
+ *    System.out.println(Arrays.toString(state.marginal(0, 1)));
+ *
+ *    /* [0.5, 0.0] &#42;/
+ *    System.out.println(Arrays.toString(state.amplitude("110")));
+ * </code></pre>
+ *
+ * @see SimpleSimulator#state(io.github.patztablook22.jaq.Qcircuit)
+ *
+ * */
+public final class FinalState {
+
+    /**
+     * The number of basis states summed by a single parallel task.
+     *
+     * */
+    private static final int CHUNK = 1 << 12;
+
+    /**
+     * The size of the quantum register.
+     *
+     * */
+    private final int qubits;
+
+    /**
+     * The underlying state vector. Never modified.
+     *
+     * */
+    private final Ket state;
+
+    FinalState(int qubits, Ket state) {
+        this.qubits = qubits;
+        this.state = state;
+    }
+
+    /**
+     * Returns the size of the quantum register.
+     *
+     * @return the number of qubits
+     *
+     * */
+    public int qubits() {
+        return qubits;
+    }
+
+    /**
+     * Returns the probabilities of all the basis states,
+     * indexed by the bitstrings read as binary numbers.
+     *
+     * @return the probabilities
+     *
+     * */
+    public double[] probabilities() {
+        float[] real = state.getReal();
+        float[] imag = state.getImag();
+
+        double[] out = new double[state.getDim()];
+        IntStream.range(0, out.length)
+            .parallel()
+            .forEach(k -> out[k] = (double) real[k] * real[k] + (double) imag[k] * imag[k]);
+        return out;
+    }
+
+    /**
+     * Returns the marginal probability distribution of the given qubits.
+     *
+     * @param qubits the qubits, the most significant digit first
+     * @return the probabilities of the qubits' values
+     * @see #marginals(int[]...)
+     *
+     * */
+    public double[] marginal(int... qubits) {
+        return marginals(qubits)[0];
+    }
+
+    /**
+     * Returns the marginal probability distributions of the given
+     * qubit subsets, all computed in a single parallel pass over the state.
+     * Throws IllegalArgumentException if a subset repeats a qubit.
+     *
+     * @param subsets the qubit subsets, each the most significant digit first
+     * @return the probabilities of the subsets' values
+     *
+     * */
+    public double[][] marginals(int[]... subsets) {
+        int[][] bits = new int[subsets.length][];
+        for (int s = 0; s < subsets.length; s++) {
+            bits[s] = new int[subsets[s].length];
+            int mask = 0;
+            for (int i = 0; i < bits[s].length; i++) {
+                bits[s][i] = indexBit(subsets[s][i]);
+                if ((mask & bits[s][i]) != 0)
+                    throw new IllegalArgumentException("repeated qubit: " + subsets[s][i]);
+                mask |= bits[s][i];
+            }
+        }
+
+        float[] real = state.getReal();
+        float[] imag = state.getImag();
+        int dim = state.getDim();
+
+        return IntStream.range(0, (dim + CHUNK - 1) / CHUNK)
+            .parallel()
+            .mapToObj(chunk -> {
+                double[][] out = new double[bits.length][];
+                for (int s = 0; s < bits.length; s++)
+                    out[s] = new double[1 << bits[s].length];
+
+                int end = Math.min(dim, (chunk + 1) * CHUNK);
+                for (int k = chunk * CHUNK; k < end; k++) {
+                    double p = (double) real[k] * real[k] + (double) imag[k] * imag[k];
+                    for (int s = 0; s < bits.length; s++) {
+                        int x = 0;
+                        for (int bit: bits[s])
+                            x = (x << 1) | ((k & bit) != 0 ? 1 : 0);
+                        out[s][x] += p;
+                    }
+                }
+                return out;
+            })
+            .reduce((a, b) -> {
+                for (int s = 0; s < a.length; s++)
+                    for (int x = 0; x < a[s].length; x++)
+                        a[s][x] += b[s][x];
+                return a;
+            })
+            .orElseThrow();
+    }
+
+    /**
+     * Returns the amplitude of the given basis state.
+     *
+     * @param bitstring the basis state, e.g. {@code "0110"}
+     * @return the real and the imaginary part of the amplitude
+     *
+     * */
+    public double[] amplitude(String bitstring) {
+        int k = index(bitstring);
+        return new double[] {state.getReal()[k], state.getImag()[k]};
+    }
+
+    /**
+     * Returns the probability of the given basis state.
+     *
+     * @param bitstring the basis state, e.g. {@code "0110"}
+     * @return the probability
+     *
+     * */
+    public double probability(String bitstring) {
+        int k = index(bitstring);
+        double re = state.getReal()[k], im = state.getImag()[k];
+        return re * re + im * im;
+    }
+
+    /**
+     * Returns the fidelity with the given pure reference state
+     * \(
+     *      |\braket{\phi}{\psi}|^2
+     * \)
+     *
+     * The reference state need not be normalized.
+     *
+     * @param reference the reference state \( \ket{\phi} \)
+     * @return the fidelity
+     *
+     * */
+    public double fidelity(Ket reference) {
+        if (reference.getDim() != state.getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + state.getDim() + " vs " + reference.getDim());
+
+        float[] aReal = reference.getReal(), aImag = reference.getImag();
+        float[] bReal = state.getReal(), bImag = state.getImag();
+        int dim = state.getDim();
+
+        double[] sums = IntStream.range(0, (dim + CHUNK - 1) / CHUNK)
+            .parallel()
+            .mapToObj(chunk -> {
+                double re = 0, im = 0, norm = 0;
+                int end = Math.min(dim, (chunk + 1) * CHUNK);
+                for (int k = chunk * CHUNK; k < end; k++) {
+                    double a = aReal[k], b = aImag[k], c = bReal[k], d = bImag[k];
+
+                    /* conj(a + bi) (c + di) = (ac + bd) + (ad - bc)i */
+                    re += a * c + b * d;
+                    im += a * d - b * c;
+                    norm += a * a + b * b;
+                }
+                return new double[] {re, im, norm};
+            })
+            .reduce((x, y) -> new double[] {x[0] + y[0], x[1] + y[1], x[2] + y[2]})
+            .orElseThrow();
+        return (sums[0] * sums[0] + sums[1] * sums[1]) / sums[2];
+    }
+
+    /**
+     * Returns the fidelity with another final state.
+     *
+     * @param other the other state
+     * @return the fidelity
+     * @see #fidelity(Ket)
+     *
+     * */
+    public double fidelity(FinalState other) {
+        return fidelity(other.state);
+    }
+
+    /**
+     * Returns the state index of the given bitstring. Throws
+     * IllegalArgumentException if it is not a valid basis state.
+     *
+     * @param bitstring the basis state
+     * @return the state index
+     *
+     * */
+    private int index(String bitstring) {
+        if (bitstring.length() != qubits || !bitstring.matches("[01]*"))
+            throw new IllegalArgumentException("invalid basis state: " + bitstring);
+
+        return qubits == 0 ? 0 : Integer.parseInt(bitstring, 2);
+    }
+
+    /**
+     * Returns the bit of the state index corresponding to given qubit.
+     *
+     * @param qubit the qubit
+     * @return the corresponding index bit mask
+     *
+     * */
+    private int indexBit(int qubit) {
+        if (qubit < 0 || qubit >= qubits)
+            throw new IndexOutOfBoundsException();
+
+        return 1 << (qubits - qubit - 1);
+    }
+}
@@ -0,0 +1,494 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Hybrid Schrödinger–Feynman evaluator of amplitudes
+ * of the final states of quantum circuits.
+ *
+ * <p>
+ *   The register is cut into the upper qubits {@code [0, cut)} and the lower
+ *   qubits {@code [cut, N)}, each half simulated as a state vector of its own.
+ *   The gates within a half act on it alone; every gate crossing the cut is
+ *   expanded into a sum of two products of single-half operators,
+ *   \(
+ *      CX = \ket{0}\bra{0} \otimes I + \ket{1}\bra{1} \otimes X
+ *   \)
+ *   and likewise for the controlled phase. Each selection of the terms is a
+ *   path, along which both halves stay in a product state, and the amplitude
+ *   is the sum over all the paths:
+ *   \[
+ *      \braket{x_A x_B | \psi} = \sum_{p} \braket{x_A | \psi^p_A} \braket{x_B | \psi^p_B}
+ *   \]
+ * </p>
+ *
+ * <p>
+ *   The memory is only \( 2^{cut} + 2^{N - cut} \) amplitudes per level of the
+ *   path tree instead of \( 2^N \), while the time grows as \( 2^k \) with the
+ *   number {@code k} of the crossing gates. The paths are enumerated depth-first,
+ *   sharing the evolution between the crossings, and the upper levels of the
+ *   path tree are evaluated in parallel. Circuits of 40 and more qubits with
+ *   few crossing gates thus fit modest memory.
+ * </p>
+ *
+ * <p>
+ *   The circuit must not contain any measurements followed by other operations,
+ *   otherwise IllegalArgumentException is thrown; the trailing measurements are
+ *   ignored. Oracles crossing the cut are decomposed into the elementary
+ *   gates by the {@link Qflow} defaults, each of their gates crossing the
+ *   cut counting as a crossing gate.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     Qcircuit circuit = /* 40 qubits &#42;/;
+ *
+ *     var simulator = new HybridSimulator();
+ *     System.out.println(simulator.crossings(circuit, 20));
+ *
+ *     double[][] amplitudes = simulator.amplitudes(circuit, 20, Map.of(),
+ *                                                  "0".repeat(40), "1".repeat(40));
+ *  </code></pre>
+ *
+ * */
+public class HybridSimulator {
+
+    /**
+     * The largest supported number of the crossing gates.
+     *
+     * */
+    public static final int MAX_CROSSINGS = 48;
+
+    /**
+     * The number of the upper path tree levels evaluated in parallel.
+     *
+     * */
+    private static final int PARALLEL_DEPTH = 10;
+
+    /**
+     * Returns the number of the gates crossing the cut,
+     * the number of the paths being two to its power.
+     *
+     * @param circuit the circuit
+     * @param cut the number of the upper qubits
+     * @return the number of the crossing gates
+     *
+     * */
+    public int crossings(Qcircuit circuit, int cut) {
+        return record(circuit, Map.of(), cut).crossings;
+    }
+
+    /**
+     * Returns the amplitudes of the given basis states in the final
+     * state of the parametrized circuit, summed over the paths through
+     * the cut after the first {@code cut} qubits.
+     *
+     * @param circuit the parametrized circuit
+     * @param cut the number of the upper qubits
+     * @param bindings the parameter values
+     * @param bitstrings the basis states, e.g. {@code "0110"}
+     * @return the real and the imaginary part of each amplitude
+     *
+     * */
+    public double[][] amplitudes(Qcircuit circuit, int cut, Map<Parameter, Double> bindings,
+                                 String... bitstrings) {
+        var recorder = record(circuit, bindings, cut);
+        if (recorder.crossings > MAX_CROSSINGS)
+            throw new IllegalArgumentException("too many crossing gates: " + recorder.crossings);
+
+        int n = circuit.qubits();
+        int[] upper = new int[bitstrings.length], lower = new int[bitstrings.length];
+        for (int i = 0; i < bitstrings.length; i++) {
+            String bitstring = bitstrings[i];
+            if (bitstring.length() != n)
+                throw new IllegalArgumentException("dimension mismatch: "
+                        + bitstring.length() + " vs " + n);
+            if (!bitstring.matches("[01]*"))
+                throw new IllegalArgumentException("invalid bitstring: " + bitstring);
+            upper[i] = Integer.parseInt(bitstring.substring(0, cut), 2);
+            lower[i] = Integer.parseInt(bitstring.substring(cut), 2);
+        }
+
+        var paths = new Paths(recorder.ops, upper, lower, 0,
+                              new Half(cut), new Half(n - cut), 0);
+        double[] sums = ForkJoinPool.commonPool().invoke(paths);
+
+        double[][] out = new double[bitstrings.length][];
+        for (int i = 0; i < out.length; i++)
+            out[i] = new double[] {sums[2 * i], sums[2 * i + 1]};
+        return out;
+    }
+
+    /**
+     * Returns the amplitude of the given basis state in the final state of the circuit.
+     *
+     * @param circuit the circuit
+     * @param cut the number of the upper qubits
+     * @param bitstring the basis state, e.g. {@code "0110"}
+     * @return the real and the imaginary part of the amplitude
+     * @see #amplitudes(Qcircuit, int, Map, String...)
+     *
+     * */
+    public double[] amplitude(Qcircuit circuit, int cut, String bitstring) {
+        return amplitudes(circuit, cut, Map.of(), bitstring)[0];
+    }
+
+    private static Recorder record(Qcircuit circuit, Map<Parameter, Double> bindings, int cut) {
+        if (cut <= 0 || cut >= circuit.qubits() || Math.max(cut, circuit.qubits() - cut) > 30)
+            throw new IllegalArgumentException("invalid cut: " + cut);
+
+        var recorder = new Recorder(circuit, bindings, cut);
+        recorder.flow();
+        return recorder;
+    }
+
+    /**
+     * Dense state vector of one half of the register.
+     *
+     * */
+    private static final class Half {
+
+        private final int qubits;
+        private final double[] re, im;
+
+        Half(int qubits) {
+            this.qubits = qubits;
+            re = new double[1 << qubits];
+            im = new double[1 << qubits];
+            re[0] = 1;
+        }
+
+        private Half(Half other) {
+            qubits = other.qubits;
+            re = other.re.clone();
+            im = other.im.clone();
+        }
+
+        Half copy() {
+            return new Half(this);
+        }
+
+        private int bit(int qubit) {
+            return 1 << (qubits - qubit - 1);
+        }
+
+        /**
+         * Applies a 2x2 gate, optionally controlled by another qubit.
+         *
+         * */
+        void gate(int target, int control, double[] gRe, double[] gIm) {
+            int t = bit(target);
+            int c = control < 0 ? 0 : bit(control);
+
+            for (int k = 0; k < re.length; k++) {
+                if ((k & t) != 0 || (k & c) != c)
+                    continue;
+                int j = k | t;
+                double x0Re = re[k], x0Im = im[k];
+                double x1Re = re[j], x1Im = im[j];
+
+                re[k] = gRe[0] * x0Re - gIm[0] * x0Im + gRe[1] * x1Re - gIm[1] * x1Im;
+                im[k] = gRe[0] * x0Im + gIm[0] * x0Re + gRe[1] * x1Im + gIm[1] * x1Re;
+                re[j] = gRe[2] * x0Re - gIm[2] * x0Im + gRe[3] * x1Re - gIm[3] * x1Im;
+                im[j] = gRe[2] * x0Im + gIm[2] * x0Re + gRe[3] * x1Im + gIm[3] * x1Re;
+            }
+        }
+
+        /**
+         * Projects onto the subspace where the qubit has the given value.
+         *
+         * */
+        void project(int qubit, int value) {
+            int b = bit(qubit);
+            for (int k = 0; k < re.length; k++)
+                if (((k & b) != 0 ? 1 : 0) != value)
+                    re[k] = im[k] = 0;
+        }
+
+        /**
+         * Permutes the values of the register of the given qubits.
+         *
+         * */
+        void oracle(int[] register, IntUnaryOperator permutation) {
+            double[] outRe = new double[re.length], outIm = new double[im.length];
+            for (int k = 0; k < re.length; k++) {
+                int x = value(k, register);
+                int y = permutation.applyAsInt(x);
+                int j = k;
+                for (int i = 0; i < register.length; i++) {
+                    int b = bit(register[i]);
+                    j = (y >> (register.length - i - 1) & 1) != 0 ? j | b : j & ~b;
+                }
+                outRe[j] = re[k];
+                outIm[j] = im[k];
+            }
+            System.arraycopy(outRe, 0, re, 0, re.length);
+            System.arraycopy(outIm, 0, im, 0, im.length);
+        }
+
+        /**
+         * Flips the phase of the values of the register of the given qubits.
+         *
+         * */
+        void phaseOracle(int[] register, IntPredicate predicate) {
+            for (int k = 0; k < re.length; k++) {
+                if (predicate.test(value(k, register))) {
+                    re[k] = -re[k];
+                    im[k] = -im[k];
+                }
+            }
+        }
+
+        private int value(int k, int[] register) {
+            int x = 0;
+            for (int q: register)
+                x = x << 1 | ((k & bit(q)) != 0 ? 1 : 0);
+            return x;
+        }
+    }
+
+    /**
+     * A recorded operation on both halves.
+     *
+     * */
+    private interface Op {
+        void apply(Half upper, Half lower);
+    }
+
+    /**
+     * A gate crossing the cut, the sum of two products
+     * of single-half operators.
+     *
+     * */
+    private static final class Crossing implements Op {
+
+        private final Op first, second;
+
+        Crossing(Op first, Op second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void apply(Half upper, Half lower) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Evaluation of the subtree of the paths
+     * starting at the given operation.
+     *
+     * */
+    private static final class Paths extends RecursiveTask<double[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Op> ops;
+        private final int[] upperIndices, lowerIndices;
+        private final int start;
+        private final Half upper, lower;
+        private final int depth;
+
+        Paths(List<Op> ops, int[] upperIndices, int[] lowerIndices, int start,
+              Half upper, Half lower, int depth) {
+            this.ops = ops;
+            this.upperIndices = upperIndices;
+            this.lowerIndices = lowerIndices;
+            this.start = start;
+            this.upper = upper;
+            this.lower = lower;
+            this.depth = depth;
+        }
+
+        @Override
+        protected double[] compute() {
+            int i = start;
+            while (i < ops.size() && !(ops.get(i) instanceof Crossing))
+                ops.get(i++).apply(upper, lower);
+
+            if (i == ops.size()) {
+                double[] sums = new double[2 * upperIndices.length];
+                for (int j = 0; j < upperIndices.length; j++) {
+                    int a = upperIndices[j], b = lowerIndices[j];
+                    sums[2 * j] = upper.re[a] * lower.re[b] - upper.im[a] * lower.im[b];
+                    sums[2 * j + 1] = upper.re[a] * lower.im[b] + upper.im[a] * lower.re[b];
+                }
+                return sums;
+            }
+
+            var crossing = (Crossing) ops.get(i);
+            Half upperCopy = upper.copy(), lowerCopy = lower.copy();
+            crossing.first.apply(upperCopy, lowerCopy);
+            crossing.second.apply(upper, lower);
+
+            var left = new Paths(ops, upperIndices, lowerIndices, i + 1, upperCopy, lowerCopy, depth + 1);
+            var right = new Paths(ops, upperIndices, lowerIndices, i + 1, upper, lower, depth + 1);
+
+            double[] a, b;
+            if (depth < PARALLEL_DEPTH) {
+                left.fork();
+                b = right.compute();
+                a = left.join();
+            } else {
+                a = left.compute();
+                b = right.compute();
+            }
+
+            for (int j = 0; j < a.length; j++)
+                a[j] += b[j];
+            return a;
+        }
+    }
+
+    /**
+     * Records the circuit as the operations on the two halves,
+     * expanding the gates crossing the cut.
+     *
+     * */
+    private static class Recorder extends Qflow {
+
+        private final int cut;
+        private final List<Op> ops = new ArrayList<>();
+        private int crossings;
+        private boolean measured;
+
+        Recorder(Qcircuit circuit, Map<Parameter, Double> bindings, int cut) {
+            super(circuit, bindings);
+            this.cut = cut;
+        }
+
+        private void add(Op op) {
+            if (measured)
+                throw new IllegalArgumentException("measurement in unitary circuit");
+            if (op instanceof Crossing)
+                crossings++;
+            ops.add(op);
+        }
+
+        private boolean isUpper(int qubit) {
+            return qubit < cut;
+        }
+
+        /**
+         * Records a 2x2 gate, optionally controlled by another qubit.
+         *
+         * */
+        private void gate(int target, int control, double[] re, double[] im) {
+            boolean upper = isUpper(target);
+            int t = upper ? target : target - cut;
+
+            if (control < 0) {
+                add((a, b) -> (upper ? a : b).gate(t, -1, re, im));
+            } else if (isUpper(control) == upper) {
+                int c = upper ? control : control - cut;
+                add((a, b) -> (upper ? a : b).gate(t, c, re, im));
+            } else {
+                /* |0><0| (x) I + |1><1| (x) U */
+                int c = upper ? control - cut : control;
+                add(new Crossing(
+                    (a, b) -> (upper ? b : a).project(c, 0),
+                    (a, b) -> {
+                        (upper ? b : a).project(c, 1);
+                        (upper ? a : b).gate(t, -1, re, im);
+                    }));
+            }
+        }
+
+        /**
+         * Returns the register qubits local to a single half,
+         * or null if crossing the cut.
+         *
+         * */
+        private int[] local(int[] qubits) {
+            boolean upper = isUpper(qubits[0]);
+            int[] out = new int[qubits.length];
+            for (int i = 0; i < qubits.length; i++) {
+                if (isUpper(qubits[i]) != upper)
+                    return null;
+                out[i] = upper ? qubits[i] : qubits[i] - cut;
+            }
+            return out;
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            double h = Math.sqrt(0.5);
+            gate(qubit, -1, new double[] {h, h, h, -h}, new double[4]);
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            measured = true;
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            gate(target, control, new double[] {0, 1, 1, 0}, new double[4]);
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            gate(qubit, -1, new double[] {0, 1, 1, 0}, new double[4]);
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            /* R_X(theta) = e^{-i theta X / 2} */
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            gate(qubit, -1, new double[] {c, 0, 0, c}, new double[] {0, -s, -s, 0});
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            gate(qubit, -1, new double[] {1, 0, 0, Math.cos(angle)},
+                            new double[] {0, 0, 0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            gate(qubit, -1, new double[] {c, 0, 0, c}, new double[] {-s, 0, 0, s});
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            gate(target, control, new double[] {1, 0, 0, Math.cos(angle)},
+                                  new double[] {0, 0, 0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            boolean upper = isUpper(qubits[0]);
+            int[] register = local(qubits);
+            if (register == null)
+                super.oracle(qubits, permutation);
+            else
+                add((a, b) -> (upper ? a : b).oracle(register, permutation));
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            boolean upper = isUpper(qubits[0]);
+            int[] register = local(qubits);
+            if (register == null)
+                super.phaseOracle(qubits, predicate);
+            else
+                add((a, b) -> (upper ? a : b).phaseOracle(register, predicate));
+        }
+    }
+}
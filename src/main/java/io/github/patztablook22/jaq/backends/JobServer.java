@@ -0,0 +1,614 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qvm;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Shots;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * Server running circuits submitted over a local socket on a shared {@link Qvm}.
+ *
+ * <p>
+ *   The circuits are submitted by {@link RemoteQvm} clients, bound and
+ *   encoded so that equal circuits have equal encodings. The server queues
+ *   them and batches the compatible ones, i.e. those of equal encodings,
+ *   which are executed by a single {@link Qvm#sample(Qcircuit, int)} call
+ *   for the total number of shots, and split afterwards. A batch is closed
+ *   once its shots would exceed {@link Integer#MAX_VALUE}, the further jobs
+ *   then start a new one. The decoded circuits
+ *   are kept in a bounded cache, so that the backend's compiled plans are
+ *   reused across the clients as well.
+ * </p>
+ *
+ * <p>
+ *   The batches are admitted in the order of their arrival as long as the
+ *   estimated memory of their workers, see {@link SimpleSimulator#footprint(int)},
+ *   fits within the memory budget together with the running ones. A batch is
+ *   estimated for as many workers as the budget fits, at most {@code threads},
+ *   and a {@link SimpleSimulator} backend runs it by at most that many. A batch
+ *   exceeding the budget on its own runs by a single worker once nothing else
+ *   does. The admitted batches run on a {@link ForkJoinPool} of {@code threads}
+ *   workers, within which the backends parallelizing the shots by parallel
+ *   streams or fork/join tasks, such as {@link SimpleSimulator}, run them
+ *   as well. A lone batch thus uses all the threads, while the concurrent
+ *   ones share them instead of oversubscribing the machine.
+ * </p>
+ *
+ * <p>
+ *   The protocol consists of requests and responses, the latter possibly
+ *   out of order, in big-endian:
+ * </p>
+ *
+ * <pre><code class="plaintext">
+ *    request:  long id, byte RUN, int shots, int length, encoded circuit
+ *              long id, byte STATISTICS
+ *    response: long id, byte OK, long queued ns, long latency ns,
+ *                       int cbits, int shots, int words, packed shots
+ *              long id, byte OK, statistics
+ *              long id, byte ERROR, UTF exception class, UTF message
+ * </code></pre>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     try (var server = new JobServer(new SimpleSimulator(), 7000)) {
+ *         /* the server runs until closed &#42;/
+ *     }
+ *
+ *     /* in a client process &#42;/
+ *     try (var qvm = new RemoteQvm(7000)) {
+ *         var shots = qvm.sample(circuit, 1000);
+ *     }
+ *  </code></pre>
+ *
+ * */
+public class JobServer implements Closeable {
+
+    static final byte RUN = 1;
+    static final byte STATISTICS = 2;
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    /**
+     * The default memory budget, half of the maximum heap size.
+     *
+     * */
+    public static final long DEFAULT_MEMORY_BUDGET = MemoryBudget.DEFAULT_CAPACITY;
+
+    /**
+     * The number of the decoded circuits kept.
+     *
+     * */
+    private static final int CACHE_SIZE = 256;
+
+    private final Qvm backend;
+    private final ServerSocket server;
+    private final ForkJoinPool executor;
+
+    /**
+     * The admission of the batches by their estimated memory.
+     *
+     * */
+    private final MemoryBudget admission;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The decoded circuits, by their encodings, in the access order.
+     *
+     * */
+    private final Map<ByteBuffer, Qcircuit> circuits = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Qcircuit> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The batches not yet started, in the order of their arrival.
+     *
+     * */
+    private final LinkedHashMap<ByteBuffer, Batch> pending = new LinkedHashMap<>();
+
+    private int queued;
+    private int running;
+
+    private long completed;
+    private long batches;
+    private long failed;
+    private long totalLatency;
+    private long totalQueueTime;
+    private long maxLatency;
+
+    /**
+     * Constructs a {@code JobServer} listening on the given local port,
+     * with the default memory budget and one thread per processor.
+     *
+     * @param backend the backend running the circuits
+     * @param port the port, zero for any free one
+     * @throws IOException if the port cannot be bound
+     *
+     * */
+    public JobServer(Qvm backend, int port) throws IOException {
+        this(backend, port, DEFAULT_MEMORY_BUDGET, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a {@code JobServer} listening on the given local port.
+     *
+     * @param backend the backend running the circuits
+     * @param port the port, zero for any free one
+     * @param memoryBudget the total estimated memory of the running batches in bytes
+     * @param threads the number of the threads running the batches
+     * @throws IOException if the port cannot be bound
+     *
+     * */
+    public JobServer(Qvm backend, int port, long memoryBudget, int threads) throws IOException {
+        if (memoryBudget < 0)
+            throw new IllegalArgumentException("invalid memory budget: " + memoryBudget);
+        if (threads < 1)
+            throw new IllegalArgumentException("invalid number of threads: " + threads);
+
+        this.backend = backend;
+        this.admission = new MemoryBudget(memoryBudget);
+
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        executor = new ForkJoinPool(threads, pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("jaq-job-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+
+        var acceptor = daemon("jaq-job-server").newThread(this::accept);
+        acceptor.start();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            var thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     *
+     * */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the current statistics of the server.
+     *
+     * @return the statistics
+     *
+     * */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(queued, running, completed, failed, batches,
+                              completed == 0 ? 0 : totalLatency / completed,
+                              completed == 0 ? 0 : totalQueueTime / completed,
+                              maxLatency);
+    }
+
+    /**
+     * Stops accepting the circuits and closes all the connections.
+     * The running batches are abandoned.
+     *
+     * @throws IOException if the server socket cannot be closed
+     *
+     * */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        executor.shutdownNow();
+        for (var connection: connections)
+            connection.close();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                var socket = server.accept();
+                var connection = new Connection(socket);
+                connections.add(connection);
+                daemon("jaq-job-connection").newThread(connection::serve).start();
+            } catch (IOException e) {
+                /* closed */
+            }
+        }
+    }
+
+    /**
+     * Queues the job, joining the pending batch of the same circuit if any,
+     * otherwise queueing a new batch for admission.
+     *
+     * */
+    private synchronized void submit(byte[] encoding, Job job) {
+        var key = ByteBuffer.wrap(encoding);
+        var batch = pending.get(key);
+        if (batch != null && batch.shots + job.shots <= Integer.MAX_VALUE) {
+            batch.jobs.add(job);
+            batch.shots += job.shots;
+            queued++;
+            return;
+        }
+
+        var circuit = circuits.get(key);
+        if (circuit == null) {
+            circuit = CircuitCodec.decode(encoding);
+            circuits.put(key, circuit);
+        }
+        var created = new Batch(circuit, key);
+        created.jobs.add(job);
+        created.shots += job.shots;
+        queued++;
+        pending.put(key, created);
+
+        long footprint = SimpleSimulator.footprint(circuit.qubits());
+        int workers = (int) Math.max(1, Math.min(admission.capacity() / footprint,
+                                                 executor.getParallelism()));
+        long memory = workers * footprint;
+        admission.acquire(memory, null, () -> start(created, workers, memory));
+    }
+
+    /**
+     * Starts the admitted batch, closing it for the further jobs.
+     *
+     * */
+    private void start(Batch batch, int workers, long memory) {
+        synchronized (this) {
+            pending.remove(batch.key, batch);
+            queued -= batch.jobs.size();
+            running++;
+        }
+
+        try {
+            executor.execute(() -> run(batch, workers, memory));
+        } catch (RejectedExecutionException e) {
+            /* closed */
+            synchronized (this) {
+                running--;
+            }
+            admission.release(memory);
+        }
+    }
+
+    private void run(Batch batch, int workers, long memory) {
+        long start = System.nanoTime();
+        Shots shots = null;
+        RuntimeException error = null;
+        try {
+            if (backend instanceof SimpleSimulator)
+                shots = ((SimpleSimulator) backend).sample(batch.circuit, (int) batch.shots, workers);
+            else
+                shots = backend.sample(batch.circuit, (int) batch.shots);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        long end = System.nanoTime();
+
+        synchronized (this) {
+            running--;
+            batches++;
+            for (var job: batch.jobs) {
+                if (error != null) {
+                    failed++;
+                    continue;
+                }
+                completed++;
+                totalLatency += end - job.submitted;
+                totalQueueTime += start - job.submitted;
+                maxLatency = Math.max(maxLatency, end - job.submitted);
+            }
+        }
+        admission.release(memory);
+
+        int next = 0;
+        for (var job: batch.jobs) {
+            if (error != null) {
+                job.connection.error(job.id, error);
+                continue;
+            }
+
+            var part = new Shots(shots.cbits(), job.shots);
+            for (int i = 0; i < job.shots; i++)
+                part.add(shots.getWords(next++));
+            job.connection.result(job.id, start - job.submitted, end - job.submitted, part);
+        }
+    }
+
+    /**
+     * A submitted circuit awaiting its shots.
+     *
+     * */
+    private static final class Job {
+
+        private final Connection connection;
+        private final long id;
+        private final int shots;
+        private final long submitted = System.nanoTime();
+
+        Job(Connection connection, long id, int shots) {
+            this.connection = connection;
+            this.id = id;
+            this.shots = shots;
+        }
+    }
+
+    /**
+     * The jobs of equal circuits executed together.
+     *
+     * */
+    private static final class Batch {
+
+        private final Qcircuit circuit;
+        private final ByteBuffer key;
+        private final List<Job> jobs = new ArrayList<>();
+        private long shots;
+
+        Batch(Qcircuit circuit, ByteBuffer key) {
+            this.circuit = circuit;
+            this.key = key;
+        }
+    }
+
+    /**
+     * A client connection, reading the requests on its own thread.
+     * The responses are written by the threads completing the jobs.
+     *
+     * */
+    private final class Connection {
+
+        private final Socket socket;
+        private final DataOutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        void serve() {
+            try (socket) {
+                var in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                while (true) {
+                    long id = in.readLong();
+                    byte type = in.readByte();
+                    if (type == STATISTICS) {
+                        statistics(id, getStatistics());
+                        continue;
+                    }
+                    if (type != RUN)
+                        throw new IOException("unknown request: " + type);
+
+                    int shots = in.readInt();
+                    byte[] encoding = new byte[in.readInt()];
+                    in.readFully(encoding);
+                    try {
+                        if (shots < 0)
+                            throw new IllegalArgumentException("invalid number of shots: " + shots);
+                        submit(encoding, new Job(this, id, shots));
+                    } catch (RuntimeException e) {
+                        error(id, e);
+                    }
+                }
+            } catch (IOException e) {
+                /* the client is gone */
+            } finally {
+                connections.remove(this);
+            }
+        }
+
+        synchronized void result(long id, long queueTime, long latency, Shots shots) {
+            try {
+                out.writeLong(id);
+                out.writeByte(OK);
+                out.writeLong(queueTime);
+                out.writeLong(latency);
+                out.writeInt(shots.cbits());
+                out.writeInt(shots.size());
+                out.writeInt(shots.words());
+                for (int i = 0; i < shots.size(); i++)
+                    for (long word: shots.getWords(i))
+                        out.writeLong(word);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        synchronized void statistics(long id, Statistics statistics) {
+            try {
+                out.writeLong(id);
+                out.writeByte(OK);
+                statistics.write(out);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        synchronized void error(long id, RuntimeException error) {
+            try {
+                out.writeLong(id);
+                out.writeByte(ERROR);
+                out.writeUTF(error.getClass().getName());
+                out.writeUTF(String.valueOf(error.getMessage()));
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                /* already closed */
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the {@link JobServer} statistics.
+     * The times are in nanoseconds.
+     *
+     * */
+    public static final class Statistics {
+
+        private final int queueDepth;
+        private final int running;
+        private final long completed;
+        private final long failed;
+        private final long batches;
+        private final long meanLatency;
+        private final long meanQueueTime;
+        private final long maxLatency;
+
+        Statistics(int queueDepth, int running, long completed, long failed, long batches,
+                   long meanLatency, long meanQueueTime, long maxLatency) {
+            this.queueDepth = queueDepth;
+            this.running = running;
+            this.completed = completed;
+            this.failed = failed;
+            this.batches = batches;
+            this.meanLatency = meanLatency;
+            this.meanQueueTime = meanQueueTime;
+            this.maxLatency = maxLatency;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(queueDepth);
+            out.writeInt(running);
+            out.writeLong(completed);
+            out.writeLong(failed);
+            out.writeLong(batches);
+            out.writeLong(meanLatency);
+            out.writeLong(meanQueueTime);
+            out.writeLong(maxLatency);
+        }
+
+        static Statistics read(DataInputStream in) throws IOException {
+            return new Statistics(in.readInt(), in.readInt(), in.readLong(), in.readLong(),
+                                  in.readLong(), in.readLong(), in.readLong(), in.readLong());
+        }
+
+        /**
+         * Returns the number of the queued jobs not yet started.
+         *
+         * @return the queue depth
+         *
+         * */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * Returns the number of the running batches.
+         *
+         * @return the number of the running batches
+         *
+         * */
+        public int getRunning() {
+            return running;
+        }
+
+        /**
+         * Returns the number of the successfully completed jobs.
+         *
+         * @return the number of the completed jobs
+         *
+         * */
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * Returns the number of the jobs failed by the backend.
+         *
+         * @return the number of the failed jobs
+         *
+         * */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * Returns the number of the executed batches.
+         *
+         * @return the number of the batches
+         *
+         * */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * Returns the mean time from the submission to the completion of a job.
+         *
+         * @return the mean latency
+         *
+         * */
+        public long getMeanLatency() {
+            return meanLatency;
+        }
+
+        /**
+         * Returns the mean time a job spent queued.
+         *
+         * @return the mean queue time
+         *
+         * */
+        public long getMeanQueueTime() {
+            return meanQueueTime;
+        }
+
+        /**
+         * Returns the longest time from the submission to the completion of a job.
+         *
+         * @return the maximum latency
+         *
+         * */
+        public long getMaxLatency() {
+            return maxLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "queue depth " + queueDepth + ", running " + running
+                + ", completed " + completed + ", failed " + failed
+                + ", batches " + batches
+                + ", mean latency " + meanLatency / 1e6 + " ms"
+                + ", mean queue time " + meanQueueTime / 1e6 + " ms"
+                + ", max latency " + maxLatency / 1e6 + " ms";
+        }
+    }
+}
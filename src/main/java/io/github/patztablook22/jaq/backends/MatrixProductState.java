@@ -0,0 +1,785 @@
+package io.github.patztablook22.jaq.backends;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+
+/**
+ * Matrix product state of a register of qubits.
+ *
+ * <p>
+ *   The global state is represented as a chain of site tensors
+ *   \( A^{[k]}_{a s b} \), one per qubit, where {@code s} is the qubit's
+ *   value and {@code a}, {@code b} are the bond indices connecting
+ *   the neighbouring sites:
+ *   \[
+ *      \ket{\psi} = \sum_{s_0 \dots s_{N-1}}
+ *          A^{[0]}_{s_0} A^{[1]}_{s_1} \dots A^{[N-1]}_{s_{N-1}}
+ *          \ket{s_0 s_1 \dots s_{N-1}}
+ *   \]
+ *
+ *   The state is kept in the mixed canonical form: all the sites left of the
+ *   orthogonality {@link #center} are left-orthonormal, all the sites right of
+ *   it are right-orthonormal. Two-qubit gates are applied to neighbouring sites
+ *   by contracting them, applying the gate and splitting them back by a singular
+ *   value decomposition, truncated to at most {@link #maxBond} singular values.
+ *   Gates on distant qubits are applied by swapping the sites next to each
+ *   other first. Memory and time thus grow with the entanglement of the state
+ *   rather than exponentially with the number of qubits.
+ * </p>
+ *
+ * <p>
+ *   Each site tensor is stored as a pair of dense arrays of the real and
+ *   imaginary components, the element \( A_{a s b} \) at the index
+ *   {@code (2 a + s) r + b}, where {@code r} is the right bond dimension.
+ * </p>
+ *
+ * */
+class MatrixProductState {
+
+    /**
+     * The number of sites.
+     *
+     * */
+    private final int n;
+
+    /**
+     * The maximum bond dimension.
+     *
+     * */
+    private final int maxBond;
+
+    /**
+     * The maximum discarded weight per truncation, relative to the norm.
+     *
+     * */
+    private final double threshold;
+
+    /**
+     * The real components of the site tensors.
+     *
+     * */
+    private double[][] re;
+
+    /**
+     * The imaginary components of the site tensors.
+     *
+     * */
+    private double[][] im;
+
+    /**
+     * The bond dimensions, {@code bonds[k]} being the left
+     * bond dimension of the {@code k}-th site.
+     *
+     * */
+    private int[] bonds;
+
+    /**
+     * The orthogonality center.
+     *
+     * */
+    private int center;
+
+    /**
+     * The estimated fidelity of the state, the product
+     * of the weights kept by the truncations.
+     *
+     * */
+    private double fidelity = 1;
+
+    /**
+     * Constructs the state \( \ket{0 \dots 0} \).
+     *
+     * @param n the number of qubits
+     * @param maxBond the maximum bond dimension
+     * @param threshold the maximum discarded weight per truncation
+     *
+     * */
+    MatrixProductState(int n, int maxBond, double threshold) {
+        this.n = n;
+        this.maxBond = maxBond;
+        this.threshold = threshold;
+
+        re = new double[n][];
+        im = new double[n][];
+        bonds = new int[n + 1];
+        Arrays.fill(bonds, 1);
+
+        for (int k = 0; k < n; k++) {
+            re[k] = new double[] {1, 0};
+            im[k] = new double[2];
+        }
+    }
+
+    /**
+     * Returns a deep copy of the state.
+     *
+     * @return the copy
+     *
+     * */
+    MatrixProductState copy() {
+        var out = new MatrixProductState(n, maxBond, threshold);
+        for (int k = 0; k < n; k++) {
+            out.re[k] = re[k].clone();
+            out.im[k] = im[k].clone();
+        }
+        out.bonds = bonds.clone();
+        out.center = center;
+        out.fidelity = fidelity;
+        return out;
+    }
+
+    /**
+     * Returns the estimated infidelity caused by the truncations so far,
+     * \( 1 - \prod_i (1 - \epsilon_i) \), where \( \epsilon_i \) is
+     * the relative weight discarded by the {@code i}-th truncation.
+     *
+     * @return the truncation error
+     *
+     * */
+    double truncationError() {
+        return 1 - fidelity;
+    }
+
+    /**
+     * Returns the largest bond dimension of the state.
+     *
+     * @return the largest bond dimension
+     *
+     * */
+    int maxBondReached() {
+        return Arrays.stream(bonds).max().orElse(1);
+    }
+
+    /**
+     * Applies a single-qubit gate.
+     *
+     * @param site the qubit
+     * @param gRe the real components of the 2x2 gate matrix, row-major
+     * @param gIm the imaginary components of the 2x2 gate matrix, row-major
+     *
+     * */
+    void gate(int site, double[] gRe, double[] gIm) {
+        double[] aRe = re[site], aIm = im[site];
+        int l = bonds[site], r = bonds[site + 1];
+
+        for (int a = 0; a < l; a++) {
+            for (int b = 0; b < r; b++) {
+                int i0 = (2 * a) * r + b;
+                int i1 = (2 * a + 1) * r + b;
+                double x0Re = aRe[i0], x0Im = aIm[i0];
+                double x1Re = aRe[i1], x1Im = aIm[i1];
+
+                aRe[i0] = gRe[0] * x0Re - gIm[0] * x0Im + gRe[1] * x1Re - gIm[1] * x1Im;
+                aIm[i0] = gRe[0] * x0Im + gIm[0] * x0Re + gRe[1] * x1Im + gIm[1] * x1Re;
+                aRe[i1] = gRe[2] * x0Re - gIm[2] * x0Im + gRe[3] * x1Re - gIm[3] * x1Im;
+                aIm[i1] = gRe[2] * x0Im + gIm[2] * x0Re + gRe[3] * x1Im + gIm[3] * x1Re;
+            }
+        }
+    }
+
+    /**
+     * Applies a two-qubit gate on any two distinct qubits.
+     * The gate matrix is indexed by {@code 2 s + t}, where {@code s}
+     * is the value of {@code first} and {@code t} of {@code second}.
+     *
+     * @param first the first qubit
+     * @param second the second qubit
+     * @param gRe the real components of the 4x4 gate matrix, row-major
+     * @param gIm the imaginary components of the 4x4 gate matrix, row-major
+     *
+     * */
+    void gate(int first, int second, double[] gRe, double[] gIm) {
+        if (first > second) {
+            gRe = swapped(gRe);
+            gIm = swapped(gIm);
+            int t = first;
+            first = second;
+            second = t;
+        }
+
+        for (int k = second - 1; k > first; k--)
+            adjacent(k, SWAP, ZERO);
+
+        adjacent(first, gRe, gIm);
+
+        for (int k = first + 1; k < second; k++)
+            adjacent(k, SWAP, ZERO);
+    }
+
+    /**
+     * Measures the qubit, collapsing the state.
+     *
+     * @param site the qubit
+     * @param random uniformly distributed value in the range [0, 1)
+     * @return the measured value
+     *
+     * */
+    int measure(int site, double random) {
+        moveCenter(site);
+
+        double[] aRe = re[site], aIm = im[site];
+        int l = bonds[site], r = bonds[site + 1];
+
+        double[] p = new double[2];
+        for (int a = 0; a < l; a++)
+            for (int s = 0; s < 2; s++)
+                for (int b = 0; b < r; b++) {
+                    int i = (2 * a + s) * r + b;
+                    p[s] += aRe[i] * aRe[i] + aIm[i] * aIm[i];
+                }
+
+        int result = random * (p[0] + p[1]) < p[1] ? 1 : 0;
+        double scale = 1 / Math.sqrt(p[result]);
+
+        for (int a = 0; a < l; a++)
+            for (int s = 0; s < 2; s++)
+                for (int b = 0; b < r; b++) {
+                    int i = (2 * a + s) * r + b;
+                    aRe[i] = s == result ? aRe[i] * scale : 0;
+                    aIm[i] = s == result ? aIm[i] * scale : 0;
+                }
+
+        return result;
+    }
+
+    /**
+     * Samples the values of the given qubits without collapsing the state.
+     * The qubits are sampled sequentially site by site, each conditioned
+     * on the values of the previous ones, the unsampled ones are traced out.
+     * Moves the orthogonality center to the first site.
+     *
+     * @param sampled whether each qubit is to be sampled
+     * @param random the randomness source
+     * @param out the sampled values, left unchanged for the unsampled qubits
+     *
+     * */
+    void sample(boolean[] sampled, SplittableRandom random, byte[] out) {
+        int last = -1;
+        for (int k = 0; k < n; k++)
+            if (sampled[k])
+                last = k;
+        if (last < 0)
+            return;
+
+        moveCenter(0);
+
+        /* the left environment, either the pure row vector v,
+         * or the density matrix rho[a, a'] = conj(v[a]) v[a'] */
+        double[] vRe = {1}, vIm = {0};
+        double[] rhoRe = null, rhoIm = null;
+
+        for (int k = 0; k <= last; k++) {
+            double[] aRe = re[k], aIm = im[k];
+            int l = bonds[k], r = bonds[k + 1];
+
+            if (rhoRe == null && sampled[k]) {
+                double[][] wRe = new double[2][r], wIm = new double[2][r];
+                double[] p = new double[2];
+
+                for (int s = 0; s < 2; s++) {
+                    for (int a = 0; a < l; a++)
+                        for (int b = 0; b < r; b++) {
+                            int i = (2 * a + s) * r + b;
+                            wRe[s][b] += vRe[a] * aRe[i] - vIm[a] * aIm[i];
+                            wIm[s][b] += vRe[a] * aIm[i] + vIm[a] * aRe[i];
+                        }
+                    for (int b = 0; b < r; b++)
+                        p[s] += wRe[s][b] * wRe[s][b] + wIm[s][b] * wIm[s][b];
+                }
+
+                int s = random.nextDouble() * (p[0] + p[1]) < p[1] ? 1 : 0;
+                double scale = 1 / Math.sqrt(p[s]);
+                vRe = wRe[s];
+                vIm = wIm[s];
+                for (int b = 0; b < r; b++) {
+                    vRe[b] *= scale;
+                    vIm[b] *= scale;
+                }
+                out[k] = (byte) s;
+                continue;
+            }
+
+            if (rhoRe == null) {
+                rhoRe = new double[l * l];
+                rhoIm = new double[l * l];
+                for (int a = 0; a < l; a++)
+                    for (int c = 0; c < l; c++) {
+                        rhoRe[a * l + c] = vRe[a] * vRe[c] + vIm[a] * vIm[c];
+                        rhoIm[a * l + c] = vRe[a] * vIm[c] - vIm[a] * vRe[c];
+                    }
+            }
+
+            double[][] sRe = new double[2][], sIm = new double[2][];
+            double[] p = new double[2];
+            for (int s = 0; s < 2; s++) {
+                transfer(rhoRe, rhoIm, aRe, aIm, l, r, s);
+                sRe[s] = transferRe;
+                sIm[s] = transferIm;
+                for (int b = 0; b < r; b++)
+                    p[s] += sRe[s][b * r + b];
+            }
+
+            if (sampled[k]) {
+                int s = random.nextDouble() * (p[0] + p[1]) < p[1] ? 1 : 0;
+                rhoRe = sRe[s];
+                rhoIm = sIm[s];
+                for (int i = 0; i < r * r; i++) {
+                    rhoRe[i] /= p[s];
+                    rhoIm[i] /= p[s];
+                }
+                out[k] = (byte) s;
+            } else {
+                rhoRe = sRe[0];
+                rhoIm = sIm[0];
+                for (int i = 0; i < r * r; i++) {
+                    rhoRe[i] += sRe[1][i];
+                    rhoIm[i] += sIm[1][i];
+                }
+            }
+        }
+    }
+
+    private double[] transferRe, transferIm;
+
+    /**
+     * Computes the transfer of the left environment through a single
+     * value of a site, \( A_s^\dagger \rho A_s \), into
+     * {@link #transferRe} and {@link #transferIm}.
+     *
+     * */
+    private void transfer(double[] rhoRe, double[] rhoIm, double[] aRe, double[] aIm,
+                          int l, int r, int s) {
+        /* t = rho A_s, (l x r) */
+        double[] tRe = new double[l * r], tIm = new double[l * r];
+        for (int a = 0; a < l; a++)
+            for (int c = 0; c < l; c++) {
+                double xRe = rhoRe[a * l + c], xIm = rhoIm[a * l + c];
+                if (xRe == 0 && xIm == 0)
+                    continue;
+                for (int b = 0; b < r; b++) {
+                    int i = (2 * c + s) * r + b;
+                    tRe[a * r + b] += xRe * aRe[i] - xIm * aIm[i];
+                    tIm[a * r + b] += xRe * aIm[i] + xIm * aRe[i];
+                }
+            }
+
+        /* out = A_s^dagger t, (r x r) */
+        transferRe = new double[r * r];
+        transferIm = new double[r * r];
+        for (int a = 0; a < l; a++)
+            for (int b = 0; b < r; b++) {
+                int i = (2 * a + s) * r + b;
+                double xRe = aRe[i], xIm = -aIm[i];
+                for (int c = 0; c < r; c++) {
+                    transferRe[b * r + c] += xRe * tRe[a * r + c] - xIm * tIm[a * r + c];
+                    transferIm[b * r + c] += xRe * tIm[a * r + c] + xIm * tRe[a * r + c];
+                }
+            }
+    }
+
+    /**
+     * Applies a two-qubit gate on the neighbouring sites {@code k}
+     * and {@code k + 1}, truncating the bond between them.
+     *
+     * @param k the first site
+     * @param gRe the real components of the 4x4 gate matrix, row-major
+     * @param gIm the imaginary components of the 4x4 gate matrix, row-major
+     *
+     * */
+    private void adjacent(int k, double[] gRe, double[] gIm) {
+        moveCenter(k);
+
+        int l = bonds[k], m = bonds[k + 1], r = bonds[k + 2];
+        double[] aRe = re[k], aIm = im[k];
+        double[] bRe = re[k + 1], bIm = im[k + 1];
+
+        /* theta[a, s, t, c] = sum_x A[a, s, x] B[x, t, c] */
+        double[] thRe = new double[4 * l * r], thIm = new double[4 * l * r];
+        for (int a = 0; a < l; a++)
+            for (int s = 0; s < 2; s++)
+                for (int x = 0; x < m; x++) {
+                    int i = (2 * a + s) * m + x;
+                    double xRe = aRe[i], xIm = aIm[i];
+                    if (xRe == 0 && xIm == 0)
+                        continue;
+                    for (int t = 0; t < 2; t++)
+                        for (int c = 0; c < r; c++) {
+                            int j = (2 * x + t) * r + c;
+                            int o = ((2 * a + s) * 2 + t) * r + c;
+                            thRe[o] += xRe * bRe[j] - xIm * bIm[j];
+                            thIm[o] += xRe * bIm[j] + xIm * bRe[j];
+                        }
+                }
+
+        /* apply the gate on (s, t), giving the (2l x 2r) matrix
+         * with rows (a, s) and columns (t, c) */
+        double[] mRe = new double[4 * l * r], mIm = new double[4 * l * r];
+        for (int a = 0; a < l; a++)
+            for (int c = 0; c < r; c++)
+                for (int out = 0; out < 4; out++)
+                    for (int in = 0; in < 4; in++) {
+                        double g0 = gRe[out * 4 + in], g1 = gIm[out * 4 + in];
+                        if (g0 == 0 && g1 == 0)
+                            continue;
+                        int i = ((2 * a + (in >> 1)) * 2 + (in & 1)) * r + c;
+                        int o = ((2 * a + (out >> 1)) * 2 + (out & 1)) * r + c;
+                        mRe[o] += g0 * thRe[i] - g1 * thIm[i];
+                        mIm[o] += g0 * thIm[i] + g1 * thRe[i];
+                    }
+
+        var svd = Svd.decompose(mRe, mIm, 2 * l, 2 * r);
+        int chi = truncate(svd, maxBond, threshold);
+
+        re[k] = new double[2 * l * chi];
+        im[k] = new double[2 * l * chi];
+        for (int row = 0; row < 2 * l; row++)
+            for (int x = 0; x < chi; x++) {
+                re[k][row * chi + x] = svd.uRe[row * svd.k + x];
+                im[k][row * chi + x] = svd.uIm[row * svd.k + x];
+            }
+
+        re[k + 1] = new double[chi * 2 * r];
+        im[k + 1] = new double[chi * 2 * r];
+        for (int x = 0; x < chi; x++)
+            for (int col = 0; col < 2 * r; col++) {
+                re[k + 1][x * 2 * r + col] = svd.s[x] * svd.vhRe[x * 2 * r + col];
+                im[k + 1][x * 2 * r + col] = svd.s[x] * svd.vhIm[x * 2 * r + col];
+            }
+
+        bonds[k + 1] = chi;
+        center = k + 1;
+    }
+
+    /**
+     * Moves the orthogonality center to the given site
+     * by exact singular value decompositions.
+     *
+     * @param target the new orthogonality center
+     *
+     * */
+    private void moveCenter(int target) {
+        while (center < target) {
+            int k = center;
+            int l = bonds[k], m = bonds[k + 1], r = bonds[k + 2];
+
+            var svd = Svd.decompose(re[k], im[k], 2 * l, m);
+            int chi = truncate(svd, Integer.MAX_VALUE, 0);
+
+            re[k] = new double[2 * l * chi];
+            im[k] = new double[2 * l * chi];
+            for (int row = 0; row < 2 * l; row++)
+                for (int x = 0; x < chi; x++) {
+                    re[k][row * chi + x] = svd.uRe[row * svd.k + x];
+                    im[k][row * chi + x] = svd.uIm[row * svd.k + x];
+                }
+
+            /* B'[x, t, c] = sum_y s[x] Vh[x, y] B[y, t, c] */
+            double[] bRe = re[k + 1], bIm = im[k + 1];
+            double[] outRe = new double[chi * 2 * r], outIm = new double[chi * 2 * r];
+            for (int x = 0; x < chi; x++)
+                for (int y = 0; y < m; y++) {
+                    double vRe = svd.s[x] * svd.vhRe[x * m + y];
+                    double vIm = svd.s[x] * svd.vhIm[x * m + y];
+                    for (int j = 0; j < 2 * r; j++) {
+                        outRe[x * 2 * r + j] += vRe * bRe[y * 2 * r + j] - vIm * bIm[y * 2 * r + j];
+                        outIm[x * 2 * r + j] += vRe * bIm[y * 2 * r + j] + vIm * bRe[y * 2 * r + j];
+                    }
+                }
+            re[k + 1] = outRe;
+            im[k + 1] = outIm;
+            bonds[k + 1] = chi;
+            center++;
+        }
+
+        while (center > target) {
+            int k = center;
+            int l = bonds[k - 1], m = bonds[k], r = bonds[k + 1];
+
+            var svd = Svd.decompose(re[k], im[k], m, 2 * r);
+            int chi = truncate(svd, Integer.MAX_VALUE, 0);
+
+            re[k] = new double[chi * 2 * r];
+            im[k] = new double[chi * 2 * r];
+            for (int x = 0; x < chi; x++)
+                for (int col = 0; col < 2 * r; col++) {
+                    re[k][x * 2 * r + col] = svd.vhRe[x * 2 * r + col];
+                    im[k][x * 2 * r + col] = svd.vhIm[x * 2 * r + col];
+                }
+
+            /* A'[a, s, x] = sum_y A[a, s, y] U[y, x] s[x] */
+            double[] aRe = re[k - 1], aIm = im[k - 1];
+            double[] outRe = new double[2 * l * chi], outIm = new double[2 * l * chi];
+            for (int row = 0; row < 2 * l; row++)
+                for (int y = 0; y < m; y++) {
+                    double xRe = aRe[row * m + y], xIm = aIm[row * m + y];
+                    for (int x = 0; x < chi; x++) {
+                        double uRe = svd.uRe[y * svd.k + x] * svd.s[x];
+                        double uIm = svd.uIm[y * svd.k + x] * svd.s[x];
+                        outRe[row * chi + x] += xRe * uRe - xIm * uIm;
+                        outIm[row * chi + x] += xRe * uIm + xIm * uRe;
+                    }
+                }
+            re[k - 1] = outRe;
+            im[k - 1] = outIm;
+            bonds[k] = chi;
+            center--;
+        }
+    }
+
+    /**
+     * Chooses the number of the kept singular values, renormalizes them
+     * and accounts the discarded weight into the {@link #fidelity}.
+     * Numerically zero singular values are always discarded.
+     *
+     * @param svd the decomposition
+     * @param maxBond the maximum number of kept values
+     * @param threshold the maximum discarded weight relative to the norm
+     * @return the number of kept values
+     *
+     * */
+    private int truncate(Svd svd, int maxBond, double threshold) {
+        double total = 0;
+        for (double s: svd.s)
+            total += s * s;
+        if (total == 0)
+            return 1;
+
+        int chi = Math.min(svd.k, maxBond);
+        double discarded = 0;
+        for (int x = chi; x < svd.k; x++)
+            discarded += svd.s[x] * svd.s[x];
+
+        while (chi > 1) {
+            double s2 = svd.s[chi - 1] * svd.s[chi - 1];
+            if (s2 > EPSILON * total && discarded + s2 > threshold * total)
+                break;
+            discarded += s2;
+            chi--;
+        }
+
+        fidelity *= 1 - discarded / total;
+
+        double scale = Math.sqrt(total / (total - discarded));
+        for (int x = 0; x < chi; x++)
+            svd.s[x] *= scale;
+        return chi;
+    }
+
+    /**
+     * Returns the gate acting on the swapped qubits.
+     *
+     * @param g the 4x4 gate matrix components
+     * @return the swapped 4x4 gate matrix components
+     *
+     * */
+    private static double[] swapped(double[] g) {
+        int[] p = {0, 2, 1, 3};
+        double[] out = new double[16];
+        for (int i = 0; i < 4; i++)
+            for (int j = 0; j < 4; j++)
+                out[p[i] * 4 + p[j]] = g[i * 4 + j];
+        return out;
+    }
+
+    /**
+     * The squared singular values below this fraction of the norm are discarded.
+     *
+     * */
+    private static final double EPSILON = 1e-24;
+
+    private static final double[] SWAP = {
+        1, 0, 0, 0,
+        0, 0, 1, 0,
+        0, 1, 0, 0,
+        0, 0, 0, 1,
+    };
+
+    private static final double[] ZERO = new double[16];
+
+    /**
+     * Thin singular value decomposition of a complex matrix
+     * \( M = U \Sigma V^\dagger \), computed by the one-sided Jacobi method.
+     *
+     * */
+    static final class Svd {
+
+        /**
+         * The number of the singular values.
+         *
+         * */
+        int k;
+
+        /**
+         * The singular values in descending order.
+         *
+         * */
+        double[] s;
+
+        /**
+         * The left singular vectors, an (m x k) row-major matrix.
+         *
+         * */
+        double[] uRe, uIm;
+
+        /**
+         * The conjugated right singular vectors, a (k x n) row-major matrix.
+         *
+         * */
+        double[] vhRe, vhIm;
+
+        /**
+         * Decomposes the (m x n) row-major matrix.
+         *
+         * @param re the real components
+         * @param im the imaginary components
+         * @param m the number of rows
+         * @param n the number of columns
+         * @return the decomposition
+         *
+         * */
+        static Svd decompose(double[] re, double[] im, int m, int n) {
+            if (m >= n)
+                return tall(re, im, m, n);
+
+            /* M^dagger = U Sigma V^dagger, thus M = V Sigma U^dagger */
+            double[] tRe = new double[n * m], tIm = new double[n * m];
+            for (int i = 0; i < m; i++)
+                for (int j = 0; j < n; j++) {
+                    tRe[j * m + i] = re[i * n + j];
+                    tIm[j * m + i] = -im[i * n + j];
+                }
+
+            var t = tall(tRe, tIm, n, m);
+            var out = new Svd();
+            out.k = t.k;
+            out.s = t.s;
+            out.uRe = new double[m * t.k];
+            out.uIm = new double[m * t.k];
+            out.vhRe = new double[t.k * n];
+            out.vhIm = new double[t.k * n];
+            for (int x = 0; x < t.k; x++) {
+                for (int i = 0; i < m; i++) {
+                    out.uRe[i * t.k + x] = t.vhRe[x * m + i];
+                    out.uIm[i * t.k + x] = -t.vhIm[x * m + i];
+                }
+                for (int j = 0; j < n; j++) {
+                    out.vhRe[x * n + j] = t.uRe[j * t.k + x];
+                    out.vhIm[x * n + j] = -t.uIm[j * t.k + x];
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Decomposes the (m x n) row-major matrix, {@code m >= n}.
+         *
+         * */
+        private static Svd tall(double[] re, double[] im, int m, int n) {
+            /* columns of a = M V, orthogonalized in place */
+            double[] aRe = re.clone(), aIm = im.clone();
+            double[] vRe = new double[n * n], vIm = new double[n * n];
+            for (int i = 0; i < n; i++)
+                vRe[i * n + i] = 1;
+
+            for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+                boolean rotated = false;
+
+                for (int i = 0; i < n - 1; i++)
+                    for (int j = i + 1; j < n; j++) {
+                        double alpha = 0, beta = 0, gRe = 0, gIm = 0;
+                        for (int r = 0; r < m; r++) {
+                            double xRe = aRe[r * n + i], xIm = aIm[r * n + i];
+                            double yRe = aRe[r * n + j], yIm = aIm[r * n + j];
+                            alpha += xRe * xRe + xIm * xIm;
+                            beta += yRe * yRe + yIm * yIm;
+                            /* conj(x) y */
+                            gRe += xRe * yRe + xIm * yIm;
+                            gIm += xRe * yIm - xIm * yRe;
+                        }
+
+                        double g = Math.hypot(gRe, gIm);
+                        if (g <= TOLERANCE * Math.sqrt(alpha * beta) || g == 0)
+                            continue;
+                        rotated = true;
+
+                        /* e^{-i phi} = conj(gamma) / |gamma| */
+                        double pRe = gRe / g, pIm = -gIm / g;
+
+                        double zeta = (beta - alpha) / (2 * g);
+                        double t = (zeta >= 0 ? 1 : -1) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+                        double c = 1 / Math.sqrt(1 + t * t);
+                        double s = c * t;
+
+                        rotate(aRe, aIm, m, n, i, j, c, s, pRe, pIm);
+                        rotate(vRe, vIm, n, n, i, j, c, s, pRe, pIm);
+                    }
+
+                if (!rotated)
+                    break;
+            }
+
+            /* singular values are the column norms, sorted descending */
+            double[] norms = new double[n];
+            Integer[] order = new Integer[n];
+            for (int j = 0; j < n; j++) {
+                double sum = 0;
+                for (int r = 0; r < m; r++)
+                    sum += aRe[r * n + j] * aRe[r * n + j] + aIm[r * n + j] * aIm[r * n + j];
+                norms[j] = Math.sqrt(sum);
+                order[j] = j;
+            }
+            Arrays.sort(order, (x, y) -> Double.compare(norms[y], norms[x]));
+
+            var out = new Svd();
+            out.k = n;
+            out.s = new double[n];
+            out.uRe = new double[m * n];
+            out.uIm = new double[m * n];
+            out.vhRe = new double[n * n];
+            out.vhIm = new double[n * n];
+
+            for (int x = 0; x < n; x++) {
+                int j = order[x];
+                double sigma = norms[j];
+                out.s[x] = sigma;
+
+                for (int r = 0; r < m; r++) {
+                    out.uRe[r * n + x] = sigma == 0 ? 0 : aRe[r * n + j] / sigma;
+                    out.uIm[r * n + x] = sigma == 0 ? 0 : aIm[r * n + j] / sigma;
+                }
+                for (int r = 0; r < n; r++) {
+                    out.vhRe[x * n + r] = vRe[r * n + j];
+                    out.vhIm[x * n + r] = -vIm[r * n + j];
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Rotates the columns {@code i} and {@code j}:
+         * \( x \leftarrow c x - s e^{-i \phi} y, \; y \leftarrow s x + c e^{-i \phi} y \)
+         *
+         * */
+        private static void rotate(double[] re, double[] im, int rows, int cols,
+                                   int i, int j, double c, double s, double pRe, double pIm) {
+            for (int r = 0; r < rows; r++) {
+                double xRe = re[r * cols + i], xIm = im[r * cols + i];
+                double yRe = re[r * cols + j], yIm = im[r * cols + j];
+
+                /* y <- e^{-i phi} y */
+                double zRe = pRe * yRe - pIm * yIm;
+                double zIm = pRe * yIm + pIm * yRe;
+
+                re[r * cols + i] = c * xRe - s * zRe;
+                im[r * cols + i] = c * xIm - s * zIm;
+                re[r * cols + j] = s * xRe + c * zRe;
+                im[r * cols + j] = s * xIm + c * zIm;
+            }
+        }
+
+        private static final int MAX_SWEEPS = 60;
+
+        private static final double TOLERANCE = 1e-15;
+    }
+}
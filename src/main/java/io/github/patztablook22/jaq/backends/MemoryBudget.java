@@ -0,0 +1,140 @@
+package io.github.patztablook22.jaq.backends;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+
+/**
+ * First-come first-served admission of jobs by their estimated memory.
+ *
+ * <p>
+ *   A job is started once the total estimate of the running jobs
+ *   together with its own fits into the budget. A job exceeding the budget
+ *   on its own is started once nothing else is running, so that every
+ *   job eventually runs. The waiting jobs whose futures were completed
+ *   in the meantime, e.g. cancelled, are dropped without being started.
+ * </p>
+ *
+ * */
+class MemoryBudget {
+
+    /**
+     * The default budget, half of the maximum heap size.
+     *
+     * */
+    static final long DEFAULT_CAPACITY = Runtime.getRuntime().maxMemory() / 2;
+
+    private final long capacity;
+
+    /**
+     * The total estimate of the running jobs in bytes.
+     *
+     * */
+    private long used;
+
+    private int running;
+
+    private final ArrayDeque<Waiting> waiting = new ArrayDeque<>();
+
+    private static final class Waiting {
+        final long bytes;
+        final Future<?> job;
+        final Runnable start;
+
+        Waiting(long bytes, Future<?> job, Runnable start) {
+            this.bytes = bytes;
+            this.job = job;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Constructs a {@code MemoryBudget} of the given capacity.
+     *
+     * @param capacity the maximum total estimate of the running jobs in bytes
+     *
+     * */
+    MemoryBudget(long capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("invalid memory budget: " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the maximum total estimate of the running jobs.
+     *
+     * @return the capacity in bytes
+     *
+     * */
+    long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Enqueues the job, starting it once admitted. The started job
+     * must eventually {@link #release(long) release} its estimate.
+     *
+     * @param bytes the estimated memory of the job
+     * @param job the future of the job, or {@code null} if it cannot be cancelled
+     * @param start starts the job, must not block
+     *
+     * */
+    void acquire(long bytes, Future<?> job, Runnable start) {
+        List<Runnable> admitted;
+        synchronized (this) {
+            waiting.add(new Waiting(bytes, job, start));
+            admitted = admit();
+        }
+        admitted.forEach(Runnable::run);
+    }
+
+    /**
+     * Adds to the estimate of a running job, e.g. once its own
+     * data structures are known. Never blocks, the waiting jobs
+     * are admitted against the increased total.
+     *
+     * @param bytes the additional memory of the job
+     *
+     * */
+    synchronized void grow(long bytes) {
+        used += bytes;
+    }
+
+    /**
+     * Releases the estimate of a finished job,
+     * starting the waiting jobs which fit now.
+     *
+     * @param bytes the estimated memory of the job, including its growth
+     *
+     * */
+    void release(long bytes) {
+        List<Runnable> admitted;
+        synchronized (this) {
+            used -= bytes;
+            running--;
+            admitted = admit();
+        }
+        admitted.forEach(Runnable::run);
+    }
+
+    private List<Runnable> admit() {
+        var admitted = new ArrayList<Runnable>();
+        while (!waiting.isEmpty()) {
+            var head = waiting.peek();
+            if (head.job != null && head.job.isDone()) {
+                waiting.poll();
+                continue;
+            }
+            if (running > 0 && head.bytes > capacity - used)
+                break;
+
+            waiting.poll();
+            used += head.bytes;
+            running++;
+            admitted.add(head.start);
+        }
+        return admitted;
+    }
+}
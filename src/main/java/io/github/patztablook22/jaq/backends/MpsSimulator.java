@@ -0,0 +1,418 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qvm;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Shots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Matrix product state based quantum computer simulator.
+ *
+ * <p>
+ *   Unlike {@link SimpleSimulator}, the global state is not stored as
+ *   a dense vector of \( 2^N \) amplitudes, but as a chain of tensors,
+ *   one per qubit, connected by bonds of limited dimension. The memory
+ *   and time grow only linearly with the number of qubits and polynomially
+ *   with the bond dimension, which in turn grows with the entanglement
+ *   between the two parts of the chain. Shallow circuits of mostly
+ *   nearest-neighbour gates thus remain tractable even for hundreds
+ *   of qubits.
+ * </p>
+ *
+ * <p>
+ *   Two-qubit gates are applied by contracting the two neighbouring sites,
+ *   applying the gate and splitting them back by a singular value
+ *   decomposition, keeping at most {@code maxBond} singular values and
+ *   discarding the smallest ones as long as their total weight stays
+ *   within the {@code threshold}. Gates on distant qubits are applied
+ *   by swapping the sites next to each other first. The infidelity
+ *   caused by the discarded weights is estimated and reported with
+ *   each {@link Result} as the truncation error.
+ * </p>
+ *
+ * <p>
+ *   The trailing measurements are sampled sequentially site by site from
+ *   a single simulated state. Circuits measuring in the middle are
+ *   simulated from the first measurement on once per shot. Oracles,
+ *   which cannot be applied locally, are decomposed into the elementary
+ *   gates by the {@link Qflow} defaults.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     var circuit = new Qcircuit(80, 80) {{
+ *         hadamard(0);
+ *         for (int i = 0; i + 1 &lt; 80; i++)
+ *             cnot(i, i + 1);
+ *         for (int i = 0; i &lt; 80; i++)
+ *             measure(i, i);
+ *     }};
+ *
+ *     var simulator = new MpsSimulator(64, 1e-10);
+ *     var result = simulator.execute(circuit, Map.of(), 1000);
+ *
+ *     System.out.println(result.getShots().histogram().size());
+ *     System.out.println(result.getTruncationError());
+ *  </code></pre>
+ *
+ * */
+public class MpsSimulator implements Qvm {
+
+    /**
+     * The default maximum bond dimension.
+     *
+     * */
+    public static final int DEFAULT_MAX_BOND = 256;
+
+    /**
+     * The default maximum discarded weight per truncation.
+     *
+     * */
+    public static final double DEFAULT_THRESHOLD = 1e-12;
+
+    /**
+     * The maximum bond dimension.
+     *
+     * */
+    private final int maxBond;
+
+    /**
+     * The maximum discarded weight per truncation, relative to the norm.
+     *
+     * */
+    private final double threshold;
+
+    /**
+     * The generator of the per-run random streams.
+     *
+     * */
+    private final SplittableRandom seeds;
+
+    /**
+     * Constructs an {@code MpsSimulator} with the default maximum
+     * bond dimension and truncation threshold, and a randomly seeded
+     * internal random number generator.
+     *
+     * */
+    public MpsSimulator() {
+        this(DEFAULT_MAX_BOND, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructs an {@code MpsSimulator} with a randomly
+     * seeded internal random number generator.
+     *
+     * @param maxBond the maximum bond dimension
+     * @param threshold the maximum discarded weight per truncation, relative to the norm
+     *
+     * */
+    public MpsSimulator(int maxBond, double threshold) {
+        this(maxBond, threshold, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs an {@code MpsSimulator} with the specified
+     * seed for the internal random number generator.
+     *
+     * @param maxBond the maximum bond dimension
+     * @param threshold the maximum discarded weight per truncation, relative to the norm
+     * @param seed randomness seed
+     *
+     * */
+    public MpsSimulator(int maxBond, double threshold, long seed) {
+        if (maxBond < 1)
+            throw new IllegalArgumentException("invalid bond dimension: " + maxBond);
+        if (threshold < 0 || threshold >= 1)
+            throw new IllegalArgumentException("invalid threshold: " + threshold);
+
+        this.maxBond = maxBond;
+        this.threshold = threshold;
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit) {
+        return run(circuit, Map.of());
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, int shots) {
+        return run(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        return sample(circuit, bindings, 1).toBytes(0);
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return sample(circuit, bindings, shots).toBytes();
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, int shots) {
+        return sample(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return execute(circuit, bindings, shots).getShots();
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} repeatedly {@code shots} times
+     * and returns the resulting classical registers together with the
+     * truncation statistics.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return the result
+     *
+     * */
+    public Result execute(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        var recorder = new Recorder(circuit, bindings);
+        recorder.flow();
+
+        var random = nextRandom();
+        var initial = new MatrixProductState(circuit.qubits(), maxBond, threshold);
+        int first = 0;
+        while (first < recorder.ops.size() && !(recorder.ops.get(first) instanceof Measure))
+            recorder.ops.get(first++).apply(initial, random, null);
+
+        var out = new Shots(circuit.cbits(), shots);
+        byte[] classical = new byte[circuit.cbits()];
+        byte[] sampled = new byte[circuit.qubits()];
+        double error = initial.truncationError();
+        int bond = initial.maxBondReached();
+
+        for (int shot = 0; shot < shots; shot++) {
+            var state = initial;
+            if (first < recorder.ops.size()) {
+                state = initial.copy();
+                for (int i = first; i < recorder.ops.size(); i++)
+                    recorder.ops.get(i).apply(state, random, classical);
+            }
+
+            state.sample(recorder.sampled, random, sampled);
+            for (int[] m: recorder.trailing)
+                classical[m[1]] = sampled[m[0]];
+
+            out.add(classical);
+            error = Math.max(error, state.truncationError());
+            bond = Math.max(bond, state.maxBondReached());
+        }
+
+        return new Result(out, error, bond);
+    }
+
+    /**
+     * Returns the next independent random stream.
+     *
+     * @return the random stream
+     *
+     * */
+    private synchronized SplittableRandom nextRandom() {
+        return seeds.split();
+    }
+
+    /**
+     * The result of a run of {@link MpsSimulator}.
+     *
+     * */
+    public static final class Result {
+
+        private final Shots shots;
+        private final double truncationError;
+        private final int maxBond;
+
+        private Result(Shots shots, double truncationError, int maxBond) {
+            this.shots = shots;
+            this.truncationError = truncationError;
+            this.maxBond = maxBond;
+        }
+
+        /**
+         * Returns the bit-packed classical registers.
+         *
+         * @return the shots
+         *
+         * */
+        public Shots getShots() {
+            return shots;
+        }
+
+        /**
+         * Returns the estimated infidelity caused by the truncations, the largest
+         * one among the shots if they were simulated separately. Zero
+         * means the simulation was exact up to the rounding errors.
+         *
+         * @return the truncation error
+         *
+         * */
+        public double getTruncationError() {
+            return truncationError;
+        }
+
+        /**
+         * Returns the largest bond dimension reached.
+         *
+         * @return the largest bond dimension
+         *
+         * */
+        public int getMaxBond() {
+            return maxBond;
+        }
+    }
+
+    /**
+     * A recorded operation of the circuit.
+     *
+     * */
+    private interface Op {
+        void apply(MatrixProductState state, SplittableRandom random, byte[] classical);
+    }
+
+    /**
+     * A recorded measurement followed by further operations.
+     *
+     * */
+    private static final class Measure implements Op {
+
+        private final int source, target;
+
+        Measure(int source, int target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public void apply(MatrixProductState state, SplittableRandom random, byte[] classical) {
+            classical[target] = (byte) state.measure(source, random.nextDouble());
+        }
+    }
+
+    /**
+     * Records the circuit as the gate matrices, separating
+     * the trailing measurements to be sampled.
+     *
+     * */
+    private static class Recorder extends Qflow {
+
+        /**
+         * The operations preceding the trailing measurements.
+         *
+         * */
+        private final List<Op> ops = new ArrayList<>();
+
+        /**
+         * The trailing measurements, as (source, target) pairs.
+         *
+         * */
+        private final List<int[]> trailing = new ArrayList<>();
+
+        /**
+         * Whether each qubit is measured by the trailing measurements.
+         *
+         * */
+        private boolean[] sampled;
+
+        Recorder(Qcircuit circuit, Map<Parameter, Double> bindings) {
+            super(circuit, bindings);
+            sampled = new boolean[circuit.qubits()];
+        }
+
+        @Override
+        public void flow() {
+            super.flow();
+            for (int[] m: trailing)
+                sampled[m[0]] = true;
+        }
+
+        /**
+         * Records a gate, turning the so far trailing
+         * measurements into mid-circuit ones.
+         *
+         * */
+        private void add(Op op) {
+            for (int[] m: trailing)
+                ops.add(new Measure(m[0], m[1]));
+            trailing.clear();
+            ops.add(op);
+        }
+
+        private void gate(int qubit, double[] re, double[] im) {
+            add((state, random, classical) -> state.gate(qubit, re, im));
+        }
+
+        private void gate(int first, int second, double[] re, double[] im) {
+            add((state, random, classical) -> state.gate(first, second, re, im));
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            double h = Math.sqrt(0.5);
+            gate(qubit, new double[] {h, h, h, -h}, new double[4]);
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            trailing.add(new int[] {source, target});
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            double[] re = new double[16];
+            re[0 * 4 + 0] = 1;
+            re[1 * 4 + 1] = 1;
+            re[2 * 4 + 3] = 1;
+            re[3 * 4 + 2] = 1;
+            gate(control, target, re, new double[16]);
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            gate(qubit, new double[] {0, 1, 1, 0}, new double[4]);
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            /* R_X(theta) = e^{-i theta X / 2} */
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            gate(qubit, new double[] {c, 0, 0, c}, new double[] {0, -s, -s, 0});
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            gate(qubit, new double[] {1, 0, 0, Math.cos(angle)},
+                        new double[] {0, 0, 0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            gate(qubit, new double[] {c, 0, 0, c}, new double[] {-s, 0, 0, s});
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            double[] re = new double[16], im = new double[16];
+            re[0] = re[5] = re[10] = 1;
+            re[15] = Math.cos(angle);
+            im[15] = Math.sin(angle);
+            gate(control, target, re, im);
+        }
+    }
+}
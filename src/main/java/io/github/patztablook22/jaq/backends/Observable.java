@@ -0,0 +1,94 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.PauliSum;
+import io.github.patztablook22.jaq.backends.lingebra.Ket;
+import io.github.patztablook22.jaq.backends.lingebra.PauliOperator;
+
+import java.util.stream.IntStream;
+
+
+/**
+ * Compiled {@link PauliSum} acting on the global state
+ * of a given number of qubits.
+ *
+ * */
+class Observable {
+
+    /**
+     * The compiled Pauli strings.
+     *
+     * */
+    final PauliOperator[] operators;
+
+    /**
+     * The real coefficients of the Pauli strings.
+     *
+     * */
+    final double[] coefficients;
+
+    /**
+     * Compiles the sum for the global state of {@code qubits} qubits.
+     * Throws IndexOutOfBoundsException if the sum acts on more qubits.
+     *
+     * @param sum the weighted sum of Pauli strings
+     * @param qubits the size of the quantum register
+     *
+     * */
+    Observable(PauliSum sum, int qubits) {
+        if (sum.qubits() > qubits)
+            throw new IndexOutOfBoundsException();
+
+        var terms = sum.terms();
+        operators = new PauliOperator[terms.size()];
+        coefficients = new double[terms.size()];
+
+        for (int i = 0; i < operators.length; i++) {
+            var term = terms.get(i);
+
+            int[] bits = new int[term.getQubits().length];
+            for (int j = 0; j < bits.length; j++)
+                bits[j] = 1 << (qubits - term.getQubits()[j] - 1);
+
+            operators[i] = new PauliOperator(1 << qubits, bits, term.getPaulis());
+            coefficients[i] = term.getCoefficient();
+        }
+    }
+
+    /**
+     * Computes the image of the given state into the given buffer
+     * \(
+     *      H \ket{\psi}
+     * \)
+     *
+     * @param state the state \( \ket{\psi} \)
+     * @param out the buffer of the resulting ket vector
+     *
+     * */
+    void apply(Ket state, Ket out) {
+        out.zero();
+        for (int i = 0; i < operators.length; i++)
+            operators[i].accumulate(state, out, coefficients[i]);
+    }
+
+    /**
+     * Computes the expectation value in the given normalized state
+     * \(
+     *      \bra{\psi} H \ket{\psi} = \sum_k c_k \bra{\psi} P_k \ket{\psi}
+     * \)
+     *
+     * <p>
+     *   Each term is evaluated in a single fused pass over the state,
+     *   the terms are evaluated in parallel.
+     * </p>
+     *
+     * @param state the state \( \ket{\psi} \)
+     * @return the expectation value
+     *
+     * */
+    double expectation(Ket state) {
+        return IntStream.range(0, operators.length)
+            .parallel()
+            .mapToDouble(i -> coefficients[i] * operators[i].braket(state, state)[0])
+            .sum();
+    }
+}
@@ -0,0 +1,966 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Parametric;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.backends.lingebra.DiagonalOperator;
+import io.github.patztablook22.jaq.backends.lingebra.FourierOperator;
+import io.github.patztablook22.jaq.backends.lingebra.Ket;
+import io.github.patztablook22.jaq.backends.lingebra.PauliOperator;
+import io.github.patztablook22.jaq.backends.lingebra.PermutationOperator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Compiled state vector simulation plan of a {@link Qcircuit}.
+ *
+ * <p>
+ *   The circuit is flattened by a {@link Qflow} only once, into a sequence
+ *   of {@link Instruction Instructions} with precomputed operators. Consecutive
+ *   diagonal gates are merged into a single {@link Diagonal} instruction.
+ *   The angles of the {@link Parametric} gates are kept symbolic, as indices
+ *   into the plan's {@link #parameters}, so that the same plan can be executed
+ *   with any parameter values without being recompiled.
+ * </p>
+ *
+ * */
+class Plan {
+
+    /**
+     * The maximum number of qubits a merged diagonal gate can span.
+     * Bounds the size of the merged phase table.
+     *
+     * */
+    static final int MAX_DIAGONAL_BITS = 16;
+
+    /**
+     * The size of the quantum register.
+     *
+     * */
+    final int qubits;
+
+    /**
+     * The size of the classical register.
+     *
+     * */
+    final int cbits;
+
+    /**
+     * The distinct parameters, indexed by the parametrized instructions.
+     *
+     * */
+    final Parameter[] parameters;
+
+    /**
+     * The compiled instructions in chronological order.
+     *
+     * */
+    final Instruction[] instructions;
+
+    /**
+     * The number of the circuit's nodes at the time of the compilation.
+     *
+     * */
+    final int length;
+
+    /**
+     * The total size of the instructions' tables in bytes,
+     * see {@link Unitary#memory()}.
+     *
+     * */
+    final long memory;
+
+    private Plan(int qubits, int cbits, Parameter[] parameters,
+                 Instruction[] instructions, int length) {
+        this.qubits = qubits;
+        this.cbits = cbits;
+        this.parameters = parameters;
+        this.instructions = instructions;
+        this.length = length;
+
+        long memory = 0;
+        for (var instruction: instructions)
+            if (instruction instanceof Unitary)
+                memory += ((Unitary) instruction).memory();
+        this.memory = memory;
+    }
+
+    /**
+     * Compiles the given {@link Qcircuit}.
+     *
+     * @param circuit the circuit to compile
+     * @return the compiled plan
+     *
+     * */
+    static Plan compile(Qcircuit circuit) {
+        var compiler = new Compiler(circuit);
+        compiler.flow();
+
+        return new Plan(circuit.qubits(),
+                        circuit.cbits(),
+                        compiler.parameters.toArray(new Parameter[0]),
+                        compiler.instructions.toArray(new Instruction[0]),
+                        circuit.length());
+    }
+
+    /**
+     * Resolves the given bindings into the parameter values
+     * indexed by the instructions. Throws IllegalArgumentException
+     * if any of the plan's parameters is not bound.
+     *
+     * @param bindings the parameter values
+     * @return the parameter values in the plan's order
+     *
+     * */
+    double[] bind(Map<Parameter, Double> bindings) {
+        double[] values = new double[parameters.length];
+        for (int i = 0; i < values.length; i++) {
+            Double value = bindings.get(parameters[i]);
+            if (value == null)
+                throw new IllegalArgumentException("unbound parameter: " + parameters[i]);
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Resolves a matrix of bindings into the parameter values indexed
+     * by the instructions. Each row of {@code rows} holds the values of
+     * {@code columns}. Throws IllegalArgumentException if any of the plan's
+     * parameters is missing among the {@code columns}.
+     *
+     * @param columns the bound parameters
+     * @param rows the parameter values, one binding per row
+     * @return the parameter values in the plan's order, one binding per row
+     *
+     * */
+    double[][] bind(Parameter[] columns, double[][] rows) {
+        int[] column = new int[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            column[i] = Arrays.asList(columns).indexOf(parameters[i]);
+            if (column[i] < 0)
+                throw new IllegalArgumentException("unbound parameter: " + parameters[i]);
+        }
+
+        double[][] values = new double[rows.length][parameters.length];
+        for (int r = 0; r < rows.length; r++) {
+            if (rows[r].length != columns.length)
+                throw new IllegalArgumentException("size mismatch: "
+                        + rows[r].length + " vs " + columns.length);
+
+            for (int i = 0; i < parameters.length; i++)
+                values[r][i] = rows[r][column[i]];
+        }
+        return values;
+    }
+
+    /**
+     * Computes the final state of the plan. Throws IllegalArgumentException
+     * if the plan contains measurements, as its final state would not
+     * be deterministic.
+     *
+     * @param values the parameter values
+     * @param buffers the pool of the state buffers
+     * @return the final state
+     *
+     * */
+    Ket simulate(double[] values, BufferPool buffers) {
+        return simulate(values, instructions.length, buffers);
+    }
+
+    /**
+     * Computes the state after the first {@code end} instructions.
+     * Throws IllegalArgumentException if any of them is a measurement.
+     * The state is acquired from the given pool, the caller
+     * is expected to release it once done with it.
+     *
+     * @param values the parameter values
+     * @param end the number of instructions to execute
+     * @param buffers the pool of the state buffers
+     * @return the resulting state
+     *
+     * */
+    Ket simulate(double[] values, int end, BufferPool buffers) {
+        for (int i = 0; i < end; i++)
+            if (!(instructions[i] instanceof Unitary))
+                throw new IllegalArgumentException("measurement in unitary circuit");
+
+        var state = buffers.acquire(1 << qubits);
+        var spare = buffers.acquire(1 << qubits);
+        try {
+            state.zero();
+            state.getReal()[0] = 1;
+            for (int i = 0; i < end; i++) {
+                var next = ((Unitary) instructions[i]).apply(state, spare, values);
+                if (next == spare) {
+                    spare = state;
+                    state = next;
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            buffers.release(state);
+            throw e;
+        } finally {
+            buffers.release(spare);
+        }
+        return state;
+    }
+
+    /**
+     * Returns the number of instructions preceding
+     * the trailing measurements, if any.
+     *
+     * @return the length of the unitary part of the plan
+     *
+     * */
+    int unitaryLength() {
+        int end = instructions.length;
+        while (end > 0 && instructions[end - 1] instanceof Measurement)
+            end--;
+        return end;
+    }
+
+    /**
+     * Returns the number of leading instructions yielding the same state
+     * for all the given parameter values, i.e. the unitaries preceding
+     * the first measurement and the first use of a parameter whose value
+     * differs among the bindings.
+     *
+     * @param values the parameter values, one binding per row
+     * @return the length of the common prefix
+     *
+     * */
+    int commonPrefix(double[][] values) {
+        int[] rows = new int[values.length];
+        for (int r = 0; r < rows.length; r++)
+            rows[r] = r;
+        return commonPrefix(values, rows, 0);
+    }
+
+    /**
+     * Returns the number of leading instructions yielding the same state
+     * for the given rows of the parameter values, provided that the first
+     * {@code from} instructions already do.
+     *
+     * @param values the parameter values, one binding per row
+     * @param rows the indices of the considered rows
+     * @param from the number of instructions known to be common
+     * @return the length of the common prefix, at least {@code from}
+     *
+     * */
+    int commonPrefix(double[][] values, int[] rows, int from) {
+        boolean[] varying = new boolean[parameters.length];
+        for (int r: rows)
+            for (int i = 0; i < parameters.length; i++)
+                if (values[r][i] != values[rows[0]][i])
+                    varying[i] = true;
+
+        for (int n = from; n < instructions.length; n++) {
+            if (!(instructions[n] instanceof Unitary))
+                return n;
+
+            for (int p: ((Unitary) instructions[n]).params())
+                if (varying[p])
+                    return n;
+        }
+        return instructions.length;
+    }
+
+    /**
+     * Partitions the given rows of the parameter values by the values
+     * of the parameters the {@code n}-th instruction depends on, so that
+     * the instruction yields the same state within each part.
+     *
+     * @param values the parameter values, one binding per row
+     * @param rows the indices of the partitioned rows
+     * @param n the index of the unitary instruction
+     * @return the parts, in the order of their first rows
+     *
+     * */
+    List<int[]> partition(double[][] values, int[] rows, int n) {
+        int[] params = ((Unitary) instructions[n]).params();
+        var parts = new LinkedHashMap<List<Double>, List<Integer>>();
+        for (int r: rows) {
+            var key = new ArrayList<Double>(params.length);
+            for (int p: params)
+                key.add(values[r][p]);
+            parts.computeIfAbsent(key, k -> new ArrayList<>()).add(r);
+        }
+
+        var out = new ArrayList<int[]>(parts.size());
+        for (var part: parts.values())
+            out.add(part.stream().mapToInt(Integer::intValue).toArray());
+        return out;
+    }
+
+    /**
+     * Single step of the plan.
+     *
+     * */
+    interface Instruction {
+    }
+
+    /**
+     * Unitary transformation of the state vector.
+     *
+     * */
+    abstract static class Unitary implements Instruction {
+
+        /**
+         * Applies the transformation, possibly <i>inplace</i>.
+         *
+         * @param state the state vector
+         * @param values the parameter values
+         * @return the transformed state vector
+         *
+         * */
+        abstract Ket apply(Ket state, double[] values);
+
+        /**
+         * Applies the inverse transformation, possibly <i>inplace</i>.
+         *
+         * @param state the state vector
+         * @param values the parameter values
+         * @return the transformed state vector
+         *
+         * */
+        abstract Ket applyInverse(Ket state, double[] values);
+
+        /**
+         * Applies the transformation, either <i>inplace</i>, or by
+         * overwriting the {@code spare} buffer. Unlike
+         * {@link #apply(Ket, double[])}, never allocates a new state.
+         *
+         * @param state the state vector
+         * @param spare the spare buffer of the same dimension
+         * @param values the parameter values
+         * @return the transformed state vector, either {@code state} or {@code spare}
+         *
+         * */
+        Ket apply(Ket state, Ket spare, double[] values) {
+            return apply(state, values);
+        }
+
+        /**
+         * Applies the inverse transformation, either <i>inplace</i>,
+         * or by overwriting the {@code spare} buffer.
+         *
+         * @param state the state vector
+         * @param spare the spare buffer of the same dimension
+         * @param values the parameter values
+         * @return the transformed state vector, either {@code state} or {@code spare}
+         *
+         * */
+        Ket applyInverse(Ket state, Ket spare, double[] values) {
+            return applyInverse(state, values);
+        }
+
+        /**
+         * Adds the derivatives of
+         * \( \bra{\lambda} U \ket{\psi} \)
+         * with respect to the parameters, given the states
+         * \( \bra{\lambda} \) and \( U \ket{\psi} \), to {@code gradient}.
+         * Used by the adjoint differentiation, see {@link Adjoint}.
+         *
+         * @param bra the bra vector \( \bra{\lambda} \)
+         * @param ket the ket vector \( U \ket{\psi} \)
+         * @param gradient the derivatives accumulator, indexed by the parameters
+         *
+         * */
+        void differentiate(Ket bra, Ket ket, double[] gradient) {
+        }
+
+        /**
+         * Returns the indices of the parameters the transformation depends on.
+         *
+         * @return the parameter indices
+         *
+         * */
+        int[] params() {
+            return new int[0];
+        }
+
+        /**
+         * Returns the size of the precomputed tables of the transformation.
+         * The elementary gates store merely their index bits, so only the
+         * tables of the multi-qubit registers count.
+         *
+         * @return the size in bytes
+         *
+         * */
+        long memory() {
+            return 0;
+        }
+
+        /**
+         * Resolves a possibly parametrized angle.
+         *
+         * @param coefficient the fixed angle or the parameter's coefficient
+         * @param parameter the parameter index, or -1 if fixed
+         * @param values the parameter values
+         * @return the effective angle
+         *
+         * */
+        static double angle(double coefficient, int parameter, double[] values) {
+            return parameter < 0 ? coefficient : coefficient * values[parameter];
+        }
+    }
+
+    /**
+     * Projective measurement of a single qubit.
+     *
+     * */
+    static final class Measurement implements Instruction {
+
+        /**
+         * The state index bit of the measured qubit.
+         *
+         * */
+        final int bit;
+
+        /**
+         * The target classical bit.
+         *
+         * */
+        final int target;
+
+        Measurement(int bit, int target) {
+            this.bit = bit;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Hadamard gate, applied <i>inplace</i> on the pairs of amplitudes
+     * differing in the qubit's index bit. Involution.
+     *
+     * */
+    static final class Hadamard extends Unitary {
+        final int bit;
+
+        Hadamard(int bit) {
+            this.bit = bit;
+        }
+
+        @Override
+        Ket apply(Ket state, double[] values) {
+            float[] real = state.getReal();
+            float[] imag = state.getImag();
+            float invsqrt2 = (float) Math.sqrt(2) / 2;
+
+            for (int base = 0; base < real.length; base += bit << 1) {
+                for (int k = base; k < base + bit; k++) {
+                    int l = k | bit;
+                    float kRe = real[k], kIm = imag[k];
+                    float lRe = real[l], lIm = imag[l];
+                    real[k] = (kRe + lRe) * invsqrt2;
+                    imag[k] = (kIm + lIm) * invsqrt2;
+                    real[l] = (kRe - lRe) * invsqrt2;
+                    imag[l] = (kIm - lIm) * invsqrt2;
+                }
+            }
+            return state;
+        }
+
+        @Override
+        Ket applyInverse(Ket state, double[] values) {
+            return apply(state, values);
+        }
+    }
+
+    /**
+     * Possibly controlled bit flip, i.e. the
+     * {@link io.github.patztablook22.jaq.nodes.PauliX} or the
+     * {@link io.github.patztablook22.jaq.nodes.Cnot} gate, swapping
+     * <i>inplace</i> the pairs of amplitudes differing in the target
+     * index bit whose control index bits are all set. Involution.
+     *
+     * */
+    static final class Flip extends Unitary {
+        final int bit;
+        final int controls;
+
+        Flip(int bit, int controls) {
+            this.bit = bit;
+            this.controls = controls;
+        }
+
+        @Override
+        Ket apply(Ket state, double[] values) {
+            float[] real = state.getReal();
+            float[] imag = state.getImag();
+
+            for (int base = 0; base < real.length; base += bit << 1) {
+                for (int k = base; k < base + bit; k++) {
+                    if ((k & controls) != controls)
+                        continue;
+
+                    int l = k | bit;
+                    float re = real[k], im = imag[k];
+                    real[k] = real[l];
+                    imag[k] = imag[l];
+                    real[l] = re;
+                    imag[l] = im;
+                }
+            }
+            return state;
+        }
+
+        @Override
+        Ket applyInverse(Ket state, double[] values) {
+            return apply(state, values);
+        }
+    }
+
+    /**
+     * Merged diagonal gates. The fixed ones are precomposed,
+     * the parametrized ones are scaled and composed at runtime.
+     *
+     * */
+    static final class Diagonal extends Unitary {
+        final DiagonalOperator fixed;
+        final DiagonalOperator[] terms;
+        final int[] params;
+
+        Diagonal(DiagonalOperator fixed, DiagonalOperator[] terms, int[] params) {
+            this.fixed = fixed;
+            this.terms = terms;
+            this.params = params;
+        }
+
+        @Override
+        Ket apply(Ket state, double[] values) {
+            resolve(values).transformInplace(state);
+            return state;
+        }
+
+        @Override
+        Ket applyInverse(Ket state, double[] values) {
+            resolve(values).scale(-1).transformInplace(state);
+            return state;
+        }
+
+        /**
+         * The derivative of \( e^{i \theta \Phi} \) is
+         * \( i \Phi e^{i \theta \Phi} \), the contribution
+         * of each term is thus \( 2 \Re \, i \bra{\lambda} \Phi \ket{\psi} \).
+         *
+         * */
+        @Override
+        void differentiate(Ket bra, Ket ket, double[] gradient) {
+            for (int i = 0; i < terms.length; i++)
+                gradient[params[i]] -= 2 * terms[i].generatorBraket(bra, ket)[1];
+        }
+
+        /**
+         * Composes the merged gates for the given parameter values.
+         *
+         * @param values the parameter values
+         * @return the composed operator
+         *
+         * */
+        private DiagonalOperator resolve(double[] values) {
+            var op = fixed;
+            for (int i = 0; i < terms.length; i++)
+                op = op.compose(terms[i].scale(values[params[i]]));
+            return op;
+        }
+
+        @Override
+        int[] params() {
+            return params;
+        }
+
+        @Override
+        long memory() {
+            long memory = fixed.getTableSize();
+            for (var term: terms)
+                memory += term.getTableSize();
+            return memory;
+        }
+    }
+
+    /**
+     * Possibly parametrized Pauli string rotation.
+     *
+     * */
+    static final class Rotation extends Unitary {
+        final PauliOperator op;
+        final double coefficient;
+        final int param;
+
+        Rotation(PauliOperator op, double coefficient, int param) {
+            this.op = op;
+            this.coefficient = coefficient;
+            this.param = param;
+        }
+
+        @Override
+        Ket apply(Ket state, double[] values) {
+            op.rotateInplace(state, angle(coefficient, param, values));
+            return state;
+        }
+
+        @Override
+        Ket applyInverse(Ket state, double[] values) {
+            op.rotateInplace(state, -angle(coefficient, param, values));
+            return state;
+        }
+
+        /**
+         * The derivative of \( e^{-i c \theta P} \) is
+         * \( -i c P e^{-i c \theta P} \), the contribution
+         * is thus \( 2 c \Im \bra{\lambda} P \ket{\psi} \).
+         *
+         * */
+        @Override
+        void differentiate(Ket bra, Ket ket, double[] gradient) {
+            if (param >= 0)
+                gradient[param] += 2 * coefficient * op.braket(bra, ket)[1];
+        }
+
+        @Override
+        int[] params() {
+            return param < 0 ? new int[0] : new int[] {param};
+        }
+    }
+
+    /**
+     * Quantum Fourier transform.
+     *
+     * */
+    static final class Fourier extends Unitary {
+        final FourierOperator op;
+        final FourierOperator inverse;
+
+        Fourier(FourierOperator op, FourierOperator inverse) {
+            this.op = op;
+            this.inverse = inverse;
+        }
+
+        @Override
+        Ket apply(Ket state, double[] values) {
+            op.transformInplace(state);
+            return state;
+        }
+
+        @Override
+        Ket applyInverse(Ket state, double[] values) {
+            inverse.transformInplace(state);
+            return state;
+        }
+
+        @Override
+        long memory() {
+            return op.getTableSize() + inverse.getTableSize();
+        }
+    }
+
+    /**
+     * Basis permutation.
+     *
+     * */
+    static final class Permutation extends Unitary {
+        final PermutationOperator op;
+        final PermutationOperator inverse;
+
+        Permutation(PermutationOperator op, PermutationOperator inverse) {
+            this.op = op;
+            this.inverse = inverse;
+        }
+
+        @Override
+        Ket apply(Ket state, double[] values) {
+            op.transformInplace(state);
+            return state;
+        }
+
+        @Override
+        Ket applyInverse(Ket state, double[] values) {
+            inverse.transformInplace(state);
+            return state;
+        }
+
+        @Override
+        long memory() {
+            return op.getTableSize() + inverse.getTableSize();
+        }
+    }
+
+    /**
+     * Translates the {@link Qflow} feed into {@link Instruction Instructions}.
+     *
+     * */
+    private static class Compiler extends Qflow {
+
+        /**
+         * The dimension of the state space.
+         *
+         * */
+        private int dim;
+
+        /**
+         * The distinct parameters encountered so far.
+         *
+         * */
+        private List<Parameter> parameters = new ArrayList<>();
+
+        /**
+         * The instructions compiled so far.
+         *
+         * */
+        private List<Instruction> instructions = new ArrayList<>();
+
+        /**
+         * The parameter index of the gate being fed, or -1.
+         *
+         * */
+        private int pendingParameter = -1;
+
+        /**
+         * Pending fixed diagonal gates, or {@code null}.
+         *
+         * */
+        private DiagonalOperator pendingFixed;
+
+        /**
+         * Pending parametrized diagonal gates.
+         *
+         * */
+        private List<DiagonalOperator> pendingTerms = new ArrayList<>();
+
+        /**
+         * Parameter indices of the pending parametrized diagonal gates.
+         *
+         * */
+        private List<Integer> pendingParams = new ArrayList<>();
+
+        /**
+         * Union of the index bits of all pending diagonal gates.
+         *
+         * */
+        private int pendingMask;
+
+        Compiler(Qcircuit circuit) {
+            super(circuit);
+            dim = 1 << circuit.qubits();
+        }
+
+        @Override
+        public void flow() {
+            super.flow();
+            flushDiagonal();
+        }
+
+        @Override
+        protected double angle(Parametric gate) {
+            Parameter parameter = gate.getParameter();
+            if (parameter == null) {
+                pendingParameter = -1;
+            } else {
+                pendingParameter = parameters.indexOf(parameter);
+                if (pendingParameter < 0) {
+                    pendingParameter = parameters.size();
+                    parameters.add(parameter);
+                }
+            }
+            return gate.getAngle();
+        }
+
+        /**
+         * Returns and clears the parameter index of the gate being fed.
+         *
+         * @return the parameter index, or -1 if the angle is fixed
+         *
+         * */
+        private int takeParameter() {
+            int p = pendingParameter;
+            pendingParameter = -1;
+            return p;
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            add(new Hadamard(indexBit(qubit)));
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            add(new Flip(indexBit(qubit), 0));
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            add(new Flip(indexBit(target), indexBit(control)));
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            /* R_X(theta) = e^{-i theta X / 2} */
+            var op = new PauliOperator(dim, new int[] {indexBit(qubit)}, "X");
+            add(new Rotation(op, angle / 2, takeParameter()));
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            add(new Measurement(indexBit(source), target));
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            diagonal(DiagonalOperator.phase(dim, indexBit(qubit), angle), takeParameter());
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            diagonal(new DiagonalOperator(dim, indexBit(qubit),
+                                          new double[] {-angle / 2, angle / 2}),
+                     takeParameter());
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            diagonal(DiagonalOperator.phase(dim, indexBit(control) | indexBit(target), angle),
+                     takeParameter());
+        }
+
+        @Override
+        protected void quantumFourierTransform(int[] qubits, boolean inverse) {
+            int[] bits = indexBits(qubits);
+            add(new Fourier(new FourierOperator(dim, bits, inverse),
+                            new FourierOperator(dim, bits, !inverse)));
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            int[] table = new int[1 << qubits.length];
+            for (int x = 0; x < table.length; x++)
+                table[x] = permutation.applyAsInt(x);
+
+            int[] bits = indexBits(qubits);
+            var op = new PermutationOperator(dim, bits, table);
+
+            int[] inverse = new int[table.length];
+            for (int x = 0; x < table.length; x++)
+                inverse[table[x]] = x;
+
+            add(new Permutation(op, new PermutationOperator(dim, bits, inverse)));
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            double[] phases = new double[1 << qubits.length];
+            for (int x = 0; x < phases.length; x++)
+                if (predicate.test(x))
+                    phases[x] = Math.PI;
+
+            diagonal(DiagonalOperator.register(dim, indexBits(qubits), phases), -1);
+        }
+
+        @Override
+        protected void pauliRotation(String paulis, int[] qubits, double angle) {
+            int param = takeParameter();
+            var op = new PauliOperator(dim, indexBits(qubits), paulis);
+
+            int mask = op.getPhaseMask();
+            if (op.isDiagonal() && Integer.bitCount(mask) <= MAX_DIAGONAL_BITS) {
+                double[] phases = new double[1 << Integer.bitCount(mask)];
+                for (int j = 0; j < phases.length; j++)
+                    phases[j] = (Integer.bitCount(j) & 1) == 0 ? -angle : angle;
+
+                diagonal(new DiagonalOperator(dim, mask, phases), param);
+                return;
+            }
+
+            add(new Rotation(op, angle, param));
+        }
+
+        /**
+         * Appends a non-diagonal instruction, flushing
+         * the pending diagonal gates first.
+         *
+         * @param instruction the instruction
+         *
+         * */
+        private void add(Instruction instruction) {
+            flushDiagonal();
+            instructions.add(instruction);
+        }
+
+        /**
+         * Schedules a diagonal gate, merging it with the pending ones.
+         * The pending gates are flushed first if the merged phase table
+         * would exceed {@link #MAX_DIAGONAL_BITS}.
+         *
+         * @param op the diagonal gate, for the unit parameter value if parametrized
+         * @param param the parameter index, or -1 if fixed
+         *
+         * */
+        private void diagonal(DiagonalOperator op, int param) {
+            if (Integer.bitCount(pendingMask | op.getMask()) > MAX_DIAGONAL_BITS)
+                flushDiagonal();
+
+            pendingMask |= op.getMask();
+            if (param < 0) {
+                pendingFixed = pendingFixed == null ? op : pendingFixed.compose(op);
+            } else {
+                pendingTerms.add(op);
+                pendingParams.add(param);
+            }
+        }
+
+        /**
+         * Emits the pending diagonal gates as a single instruction.
+         *
+         * */
+        private void flushDiagonal() {
+            if (pendingFixed == null && pendingTerms.isEmpty())
+                return;
+
+            var fixed = pendingFixed == null ? DiagonalOperator.eye(dim) : pendingFixed;
+            instructions.add(new Diagonal(fixed,
+                                          pendingTerms.toArray(new DiagonalOperator[0]),
+                                          pendingParams.stream().mapToInt(i -> i).toArray()));
+
+            pendingFixed = null;
+            pendingTerms.clear();
+            pendingParams.clear();
+            pendingMask = 0;
+        }
+
+        /**
+         * Returns the bit of the global state index
+         * corresponding to given qubit.
+         *
+         * @param qubit the qubit
+         * @return the corresponding index bit mask
+         *
+         * */
+        private int indexBit(int qubit) {
+            return 1 << (getCircuit().qubits() - qubit - 1);
+        }
+
+        /**
+         * Returns the bits of the global state index
+         * corresponding to given qubits.
+         *
+         * @param qubits the qubits
+         * @return the corresponding index bit masks
+         *
+         * */
+        private int[] indexBits(int[] qubits) {
+            int[] bits = new int[qubits.length];
+            for (int i = 0; i < qubits.length; i++)
+                bits[i] = indexBit(qubits[i]);
+            return bits;
+        }
+    }
+}
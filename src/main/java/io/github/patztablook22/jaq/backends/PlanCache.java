@@ -0,0 +1,87 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qcircuit;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Thread-safe cache of compiled {@link Plan Plans}.
+ *
+ * <p>
+ *   The circuits are compared by identity and referenced weakly,
+ *   so that the plans are dropped together with their circuits.
+ *   A plan is recompiled if its circuit has been extended since.
+ *   Concurrent lookups do not block each other, concurrent misses
+ *   of the same circuit may compile it more than once.
+ * </p>
+ *
+ * */
+class PlanCache {
+
+    private final ConcurrentHashMap<Key, Plan> plans = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<Qcircuit> collected = new ReferenceQueue<>();
+
+    /**
+     * Returns the compiled plan of the given circuit,
+     * compiling it if needed.
+     *
+     * @param circuit the circuit
+     * @return the compiled plan
+     *
+     * */
+    Plan get(Qcircuit circuit) {
+        expunge();
+
+        var plan = plans.get(new Key(circuit, null));
+        if (plan == null || plan.length != circuit.length()) {
+            plan = Plan.compile(circuit);
+            plans.put(new Key(circuit, collected), plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Removes the plans of the garbage collected circuits.
+     *
+     * */
+    private void expunge() {
+        Reference<? extends Qcircuit> key;
+        while ((key = collected.poll()) != null)
+            plans.remove(key);
+    }
+
+    /**
+     * Weak identity reference to a circuit.
+     *
+     * */
+    private static final class Key extends WeakReference<Qcircuit> {
+
+        private final int hash;
+
+        Key(Qcircuit circuit, ReferenceQueue<Qcircuit> queue) {
+            super(circuit, queue);
+            hash = System.identityHashCode(circuit);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+            if (!(other instanceof Key))
+                return false;
+
+            var circuit = get();
+            return circuit != null && circuit == ((Key) other).get();
+        }
+    }
+}
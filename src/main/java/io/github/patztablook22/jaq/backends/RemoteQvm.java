@@ -0,0 +1,318 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qvm;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Shots;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * {@link Qvm} proxy running the circuits on a {@link JobServer}.
+ *
+ * <p>
+ *   The circuits are bound and encoded locally, the oracles being
+ *   tabulated, and sent over a single connection, which can be shared
+ *   by any number of threads. The requests are pipelined, their responses
+ *   matched by the request identifiers, so that the concurrent requests
+ *   can be batched by the server together with those of other clients.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     try (var qvm = new RemoteQvm(7000)) {
+ *         var result = qvm.execute(circuit, Map.of(), 1000);
+ *         System.out.println(result.getLatency());
+ *         System.out.println(qvm.statistics().getQueueDepth());
+ *     }
+ *  </code></pre>
+ *
+ * */
+public class RemoteQvm implements Qvm, Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * The requests awaiting their responses, by their identifiers.
+     *
+     * */
+    private final Map<Long, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The response kinds of the pending requests.
+     *
+     * */
+    private final Map<Long, Byte> kinds = new ConcurrentHashMap<>();
+
+    /**
+     * The failure of the connection, once failed.
+     *
+     * */
+    private volatile UncheckedIOException failure;
+
+    /**
+     * Constructs a {@code RemoteQvm} connected to the server on the local port.
+     *
+     * @param port the server port
+     * @throws IOException if the server cannot be connected
+     *
+     * */
+    public RemoteQvm(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Constructs a {@code RemoteQvm} connected to the server.
+     *
+     * @param address the server address
+     * @throws IOException if the server cannot be connected
+     *
+     * */
+    public RemoteQvm(InetSocketAddress address) throws IOException {
+        socket = new Socket(address.getAddress(), address.getPort());
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+        var reader = new Thread(this::read, "jaq-remote-qvm");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit) {
+        return run(circuit, Map.of());
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, int shots) {
+        return run(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        return sample(circuit, bindings, 1).toBytes(0);
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return sample(circuit, bindings, shots).toBytes();
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, int shots) {
+        return sample(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return execute(circuit, bindings, shots).getShots();
+    }
+
+    /**
+     * Runs the parametrized {@link Qcircuit} on the server repeatedly
+     * {@code shots} times and returns the resulting classical registers
+     * together with the server-side timing. The exceptions thrown by
+     * the server's backend are rethrown, UncheckedIOException is
+     * thrown if the communication fails.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param shots the number of repetitions
+     * @return the result
+     *
+     * */
+    public Result execute(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        byte[] encoding = CircuitCodec.encode(circuit, bindings);
+        return (Result) request(JobServer.RUN, o -> {
+            o.writeInt(shots);
+            o.writeInt(encoding.length);
+            o.write(encoding);
+        });
+    }
+
+    /**
+     * Returns the current statistics of the server.
+     *
+     * @return the statistics
+     *
+     * */
+    public JobServer.Statistics statistics() {
+        return (JobServer.Statistics) request(JobServer.STATISTICS, o -> {});
+    }
+
+    private interface Write {
+        void to(DataOutputStream out) throws IOException;
+    }
+
+    private Object request(byte kind, Write body) {
+        long id = ids.incrementAndGet();
+        var future = new CompletableFuture<Object>();
+        kinds.put(id, kind);
+        pending.put(id, future);
+        if (failure != null) {
+            pending.remove(id);
+            kinds.remove(id);
+            throw failure;
+        }
+
+        try {
+            synchronized (out) {
+                out.writeLong(id);
+                out.writeByte(kind);
+                body.to(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            kinds.remove(id);
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the responses, completing the pending requests.
+     *
+     * */
+    private void read() {
+        try {
+            while (true) {
+                long id = in.readLong();
+                byte status = in.readByte();
+                byte kind = kinds.remove(id);
+                var future = pending.remove(id);
+
+                if (status == JobServer.ERROR) {
+                    future.completeExceptionally(exception(in.readUTF(), in.readUTF()));
+                } else if (kind == JobServer.STATISTICS) {
+                    future.complete(JobServer.Statistics.read(in));
+                } else {
+                    long queueTime = in.readLong(), latency = in.readLong();
+                    int cbits = in.readInt(), size = in.readInt(), words = in.readInt();
+                    var shots = new Shots(cbits, size);
+                    long[] packed = new long[words];
+                    for (int i = 0; i < size; i++) {
+                        for (int w = 0; w < words; w++)
+                            packed[w] = in.readLong();
+                        shots.add(packed);
+                    }
+                    future.complete(new Result(shots, queueTime, latency));
+                }
+            }
+        } catch (IOException e) {
+            failure = new UncheckedIOException(e);
+            for (var future: pending.values())
+                future.completeExceptionally(failure);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Recreates the exception thrown by the server's backend.
+     *
+     * */
+    private static RuntimeException exception(String type, String message) {
+        switch (type) {
+            case "java.lang.IllegalArgumentException":
+                return new IllegalArgumentException(message);
+            case "java.lang.IllegalStateException":
+                return new IllegalStateException(message);
+            case "java.lang.UnsupportedOperationException":
+                return new UnsupportedOperationException(message);
+            case "java.lang.IndexOutOfBoundsException":
+                return new IndexOutOfBoundsException(message);
+            default:
+                return new IllegalStateException(type + ": " + message);
+        }
+    }
+
+    /**
+     * Closes the connection, failing the pending requests.
+     *
+     * @throws IOException if the connection cannot be closed
+     *
+     * */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * The result of a run on a {@link JobServer}.
+     *
+     * */
+    public static final class Result {
+
+        private final Shots shots;
+        private final long queueTime;
+        private final long latency;
+
+        private Result(Shots shots, long queueTime, long latency) {
+            this.shots = shots;
+            this.queueTime = queueTime;
+            this.latency = latency;
+        }
+
+        /**
+         * Returns the bit-packed classical registers.
+         *
+         * @return the shots
+         *
+         * */
+        public Shots getShots() {
+            return shots;
+        }
+
+        /**
+         * Returns the time the job spent queued on the server.
+         *
+         * @return the queue time
+         *
+         * */
+        public Duration getQueueTime() {
+            return Duration.ofNanos(queueTime);
+        }
+
+        /**
+         * Returns the time from the submission to the completion
+         * of the job on the server.
+         *
+         * @return the latency
+         *
+         * */
+        public Duration getLatency() {
+            return Duration.ofNanos(latency);
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package io.github.patztablook22.jaq.backends;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+
+/**
+ * Worker process of {@link DistributedSimulator}, holding a single
+ * shard of the state vector.
+ *
+ * <p>
+ *   The state of \( N \) qubits is split among \( 2^G \) workers by the
+ *   top \( G \) bits of the state index, the <i>global</i> bits, the rank
+ *   of the worker. The remaining \( L = N - G \) <i>local</i> bits index
+ *   the worker's shard of \( 2^L \) amplitudes. All the positions below
+ *   are index bit positions, the coordinator keeps track of the qubit
+ *   stored at each. Non-diagonal gates are only ever applied to local
+ *   positions, diagonal ones and controls may be global, and the only
+ *   communication between the workers is the exchange of the half-shards
+ *   swapping a global and a local position.
+ * </p>
+ *
+ * <p>
+ *   The worker listens on a TCP port, printed as the first line of its
+ *   standard output, and serves a single coordinator. The coordinator
+ *   connection starts with the int {@code -1}, a peer one with the rank
+ *   of the peer. The commands, in big-endian:
+ * </p>
+ *
+ * <pre><code class="plaintext">
+ *    CONNECT    int rank, int workers, workers * (UTF host, int port)
+ *    RESET      int local bits
+ *    UNITARY    int position, 4 * double re, 4 * double im
+ *    CONTROLLED int control position, int position, 4 * double re, 4 * double im
+ *    DIAGONAL   int k, k * int position, 2^k * double re, 2^k * double im
+ *    PERMUTE    int k, k * int position, 2^k * int table
+ *    SWAP       int global position, int local position
+ *    MEASURE    int position                    -&gt; double probability of 1
+ *    COLLAPSE   int position, int outcome, double scale
+ *    NORM                                       -&gt; double norm squared
+ *    SAMPLE     int count, long seed            -&gt; count * int local index
+ *    SAVE, RESTORE, SHUTDOWN
+ * </code></pre>
+ *
+ * <p>
+ *   The positions of the multi-qubit tables are listed from the most
+ *   significant bit of the table index.
+ * </p>
+ *
+ * */
+class ShardWorker {
+
+    static final byte CONNECT = 1;
+    static final byte RESET = 2;
+    static final byte UNITARY = 3;
+    static final byte CONTROLLED = 4;
+    static final byte DIAGONAL = 5;
+    static final byte PERMUTE = 6;
+    static final byte SWAP = 7;
+    static final byte MEASURE = 8;
+    static final byte COLLAPSE = 9;
+    static final byte NORM = 10;
+    static final byte SAMPLE = 11;
+    static final byte SAVE = 12;
+    static final byte RESTORE = 13;
+    static final byte SHUTDOWN = 14;
+
+    /**
+     * The shard size above which the gates are applied in parallel.
+     *
+     * */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * The number of amplitudes per exchanged chunk.
+     *
+     * */
+    private static final int CHUNK = 1 << 13;
+
+    private final ServerSocket server;
+
+    private int rank;
+
+    /**
+     * The connections to the other workers, by their rank.
+     *
+     * */
+    private Socket[] peers;
+    private DataInputStream[] peerIn;
+    private DataOutputStream[] peerOut;
+
+    /**
+     * Sends the half-shards while the main thread receives.
+     *
+     * */
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "shard-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The number of the local bits.
+     *
+     * */
+    private int local;
+
+    private double[] re, im;
+
+    private double[] savedRe, savedIm;
+
+    private ShardWorker(ServerSocket server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts the worker. The optional arguments are the port,
+     * zero for any free one, and the address to bind to,
+     * the loopback by default.
+     *
+     * @param args the arguments
+     * @throws IOException if the communication fails
+     *
+     * */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        var address = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+
+        try (var server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(address, port));
+            System.out.println(server.getLocalPort());
+            System.out.flush();
+
+            var worker = new ShardWorker(server);
+            while (true) {
+                var socket = server.accept();
+                var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readInt() != -1) {
+                    socket.close();
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                try (socket) {
+                    worker.serve(in, new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+                } catch (EOFException e) {
+                    /* the coordinator is gone */
+                }
+                break;
+            }
+            worker.close();
+        }
+    }
+
+    /**
+     * Executes the commands of the coordinator until shut down.
+     *
+     * */
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            byte command = in.readByte();
+            switch (command) {
+                case CONNECT:
+                    connect(in);
+                    break;
+                case RESET:
+                    reset(in.readInt());
+                    break;
+                case UNITARY: {
+                    int position = in.readInt();
+                    unitary(-1, position, readDoubles(in, 4), readDoubles(in, 4));
+                    break;
+                }
+                case CONTROLLED: {
+                    int control = in.readInt(), position = in.readInt();
+                    unitary(control, position, readDoubles(in, 4), readDoubles(in, 4));
+                    break;
+                }
+                case DIAGONAL: {
+                    int[] positions = readInts(in, in.readInt());
+                    int size = 1 << positions.length;
+                    diagonal(positions, readDoubles(in, size), readDoubles(in, size));
+                    break;
+                }
+                case PERMUTE: {
+                    int[] positions = readInts(in, in.readInt());
+                    permute(positions, readInts(in, 1 << positions.length));
+                    break;
+                }
+                case SWAP:
+                    swap(in.readInt(), in.readInt());
+                    break;
+                case MEASURE:
+                    out.writeDouble(probability(in.readInt()));
+                    out.flush();
+                    break;
+                case COLLAPSE:
+                    collapse(in.readInt(), in.readInt(), in.readDouble());
+                    break;
+                case NORM:
+                    out.writeDouble(norm());
+                    out.flush();
+                    break;
+                case SAMPLE: {
+                    int count = in.readInt();
+                    for (int index: sample(count, new SplittableRandom(in.readLong())))
+                        out.writeInt(index);
+                    out.flush();
+                    break;
+                }
+                case SAVE:
+                    savedRe = re.clone();
+                    savedIm = im.clone();
+                    break;
+                case RESTORE:
+                    System.arraycopy(savedRe, 0, re, 0, re.length);
+                    System.arraycopy(savedIm, 0, im, 0, im.length);
+                    break;
+                case SHUTDOWN:
+                    return;
+                default:
+                    throw new IOException("unknown command: " + command);
+            }
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, int n) throws IOException {
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++)
+            out[i] = in.readDouble();
+        return out;
+    }
+
+    private static int[] readInts(DataInputStream in, int n) throws IOException {
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++)
+            out[i] = in.readInt();
+        return out;
+    }
+
+    /**
+     * Connects to the other workers: actively to those of the higher
+     * ranks, passively from those of the lower ones.
+     *
+     * */
+    private void connect(DataInputStream in) throws IOException {
+        rank = in.readInt();
+        int workers = in.readInt();
+        var addresses = new InetSocketAddress[workers];
+        for (int r = 0; r < workers; r++)
+            addresses[r] = new InetSocketAddress(in.readUTF(), in.readInt());
+
+        peers = new Socket[workers];
+        peerIn = new DataInputStream[workers];
+        peerOut = new DataOutputStream[workers];
+
+        for (int r = rank + 1; r < workers; r++) {
+            var socket = new Socket(addresses[r].getAddress(), addresses[r].getPort());
+            new DataOutputStream(socket.getOutputStream()).writeInt(rank);
+            attach(r, socket);
+        }
+
+        for (int accepted = 0; accepted < rank; accepted++) {
+            var socket = server.accept();
+            int r = new DataInputStream(socket.getInputStream()).readInt();
+            if (r < 0 || r >= rank || peers[r] != null)
+                throw new IOException("unexpected peer: " + r);
+            attach(r, socket);
+        }
+    }
+
+    private void attach(int r, Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        peers[r] = socket;
+        peerIn[r] = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        peerOut[r] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     * Allocates the shard, initialized to the shard of \( \ket{0 \dots 0} \).
+     *
+     * */
+    private void reset(int local) {
+        this.local = local;
+        if (re == null || re.length != 1 << local) {
+            re = new double[1 << local];
+            im = new double[1 << local];
+            savedRe = savedIm = null;
+        } else {
+            Arrays.fill(re, 0);
+            Arrays.fill(im, 0);
+        }
+        if (rank == 0)
+            re[0] = 1;
+    }
+
+    /**
+     * Returns the bit of the global or local position of the given local index.
+     *
+     * */
+    private int bit(int index, int position) {
+        if (position >= local)
+            return rank >>> (position - local) & 1;
+        return index >>> position & 1;
+    }
+
+    private IntStream range(int n) {
+        var out = IntStream.range(0, n);
+        return n >= PARALLEL_THRESHOLD ? out.parallel() : out;
+    }
+
+    /**
+     * Applies the 2x2 unitary to the local position,
+     * controlled by the other position unless negative.
+     *
+     * */
+    private void unitary(int control, int position, double[] uRe, double[] uIm) {
+        if (control >= local && bit(0, control) == 0)
+            return;
+
+        int stride = 1 << position;
+        range(re.length / 2).forEach(i -> {
+            int a = (i >> position << (position + 1)) | (i & (stride - 1));
+            int b = a | stride;
+            if (control >= 0 && control < local && (a >>> control & 1) == 0)
+                return;
+
+            double aRe = re[a], aIm = im[a], bRe = re[b], bIm = im[b];
+            re[a] = uRe[0] * aRe - uIm[0] * aIm + uRe[1] * bRe - uIm[1] * bIm;
+            im[a] = uRe[0] * aIm + uIm[0] * aRe + uRe[1] * bIm + uIm[1] * bRe;
+            re[b] = uRe[2] * aRe - uIm[2] * aIm + uRe[3] * bRe - uIm[3] * bIm;
+            im[b] = uRe[2] * aIm + uIm[2] * aRe + uRe[3] * bIm + uIm[3] * bRe;
+        });
+    }
+
+    /**
+     * Multiplies each amplitude by the table entry of its value of the positions.
+     *
+     * */
+    private void diagonal(int[] positions, double[] dRe, double[] dIm) {
+        range(re.length).forEach(i -> {
+            int v = 0;
+            for (int position: positions)
+                v = v << 1 | bit(i, position);
+            if (dRe[v] == 1 && dIm[v] == 0)
+                return;
+
+            double r = re[i], m = im[i];
+            re[i] = dRe[v] * r - dIm[v] * m;
+            im[i] = dRe[v] * m + dIm[v] * r;
+        });
+    }
+
+    /**
+     * Permutes the values of the local positions by the table.
+     *
+     * */
+    private void permute(int[] positions, int[] table) {
+        int k = positions.length;
+        int[] offsets = new int[1 << k];
+        for (int v = 0; v < offsets.length; v++)
+            for (int j = 0; j < k; j++)
+                if ((v >>> (k - 1 - j) & 1) != 0)
+                    offsets[v] |= 1 << positions[j];
+
+        int[] sorted = positions.clone();
+        Arrays.sort(sorted);
+
+        range(re.length >> k).forEach(j -> {
+            /* insert the zero bits of the positions */
+            int base = j;
+            for (int position: sorted)
+                base = (base >> position << (position + 1)) | (base & ((1 << position) - 1));
+
+            double[] tRe = new double[offsets.length], tIm = new double[offsets.length];
+            for (int v = 0; v < offsets.length; v++) {
+                tRe[v] = re[base | offsets[v]];
+                tIm[v] = im[base | offsets[v]];
+            }
+            for (int v = 0; v < offsets.length; v++) {
+                re[base | offsets[table[v]]] = tRe[v];
+                im[base | offsets[table[v]]] = tIm[v];
+            }
+        });
+    }
+
+    /**
+     * Swaps the global and the local position by exchanging the half-shards
+     * with the worker differing in the global bit: the amplitudes whose
+     * local bit differs from the own global bit are sent and replaced by
+     * the received ones, in the order of their indices.
+     *
+     * */
+    private void swap(int global, int position) throws IOException {
+        int partner = rank ^ 1 << (global - local);
+        int own = bit(0, global);
+        int stride = 1 << position;
+        int half = re.length / 2;
+
+        /* the i-th exchanged index */
+        var out = peerOut[partner];
+        Future<?> sending = sender.submit(() -> {
+            var buffer = ByteBuffer.allocate(CHUNK * 16);
+            for (int from = 0; from < half; from += CHUNK) {
+                int to = Math.min(half, from + CHUNK);
+                buffer.clear();
+                for (int i = from; i < to; i++) {
+                    int a = (i >> position << (position + 1)) | (i & (stride - 1)) | (1 - own) * stride;
+                    buffer.putDouble(re[a]).putDouble(im[a]);
+                }
+                out.write(buffer.array(), 0, buffer.position());
+            }
+            out.flush();
+            return null;
+        });
+
+        /* received into a separate buffer, as the sender still reads the shard */
+        var in = peerIn[partner];
+        double[] received = new double[2 * half];
+        byte[] bytes = new byte[CHUNK * 16];
+        for (int from = 0; from < half; from += CHUNK) {
+            int to = Math.min(half, from + CHUNK);
+            in.readFully(bytes, 0, (to - from) * 16);
+            ByteBuffer.wrap(bytes, 0, (to - from) * 16).asDoubleBuffer().get(received, 2 * from, 2 * (to - from));
+        }
+
+        try {
+            sending.get();
+        } catch (Exception e) {
+            throw new IOException("exchange failed", e);
+        }
+
+        for (int i = 0; i < half; i++) {
+            int a = (i >> position << (position + 1)) | (i & (stride - 1)) | (1 - own) * stride;
+            re[a] = received[2 * i];
+            im[a] = received[2 * i + 1];
+        }
+    }
+
+    /**
+     * Returns the probability of measuring 1 at the position within the shard.
+     *
+     * */
+    private double probability(int position) {
+        return range(re.length)
+            .filter(i -> bit(i, position) == 1)
+            .mapToDouble(i -> re[i] * re[i] + im[i] * im[i])
+            .sum();
+    }
+
+    private void collapse(int position, int outcome, double scale) {
+        range(re.length).forEach(i -> {
+            double s = bit(i, position) == outcome ? scale : 0;
+            re[i] *= s;
+            im[i] *= s;
+        });
+    }
+
+    private double norm() {
+        return range(re.length).mapToDouble(i -> re[i] * re[i] + im[i] * im[i]).sum();
+    }
+
+    /**
+     * Draws the local indices proportionally to their probabilities
+     * by a single pass over the sorted uniform draws, in random order.
+     *
+     * */
+    private int[] sample(int count, SplittableRandom random) {
+        double total = norm();
+        double[] draws = new double[count];
+        for (int i = 0; i < count; i++)
+            draws[i] = random.nextDouble() * total;
+        Arrays.sort(draws);
+
+        int[] out = new int[count];
+        double cumulative = 0;
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            while (index < re.length - 1
+                   && cumulative + re[index] * re[index] + im[index] * im[index] <= draws[i]) {
+                cumulative += re[index] * re[index] + im[index] * im[index];
+                index++;
+            }
+            out[i] = index;
+        }
+
+        /* shuffled, not to correlate the outcomes with the order of the shots */
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = out[i];
+            out[i] = out[j];
+            out[j] = t;
+        }
+        return out;
+    }
+
+    private void close() throws IOException {
+        sender.shutdownNow();
+        if (peers != null)
+            for (var peer: peers)
+                if (peer != null)
+                    peer.close();
+    }
+}
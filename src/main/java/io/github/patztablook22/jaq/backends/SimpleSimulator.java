@@ -2,15 +2,28 @@ package io.github.patztablook22.jaq.backends;
 
 import io.github.patztablook22.jaq.Qvm;
 import io.github.patztablook22.jaq.Qcircuit;
-import io.github.patztablook22.jaq.Qop;
-import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.PauliSum;
+import io.github.patztablook22.jaq.Shots;
+import io.github.patztablook22.jaq.ShotPublisher;
 import io.github.patztablook22.jaq.backends.lingebra.Ket;
-import io.github.patztablook22.jaq.backends.lingebra.SparseOperator;
 
-import java.util.HashMap;
-import java.util.Random;
-import java.util.Iterator;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 
 /**
@@ -31,52 +44,867 @@ import java.util.Arrays;
  *   runs out of memory or the computations take too much time.
  * </p>
  *
+ * <p>
+ *   Repeated runs are executed in parallel. The gates preceding the first
+ *   measurement are simulated only once, the rest is simulated per shot.
+ *   Each shot draws its measurement outcomes from its own random stream
+ *   derived from the internal generator and the shot's index, so that the
+ *   results for a given seed are bit-identical regardless of the number of
+ *   threads.
+ * </p>
+ *
+ * <p>
+ *   The simulator is thread-safe and meant to be shared, e.g. by all the
+ *   request threads of a service. The compiled plans are cached in a
+ *   concurrent map, the per-run state is confined to the executing
+ *   thread and the state buffers are reused through a lock-free pool.
+ *   Concurrent runs thus share the compilation work without contending.
+ * </p>
+ *
+ * <p>
+ *   The state buffers are reused across runs and circuits, and the gates
+ *   are applied either inplace or by double-buffering, so that no state
+ *   vectors are allocated in the gate loop. The total size of the buffers
+ *   retained between runs is bounded by a configurable capacity.
+ * </p>
+ *
+ * <p>
+ *   The asynchronous runs are executed by a configurable executor, each
+ *   job by a single task, so that concurrent jobs do not oversubscribe the
+ *   machine. A job is deferred until the estimated memory of the running
+ *   jobs allows it, see {@link #footprint(int)}, and only then compiles
+ *   its circuit, so that the queued jobs hold no plans. The tables of the
+ *   compiled plan are added to its estimate once known. Cancelling a job
+ *   stops its simulation at the next gate.
+ * </p>
+ *
  * */
 public class SimpleSimulator implements Qvm {
 
     /**
-     * The internal randomness generator.
+     * The state of the internal SplitMix64 generator
+     * of the random stream seeds.
      *
      * */
-    private Random random;
+    private final AtomicLong seed;
 
     /**
-     * Constructs a {@code SimpleSimulator} with the default
-     * internal {@link java.util.Random Random} random number generator.
+     * The number of shots executed by a single parallel task.
+     *
+     * */
+    private static final int SHOT_CHUNK = 256;
+
+    /**
+     * Compiled plans of the already executed circuits.
+     *
+     * */
+    private final PlanCache plans = new PlanCache();
+
+    /**
+     * Reusable state buffers.
+     *
+     * */
+    private final BufferPool buffers;
+
+    /**
+     * The executor of the asynchronous runs.
+     *
+     * */
+    private final Executor executor;
+
+    /**
+     * The admission of the asynchronous runs by their estimated memory.
+     *
+     * */
+    private final MemoryBudget admission;
+
+    /**
+     * Constructs a {@code SimpleSimulator} with a randomly
+     * seeded internal random number generator.
      *
      * */
     public SimpleSimulator() {
-        random = new Random();
+        this(ThreadLocalRandom.current().nextLong());
     }
 
     /**
      * Constructs a {@code SimpleSimulator} with the specified
-     * seed for the internal {@link java.util.Random Random} random number generator.
+     * seed for the internal random number generator.
      *
      * @param seed randomness seed
      * */
 
     public SimpleSimulator(long seed) {
-        random = new Random(seed);
+        this(seed, BufferPool.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a {@code SimpleSimulator} with the specified
+     * seed for the internal random number generator and
+     * the specified memory cap of the retained state buffers.
+     *
+     * <p>
+     *   By default, up to a quarter of the maximum heap size
+     *   is retained. Zero disables the reuse across runs.
+     * </p>
+     *
+     * @param seed randomness seed
+     * @param bufferCapacity the maximum total size of the retained state buffers in bytes
+     *
+     * */
+    public SimpleSimulator(long seed, long bufferCapacity) {
+        this(seed, bufferCapacity, ForkJoinPool.commonPool(), MemoryBudget.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a {@code SimpleSimulator} with the specified
+     * seed for the internal random number generator, the specified
+     * memory cap of the retained state buffers and the specified
+     * executor and memory budget of the asynchronous runs.
+     *
+     * <p>
+     *   By default, the asynchronous runs are executed by the common
+     *   {@link ForkJoinPool} and their estimated memory is capped at
+     *   half of the maximum heap size. A run exceeding the budget on its
+     *   own is executed once no other asynchronous run is executing.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     var backend = new SimpleSimulator(42, 1L &lt;&lt; 30,
+     *                                       SimpleSimulator.virtualThreadExecutor(),
+     *                                       4L &lt;&lt; 30);
+     *
+     *     CompletableFuture&lt;byte[][]&gt; future = backend.runAsync(circuit, 1000);
+     *  </code></pre>
+     *
+     * @param seed randomness seed
+     * @param bufferCapacity the maximum total size of the retained state buffers in bytes
+     * @param executor the executor of the asynchronous runs
+     * @param memoryBudget the maximum total estimated memory of the executing
+     *                     asynchronous runs, as well as of the circuits run in
+     *                     parallel by {@link #runAll(List, int)}, in bytes
+     *
+     * */
+    public SimpleSimulator(long seed, long bufferCapacity, Executor executor, long memoryBudget) {
+        this.seed = new AtomicLong(seed);
+        this.buffers = new BufferPool(bufferCapacity);
+        this.executor = executor;
+        this.admission = new MemoryBudget(memoryBudget);
+    }
+
+    /**
+     * Returns a new executor starting a virtual thread per task. Throws
+     * UnsupportedOperationException if the running JDK does not provide
+     * virtual threads, i.e. prior to JDK 21.
+     *
+     * @return the executor
+     *
+     * */
+    public static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(
+                "virtual threads not supported: " + Runtime.version());
+        }
+    }
+
+    /**
+     * Returns the estimated memory of a run of a circuit of the given
+     * width, i.e. that of three single precision state vectors: the state
+     * preceding the first measurement and the two buffers of a worker.
+     * Used to admit the asynchronous runs, as well as the batches of
+     * {@link JobServer}.
+     *
+     * @param qubits the number of qubits
+     * @return the estimated memory in bytes
+     *
+     * */
+    public static long footprint(int qubits) {
+        return qubits > 58 ? Long.MAX_VALUE : 24L << qubits;
+    }
+
+    /**
+     * Returns the estimated memory of a run of the compiled plan, i.e. the
+     * {@link #footprint(int)} of its width together with the tables of its
+     * instructions, which are retained along with the plan.
+     *
+     * @param plan the compiled plan
+     * @return the estimated memory in bytes
+     *
+     * */
+    static long footprint(Plan plan) {
+        long footprint = footprint(plan.qubits);
+        return footprint > Long.MAX_VALUE - plan.memory ? Long.MAX_VALUE : footprint + plan.memory;
     }
 
     @Override
     public byte[] run(Qcircuit circuit) {
-        var worker = new Worker(circuit);
-        return worker.run();
+        return run(circuit, Map.of());
     }
 
     @Override
     public byte[][] run(Qcircuit circuit, int shots) {
-        var worker = new Worker(circuit);
-        return worker.run(shots);
+        return run(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public byte[] run(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        return sample(circuit, bindings, 1).toBytes(0);
+    }
+
+    @Override
+    public byte[][] run(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        return sample(circuit, bindings, shots).toBytes();
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, int shots) {
+        return sample(circuit, Map.of(), shots);
+    }
+
+    @Override
+    public Shots sample(Qcircuit circuit, Map<Parameter, Double> bindings, int shots) {
+        var plan = plan(circuit);
+        return sample(plan, plan.bind(bindings), nextSeed(), shots);
+    }
+
+    @Override
+    public CompletableFuture<Shots> sampleAsync(Qcircuit circuit, int shots) {
+        return sampleAsync(circuit, Map.of(), shots);
+    }
+
+    /**
+     * The job is queued for admission by the memory budget right away,
+     * the circuit is compiled once it is admitted. The job draws its seed
+     * at submission, so the results are the same as those of
+     * {@link #sample(Qcircuit, Map, int)} called in the submission order,
+     * regardless of the scheduling.
+     *
+     * */
+    @Override
+    public CompletableFuture<Shots> sampleAsync(Qcircuit circuit, Map<Parameter, Double> bindings,
+                                                int shots) {
+        var job = new CompletableFuture<Shots>();
+        long base = nextSeed();
+        long memory = footprint(circuit.qubits());
+        admission.acquire(memory, job, () -> {
+            try {
+                executor.execute(() -> simulate(job, circuit, bindings, base, shots, memory));
+            } catch (RejectedExecutionException e) {
+                job.completeExceptionally(e);
+                admission.release(memory);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Compiles and simulates the admitted asynchronous job by a single
+     * worker, so that the concurrency is bounded by the executor and the
+     * memory budget. The tables of the plan are added to the estimate.
+     *
+     * */
+    private void simulate(CompletableFuture<Shots> job, Qcircuit circuit,
+                          Map<Parameter, Double> bindings, long base, int shots, long memory) {
+        long tables = 0;
+        try {
+            if (job.isDone())
+                return;
+
+            var plan = plan(circuit);
+            var values = plan.bind(bindings);
+            tables = plan.memory;
+            admission.grow(tables);
+
+            job.complete(sampleSerial(plan, values, base, shots, job));
+        } catch (CancellationException e) {
+            /* the job was cancelled */
+        } catch (RuntimeException | Error e) {
+            job.completeExceptionally(e);
+        } finally {
+            admission.release(memory + tables);
+        }
+    }
+
+    /**
+     * Runs the shots by a single worker.
+     *
+     * @param plan the executed plan
+     * @param values the parameter values
+     * @param base the seed of the random streams
+     * @param shots the number of shots
+     * @param job the asynchronous job stopping the run once cancelled, or {@code null}
+     * @return the bit-packed classical registers
+     *
+     * */
+    private Shots sampleSerial(Plan plan, double[] values, long base, int shots, Future<?> job) {
+        int prefix = plan.commonPrefix(new double[][] {values});
+        var initial = new Worker(plan, buffers, null, 0, job).prepare(values, prefix);
+        var worker = new Worker(plan, buffers, initial, prefix, job);
+        try {
+            var out = new Shots(plan.cbits, shots);
+            worker.sample(values, base, 0, shots, out);
+            return out;
+        } finally {
+            worker.release();
+            buffers.release(initial);
+        }
+    }
+
+    /**
+     * Packs the circuits by their estimated memory, see {@link #footprint(int)}.
+     * The circuits small enough for one per thread of the common
+     * {@link ForkJoinPool} to fit into the memory budget of the asynchronous
+     * runs are run in parallel, each by a single worker once admitted by the
+     * budget, so that the cores are not left idle on them. The remaining ones
+     * are then run one by one, each admitted and run by as many workers as
+     * fit into the budget, at most one per thread, or by a single one if no
+     * more fit. The seeds are drawn in the order of the circuits, so the
+     * results are the same as those of {@link #run(Qcircuit, int)} called
+     * for each circuit in order.
+     *
+     * */
+    @Override
+    public List<byte[][]> runAll(List<? extends Qcircuit> circuits, int shots) {
+        long[] bases = new long[circuits.size()];
+        for (int i = 0; i < bases.length; i++)
+            bases[i] = nextSeed();
+
+        long share = admission.capacity() / ForkJoinPool.getCommonPoolParallelism();
+        var small = IntStream.range(0, bases.length)
+            .filter(i -> footprint(circuits.get(i).qubits()) <= share)
+            .toArray();
+
+        byte[][][] data = new byte[bases.length][][];
+        IntStream.of(small).parallel().forEach(i -> {
+            var plan = plan(circuits.get(i));
+            long memory = footprint(plan);
+            admit(memory);
+            try {
+                data[i] = sampleSerial(plan, plan.bind(Map.of()), bases[i], shots, null).toBytes();
+            } finally {
+                admission.release(memory);
+            }
+        });
+
+        for (int i = 0; i < bases.length; i++) {
+            if (data[i] != null)
+                continue;
+            var plan = plan(circuits.get(i));
+            data[i] = sampleAdmitted(plan, plan.bind(Map.of()), bases[i], shots).toBytes();
+        }
+        return Arrays.asList(data);
+    }
+
+    /**
+     * Runs the shots by as many workers as the memory budget fits besides
+     * the plan's tables, at most one per thread of the common
+     * {@link ForkJoinPool}, once their estimated memory is admitted.
+     *
+     * @param plan the executed plan
+     * @param values the parameter values
+     * @param base the seed of the random streams
+     * @param shots the number of shots
+     * @return the bit-packed classical registers
+     *
+     * */
+    private Shots sampleAdmitted(Plan plan, double[] values, long base, int shots) {
+        long footprint = footprint(plan.qubits);
+        int workers = (int) Math.max(1, Math.min((admission.capacity() - plan.memory) / footprint,
+                                                 ForkJoinPool.getCommonPoolParallelism()));
+        long memory = footprint(plan) + (workers - 1) * footprint;
+
+        admit(memory);
+        try {
+            if (workers == 1)
+                return sampleSerial(plan, values, base, shots, null);
+            return sample(plan, values, base, shots, workers);
+        } finally {
+            admission.release(memory);
+        }
+    }
+
+    /**
+     * Runs the shots of the circuit by at most the given number of parallel
+     * workers, e.g. those admitted by an external memory budget, such as
+     * that of {@link JobServer}.
+     *
+     * @param circuit the circuit
+     * @param shots the number of shots
+     * @param workers the maximum number of the workers
+     * @return the bit-packed classical registers
+     *
+     * */
+    Shots sample(Qcircuit circuit, int shots, int workers) {
+        var plan = plan(circuit);
+        var values = plan.bind(Map.of());
+        long base = nextSeed();
+        if (workers == 1)
+            return sampleSerial(plan, values, base, shots, null);
+        return sample(plan, values, base, shots, workers);
+    }
+
+    /**
+     * Blocks until the given estimate is admitted by the memory budget.
+     * The caller is expected to release it once done.
+     *
+     * @param memory the estimated memory in bytes
+     *
+     * */
+    private void admit(long memory) {
+        var admitted = new CompletableFuture<Void>();
+        admission.acquire(memory, null, () -> admitted.complete(null));
+        admitted.join();
+    }
+
+    @Override
+    public Flow.Publisher<Shots> stream(Qcircuit circuit, long shots, int batch) {
+        return stream(circuit, Map.of(), shots, batch);
+    }
+
+    /**
+     * Each subscription gets its own worker, reused for all its batches,
+     * and its own random streams derived from the internal generator.
+     * The gates preceding the first measurement are simulated along with
+     * the first batch, and the state buffers are returned to the pool
+     * once the subscription terminates.
+     *
+     * */
+    @Override
+    public Flow.Publisher<Shots> stream(Qcircuit circuit, Map<Parameter, Double> bindings,
+                                        long shots, int batch) {
+        var plan = plan(circuit);
+        double[] values = plan.bind(bindings);
+        int prefix = plan.commonPrefix(new double[][] {values});
+
+        return new ShotPublisher(shots, batch, () -> new ShotPublisher.Source() {
+            private final long base = nextSeed();
+            private long next;
+            private Ket initial;
+            private Worker worker;
+
+            @Override
+            public Shots next(int n) {
+                if (worker == null) {
+                    initial = new Worker(plan, buffers, null, 0).prepare(values, prefix);
+                    worker = new Worker(plan, buffers, initial, prefix);
+                }
+
+                var out = new Shots(plan.cbits, n);
+                worker.sample(values, base, next, n, out);
+                next += n;
+                return out;
+            }
+
+            @Override
+            public void close() {
+                if (worker == null)
+                    return;
+
+                worker.release();
+                buffers.release(initial);
+            }
+        }, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs the sweep in parallel, one binding per task. The plan is compiled
+     * only once, and the bindings are arranged into a prefix tree: the state
+     * after the leading gates yielding the same state for a group of bindings
+     * is computed only once per group, the group being split by the values
+     * of the first gate it differs in. The bindings differing only in the
+     * late gates thus share most of the simulation, even if other bindings
+     * differ from the first gate. The tree is at most {@link #MAX_SWEEP_DEPTH}
+     * levels deep, bounding the number of the retained states.
+     * Each binding gets its own random streams derived from the internal
+     * generator, so the results do not depend on the scheduling.
+     *
+     * */
+    @Override
+    public byte[][][] sweep(Qcircuit circuit, Parameter[] parameters,
+                            double[][] bindings, int shots) {
+        var plan = plan(circuit);
+        double[][] values = plan.bind(parameters, bindings);
+
+        long[] bases = new long[values.length];
+        for (int i = 0; i < bases.length; i++)
+            bases[i] = nextSeed();
+
+        byte[][][] data = new byte[values.length][][];
+        if (values.length > 0)
+            sweep(plan, values, IntStream.range(0, values.length).toArray(),
+                  null, 0, 0, bases, shots, data);
+        return data;
+    }
+
+    /**
+     * The maximum depth of the prefix tree of a sweep.
+     *
+     * */
+    private static final int MAX_SWEEP_DEPTH = 16;
+
+    /**
+     * Runs the rows of a node of the sweep's prefix tree.
+     *
+     * @param plan the executed plan
+     * @param values the parameter values, one binding per row
+     * @param rows the rows of the node
+     * @param state the state common to the rows preceding the {@code start}-th
+     *              instruction, or {@code null} for the initial zero state
+     * @param start index of the first instruction to execute
+     * @param depth the depth of the node
+     * @param bases the seeds of the random streams of the rows
+     * @param shots the number of shots per row
+     * @param data the results, indexed by row
+     *
+     * */
+    private void sweep(Plan plan, double[][] values, int[] rows, Ket state, int start,
+                       int depth, long[] bases, int shots, byte[][][] data) {
+        int prefix = plan.commonPrefix(values, rows, start);
+        var initial = new Worker(plan, buffers, state, start).prepare(values[rows[0]], prefix);
+        try {
+            if (rows.length > 1 && depth < MAX_SWEEP_DEPTH && prefix < plan.instructions.length
+                    && plan.instructions[prefix] instanceof Plan.Unitary) {
+                plan.partition(values, rows, prefix).parallelStream().forEach(part ->
+                    sweep(plan, values, part, initial, prefix, depth + 1, bases, shots, data));
+                return;
+            }
+
+            IntStream.of(rows).parallel().forEach(i -> {
+                var out = new Shots(plan.cbits, shots);
+                var worker = new Worker(plan, buffers, initial, prefix);
+                try {
+                    worker.sample(values[i], bases[i], 0, shots, out);
+                } finally {
+                    worker.release();
+                }
+                data[i] = out.toBytes();
+            });
+        } finally {
+            buffers.release(initial);
+        }
     }
 
     /**
-     * Reusable single Qcircuit execution worker.
+     * Simulates the gates preceding the first measurement once
+     * and runs the shots from the resulting state in parallel.
+     *
+     * @param plan the executed plan
+     * @param values the parameter values
+     * @param base the seed of the random streams
+     * @param shots the number of shots
+     * @return the bit-packed classical registers
+     *
+     * */
+    private Shots sample(Plan plan, double[] values, long base, int shots) {
+        return sample(plan, values, base, shots, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Simulates the gates preceding the first measurement once and runs
+     * the shots from the resulting state by at most the given number
+     * of parallel workers.
+     *
+     * @param plan the executed plan
+     * @param values the parameter values
+     * @param base the seed of the random streams
+     * @param shots the number of shots
+     * @param workers the maximum number of the workers
+     * @return the bit-packed classical registers
+     *
+     * */
+    private Shots sample(Plan plan, double[] values, long base, int shots, int workers) {
+        int prefix = plan.commonPrefix(new double[][] {values});
+        var initial = new Worker(plan, buffers, null, 0).prepare(values, prefix);
+        try {
+            return sample(plan, values, initial, prefix, base, shots, workers);
+        } finally {
+            buffers.release(initial);
+        }
+    }
+
+    /**
+     * Runs the shots in parallel chunks of {@link #SHOT_CHUNK} shots,
+     * the chunks being dealt round-robin to at most {@code workers}
+     * parallel workers. As the {@code i}-th shot always uses the
+     * {@code i}-th random stream derived from {@code base}, the results
+     * are bit-identical regardless of the number of threads and workers.
+     *
+     * @param plan the executed plan
+     * @param values the parameter values
+     * @param initial the state preceding the {@code start}-th instruction
+     * @param start index of the first instruction to execute
+     * @param base the seed of the random streams
+     * @param shots the number of shots
+     * @param workers the maximum number of the workers
+     * @return the bit-packed classical registers
+     *
+     * */
+    private Shots sample(Plan plan, double[] values, Ket initial, int start,
+                         long base, int shots, int workers) {
+        Shots[] chunks = new Shots[(shots + SHOT_CHUNK - 1) / SHOT_CHUNK];
+        int tasks = Math.min(workers, chunks.length);
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            var worker = new Worker(plan, buffers, initial, start);
+            try {
+                for (int c = t; c < chunks.length; c += tasks) {
+                    int first = c * SHOT_CHUNK;
+                    int n = Math.min(SHOT_CHUNK, shots - first);
+
+                    chunks[c] = new Shots(plan.cbits, n);
+                    worker.sample(values, base, first, n, chunks[c]);
+                }
+            } finally {
+                worker.release();
+            }
+        });
+
+        var out = new Shots(plan.cbits, shots);
+        for (var chunk: chunks)
+            out.addAll(chunk);
+        return out;
+    }
+
+    /**
+     * Simulates the unitary part of the circuit, i.e. everything except
+     * the trailing measurements, and returns the resulting state for
+     * exact queries. Throws IllegalArgumentException if any measurement
+     * is followed by other operations.
+     *
+     * @param circuit the circuit
+     * @return the final state
+     * @see FinalState
+     *
+     * */
+    public FinalState state(Qcircuit circuit) {
+        return state(circuit, Map.of());
+    }
+
+    /**
+     * Simulates the unitary part of the parametrized circuit
+     * and returns the resulting state for exact queries.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @return the final state
+     * @see #state(Qcircuit)
+     *
+     * */
+    public FinalState state(Qcircuit circuit, Map<Parameter, Double> bindings) {
+        var plan = plan(circuit);
+        var state = plan.simulate(plan.bind(bindings), plan.unitaryLength(), buffers);
+        return new FinalState(plan.qubits, state);
+    }
+
+    /**
+     * Computes the exact expectation value of the observable
+     * in the final state of the circuit:
+     * \(
+     *      \bra{\psi} H \ket{\psi}
+     * \)
+     *
+     * <p>
+     *   Unlike estimating it from measurements, this requires a single
+     *   run and suffers no sampling noise. As for {@link #state(Qcircuit)},
+     *   the trailing measurements are ignored, the state being the one they
+     *   would measure. IllegalArgumentException is thrown if any measurement
+     *   is followed by other operations.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     var circuit = new Qcircuit() {{
+     *         hadamard(0);
+     *         cnot(0, 1);
+     *     }};
+     *
+     *     var observable = new PauliSum()
+     *         .add(1, "ZZ", 0, 1)
+     *         .add(0.5, "X", 0);
+     *
+     *     /* 1.0 &#42;/
+     *     System.out.println(new SimpleSimulator().expectation(circuit, observable));
+     *  </code></pre>
+     *
+     * @param circuit the circuit
+     * @param observable the observable \( H \)
+     * @return the expectation value
+     *
+     * */
+    public double expectation(Qcircuit circuit, PauliSum observable) {
+        return expectation(circuit, observable, Map.of());
+    }
+
+    /**
+     * Computes the exact expectation value of the observable
+     * in the final state of the parametrized circuit.
+     *
+     * @param circuit the parametrized circuit
+     * @param observable the observable \( H \)
+     * @param bindings the parameter values
+     * @return the expectation value
+     * @see #expectation(Qcircuit, PauliSum)
+     *
+     * */
+    public double expectation(Qcircuit circuit, PauliSum observable,
+                              Map<Parameter, Double> bindings) {
+        var plan = plan(circuit);
+        var state = plan.simulate(plan.bind(bindings), plan.unitaryLength(), buffers);
+        try {
+            return new Observable(observable, plan.qubits).expectation(state);
+        } finally {
+            buffers.release(state);
+        }
+    }
+
+    /**
+     * Computes the exact gradient of the expectation value of the observable
+     * in the final state of the parametrized circuit, with respect to all of
+     * the circuit's {@link Parameter Parameters}:
+     * \[
+     *      \frac{\partial}{\partial \theta_j} \bra{\psi(\theta)} H \ket{\psi(\theta)}
+     * \]
+     *
+     * <p>
+     *   Uses the adjoint differentiation method, i.e. a single forward
+     *   and a single backward pass over the circuit regardless of the number
+     *   of parameters, in contrast to the two full runs per parameter required
+     *   by the parameter-shift rule.
+     * </p>
+     *
+     * <p>
+     *   As for {@link #expectation(Qcircuit, PauliSum)}, the trailing
+     *   measurements are ignored and IllegalArgumentException is thrown
+     *   if any measurement is followed by other operations.
+     * </p>
+     *
+     * <p>
+     *   Example usage:
+     * </p>
+     *
+     *  <pre><code class="language-java">
+     *     var theta = new Parameter("theta");
+     *     var circuit = new Qcircuit() {{
+     *         rotateX(0, theta);
+     *     }};
+     *
+     *     var observable = new PauliSum().add(1, "Z", 0);
+     *
+     *     var simulator = new SimpleSimulator();
+     *     var gradient = simulator.gradient(circuit, observable, Map.of(theta, 0.5));
+     *
+     *     /* -sin(0.5) &#42;/
+     *     System.out.println(gradient.get(theta));
+     *  </code></pre>
+     *
+     * @param circuit the parametrized circuit
+     * @param observable the observable \( H \)
+     * @param bindings the parameter values
+     * @return the derivatives with respect to the circuit's parameters
+     *
+     * */
+    public Map<Parameter, Double> gradient(Qcircuit circuit, PauliSum observable,
+                                           Map<Parameter, Double> bindings) {
+        var plan = plan(circuit);
+        double[] values = plan.bind(bindings);
+        double[] gradient = Adjoint.gradient(plan, new Observable(observable, plan.qubits),
+                                             values, buffers);
+
+        var out = new LinkedHashMap<Parameter, Double>();
+        for (int i = 0; i < gradient.length; i++)
+            out.put(plan.parameters[i], gradient[i]);
+        return out;
+    }
+
+    /**
+     * Returns the compiled {@link Plan} of the given circuit,
+     * compiling it only if not yet cached or if the circuit
+     * has been extended since.
+     *
+     * @param circuit the circuit
+     * @return the compiled plan
+     *
+     * */
+    private Plan plan(Qcircuit circuit) {
+        return plans.get(circuit);
+    }
+
+    /**
+     * Returns the next seed of random streams.
+     *
+     * @return the seed
+     *
+     * */
+    private long nextSeed() {
+        return mix(seed.addAndGet(GAMMA));
+    }
+
+    /**
+     * The SplitMix64 increment, separating the consecutive states
+     * as well as the consecutive streams.
+     *
+     * */
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The SplitMix64 output function.
+     *
+     * @param z the state
+     * @return the mixed value
+     *
+     * */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Reusable single {@link Plan} execution worker.
+     *
+     * <p>
+     *   The measurement outcomes of every shot are drawn from its own
+     *   SplitMix64 random stream, selected by the shot's index. Shots
+     *   can thus be distributed among any number of workers without
+     *   affecting the results.
+     * </p>
      *
      * */
-    private class Worker extends Qflow {
+    private static class Worker {
+
+        /**
+         * The executed plan.
+         *
+         * */
+        private Plan plan;
+
+        /**
+         * The pool of the state buffers.
+         *
+         * */
+        private BufferPool buffers;
+
+        /**
+         * The state preceding the {@code start}-th instruction,
+         * or {@code null} for the initial zero state.
+         *
+         * */
+        private Ket initial;
+
+        /**
+         * The index of the first instruction to execute.
+         *
+         * */
+        private int start;
 
         /**
          * Complex vector representing the quantum system's global state.
@@ -84,6 +912,12 @@ public class SimpleSimulator implements Qvm {
          * */
         private Ket state;
 
+        /**
+         * Spare buffer for the transformations which cannot be done inplace.
+         *
+         * */
+        private Ket spare;
+
         /**
          * The process' classical register.
          *
@@ -91,210 +925,217 @@ public class SimpleSimulator implements Qvm {
         private byte[] classical;
 
         /**
-         * Constructs a Worker for given {@code Qcircuit}.
+         * The state of the current shot's random stream.
          *
-         * @param circuit underlying Qcircuit
+         * */
+        private long seed;
+
+        /**
+         * The asynchronous job stopping the Worker once cancelled,
+         * or {@code null}.
          *
          * */
-        public Worker(Qcircuit circuit) {
-            super(circuit);
+        private Future<?> job;
+
+        /**
+         * Constructs a Worker resuming the given {@code Plan}
+         * from a precomputed state.
+         *
+         * @param plan underlying Plan
+         * @param buffers the pool of the state buffers
+         * @param initial the state preceding the {@code start}-th instruction,
+         *                or {@code null} for the initial zero state
+         * @param start index of the first instruction to execute
+         *
+         * */
+        public Worker(Plan plan, BufferPool buffers, Ket initial, int start) {
+            this(plan, buffers, initial, start, null);
         }
 
         /**
-         * Runs the Qcircuit once, returns a copy of the resulting
-         * classical register.
+         * Constructs a Worker resuming the given {@code Plan} from
+         * a precomputed state, throwing CancellationException
+         * once the given job is cancelled.
          *
-         * @return resulting classical register copy
+         * @param plan underlying Plan
+         * @param buffers the pool of the state buffers
+         * @param initial the state preceding the {@code start}-th instruction,
+         *                or {@code null} for the initial zero state
+         * @param start index of the first instruction to execute
+         * @param job the asynchronous job, or {@code null}
          *
          * */
-        public byte[] run() {
-            flow();
-            return classical.clone();
+        public Worker(Plan plan, BufferPool buffers, Ket initial, int start, Future<?> job) {
+            this.plan = plan;
+            this.job = job;
+            this.buffers = buffers;
+            this.initial = initial;
+            this.start = start;
+            state = buffers.acquire(1 << plan.qubits);
+            spare = buffers.acquire(1 << plan.qubits);
+            classical = new byte[plan.cbits];
         }
 
         /**
-         * Runs the Qcircuit {@code shots} times, 
-         * returns copies of the resulting
-         * classical registers as a 2D byte array.
+         * Returns the state buffers to the pool.
+         * The Worker must not be used afterwards.
          *
+         * */
+        public void release() {
+            buffers.release(state);
+            buffers.release(spare);
+            state = null;
+            spare = null;
+        }
+
+        /**
+         * Runs the given shots of the Plan, appending the
+         * resulting classical registers to {@code out}
+         * without allocating anything per shot.
+         *
+         * @param values the parameter values
+         * @param base the seed of the random streams
+         * @param first the index of the first shot
          * @param shots the number of execution repetitions
-         * @return resulting classical registers copy
+         * @param out the results container
          *
          * */
-        public byte[][] run(int shots) {
-            byte[][] data = new byte[shots][];
-            for (int i = 0; i < shots; i++)
-                data[i] = run();
-            return data;
+        public void sample(double[] values, long base, long first, int shots, Shots out) {
+            for (int i = 0; i < shots; i++) {
+                checkCancelled();
+                seed = mix(base + (first + i) * GAMMA);
+                shot(values);
+                out.add(classical);
+            }
         }
 
-        @Override
-        protected void hadamard(int qubit) {
-            int padBefore = 1 << qubit;
-            int padAfter = 1 << (getCircuit().qubits() - qubit - 1);
+        /**
+         * Runs the instructions of the Plan from the {@code start}-th
+         * to the {@code end}-th, which must not contain any measurement,
+         * returns the resulting state. The state is detached from
+         * the Worker, which must not be used afterwards.
+         *
+         * @param values the parameter values
+         * @param end the index of the last instruction to execute, exclusive
+         * @return the resulting state
+         *
+         * */
+        public Ket prepare(double[] values, int end) {
+            if (initial == null) {
+                state.zero();
+                state.getReal()[0] = 1;
+            } else {
+                state.assign(initial);
+            }
+            Arrays.fill(classical, (byte) 0);
+
+            execute(values, start, end);
+            buffers.release(spare);
 
-            state = SparseOperator.eye(padBefore)
-                .kronecker(hadamardKernel)
-                .kronecker(SparseOperator.eye(padAfter))
-                .transform(state);
+            var out = state;
+            state = null;
+            spare = null;
+            return out;
         }
 
-        @Override
-        protected void pauliX(int qubit) {
-            int padBefore = 1 << qubit;
-            int padAfter = 1 << (getCircuit().qubits() - qubit - 1);
+        /**
+         * Runs the Plan once, leaving the result in {@code classical}.
+         *
+         * @param values the parameter values
+         *
+         * */
+        private void shot(double[] values) {
+            if (initial == null) {
+                state.zero();
+                state.getReal()[0] = 1;
+            } else {
+                state.assign(initial);
+            }
+            Arrays.fill(classical, (byte) 0);
+
+            execute(values, start, plan.instructions.length);
+        }
 
-            state = SparseOperator.eye(padBefore)
-                .kronecker(SparseOperator.yey(2))
-                .kronecker(SparseOperator.eye(padAfter))
-                .transform(state);
+        /**
+         * Executes the given range of the Plan's instructions.
+         *
+         * @param values the parameter values
+         * @param from index of the first instruction, inclusive
+         * @param to index of the last instruction, exclusive
+         *
+         * */
+        private void execute(double[] values, int from, int to) {
+            for (int i = from; i < to; i++) {
+                checkCancelled();
+                var instruction = plan.instructions[i];
+                if (instruction instanceof Plan.Measurement) {
+                    var m = (Plan.Measurement) instruction;
+                    measure(m.bit, m.target);
+                } else {
+                    var next = ((Plan.Unitary) instruction).apply(state, spare, values);
+                    if (next == spare) {
+                        spare = state;
+                        state = next;
+                    }
+                }
+            }
         }
 
-        @Override
-        protected void rotateX(int qubit, double angle) {
+        /**
+         * Throws CancellationException if the job was cancelled.
+         *
+         * */
+        private void checkCancelled() {
+            if (job != null && job.isCancelled())
+                throw new CancellationException();
         }
 
-        @Override
-        protected void measure(int source, int target) {
+        /**
+         * Measures the qubit of the given state index bit,
+         * collapsing the {@code state}.
+         *
+         * @param bit the qubit's state index bit
+         * @param target the target classical bit
+         *
+         * */
+        private void measure(int bit, int target) {
             float[] real = state.getReal();
             float[] imag = state.getImag();
+            int dim = state.getDim();
 
             /* probability density from quantum state amplitude
              * density = \sum_k |state_k|^2
              */
 
             float density1 = 0;
-            for (int i: marginalIndices(source, 1))
-                density1 += real[i] * real[i] + imag[i] * imag[i];
+            for (int k = 0; k < dim; k++)
+                if ((k & bit) != 0)
+                    density1 += real[k] * real[k] + imag[k] * imag[k];
 
-            //System.out.println(density1);
-            int result = random.nextFloat() < density1 ? 1 : 0;
+            int result = nextFloat() < density1 ? 1 : 0;
 
-            for (int i : marginalIndices(source, 1 - result)) {
-                real[i] = 0;
-                imag[i] = 0;
+            int discarded = result == 1 ? 0 : bit;
+            for (int k = 0; k < dim; k++) {
+                if ((k & bit) == discarded) {
+                    real[k] = 0;
+                    imag[k] = 0;
+                }
             }
             state.normalize();
 
             classical[target] = (byte) result;
         }
 
-        @Override
-        protected void cnot(int control, int target) {
-            int padBefore, padAfter;
-            SparseOperator kernel;
-
-            if (control < target) {
-                padBefore = 1 << control;
-                padAfter = 1 << (getCircuit().qubits() - target - 1);
-
-                kernel = SparseOperator.basisKetbra(0, 0)
-                    .kronecker(SparseOperator.eye(1 << (target - control)))
-                    .add(SparseOperator.basisKetbra(1, 1)
-                        .kronecker(SparseOperator.eye(1 << (target - control - 1)))
-                        .kronecker(SparseOperator.yey(2)));
-
-            } else {
-
-                padBefore = 1 << target;
-                padAfter = 1 << (getCircuit().qubits() - control - 1);
-
-                kernel = SparseOperator.eye(1 << (control - target))
-                    .kronecker(SparseOperator.basisKetbra(0, 0))
-                    .add(SparseOperator.yey(2)
-                        .kronecker(SparseOperator.eye(1 << (control - target - 1)))
-                        .kronecker(SparseOperator.basisKetbra(1, 1)));
-            }
-
-            state = SparseOperator.eye(padBefore)
-                .kronecker(kernel)
-                .kronecker(SparseOperator.eye(padAfter))
-                .transform(state);
-        }
-
-        @Override
-        public void flow() {
-            if (state == null) {
-                int stateDim = 1 << getCircuit().qubits();
-
-                state = new Ket(stateDim);
-                classical = new byte[getCircuit().cbits()];
-            } else {
-                state.zero();
-                Arrays.fill(classical, (byte) 0);
-            }
-            state.getReal()[0] = 1;
-            super.flow();
-        }
-
         /**
-         * Returns a lazy iterable returning the indices
-         * of all global states in which {@code qubit} 
-         * has the value {@code value}. Meant for a direct
-         * use in for cycles for cleaner logic code.
+         * Returns the next uniformly distributed value
+         * of the current shot's random stream.
          *
-         * @param qubit the desired qubit
-         * @param value the qubit's value
-         *
-         * @return iterable over the specified global state indices
+         * @return value in the range [0, 1)
          *
          * */
-        private Iterable<Integer> marginalIndices(int qubit, int value) {
-            return new Iterable<Integer>() {
-
-                @Override
-                public Iterator<Integer> iterator() {
-
-                    return new Iterator<Integer>() {
-
-                        private int iter = findNext(0);
-
-                        private int findNext(int iter) {
-                            while (iter < state.getDim()) {
-                                /*
-                                 * the binary representation of iter must have
-                                 * the digit `state` (either 1 or 0) 
-                                 * at `getCircuit().qubits() - system`-th position
-                                 */
-
-                                int digit = (iter >> (getCircuit().qubits() - qubit - 1)) & 1;
-                                if (digit == value)
-                                    break;
-
-                                iter++;
-                            }
-                            return iter;
-                        }
-
-                        @Override
-                        public boolean hasNext() {
-                            return iter < state.getDim();
-                        }
-
-                        @Override
-                        public Integer next() {
-                            int temp = iter;
-                            iter = findNext(iter + 1);
-                            return temp;
-                        }
-                    };
-                }
-            };
+        private float nextFloat() {
+            seed += GAMMA;
+            return (mix(seed) >>> 40) * 0x1.0p-24f;
         }
     }
-
-    /**
-     * Pre-cached {@link io.github.patztablook22.jaq.nodes.Hadamard}
-     * gate kernel.
-     * */
-    private static SparseOperator hadamardKernel;
-
-    static {
-        float invsqrt2 = (float) Math.sqrt(2) / 2;
-
-        hadamardKernel = new SparseOperator(
-                new float[] {invsqrt2,  invsqrt2,
-                             invsqrt2, -invsqrt2},
-                             null);
-    }
 }
@@ -0,0 +1,473 @@
+package io.github.patztablook22.jaq.backends;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+
+/**
+ * Stabilizer state of a register of qubits, i.e. a state prepared
+ * from \( \ket{0 \dots 0} \) by a Clifford circuit.
+ *
+ * <p>
+ *   The state is represented by the generators of its stabilizer group,
+ *   the {@code n} commuting Pauli strings \( g \) such that
+ *   \( g \ket{\phi} = \ket{\phi} \). Clifford gates conjugate the generators,
+ *   each in time linear in the number of qubits. Once {@link #freeze() frozen},
+ *   the generators are brought into the reduced row echelon form, which gives
+ *   the amplitudes up to a global phase fixed for the state:
+ *   the support is the affine subspace \( x_0 \oplus \mathrm{span}\{a_i\} \) of the
+ *   X parts \( a_i \) of the generators, and
+ *   \( \braket{x_0 \oplus a | \phi} = \braket{x_0 | g | \phi} \)
+ *   for the product \( g \) of the generators whose X parts sum to \( a \).
+ * </p>
+ *
+ * */
+class StabilizerState {
+
+    /**
+     * Pauli string \( i^k X^x Z^z \), the qubit {@code q}
+     * corresponding to the bit {@code q} of the bit masks.
+     *
+     * */
+    static final class Pauli {
+
+        final long[] x, z;
+        int k;
+
+        Pauli(int n) {
+            x = new long[(n + 63) / 64];
+            z = new long[(n + 63) / 64];
+        }
+
+        Pauli(Pauli other) {
+            x = other.x.clone();
+            z = other.z.clone();
+            k = other.k;
+        }
+
+        /**
+         * Constructs the Pauli string from its letters.
+         *
+         * @param n the number of qubits
+         * @param paulis the letters {@code I}, {@code X}, {@code Y} or {@code Z}
+         * @param qubits the qubits the letters act on
+         * @return the Pauli string
+         *
+         * */
+        static Pauli of(int n, String paulis, int... qubits) {
+            var out = new Pauli(n);
+            for (int i = 0; i < qubits.length; i++) {
+                char c = paulis.charAt(i);
+                if (c == 'X' || c == 'Y')
+                    out.flipX(qubits[i]);
+                if (c == 'Z' || c == 'Y')
+                    out.flipZ(qubits[i]);
+                /* Y = i X Z */
+                if (c == 'Y')
+                    out.k++;
+            }
+            out.k &= 3;
+            return out;
+        }
+
+        boolean x(int q) {
+            return (x[q >> 6] >>> q & 1) != 0;
+        }
+
+        boolean z(int q) {
+            return (z[q >> 6] >>> q & 1) != 0;
+        }
+
+        void flipX(int q) {
+            x[q >> 6] ^= 1L << q;
+        }
+
+        void flipZ(int q) {
+            z[q >> 6] ^= 1L << q;
+        }
+
+        boolean isIdentity() {
+            for (int w = 0; w < x.length; w++)
+                if (x[w] != 0 || z[w] != 0)
+                    return false;
+            return true;
+        }
+
+        /**
+         * Conjugates by the Hadamard gate: \( X \leftrightarrow Z \), \( Y \to -Y \).
+         *
+         * */
+        void h(int q) {
+            boolean a = x(q), b = z(q);
+            if (a && b)
+                k = (k + 2) & 3;
+            if (a != b) {
+                flipX(q);
+                flipZ(q);
+            }
+        }
+
+        /**
+         * Conjugates by the phase gate: \( X \to Y \), \( Z \to Z \).
+         *
+         * */
+        void s(int q) {
+            if (x(q)) {
+                k = (k + 1) & 3;
+                flipZ(q);
+            }
+        }
+
+        /**
+         * Conjugates by the Pauli X gate: \( Z \to -Z \).
+         *
+         * */
+        void pauliX(int q) {
+            if (z(q))
+                k = (k + 2) & 3;
+        }
+
+        /**
+         * Conjugates by the Pauli Z gate: \( X \to -X \).
+         *
+         * */
+        void pauliZ(int q) {
+            if (x(q))
+                k = (k + 2) & 3;
+        }
+
+        /**
+         * Conjugates by the CNOT gate:
+         * \( X_c \to X_c X_t \), \( Z_t \to Z_c Z_t \).
+         *
+         * */
+        void cnot(int c, int t) {
+            if (x(c))
+                flipX(t);
+            if (z(t))
+                flipZ(c);
+        }
+
+        /**
+         * Returns whether the two Pauli strings commute.
+         *
+         * @param other the other string
+         * @return whether they commute
+         *
+         * */
+        boolean commutes(Pauli other) {
+            int count = 0;
+            for (int w = 0; w < x.length; w++)
+                count += Long.bitCount(x[w] & other.z[w]) + Long.bitCount(z[w] & other.x[w]);
+            return (count & 1) == 0;
+        }
+
+        /**
+         * Conjugates by the other Pauli string, negating if they anticommute.
+         *
+         * @param other the conjugating string
+         *
+         * */
+        void conjugate(Pauli other) {
+            if (!commutes(other))
+                k = (k + 2) & 3;
+        }
+
+        /**
+         * Multiplies by the other Pauli string from the right:
+         * \( i^{k} X^{x} Z^{z} \, i^{k'} X^{x'} Z^{z'}
+         *    = i^{k + k'} (-1)^{z \cdot x'} X^{x \oplus x'} Z^{z \oplus z'} \)
+         *
+         * @param other the right operand
+         *
+         * */
+        void multiply(Pauli other) {
+            int sign = 0;
+            for (int w = 0; w < x.length; w++) {
+                sign += Long.bitCount(z[w] & other.x[w]);
+                x[w] ^= other.x[w];
+                z[w] ^= other.z[w];
+            }
+            k = (k + other.k + 2 * sign) & 3;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Pauli))
+                return false;
+            var pauli = (Pauli) other;
+            return Arrays.equals(x, pauli.x) && Arrays.equals(z, pauli.z);
+        }
+
+        /**
+         * Hashes the X and Z parts only, consistently
+         * with {@link #equals(Object)} ignoring the phase.
+         *
+         * */
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(x) + Arrays.hashCode(z);
+        }
+    }
+
+    /**
+     * The number of qubits.
+     *
+     * */
+    private final int n;
+
+    /**
+     * The stabilizer generators.
+     *
+     * */
+    private final Pauli[] generators;
+
+    /**
+     * The number of the generators with a nonzero X part after freezing,
+     * i.e. the dimension of the support.
+     *
+     * */
+    private int rank = -1;
+
+    /**
+     * The pivot qubit of each of the first {@link #rank} generators.
+     *
+     * */
+    private int[] pivots;
+
+    /**
+     * The pivot qubit of each of the remaining, pure Z generators.
+     *
+     * */
+    private int[] zPivots;
+
+    /**
+     * A basis state of the support.
+     *
+     * */
+    private long[] origin;
+
+    /**
+     * Constructs the state \( \ket{0 \dots 0} \), stabilized by the \( Z_q \).
+     *
+     * @param n the number of qubits
+     *
+     * */
+    StabilizerState(int n) {
+        this.n = n;
+        generators = new Pauli[n];
+        for (int q = 0; q < n; q++) {
+            generators[q] = new Pauli(n);
+            generators[q].flipZ(q);
+        }
+    }
+
+    /**
+     * Returns the number of qubits.
+     *
+     * @return the number of qubits
+     *
+     * */
+    int qubits() {
+        return n;
+    }
+
+    void h(int q) {
+        for (var g: generators)
+            g.h(q);
+    }
+
+    void s(int q) {
+        for (var g: generators)
+            g.s(q);
+    }
+
+    void pauliX(int q) {
+        for (var g: generators)
+            g.pauliX(q);
+    }
+
+    void pauliZ(int q) {
+        for (var g: generators)
+            g.pauliZ(q);
+    }
+
+    void cnot(int c, int t) {
+        for (var g: generators)
+            g.cnot(c, t);
+    }
+
+    void pauli(Pauli p) {
+        for (var g: generators)
+            g.conjugate(p);
+    }
+
+    /**
+     * Brings the generators into the reduced row echelon form
+     * and finds a basis state of the support. No further gates
+     * can be applied afterwards.
+     *
+     * */
+    void freeze() {
+        rank = 0;
+        pivots = new int[n];
+
+        for (int q = 0; q < n && rank < n; q++) {
+            int pivot = -1;
+            for (int i = rank; i < n; i++)
+                if (generators[i].x(q)) {
+                    pivot = i;
+                    break;
+                }
+            if (pivot < 0)
+                continue;
+
+            swap(rank, pivot);
+            for (int i = 0; i < n; i++)
+                if (i != rank && generators[i].x(q))
+                    generators[i].multiply(generators[rank]);
+            pivots[rank++] = q;
+        }
+
+        /* the remaining generators are +-Z strings, solve z . x0 = sign */
+        zPivots = new int[n - rank];
+        int solved = rank;
+        for (int q = 0; q < n && solved < n; q++) {
+            int pivot = -1;
+            for (int i = solved; i < n; i++)
+                if (generators[i].z(q)) {
+                    pivot = i;
+                    break;
+                }
+            if (pivot < 0)
+                continue;
+
+            swap(solved, pivot);
+            for (int i = rank; i < n; i++)
+                if (i != solved && generators[i].z(q))
+                    generators[i].multiply(generators[solved]);
+            zPivots[solved++ - rank] = q;
+        }
+
+        origin = new long[(n + 63) / 64];
+        for (int i = rank; i < n; i++)
+            if ((generators[i].k & 2) != 0)
+                origin[zPivots[i - rank] >> 6] |= 1L << zPivots[i - rank];
+    }
+
+    private void swap(int i, int j) {
+        var t = generators[i];
+        generators[i] = generators[j];
+        generators[j] = t;
+    }
+
+    /**
+     * Returns the dimension of the support of the frozen state.
+     *
+     * @return the dimension
+     *
+     * */
+    int rank() {
+        return rank;
+    }
+
+    /**
+     * Returns the amplitude of the basis state in the frozen state,
+     * relative to a global phase fixed for the state.
+     *
+     * @param basis the basis state
+     * @param out the real and the imaginary part of the amplitude, output
+     *
+     * */
+    void amplitude(long[] basis, double[] out) {
+        long[] a = basis.clone();
+        for (int w = 0; w < a.length; w++)
+            a[w] ^= origin[w];
+
+        var g = new Pauli(n);
+        for (int i = 0; i < rank; i++) {
+            int q = pivots[i];
+            if ((a[q >> 6] >>> q & 1) != 0)
+                g.multiply(generators[i]);
+        }
+
+        int sign = 0;
+        for (int w = 0; w < a.length; w++) {
+            if (a[w] != g.x[w]) {
+                out[0] = out[1] = 0;
+                return;
+            }
+            sign += Long.bitCount(g.z[w] & origin[w]);
+        }
+
+        /* i^k (-1)^{c . x0} 2^{-r/2} */
+        double magnitude = Math.pow(2, -0.5 * rank);
+        int k = (g.k + 2 * sign) & 3;
+        out[0] = k == 0 ? magnitude : k == 2 ? -magnitude : 0;
+        out[1] = k == 1 ? magnitude : k == 3 ? -magnitude : 0;
+    }
+
+    /**
+     * Samples a uniformly random element of the span
+     * of the X parts of the frozen generators.
+     *
+     * @param random the randomness source
+     * @return the element
+     *
+     * */
+    long[] randomShift(SplittableRandom random) {
+        long[] out = new long[(n + 63) / 64];
+        for (int i = 0; i < rank; i++)
+            if (random.nextBoolean())
+                for (int w = 0; w < out.length; w++)
+                    out[w] ^= generators[i].x[w];
+        return out;
+    }
+
+    /**
+     * Multiplies the Pauli string by the frozen generators so that it
+     * becomes the same for all the strings acting equally on the state,
+     * i.e. those of the same coset of the stabilizer group. The phase
+     * is kept so that the action on the state does not change.
+     *
+     * @param p the Pauli string, reduced in place
+     *
+     * */
+    void canonicalize(Pauli p) {
+        for (int i = 0; i < rank; i++)
+            if (p.x(pivots[i]))
+                p.multiply(generators[i]);
+        for (int i = rank; i < n; i++)
+            if (p.z(zPivots[i - rank]))
+                p.multiply(generators[i]);
+    }
+
+    /**
+     * Reduces the bit mask by the X parts of the frozen generators, giving
+     * the same result for the bit masks of the same coset of their span.
+     *
+     * @param a the bit mask
+     * @return the reduced bit mask
+     *
+     * */
+    long[] reduce(long[] a) {
+        long[] out = a.clone();
+        for (int i = 0; i < rank; i++) {
+            int q = pivots[i];
+            if ((out[q >> 6] >>> q & 1) != 0)
+                for (int w = 0; w < out.length; w++)
+                    out[w] ^= generators[i].x[w];
+        }
+        return out;
+    }
+
+    /**
+     * Returns a basis state of the support of the frozen state.
+     *
+     * @return the basis state
+     *
+     * */
+    long[] origin() {
+        return origin.clone();
+    }
+}
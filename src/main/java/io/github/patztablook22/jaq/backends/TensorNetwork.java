@@ -0,0 +1,411 @@
+package io.github.patztablook22.jaq.backends;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+
+/**
+ * Network of complex tensors with all indices of dimension 2.
+ *
+ * <p>
+ *   Each index, or <i>leg</i>, is identified by an integer and shared by
+ *   at most two tensors. The legs shared by two tensors are summed over
+ *   by the contraction, the legs owned by a single tensor remain open.
+ *   The network is contracted pairwise along a contraction path, the
+ *   order of which determines the sizes of the intermediate tensors and
+ *   thus the cost, often by many orders of magnitude.
+ * </p>
+ *
+ * <p>
+ *   The path is searched for by a randomized greedy heuristic: each trial
+ *   repeatedly contracts the pair of connected tensors whose contraction
+ *   reduces the total size the most, perturbed by Gumbel noise in all but
+ *   the first trial, and the path of the lowest total cost is kept.
+ * </p>
+ *
+ * */
+class TensorNetwork {
+
+    /**
+     * The largest rank of an intermediate tensor.
+     *
+     * */
+    static final int MAX_RANK = 28;
+
+    /**
+     * Dense complex tensor. The first leg corresponds
+     * to the most significant bit of the flat index.
+     *
+     * */
+    static final class Tensor {
+
+        final int[] legs;
+        final double[] re, im;
+
+        Tensor(int[] legs, double[] re, double[] im) {
+            if (re.length != 1 << legs.length || im.length != re.length)
+                throw new IllegalArgumentException("dimension mismatch: "
+                        + re.length + " vs " + (1 << legs.length));
+            this.legs = legs;
+            this.re = re;
+            this.im = im;
+        }
+    }
+
+    /**
+     * The tensors of the network.
+     *
+     * */
+    private final List<Tensor> tensors = new ArrayList<>();
+
+    /**
+     * The next unused leg.
+     *
+     * */
+    private int next;
+
+    /**
+     * Returns a new unused leg.
+     *
+     * @return the leg
+     *
+     * */
+    int leg() {
+        return next++;
+    }
+
+    /**
+     * Adds a tensor to the network.
+     *
+     * @param legs the legs, the most significant index bit first
+     * @param re the real components
+     * @param im the imaginary components
+     *
+     * */
+    void add(int[] legs, double[] re, double[] im) {
+        tensors.add(new Tensor(legs, re, im));
+    }
+
+    /**
+     * Returns the number of the tensors.
+     *
+     * @return the number of the tensors
+     *
+     * */
+    int size() {
+        return tensors.size();
+    }
+
+    /**
+     * Searches for a contraction path of the network.
+     * The {@code k}-th step contracts the two given tensors into
+     * the tensor numbered {@code size() + k}.
+     *
+     * @param trials the number of the randomized greedy trials
+     * @param seed the randomness seed
+     * @return the contraction path
+     *
+     * */
+    int[][] search(int trials, long seed) {
+        int[][] legs = new int[tensors.size()][];
+        for (int i = 0; i < legs.length; i++)
+            legs[i] = tensors.get(i).legs;
+
+        int[][] best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        var random = new SplittableRandom(seed);
+
+        for (int t = 0; t < Math.max(1, trials); t++) {
+            double[] cost = {0};
+            int[][] path = greedy(legs, t == 0 ? 0 : TEMPERATURE, random.split(), cost);
+            if (cost[0] < bestCost) {
+                best = path;
+                bestCost = cost[0];
+            }
+        }
+        return best;
+    }
+
+    private static final double TEMPERATURE = 1;
+
+    /**
+     * A single greedy trial.
+     *
+     * @param initial the legs of the tensors
+     * @param temperature the noise temperature
+     * @param random the randomness source
+     * @param cost the total cost, i.e. the number of multiplications, output
+     * @return the contraction path
+     *
+     * */
+    private static int[][] greedy(int[][] initial, double temperature,
+                                  SplittableRandom random, double[] cost) {
+        var legs = new ArrayList<int[]>(Arrays.asList(initial));
+        var alive = new ArrayList<Boolean>();
+        var owners = new HashMap<Integer, int[]>();
+
+        for (int i = 0; i < legs.size(); i++) {
+            alive.add(true);
+            for (int leg: legs.get(i))
+                own(owners, leg, i);
+        }
+
+        var path = new ArrayList<int[]>();
+        int remaining = legs.size();
+
+        while (remaining > 1) {
+            int bestA = -1, bestB = -1;
+            double bestScore = Double.POSITIVE_INFINITY;
+
+            for (var entry: owners.entrySet()) {
+                int[] o = entry.getValue();
+                if (o[1] < 0)
+                    continue;
+
+                int[] a = legs.get(o[0]), b = legs.get(o[1]);
+                int shared = shared(a, b);
+                int rank = a.length + b.length - 2 * shared;
+
+                /* the size reduction, in the log domain */
+                double score = rank - Math.log(Math.scalb(1.0, a.length)
+                                               + Math.scalb(1.0, b.length)) / Math.log(2);
+                if (temperature > 0)
+                    score -= temperature * -Math.log(-Math.log(random.nextDouble() + Double.MIN_VALUE));
+
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestA = Math.min(o[0], o[1]);
+                    bestB = Math.max(o[0], o[1]);
+                }
+            }
+
+            if (bestA < 0) {
+                /* disconnected components, take the outer product */
+                for (int i = 0; i < legs.size(); i++) {
+                    if (!alive.get(i))
+                        continue;
+                    if (bestA < 0)
+                        bestA = i;
+                    else if (bestB < 0)
+                        bestB = i;
+                }
+            }
+
+            int[] a = legs.get(bestA), b = legs.get(bestB);
+            int[] out = merge(a, b);
+            cost[0] += Math.scalb(1.0, a.length + b.length - shared(a, b));
+
+            int id = legs.size();
+            legs.add(out);
+            alive.add(true);
+            alive.set(bestA, false);
+            alive.set(bestB, false);
+            path.add(new int[] {bestA, bestB});
+            remaining--;
+
+            for (int leg: a)
+                rename(owners, leg, bestA, id);
+            for (int leg: b)
+                rename(owners, leg, bestB, id);
+        }
+
+        return path.toArray(new int[0][]);
+    }
+
+    /**
+     * Replaces the owner of the leg, dropping the leg if contracted.
+     *
+     * */
+    private static void rename(Map<Integer, int[]> owners, int leg, int from, int to) {
+        int[] o = owners.get(leg);
+        if (o[0] == from)
+            o[0] = to;
+        else if (o[1] == from)
+            o[1] = to;
+        if (o[0] == o[1])
+            owners.remove(leg);
+    }
+
+    private static void own(Map<Integer, int[]> owners, int leg, int tensor) {
+        int[] o = owners.get(leg);
+        if (o == null)
+            owners.put(leg, new int[] {tensor, -1});
+        else
+            o[1] = tensor;
+    }
+
+    /**
+     * Returns the number of the legs shared by the two tensors.
+     *
+     * */
+    private static int shared(int[] a, int[] b) {
+        int count = 0;
+        for (int x: a)
+            for (int y: b)
+                if (x == y)
+                    count++;
+        return count;
+    }
+
+    /**
+     * Returns the open legs of the contraction of the two tensors,
+     * first those of {@code a}, then those of {@code b}.
+     *
+     * */
+    private static int[] merge(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int size = 0;
+        for (int x: a)
+            if (Arrays.stream(b).noneMatch(y -> y == x))
+                out[size++] = x;
+        for (int y: b)
+            if (Arrays.stream(a).noneMatch(x -> x == y))
+                out[size++] = y;
+        return Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Contracts the network along the given path. Independent
+     * branches of the contraction tree are contracted in parallel.
+     *
+     * @param path the contraction path
+     * @return the resulting tensor
+     *
+     * */
+    Tensor contract(int[][] path) {
+        if (path.length == 0)
+            return tensors.get(0);
+        return ForkJoinPool.commonPool().invoke(new Contraction(path, tensors.size() + path.length - 1));
+    }
+
+    /**
+     * Contraction of a subtree of the contraction tree.
+     *
+     * */
+    private final class Contraction extends RecursiveTask<Tensor> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] path;
+        private final int id;
+
+        Contraction(int[][] path, int id) {
+            this.path = path;
+            this.id = id;
+        }
+
+        @Override
+        protected Tensor compute() {
+            if (id < tensors.size())
+                return tensors.get(id);
+
+            int[] step = path[id - tensors.size()];
+            var left = new Contraction(path, step[0]);
+            var right = new Contraction(path, step[1]);
+
+            if (step[0] >= tensors.size() && step[1] >= tensors.size()) {
+                left.fork();
+                var b = right.compute();
+                return TensorNetwork.contract(left.join(), b);
+            }
+            return TensorNetwork.contract(left.compute(), right.compute());
+        }
+    }
+
+    /**
+     * Contracts the two tensors over their shared legs. The resulting
+     * legs are the open legs of {@code a} followed by those of {@code b}.
+     *
+     * @param a the first tensor
+     * @param b the second tensor
+     * @return the resulting tensor
+     *
+     * */
+    static Tensor contract(Tensor a, Tensor b) {
+        int[] out = merge(a.legs, b.legs);
+        if (out.length > MAX_RANK)
+            throw new IllegalStateException("intermediate tensor too large: rank " + out.length);
+
+        int rankA = a.legs.length - (a.legs.length + b.legs.length - out.length) / 2;
+        int shared = a.legs.length - rankA;
+        int rankB = b.legs.length - shared;
+
+        int[] sharedLegs = new int[shared];
+        int[] orderA = new int[a.legs.length];
+        int[] orderB = new int[b.legs.length];
+        System.arraycopy(out, 0, orderA, 0, rankA);
+        System.arraycopy(out, rankA, orderB, shared, rankB);
+
+        int size = 0;
+        for (int x: a.legs)
+            if (Arrays.stream(b.legs).anyMatch(y -> y == x))
+                sharedLegs[size++] = x;
+        System.arraycopy(sharedLegs, 0, orderA, rankA, shared);
+        System.arraycopy(sharedLegs, 0, orderB, 0, shared);
+
+        var pa = permute(a, orderA);
+        var pb = permute(b, orderB);
+        int m = 1 << rankA, k = 1 << shared, n = 1 << rankB;
+
+        double[] re = new double[m * n], im = new double[m * n];
+        IntStream rows = IntStream.range(0, m);
+        if ((long) m * n * k > PARALLEL_THRESHOLD)
+            rows = rows.parallel();
+
+        rows.forEach(i -> {
+            for (int l = 0; l < k; l++) {
+                double xRe = pa.re[i * k + l], xIm = pa.im[i * k + l];
+                if (xRe == 0 && xIm == 0)
+                    continue;
+                for (int j = 0; j < n; j++) {
+                    double yRe = pb.re[l * n + j], yIm = pb.im[l * n + j];
+                    re[i * n + j] += xRe * yRe - xIm * yIm;
+                    im[i * n + j] += xRe * yIm + xIm * yRe;
+                }
+            }
+        });
+
+        return new Tensor(out, re, im);
+    }
+
+    private static final long PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Reorders the legs of the tensor.
+     *
+     * @param t the tensor
+     * @param legs the new order of its legs
+     * @return the permuted tensor
+     *
+     * */
+    static Tensor permute(Tensor t, int[] legs) {
+        if (Arrays.equals(t.legs, legs))
+            return t;
+
+        int r = legs.length;
+        int[] shift = new int[r];
+        for (int j = 0; j < r; j++) {
+            int p = 0;
+            while (t.legs[p] != legs[j])
+                p++;
+            shift[j] = r - 1 - p;
+        }
+
+        double[] re = new double[1 << r], im = new double[1 << r];
+        for (int o = 0; o < re.length; o++) {
+            int src = 0;
+            for (int j = 0; j < r; j++)
+                src |= ((o >> (r - 1 - j)) & 1) << shift[j];
+            re[o] = t.re[src];
+            im[o] = t.im[src];
+        }
+        return new Tensor(legs, re, im);
+    }
+}
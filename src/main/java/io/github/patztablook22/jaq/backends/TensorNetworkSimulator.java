@@ -0,0 +1,447 @@
+package io.github.patztablook22.jaq.backends;
+
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Tensor network based evaluator of amplitudes and marginal
+ * probabilities of the final states of quantum circuits.
+ *
+ * <p>
+ *   Instead of evolving the full state vector, the circuit is converted into
+ *   a network of tensors, one per gate, connected along the qubit wires, and
+ *   only the requested quantity is contracted. An amplitude
+ *   \( \braket{x | U | 0 \dots 0} \) is a network capped by the basis vectors
+ *   on both ends. A marginal distribution of a few qubits is the network of
+ *   the circuit joined with its conjugate, restricted to the gates in the
+ *   backward light cone of the queried qubits, as all the other gates cancel
+ *   out with their conjugates. The cost is thus governed by the width of the
+ *   best contraction order rather than by the number of qubits, so that wide
+ *   but shallow circuits of 50 and more qubits can be evaluated exactly.
+ * </p>
+ *
+ * <p>
+ *   The contraction order is searched for by a randomized greedy heuristic
+ *   and cached per circuit structure, i.e. the sequence of the gates and their
+ *   qubits regardless of the angles, and per query kind. Repeated queries of the
+ *   same circuit, or of the same parametrized circuit with different bindings,
+ *   reuse the order. The independent branches of the contraction are
+ *   contracted in parallel.
+ * </p>
+ *
+ * <p>
+ *   The circuit must not contain any measurements followed by other operations,
+ *   otherwise IllegalArgumentException is thrown; the trailing measurements
+ *   are ignored. If the contraction requires an intermediate tensor of more than
+ *   \( 2^{28} \) elements, IllegalStateException is thrown.
+ * </p>
+ *
+ * <p>
+ *   Example usage:
+ * </p>
+ *
+ *  <pre><code class="language-java">
+ *     var circuit = new Qcircuit(60, 0) {{
+ *         for (int i = 0; i &lt; 60; i++)
+ *             hadamard(i);
+ *         for (int i = 0; i + 1 &lt; 60; i += 2)
+ *             cnot(i, i + 1);
+ *     }};
+ *
+ *     var simulator = new TensorNetworkSimulator();
+ *
+ *     /* {re, im} &#42;/
+ *     double[] amplitude = simulator.amplitude(circuit, "0".repeat(60));
+ *
+ *     /* 4 probabilities &#42;/
+ *     double[] marginal = simulator.marginal(circuit, 0, 1);
+ *  </code></pre>
+ *
+ * */
+public class TensorNetworkSimulator {
+
+    /**
+     * The default number of the contraction order search trials.
+     *
+     * */
+    public static final int DEFAULT_TRIALS = 32;
+
+    /**
+     * The number of the contraction order search trials.
+     *
+     * */
+    private final int trials;
+
+    /**
+     * The cached contraction paths, by the network structure.
+     *
+     * */
+    private final Map<String, int[][]> paths = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a {@code TensorNetworkSimulator} with
+     * the default contraction order search effort.
+     *
+     * */
+    public TensorNetworkSimulator() {
+        this(DEFAULT_TRIALS);
+    }
+
+    /**
+     * Constructs a {@code TensorNetworkSimulator} with
+     * the specified contraction order search effort.
+     *
+     * @param trials the number of the randomized greedy trials
+     *
+     * */
+    public TensorNetworkSimulator(int trials) {
+        if (trials < 1)
+            throw new IllegalArgumentException("invalid number of trials: " + trials);
+        this.trials = trials;
+    }
+
+    /**
+     * Returns the amplitude of the given basis state
+     * in the final state of the circuit.
+     *
+     * @param circuit the circuit
+     * @param bitstring the basis state, e.g. {@code "0110"}
+     * @return the real and the imaginary part of the amplitude
+     *
+     * */
+    public double[] amplitude(Qcircuit circuit, String bitstring) {
+        return amplitude(circuit, Map.of(), bitstring);
+    }
+
+    /**
+     * Returns the amplitude of the given basis state
+     * in the final state of the parametrized circuit.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param bitstring the basis state, e.g. {@code "0110"}
+     * @return the real and the imaginary part of the amplitude
+     *
+     * */
+    public double[] amplitude(Qcircuit circuit, Map<Parameter, Double> bindings, String bitstring) {
+        int n = circuit.qubits();
+        if (bitstring.length() != n)
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + bitstring.length() + " vs " + n);
+
+        var recorder = new Recorder(circuit, bindings);
+        recorder.flow();
+
+        var network = new TensorNetwork();
+        int[] wires = new int[n];
+        for (int q = 0; q < n; q++) {
+            wires[q] = network.leg();
+            network.add(new int[] {wires[q]}, new double[] {1, 0}, new double[2]);
+        }
+
+        for (var gate: recorder.gates)
+            gate.attach(network, wires, false);
+
+        for (int q = 0; q < n; q++) {
+            char c = bitstring.charAt(q);
+            if (c != '0' && c != '1')
+                throw new IllegalArgumentException("invalid bitstring: " + bitstring);
+            network.add(new int[] {wires[q]},
+                        c == '0' ? new double[] {1, 0} : new double[] {0, 1}, new double[2]);
+        }
+
+        var result = network.contract(path(network, recorder.structure + "|amplitude"));
+        return new double[] {result.re[0], result.im[0]};
+    }
+
+    /**
+     * Returns the probability of the given basis state
+     * in the final state of the circuit.
+     *
+     * @param circuit the circuit
+     * @param bitstring the basis state, e.g. {@code "0110"}
+     * @return the probability
+     *
+     * */
+    public double probability(Qcircuit circuit, String bitstring) {
+        return probability(circuit, Map.of(), bitstring);
+    }
+
+    /**
+     * Returns the probability of the given basis state
+     * in the final state of the parametrized circuit.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param bitstring the basis state, e.g. {@code "0110"}
+     * @return the probability
+     *
+     * */
+    public double probability(Qcircuit circuit, Map<Parameter, Double> bindings, String bitstring) {
+        double[] amplitude = amplitude(circuit, bindings, bitstring);
+        return amplitude[0] * amplitude[0] + amplitude[1] * amplitude[1];
+    }
+
+    /**
+     * Returns the marginal probability distribution of the given qubits
+     * in the final state of the circuit, indexed by their values,
+     * the first qubit being the most significant digit.
+     *
+     * @param circuit the circuit
+     * @param qubits the qubits, the most significant digit first
+     * @return the probabilities of the qubits' values
+     *
+     * */
+    public double[] marginal(Qcircuit circuit, int... qubits) {
+        return marginal(circuit, Map.of(), qubits);
+    }
+
+    /**
+     * Returns the marginal probability distribution of the given
+     * qubits in the final state of the parametrized circuit.
+     *
+     * @param circuit the parametrized circuit
+     * @param bindings the parameter values
+     * @param qubits the qubits, the most significant digit first
+     * @return the probabilities of the qubits' values
+     * @see #marginal(Qcircuit, int...)
+     *
+     * */
+    public double[] marginal(Qcircuit circuit, Map<Parameter, Double> bindings, int... qubits) {
+        int n = circuit.qubits();
+        boolean[] active = new boolean[n];
+        for (int q: qubits) {
+            if (q < 0 || q >= n)
+                throw new IndexOutOfBoundsException();
+            if (active[q])
+                throw new IllegalArgumentException("duplicate qubit: " + q);
+            active[q] = true;
+        }
+
+        var recorder = new Recorder(circuit, bindings);
+        recorder.flow();
+
+        /* backward light cone of the queried qubits */
+        var cone = new ArrayList<Gate>();
+        for (int i = recorder.gates.size() - 1; i >= 0; i--) {
+            var gate = recorder.gates.get(i);
+            if (Arrays.stream(gate.qubits).noneMatch(q -> active[q]))
+                continue;
+            for (int q: gate.qubits)
+                active[q] = true;
+            cone.add(0, gate);
+        }
+
+        var network = new TensorNetwork();
+        int[] ket = new int[n], bra = new int[n];
+        for (int q = 0; q < n; q++) {
+            if (!active[q])
+                continue;
+            ket[q] = network.leg();
+            bra[q] = network.leg();
+            network.add(new int[] {ket[q]}, new double[] {1, 0}, new double[2]);
+            network.add(new int[] {bra[q]}, new double[] {1, 0}, new double[2]);
+        }
+
+        var structure = new StringBuilder();
+        for (var gate: cone) {
+            gate.attach(network, ket, false);
+            gate.attach(network, bra, true);
+            structure.append(gate.name).append(Arrays.toString(gate.qubits));
+        }
+
+        /* the queried qubits are kept open through copy tensors,
+         * the other ones are traced out by joining the wires */
+        int[] open = new int[qubits.length];
+        for (int i = 0; i < qubits.length; i++) {
+            int q = qubits[i];
+            open[i] = network.leg();
+            network.add(new int[] {ket[q], bra[q], open[i]},
+                        new double[] {1, 0, 0, 0, 0, 0, 0, 1}, new double[8]);
+            active[q] = false;
+        }
+        for (int q = 0; q < n; q++)
+            if (active[q])
+                network.add(new int[] {ket[q], bra[q]}, new double[] {1, 0, 0, 1}, new double[4]);
+
+        String key = structure + "|marginal" + Arrays.toString(qubits);
+        var result = TensorNetwork.permute(network.contract(path(network, key)), open);
+        return result.re;
+    }
+
+    /**
+     * Returns the number of the cached contraction orders.
+     *
+     * @return the number of the cached orders
+     *
+     * */
+    public int cachedOrders() {
+        return paths.size();
+    }
+
+    /**
+     * Returns the cached contraction path of the network
+     * of the given structure, or searches for it.
+     *
+     * */
+    private int[][] path(TensorNetwork network, String structure) {
+        return paths.computeIfAbsent(structure,
+                                     key -> network.search(trials, key.hashCode()));
+    }
+
+    /**
+     * A recorded gate.
+     *
+     * */
+    private static final class Gate {
+
+        /**
+         * The structural name of the gate, independent of its angle.
+         *
+         * */
+        private final String name;
+
+        /**
+         * The qubits, the most significant index bit first.
+         *
+         * */
+        private final int[] qubits;
+
+        /**
+         * The gate matrix components, row-major.
+         *
+         * */
+        private final double[] re, im;
+
+        Gate(String name, int[] qubits, double[] re, double[] im) {
+            this.name = name;
+            this.qubits = qubits;
+            this.re = re;
+            this.im = im;
+        }
+
+        /**
+         * Attaches the gate's tensor, or its conjugate, to the ends of the wires.
+         *
+         * @param network the network
+         * @param wires the current ends of the wires, updated
+         * @param conjugate whether to attach the conjugated tensor
+         *
+         * */
+        void attach(TensorNetwork network, int[] wires, boolean conjugate) {
+            int k = qubits.length;
+            int[] legs = new int[2 * k];
+            for (int i = 0; i < k; i++) {
+                legs[k + i] = wires[qubits[i]];
+                legs[i] = wires[qubits[i]] = network.leg();
+            }
+
+            double[] imag = im.clone();
+            if (conjugate)
+                for (int i = 0; i < imag.length; i++)
+                    imag[i] = -imag[i];
+            network.add(legs, re.clone(), imag);
+        }
+    }
+
+    /**
+     * Records the circuit as the gate matrices and its structure.
+     *
+     * */
+    private static class Recorder extends Qflow {
+
+        private final List<Gate> gates = new ArrayList<>();
+        private final StringBuilder structure = new StringBuilder();
+        private boolean measured;
+
+        Recorder(Qcircuit circuit, Map<Parameter, Double> bindings) {
+            super(circuit, bindings);
+        }
+
+        private void add(String name, int[] qubits, double[] re, double[] im) {
+            if (measured)
+                throw new IllegalArgumentException("measurement in unitary circuit");
+            gates.add(new Gate(name, qubits, re, im));
+            structure.append(name).append(Arrays.toString(qubits));
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            double h = Math.sqrt(0.5);
+            add("h", new int[] {qubit}, new double[] {h, h, h, -h}, new double[4]);
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+            measured = true;
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            double[] re = new double[16];
+            re[0] = re[5] = re[11] = re[14] = 1;
+            add("cx", new int[] {control, target}, re, new double[16]);
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            add("x", new int[] {qubit}, new double[] {0, 1, 1, 0}, new double[4]);
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            /* R_X(theta) = e^{-i theta X / 2} */
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            add("rx", new int[] {qubit}, new double[] {c, 0, 0, c}, new double[] {0, -s, -s, 0});
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            add("p", new int[] {qubit}, new double[] {1, 0, 0, Math.cos(angle)},
+                                        new double[] {0, 0, 0, Math.sin(angle)});
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            add("rz", new int[] {qubit}, new double[] {c, 0, 0, c}, new double[] {-s, 0, 0, s});
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            double[] re = new double[16], im = new double[16];
+            re[0] = re[5] = re[10] = 1;
+            re[15] = Math.cos(angle);
+            im[15] = Math.sin(angle);
+            add("cp", new int[] {control, target}, re, im);
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            int dim = 1 << qubits.length;
+            double[] re = new double[dim * dim];
+            for (int x = 0; x < dim; x++)
+                re[permutation.applyAsInt(x) * dim + x] = 1;
+            add("o", qubits.clone(), re, new double[dim * dim]);
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            int dim = 1 << qubits.length;
+            double[] re = new double[dim * dim];
+            for (int x = 0; x < dim; x++)
+                re[x * dim + x] = predicate.test(x) ? -1 : 1;
+            add("po", qubits.clone(), re, new double[dim * dim]);
+        }
+    }
+}
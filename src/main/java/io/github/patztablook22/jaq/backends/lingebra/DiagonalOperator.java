@@ -0,0 +1,356 @@
+package io.github.patztablook22.jaq.backends.lingebra;
+
+
+/**
+ * Immutable diagonal unitary operator on a finite-dimensional Hilbert space
+ * \( \mathbf H \rightarrow \mathbf H \) of dimension \( 2^N \).
+ *
+ * <p>
+ *   The operator multiplies every coordinate by a phase factor:
+ *   \(
+ *      x_k \leftarrow e^{i \phi_k} x_k
+ *   \)
+ * </p>
+ *
+ * <p>
+ *   The phases are assumed to depend only on a few bits of the index
+ *   {@code k}, given by the bit {@code mask}. They are therefore stored
+ *   as a compact table of size \( 2^{\mathrm{popcount}(\mathrm{mask})} \),
+ *   the {@code j}-th bit of the table index corresponding to the
+ *   {@code j}-th lowest set bit of the {@code mask}.
+ * </p>
+ *
+ * <p>
+ *   Unlike {@link SparseOperator}, the operator is applied <i>inplace</i>
+ *   as a single elementwise complex multiplication pass over the {@link Ket}.
+ *   Diagonal operators are closed under composition, so any sequence of
+ *   them can be merged into a single pass by {@link #compose(DiagonalOperator)}.
+ * </p>
+ *
+ * */
+public class DiagonalOperator {
+
+    /**
+     * Dimension of the Hilbert space.
+     *
+     * */
+    int dim;
+
+    /**
+     * Bits of the coordinate index the phases depend on.
+     *
+     * */
+    int mask;
+
+    /**
+     * Phase table indexed by the compacted {@code mask} bits.
+     *
+     * */
+    double[] phases;
+
+    /**
+     * Constructs a diagonal operator from a compact phase table.
+     * The size of the table must be equal to
+     * \( 2^{\mathrm{popcount}(\mathrm{mask})} \).
+     *
+     * @param dim dimension of the Hilbert space
+     * @param mask bits of the coordinate index the phases depend on
+     * @param phases compact phase table (in radians)
+     *
+     * */
+    public DiagonalOperator(int dim, int mask, double[] phases) {
+        if ((mask & ~(dim - 1)) != 0)
+            throw new IllegalArgumentException("mask out of range: " + mask);
+        if (phases.length != 1 << Integer.bitCount(mask))
+            throw new IllegalArgumentException("phase table size mismatch: "
+                    + phases.length + " vs " + (1 << Integer.bitCount(mask)));
+
+        this.dim = dim;
+        this.mask = mask;
+        this.phases = phases.clone();
+    }
+
+    private DiagonalOperator() {
+    }
+
+    /**
+     * Constructs the identity operator
+     * \(
+     *      \ket{x} \mapsto \ket{x}
+     * \)
+     *
+     * @param dim dimension of the Hilbert space
+     * @return the resulting operator
+     *
+     * */
+    public static DiagonalOperator eye(int dim) {
+        var out = new DiagonalOperator();
+        out.dim = dim;
+        out.mask = 0;
+        out.phases = new double[1];
+        return out;
+    }
+
+    /**
+     * Constructs the operator shifting the phase by {@code angle} of all
+     * coordinates whose index has all the {@code mask} bits set:
+     * \(
+     *      x_k \leftarrow e^{i \theta [k \wedge \mathrm{mask} = \mathrm{mask}]} x_k
+     * \)
+     *
+     * @param dim dimension of the Hilbert space
+     * @param mask the bits which must be set
+     * @param angle the phase shift angle (in radians)
+     * @return the resulting operator
+     *
+     * */
+    public static DiagonalOperator phase(int dim, int mask, double angle) {
+        double[] phases = new double[1 << Integer.bitCount(mask)];
+        phases[phases.length - 1] = angle;
+        return new DiagonalOperator(dim, mask, phases);
+    }
+
+    /**
+     * Constructs the operator from phases of the register values formed
+     * by the given index bits, the first bit being the most significant
+     * register digit. The size of {@code registerPhases} must be equal
+     * to \( 2^m \), {@code m} being the number of the bits.
+     *
+     * @param dim dimension of the Hilbert space
+     * @param bits the index bits, the most significant register digit first
+     * @param registerPhases phases of the register values (in radians)
+     * @return the resulting operator
+     *
+     * */
+    public static DiagonalOperator register(int dim, int[] bits, double[] registerPhases) {
+        int m = bits.length;
+        if (registerPhases.length != 1 << m)
+            throw new IllegalArgumentException("phase table size mismatch: "
+                    + registerPhases.length + " vs " + (1 << m));
+
+        int mask = 0;
+        for (int bit: bits) {
+            if (Integer.bitCount(bit) != 1 || (mask & bit) != 0)
+                throw new IllegalArgumentException("invalid index bit: " + bit);
+            mask |= bit;
+        }
+
+        double[] phases = new double[1 << m];
+        for (int x = 0; x < phases.length; x++) {
+            int k = 0;
+            for (int i = 0; i < m; i++)
+                if (((x >> (m - i - 1)) & 1) != 0)
+                    k |= bits[i];
+            phases[compact(k, mask)] = registerPhases[x];
+        }
+        return new DiagonalOperator(dim, mask, phases);
+    }
+
+    /**
+     * Returns the dimension of the Hilbert space
+     * \(
+     *      \mathop{dim} \mathbf H
+     * \)
+     *
+     * @return the dimension of the Hilbert space
+     *
+     * */
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * Returns the size of the operator's tables, which grow
+     * with the number of the participating index bits.
+     *
+     * @return the size in bytes
+     *
+     * */
+    public long getTableSize() {
+        return 8L * phases.length;
+    }
+
+    /**
+     * Returns the bits of the coordinate index the phases depend on.
+     *
+     * @return the index bit mask
+     *
+     * */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the phase of the {@code k}-th coordinate.
+     *
+     * @param k coordinate index
+     * @return the phase (in radians)
+     *
+     * */
+    public double phaseOf(int k) {
+        return phases[compact(k, mask)];
+    }
+
+    /**
+     * Composes the two operators. As diagonal operators commute,
+     * the order is irrelevant. The resulting operator corresponds to
+     * \(
+     *      \ket{x} \mapsto P Q \ket{x}
+     * \)
+     *
+     * where P is `this` and Q is `other`.
+     *
+     * @param other the second composition operand
+     * @return the resulting operator
+     *
+     * */
+    public DiagonalOperator compose(DiagonalOperator other) {
+        if (other.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + other.getDim());
+
+        var out = new DiagonalOperator();
+        out.dim = dim;
+        out.mask = mask | other.mask;
+        out.phases = new double[1 << Integer.bitCount(out.mask)];
+
+        for (int j = 0; j < out.phases.length; j++) {
+            int k = expand(j, out.mask);
+            out.phases[j] = phases[compact(k, mask)]
+                + other.phases[compact(k, other.mask)];
+        }
+        return out;
+    }
+
+    /**
+     * Returns the operator with all phases multiplied by {@code factor}:
+     * \(
+     *      x_k \leftarrow e^{i \lambda \phi_k} x_k
+     * \)
+     *
+     * @param factor the phase multiplier
+     * @return the resulting operator
+     *
+     * */
+    public DiagonalOperator scale(double factor) {
+        var out = new DiagonalOperator();
+        out.dim = dim;
+        out.mask = mask;
+        out.phases = new double[phases.length];
+        for (int j = 0; j < phases.length; j++)
+            out.phases[j] = phases[j] * factor;
+        return out;
+    }
+
+    /**
+     * Applies the operator <i>inplace</i> on the given ket vector:
+     * \(
+     *      \ket{x} \mapsto D \ket{x}
+     * \)
+     *
+     * @param ket complex vector to transform
+     *
+     * */
+    public void transformInplace(Ket ket) {
+        if (ket.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + ket.getDim());
+
+        float[] cos = new float[phases.length];
+        float[] sin = new float[phases.length];
+        for (int j = 0; j < phases.length; j++) {
+            cos[j] = (float) Math.cos(phases[j]);
+            sin[j] = (float) Math.sin(phases[j]);
+        }
+
+        float[] real = ket.getReal();
+        float[] imag = ket.getImag();
+
+        for (int k = 0; k < dim; k++) {
+            int j = compact(k, mask);
+
+            /* complex multiplication:
+             * (a + bi) * (c + di) = (ac - bd) + (ad + bc)i
+             */
+            float re = real[k], im = imag[k];
+            real[k] = re * cos[j] - im * sin[j];
+            imag[k] = re * sin[j] + im * cos[j];
+        }
+    }
+
+    /**
+     * Computes the matrix element of the operator's generator, i.e. of
+     * the diagonal matrix of its phases \( \Phi = \mathrm{diag}(\phi_k) \),
+     * in a single pass:
+     * \(
+     *      \bra{y} \Phi \ket{x}
+     * \)
+     *
+     * @param bra the bra vector \( \bra{y} \)
+     * @param ket the ket vector \( \ket{x} \)
+     * @return the real and the imaginary part of the matrix element
+     *
+     * */
+    public double[] generatorBraket(Ket bra, Ket ket) {
+        if (bra.getDim() != getDim() || ket.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + bra.getDim() + " vs " + ket.getDim());
+
+        float[] braReal = bra.getReal();
+        float[] braImag = bra.getImag();
+        float[] ketReal = ket.getReal();
+        float[] ketImag = ket.getImag();
+
+        double re = 0, im = 0;
+        for (int k = 0; k < dim; k++) {
+            double phase = phases[compact(k, mask)];
+
+            /* conj(y_k) x_k = (a - bi)(c + di) = (ac + bd) + (ad - bc)i */
+            double a = braReal[k], b = braImag[k];
+            double c = ketReal[k], d = ketImag[k];
+            re += phase * (a * c + b * d);
+            im += phase * (a * d - b * c);
+        }
+        return new double[] {re, im};
+    }
+
+    /**
+     * Gathers the {@code mask} bits of {@code k} into
+     * the lowest bits of the result.
+     *
+     * @param k the value to compact
+     * @param mask the bits to gather
+     * @return the compacted value
+     *
+     * */
+    static int compact(int k, int mask) {
+        int out = 0;
+        for (int bit = 0; mask != 0; bit++) {
+            int lowest = mask & -mask;
+            if ((k & lowest) != 0)
+                out |= 1 << bit;
+            mask ^= lowest;
+        }
+        return out;
+    }
+
+    /**
+     * Scatters the lowest bits of {@code j} into the {@code mask}
+     * bits of the result. Inverse of {@link #compact(int, int)}.
+     *
+     * @param j the value to expand
+     * @param mask the bits to scatter into
+     * @return the expanded value
+     *
+     * */
+    static int expand(int j, int mask) {
+        int out = 0;
+        for (int bit = 0; mask != 0; bit++) {
+            int lowest = mask & -mask;
+            if ((j & (1 << bit)) != 0)
+                out |= lowest;
+            mask ^= lowest;
+        }
+        return out;
+    }
+}
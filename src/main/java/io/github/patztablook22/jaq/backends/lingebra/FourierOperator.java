@@ -0,0 +1,214 @@
+package io.github.patztablook22.jaq.backends.lingebra;
+
+
+/**
+ * Immutable discrete Fourier transform operator on a finite-dimensional
+ * Hilbert space \( \mathbf H \rightarrow \mathbf H \) of dimension \( 2^N \),
+ * acting along a subset of the coordinate index bits.
+ *
+ * <p>
+ *   Given {@code m} index bits forming the register value {@code x}
+ *   (the first bit being the most significant), and the remaining index
+ *   bits {@code r}, the operator corresponds to
+ *   \[
+ *      \ket{r, x} \mapsto \frac{1}{\sqrt{2^m}}
+ *      \sum_{y=0}^{2^m - 1} e^{\pm 2 \pi i x y / 2^m} \ket{r, y}
+ *   \]
+ * </p>
+ *
+ * <p>
+ *   It is applied <i>inplace</i> as a radix-2 fast Fourier transform
+ *   over each of the \( 2^{N - m} \) fibers of the coordinates, requiring
+ *   \( O(m 2^N) \) operations in total.
+ * </p>
+ *
+ * */
+public class FourierOperator {
+
+    /**
+     * Dimension of the Hilbert space.
+     *
+     * */
+    int dim;
+
+    /**
+     * Transform length, \( 2^m \).
+     *
+     * */
+    int length;
+
+    /**
+     * Index offsets of the register values within a fiber.
+     *
+     * */
+    int[] offsets;
+
+    /**
+     * Index bits not participating in the transform.
+     *
+     * */
+    int restMask;
+
+    /**
+     * Whether the sign of the exponent is negative.
+     *
+     * */
+    boolean inverse;
+
+    /**
+     * Real components of the twiddle factors.
+     *
+     * */
+    double[] twiddleReals;
+
+    /**
+     * Imaginary components of the twiddle factors.
+     *
+     * */
+    double[] twiddleImags;
+
+    /**
+     * Constructs the transform along the given index bits.
+     * Each element of {@code bits} must be a distinct power of two
+     * less than {@code dim}.
+     *
+     * @param dim dimension of the Hilbert space
+     * @param bits the index bits, the most significant register digit first
+     * @param inverse whether to construct the inverse transform
+     *
+     * */
+    public FourierOperator(int dim, int[] bits, boolean inverse) {
+        int m = bits.length;
+        int mask = 0;
+        for (int bit: bits) {
+            if (Integer.bitCount(bit) != 1 || bit >= dim || (mask & bit) != 0)
+                throw new IllegalArgumentException("invalid index bit: " + bit);
+            mask |= bit;
+        }
+
+        this.dim = dim;
+        this.length = 1 << m;
+        this.restMask = (dim - 1) & ~mask;
+        this.inverse = inverse;
+
+        offsets = new int[length];
+        for (int x = 0; x < length; x++)
+            for (int i = 0; i < m; i++)
+                if (((x >> (m - i - 1)) & 1) != 0)
+                    offsets[x] |= bits[i];
+
+        double sign = inverse ? -1 : 1;
+        twiddleReals = new double[length / 2];
+        twiddleImags = new double[length / 2];
+        for (int k = 0; k < length / 2; k++) {
+            double angle = sign * 2 * Math.PI * k / length;
+            twiddleReals[k] = Math.cos(angle);
+            twiddleImags[k] = Math.sin(angle);
+        }
+    }
+
+    /**
+     * Returns the dimension of the Hilbert space
+     * \(
+     *      \mathop{dim} \mathbf H
+     * \)
+     *
+     * @return the dimension of the Hilbert space
+     *
+     * */
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * Returns the size of the operator's tables, which grow
+     * with the number of the participating index bits.
+     *
+     * @return the size in bytes
+     *
+     * */
+    public long getTableSize() {
+        return 4L * offsets.length + 8L * (twiddleReals.length + twiddleImags.length);
+    }
+
+    /**
+     * Applies the operator <i>inplace</i> on the given ket vector.
+     *
+     * @param ket complex vector to transform
+     *
+     * */
+    public void transformInplace(Ket ket) {
+        if (ket.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + ket.getDim());
+
+        float[] real = ket.getReal();
+        float[] imag = ket.getImag();
+
+        double[] fiberReal = new double[length];
+        double[] fiberImag = new double[length];
+        double scale = 1 / Math.sqrt(length);
+
+        int fibers = dim / length;
+        for (int r = 0; r < fibers; r++) {
+            int base = DiagonalOperator.expand(r, restMask);
+
+            for (int x = 0; x < length; x++) {
+                fiberReal[x] = real[base + offsets[x]];
+                fiberImag[x] = imag[base + offsets[x]];
+            }
+
+            fft(fiberReal, fiberImag);
+
+            for (int x = 0; x < length; x++) {
+                real[base + offsets[x]] = (float) (fiberReal[x] * scale);
+                imag[base + offsets[x]] = (float) (fiberImag[x] * scale);
+            }
+        }
+    }
+
+    /**
+     * Iterative radix-2 Cooley-Tukey transform of a single fiber, unscaled.
+     *
+     * @param re real components, transformed inplace
+     * @param im imaginary components, transformed inplace
+     *
+     * */
+    private void fft(double[] re, double[] im) {
+        /* bit reversal permutation */
+        for (int i = 1, j = 0; i < length; i++) {
+            int bit = length >> 1;
+            for (; (j & bit) != 0; bit >>= 1)
+                j ^= bit;
+            j ^= bit;
+
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+
+        for (int half = 1; half < length; half <<= 1) {
+            int stride = length / (2 * half);
+            for (int start = 0; start < length; start += 2 * half) {
+                for (int k = 0; k < half; k++) {
+                    double wr = twiddleReals[k * stride];
+                    double wi = twiddleImags[k * stride];
+
+                    int a = start + k, b = a + half;
+
+                    /* complex multiplication:
+                     * (a + bi) * (c + di) = (ac - bd) + (ad + bc)i
+                     */
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -77,6 +77,24 @@ public class Ket {
         Arrays.fill(imag, 0);
     }
 
+    /**
+     * Sets the ket <i>inplace</i> to a copy of the given ket:
+     * <p>\(
+     *      x_k \leftarrow y_k
+     * \)</p>
+     *
+     * @param other the ket to copy
+     *
+     * */
+    public void assign(Ket other) {
+        if (other.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + other.getDim());
+
+        System.arraycopy(other.real, 0, real, 0, real.length);
+        System.arraycopy(other.imag, 0, imag, 0, imag.length);
+    }
+
     /**
      * Returns the dimension of the Hilbert space
      *
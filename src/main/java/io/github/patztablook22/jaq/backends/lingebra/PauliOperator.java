@@ -0,0 +1,295 @@
+package io.github.patztablook22.jaq.backends.lingebra;
+
+
+/**
+ * Immutable Pauli string operator on a finite-dimensional Hilbert space
+ * \( \mathbf H \rightarrow \mathbf H \) of dimension \( 2^N \).
+ *
+ * <p>
+ *   Every Pauli string \( P = \sigma_0 \otimes \dots \otimes \sigma_{N-1} \)
+ *   maps computational basis vectors onto computational basis vectors,
+ *   up to a phase:
+ *   \[
+ *      P \ket{k} = i^{n_Y} (-1)^{|k \wedge z|} \ket{k \oplus f}
+ *   \]
+ *   where {@code f} is the mask of the index bits acted on by {@code X}
+ *   or {@code Y}, {@code z} is the mask of the index bits acted on by
+ *   {@code Z} or {@code Y}, and \( n_Y \) is the number of {@code Y}s.
+ *   The operator is therefore stored merely as the two masks and
+ *   \( n_Y \mod 4 \).
+ * </p>
+ *
+ * <p>
+ *   As \( P^2 = I \), the generated rotations
+ *   \( e^{-i \theta P} = \cos \theta \, I - i \sin \theta \, P \)
+ *   can be applied <i>inplace</i> in a single pass over the pairs
+ *   \( (k, k \oplus f) \).
+ * </p>
+ *
+ * */
+public class PauliOperator {
+
+    /**
+     * Dimension of the Hilbert space.
+     *
+     * */
+    int dim;
+
+    /**
+     * Index bits flipped by the operator.
+     *
+     * */
+    int flipMask;
+
+    /**
+     * Index bits contributing to the sign.
+     *
+     * */
+    int phaseMask;
+
+    /**
+     * The number of {@code Y} factors modulo 4.
+     *
+     * */
+    int ys;
+
+    /**
+     * Constructs the Pauli string operator acting on given index bits.
+     * The {@code paulis} must consist of {@code IXYZ} characters only,
+     * the {@code j}-th of which acting on the {@code j}-th index bit.
+     * Each element of {@code bits} must be a distinct power of two
+     * less than {@code dim}.
+     *
+     * @param dim dimension of the Hilbert space
+     * @param bits the index bits
+     * @param paulis the Pauli string
+     *
+     * */
+    public PauliOperator(int dim, int[] bits, String paulis) {
+        if (bits.length != paulis.length())
+            throw new IllegalArgumentException("size mismatch: "
+                    + bits.length + " vs " + paulis.length());
+
+        int mask = 0;
+        for (int i = 0; i < bits.length; i++) {
+            int bit = bits[i];
+            if (Integer.bitCount(bit) != 1 || bit >= dim || (mask & bit) != 0)
+                throw new IllegalArgumentException("invalid index bit: " + bit);
+            mask |= bit;
+
+            switch (paulis.charAt(i)) {
+                case 'I':
+                    break;
+                case 'X':
+                    flipMask |= bit;
+                    break;
+                case 'Y':
+                    flipMask |= bit;
+                    phaseMask |= bit;
+                    ys++;
+                    break;
+                case 'Z':
+                    phaseMask |= bit;
+                    break;
+                default:
+                    throw new IllegalArgumentException("invalid Pauli matrix: "
+                            + paulis.charAt(i));
+            }
+        }
+
+        this.dim = dim;
+        this.ys %= 4;
+    }
+
+    /**
+     * Returns the dimension of the Hilbert space
+     * \(
+     *      \mathop{dim} \mathbf H
+     * \)
+     *
+     * @return the dimension of the Hilbert space
+     *
+     * */
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * Returns the index bits flipped by the operator.
+     *
+     * @return the flip mask
+     *
+     * */
+    public int getFlipMask() {
+        return flipMask;
+    }
+
+    /**
+     * Returns the index bits contributing to the sign.
+     *
+     * @return the phase mask
+     *
+     * */
+    public int getPhaseMask() {
+        return phaseMask;
+    }
+
+    /**
+     * Returns whether the operator is diagonal, i.e. it consists
+     * of {@code I} and {@code Z} factors only.
+     *
+     * @return whether the operator is diagonal
+     *
+     * */
+    public boolean isDiagonal() {
+        return flipMask == 0;
+    }
+
+    /**
+     * Applies the rotation <i>inplace</i> on the given ket vector:
+     * \(
+     *      \ket{x} \mapsto e^{-i \theta P} \ket{x}
+     * \)
+     *
+     * @param ket complex vector to transform
+     * @param angle the rotation angle (in radians)
+     *
+     * */
+    public void rotateInplace(Ket ket, double angle) {
+        if (ket.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + ket.getDim());
+
+        float[] real = ket.getReal();
+        float[] imag = ket.getImag();
+
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+
+        if (flipMask == 0) {
+            /* diagonal: x_k <- e^{-i theta (-1)^{|k & z|}} x_k */
+            for (int k = 0; k < dim; k++) {
+                float s = (Integer.bitCount(k & phaseMask) & 1) == 0 ? sin : -sin;
+                float re = real[k], im = imag[k];
+                real[k] = re * cos + im * s;
+                imag[k] = im * cos - re * s;
+            }
+            return;
+        }
+
+        /* -i * i^ys as a unit complex number */
+        int g = (ys + 3) % 4;
+        float gRe = g == 0 ? 1 : g == 2 ? -1 : 0;
+        float gIm = g == 1 ? 1 : g == 3 ? -1 : 0;
+
+        int pivot = Integer.highestOneBit(flipMask);
+        for (int k = 0; k < dim; k++) {
+            if ((k & pivot) != 0)
+                continue;
+
+            int l = k ^ flipMask;
+
+            /* x_k <- cos x_k - i sin P_{k,l} x_l, P_{k,l} = i^ys (-1)^{|l & z|} */
+            float sk = (Integer.bitCount(l & phaseMask) & 1) == 0 ? sin : -sin;
+            float sl = (Integer.bitCount(k & phaseMask) & 1) == 0 ? sin : -sin;
+
+            float kRe = real[k], kIm = imag[k];
+            float lRe = real[l], lIm = imag[l];
+
+            /* complex multiplication:
+             * (a + bi) * (c + di) = (ac - bd) + (ad + bc)i
+             */
+            real[k] = cos * kRe + sk * (gRe * lRe - gIm * lIm);
+            imag[k] = cos * kIm + sk * (gRe * lIm + gIm * lRe);
+            real[l] = cos * lRe + sl * (gRe * kRe - gIm * kIm);
+            imag[l] = cos * lIm + sl * (gRe * kIm + gIm * kRe);
+        }
+    }
+
+    /**
+     * Adds the operator's image of {@code in}, scaled by
+     * {@code coefficient}, to {@code out}:
+     * \(
+     *      \ket{y} \leftarrow \ket{y} + c P \ket{x}
+     * \)
+     *
+     * @param in the transformed ket vector
+     * @param out the accumulator ket vector
+     * @param coefficient the scaling coefficient
+     *
+     * */
+    public void accumulate(Ket in, Ket out, double coefficient) {
+        if (in.getDim() != getDim() || out.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + in.getDim() + " vs " + out.getDim());
+
+        float[] inReal = in.getReal();
+        float[] inImag = in.getImag();
+        float[] outReal = out.getReal();
+        float[] outImag = out.getImag();
+
+        /* c * i^ys as a complex number */
+        float gRe = (float) (ys == 0 ? coefficient : ys == 2 ? -coefficient : 0);
+        float gIm = (float) (ys == 1 ? coefficient : ys == 3 ? -coefficient : 0);
+
+        for (int k = 0; k < dim; k++) {
+            int l = k ^ flipMask;
+
+            /* P |k> = i^ys (-1)^{|k & z|} |l> */
+            float re = inReal[k], im = inImag[k];
+            if ((Integer.bitCount(k & phaseMask) & 1) != 0) {
+                re = -re;
+                im = -im;
+            }
+
+            outReal[l] += gRe * re - gIm * im;
+            outImag[l] += gRe * im + gIm * re;
+        }
+    }
+
+    /**
+     * Computes the matrix element of the operator in a single pass
+     * \(
+     *      \bra{y} P \ket{x}
+     * \)
+     *
+     * @param bra the bra vector \( \bra{y} \)
+     * @param ket the ket vector \( \ket{x} \)
+     * @return the real and the imaginary part of the matrix element
+     *
+     * */
+    public double[] braket(Ket bra, Ket ket) {
+        if (bra.getDim() != getDim() || ket.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + bra.getDim() + " vs " + ket.getDim());
+
+        float[] braReal = bra.getReal();
+        float[] braImag = bra.getImag();
+        float[] ketReal = ket.getReal();
+        float[] ketImag = ket.getImag();
+
+        double re = 0, im = 0;
+        for (int k = 0; k < dim; k++) {
+            int l = k ^ flipMask;
+
+            /* conj(y_l) x_k = (a - bi)(c + di) = (ac + bd) + (ad - bc)i */
+            double a = braReal[l], b = braImag[l];
+            double c = ketReal[k], d = ketImag[k];
+            if ((Integer.bitCount(k & phaseMask) & 1) == 0) {
+                re += a * c + b * d;
+                im += a * d - b * c;
+            } else {
+                re -= a * c + b * d;
+                im -= a * d - b * c;
+            }
+        }
+
+        /* multiply by i^ys */
+        for (int i = 0; i < ys; i++) {
+            double t = re;
+            re = -im;
+            im = t;
+        }
+        return new double[] {re, im};
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.patztablook22.jaq.backends.lingebra;
+
+
+/**
+ * Immutable permutation operator on a finite-dimensional Hilbert space
+ * \( \mathbf H \rightarrow \mathbf H \) of dimension \( 2^N \),
+ * permuting the values of a register formed by a subset of the
+ * coordinate index bits.
+ *
+ * <p>
+ *   Given {@code m} index bits forming the register value {@code x}
+ *   (the first bit being the most significant), the remaining index bits
+ *   {@code r}, and a bijection \( \pi \) of the register values,
+ *   the operator corresponds to
+ *   \(
+ *      \ket{r, x} \mapsto \ket{r, \pi(x)}
+ *   \)
+ * </p>
+ *
+ * <p>
+ *   It is applied <i>inplace</i> as a single pass over the coordinates,
+ *   moving each fiber of \( 2^m \) coordinates through a small scratch buffer.
+ * </p>
+ *
+ * */
+public class PermutationOperator {
+
+    /**
+     * Dimension of the Hilbert space.
+     *
+     * */
+    int dim;
+
+    /**
+     * Index offsets of the register values within a fiber.
+     *
+     * */
+    int[] offsets;
+
+    /**
+     * Index offsets of the permuted register values within a fiber.
+     *
+     * */
+    int[] targets;
+
+    /**
+     * Index bits not participating in the permutation.
+     *
+     * */
+    int restMask;
+
+    /**
+     * Constructs the permutation operator along the given index bits.
+     * Each element of {@code bits} must be a distinct power of two
+     * less than {@code dim}, and {@code permutation} must be
+     * a bijection on \( \{0, \dots, 2^m - 1\} \).
+     *
+     * @param dim dimension of the Hilbert space
+     * @param bits the index bits, the most significant register digit first
+     * @param permutation the register value permutation
+     *
+     * */
+    public PermutationOperator(int dim, int[] bits, int[] permutation) {
+        int m = bits.length;
+        int length = 1 << m;
+        if (permutation.length != length)
+            throw new IllegalArgumentException("permutation size mismatch: "
+                    + permutation.length + " vs " + length);
+
+        int mask = 0;
+        for (int bit: bits) {
+            if (Integer.bitCount(bit) != 1 || bit >= dim || (mask & bit) != 0)
+                throw new IllegalArgumentException("invalid index bit: " + bit);
+            mask |= bit;
+        }
+
+        boolean[] seen = new boolean[length];
+        for (int y: permutation) {
+            if (y < 0 || y >= length || seen[y])
+                throw new IllegalArgumentException("not a permutation");
+            seen[y] = true;
+        }
+
+        this.dim = dim;
+        this.restMask = (dim - 1) & ~mask;
+
+        offsets = new int[length];
+        for (int x = 0; x < length; x++)
+            for (int i = 0; i < m; i++)
+                if (((x >> (m - i - 1)) & 1) != 0)
+                    offsets[x] |= bits[i];
+
+        targets = new int[length];
+        for (int x = 0; x < length; x++)
+            targets[x] = offsets[permutation[x]];
+    }
+
+    /**
+     * Returns the dimension of the Hilbert space
+     * \(
+     *      \mathop{dim} \mathbf H
+     * \)
+     *
+     * @return the dimension of the Hilbert space
+     *
+     * */
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * Returns the size of the operator's tables, which grow
+     * with the number of the participating index bits.
+     *
+     * @return the size in bytes
+     *
+     * */
+    public long getTableSize() {
+        return 4L * (offsets.length + targets.length);
+    }
+
+    /**
+     * Applies the operator <i>inplace</i> on the given ket vector.
+     *
+     * @param ket complex vector to transform
+     *
+     * */
+    public void transformInplace(Ket ket) {
+        if (ket.getDim() != getDim())
+            throw new IllegalArgumentException("dimension mismatch: "
+                    + getDim() + " vs " + ket.getDim());
+
+        float[] real = ket.getReal();
+        float[] imag = ket.getImag();
+
+        int length = offsets.length;
+        float[] fiberReal = new float[length];
+        float[] fiberImag = new float[length];
+
+        int fibers = dim / length;
+        for (int r = 0; r < fibers; r++) {
+            int base = DiagonalOperator.expand(r, restMask);
+
+            for (int x = 0; x < length; x++) {
+                fiberReal[x] = real[base + offsets[x]];
+                fiberImag[x] = imag[base + offsets[x]];
+            }
+
+            for (int x = 0; x < length; x++) {
+                real[base + targets[x]] = fiberReal[x];
+                imag[base + targets[x]] = fiberImag[x];
+            }
+        }
+    }
+}
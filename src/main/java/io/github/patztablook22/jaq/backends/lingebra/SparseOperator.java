@@ -371,11 +371,33 @@ public class SparseOperator {
      *
      * */
     public Ket transform(Ket ket) {
-        if (ket.getDim() != getDim())
+        Ket out = new Ket(getDim());
+        transform(ket, out);
+        return out;
+    }
+
+    /**
+     * Applies the operator on the given ket vector,
+     * overwriting another preallocated ket vector with the result:
+     * \(
+     *      \ket{y} \leftarrow P \ket{x}
+     * \)
+     *
+     * Allows double-buffering without allocating a new
+     * vector per transformation. The two vectors must differ.
+     *
+     * @param ket complex vector to transform
+     * @param out complex vector to overwrite with the result
+     *
+     * */
+    public void transform(Ket ket, Ket out) {
+        if (ket.getDim() != getDim() || out.getDim() != getDim())
             throw new IllegalArgumentException("dimension mismatch: "
-                    + getDim() + " vs " + ket.getDim());
+                    + getDim() + " vs " + ket.getDim() + " vs " + out.getDim());
+        if (ket == out)
+            throw new IllegalArgumentException("transform not inplace");
 
-        Ket out = new Ket(getDim());
+        out.zero();
 
         float[] inReal = ket.getReal();
         float[] inImag = ket.getImag();
@@ -395,7 +417,6 @@ public class SparseOperator {
             outImag[row] += storedReals[iter] * inImag[col]
                 + storedImags[iter] * inReal[col];
         }
-        return out;
     }
 
     /**
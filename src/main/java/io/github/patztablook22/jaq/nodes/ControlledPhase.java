@@ -0,0 +1,115 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Parametric;
+
+
+/**
+ * The controlled phase shift gate:
+ * \[
+ *    \mathop{CP}(\theta) = \begin{pmatrix}
+ *                        1 &amp; 0 &amp; 0 &amp; 0 \\
+ *                        0 &amp; 1 &amp; 0 &amp; 0 \\
+ *                        0 &amp; 0 &amp; 1 &amp; 0 \\
+ *                        0 &amp; 0 &amp; 0 &amp; e^{i \theta} \\
+ *                    \end{pmatrix}
+ * \]
+ *
+ * <p>
+ *   Applies the {@link Phase} gate on the {@code target} qubit when the 
+ *   {@code control} qubit is 1. As the matrix is diagonal, the gate is
+ *   symmetric, i.e. swapping the {@code control} and the {@code target}
+ *   qubit results in the same gate.
+ * </p>
+ *
+ * <p>
+ *   It is the basic building block of the quantum Fourier transform.
+ * </p>
+ *
+ * */
+public class ControlledPhase implements Parametric {
+
+    /**
+     * The control qubit.
+     *
+     * */
+    private int control;
+
+    /**
+     * The target qubit.
+     *
+     * */
+    private int target;
+
+    /**
+     * The phase shift angle, or the parameter's coefficient.
+     *
+     * */
+    private double angle;
+
+    /**
+     * The phase shift parameter, if any.
+     *
+     * */
+    private Parameter parameter;
+
+    /**
+     * Constructs a controlled phase shift gate controlled by
+     * and acting on specified qubits.
+     *
+     * @param control controlling qubit
+     * @param target target qubit
+     * @param angle the phase shift angle (in radians)
+     *
+     * */
+    public ControlledPhase(int control, int target, double angle) {
+        this(control, target, angle, null);
+    }
+
+    /**
+     * Constructs a parametrized controlled phase shift gate controlled by
+     * and acting on specified qubits.
+     *
+     * @param control controlling qubit
+     * @param target target qubit
+     * @param coefficient the parameter's coefficient
+     * @param parameter the phase shift parameter, or {@code null} for a fixed angle
+     *
+     * */
+    public ControlledPhase(int control, int target, double coefficient, Parameter parameter) {
+        this.control = control;
+        this.target = target;
+        this.angle = coefficient;
+        this.parameter = parameter;
+    }
+
+    /**
+     * Returns the control qubit.
+     *
+     * @return the control qubit
+     *
+     * */
+    public int getControl() {
+        return control;
+    }
+
+    /**
+     * Returns the target qubit.
+     *
+     * @return the target qubit
+     *
+     * */
+    public int getTarget() {
+        return target;
+    }
+
+    @Override
+    public double getAngle() {
+        return angle;
+    }
+
+    @Override
+    public Parameter getParameter() {
+        return parameter;
+    }
+}
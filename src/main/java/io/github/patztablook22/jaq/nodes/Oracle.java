@@ -0,0 +1,89 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Qgate;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+
+/**
+ * Classical reversible function oracle, acting on a register of qubits
+ * as a permutation of the computational basis:
+ * \[
+ *      U_f \ket{x} = \ket{f(x)}
+ * \]
+ *
+ * <p>
+ *   The register consists of {@code m} given qubits, the first one being
+ *   the most significant digit of the register value {@code x}. The
+ *   {@code function} must be a bijection on \( \{0, \dots, 2^m - 1\} \),
+ *   otherwise the resulting operation is not unitary. The typical use case
+ *   is computing a general classical function \( g \) into an output register:
+ *   \[
+ *      \ket{x, y} \mapsto \ket{x, y \oplus g(x)}
+ *   \]
+ *   which is reversible for any \( g \), see
+ *   {@link io.github.patztablook22.jaq.Qcircuit#oracle(IntUnaryOperator, int[], int[])}.
+ * </p>
+ *
+ * <p>
+ *   Expressing the same permutation using {@link Cnot} and {@link PauliX}
+ *   gates generally requires a large number of gates. Backends are expected
+ *   to apply it directly instead.
+ * </p>
+ *
+ * @see PhaseOracle
+ *
+ * */
+public class Oracle implements Qgate {
+
+    /**
+     * The register qubits, the most significant first.
+     *
+     * */
+    private int[] qubits;
+
+    /**
+     * The permutation of the register values.
+     *
+     * */
+    private IntUnaryOperator function;
+
+    /**
+     * Constructs the oracle acting on given qubits.
+     * The qubits must be unique and there must be at least one.
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param function the permutation of the register values
+     *
+     * */
+    public Oracle(int[] qubits, IntUnaryOperator function) {
+        if (qubits.length == 0 || qubits.length >= Integer.SIZE - 1)
+            throw new IllegalArgumentException();
+        if (Arrays.stream(qubits).distinct().count() != qubits.length)
+            throw new IllegalArgumentException();
+
+        this.qubits = qubits.clone();
+        this.function = function;
+    }
+
+    /**
+     * Returns the register qubits, the most significant first.
+     *
+     * @return the register qubits
+     *
+     * */
+    public int[] getQubits() {
+        return qubits;
+    }
+
+    /**
+     * Returns the permutation of the register values.
+     *
+     * @return the permutation of the register values
+     *
+     * */
+    public IntUnaryOperator getFunction() {
+        return function;
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Parametric;
+
+import java.util.Arrays;
+
+
+/**
+ * Rotation generated by a multi-qubit Pauli string:
+ * \[
+ *      R_P(\theta) = e^{-i \theta P} = \cos \theta \, I - i \sin \theta \, P
+ * \]
+ *
+ * <p>
+ *   The Pauli string \( P = \sigma_0 \otimes \dots \otimes \sigma_{k-1} \)
+ *   is given by a string of the characters {@code I}, {@code X}, {@code Y}
+ *   and {@code Z}, the {@code j}-th of which acts on the {@code j}-th
+ *   of the given qubits. For example, {@code new PauliRotation("ZZ", new int[] {0, 3}, t)}
+ *   is the Ising coupling between the qubits 0 and 3.
+ * </p>
+ *
+ * <p>
+ *   Since \( P^2 = I \), the rotation permutes the computational basis
+ *   pairwise up to phases. Backends can therefore apply it in a single
+ *   pass, instead of the usual decomposition into a basis change,
+ *   a {@link Cnot} ladder and a {@link RotateZ}.
+ * </p>
+ *
+ * <p>
+ *   Note that the rotation angle is not halved, unlike for {@link RotateZ}:
+ *   \(
+ *      R_Z(\theta) = R_{Z}'(\frac{\theta}{2})
+ *   \)
+ *   where \( R' \) is the Pauli rotation. This matches the
+ *   time evolution \( e^{-i H t} \) of the Hamiltonian \( H = P \).
+ * </p>
+ *
+ * */
+public class PauliRotation implements Parametric {
+
+    /**
+     * The Pauli string.
+     *
+     * */
+    private String paulis;
+
+    /**
+     * The qubits the individual Pauli matrices act on.
+     *
+     * */
+    private int[] qubits;
+
+    /**
+     * The rotation angle, or the parameter's coefficient.
+     *
+     * */
+    private double angle;
+
+    /**
+     * The rotation parameter, if any.
+     *
+     * */
+    private Parameter parameter;
+
+    /**
+     * Constructs the Pauli rotation. The {@code paulis} must consist of
+     * {@code IXYZ} characters only, there must be as many of them as
+     * {@code qubits}, and the {@code qubits} must be unique.
+     *
+     * @param paulis the Pauli string
+     * @param qubits the qubits the individual Pauli matrices act on
+     * @param angle the rotation angle (in radians)
+     *
+     * */
+    public PauliRotation(String paulis, int[] qubits, double angle) {
+        this(paulis, qubits, angle, null);
+    }
+
+    /**
+     * Constructs the parametrized Pauli rotation. The same
+     * requirements as for the fixed angle rotation apply.
+     *
+     * @param paulis the Pauli string
+     * @param qubits the qubits the individual Pauli matrices act on
+     * @param coefficient the parameter's coefficient
+     * @param parameter the rotation parameter, or {@code null} for a fixed angle
+     *
+     * */
+    public PauliRotation(String paulis, int[] qubits, double coefficient, Parameter parameter) {
+        if (!isPauliString(paulis) || paulis.length() != qubits.length)
+            throw new IllegalArgumentException();
+        if (Arrays.stream(qubits).distinct().count() != qubits.length)
+            throw new IllegalArgumentException();
+
+        this.paulis = paulis;
+        this.qubits = qubits.clone();
+        this.angle = coefficient;
+        this.parameter = parameter;
+    }
+
+    /**
+     * Checks whether given string is a valid Pauli string.
+     *
+     * @param paulis the string to check
+     * @return whether the string consists of {@code IXYZ} characters only
+     *
+     * */
+    public static boolean isPauliString(String paulis) {
+        return paulis.chars().allMatch(c -> "IXYZ".indexOf(c) >= 0);
+    }
+
+    /**
+     * Returns the Pauli string.
+     *
+     * @return the Pauli string
+     *
+     * */
+    public String getPaulis() {
+        return paulis;
+    }
+
+    /**
+     * Returns the qubits the individual Pauli matrices act on.
+     *
+     * @return the qubits
+     *
+     * */
+    public int[] getQubits() {
+        return qubits;
+    }
+
+    @Override
+    public double getAngle() {
+        return angle;
+    }
+
+    @Override
+    public Parameter getParameter() {
+        return parameter;
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Qgate;
+
+
+/**
+ * The Pauli Z gate:
+ * \[
+ *      Z = 
+ *      \begin{pmatrix}
+ *      1 &amp;  0 \\
+ *      0 &amp; -1 \\
+ *      \end{pmatrix}
+ * \]
+ *
+ * The Pauli Z gate flips the phase of the coordinate corresponding
+ * to the 1 computational basis vector. It is diagonal, therefore it
+ * leaves the computational basis vectors unchanged up to a phase:
+ * \begin{align}
+ *      \ket{0} &amp; \mapsto  \ket{0} \\ 
+ *      \ket{1} &amp; \mapsto -\ket{1} \\ 
+ *      \ket{+} &amp; \mapsto  \ket{-} \\ 
+ *      \ket{-} &amp; \mapsto  \ket{+} \\ 
+ * \end{align}
+ *
+ * The matrix is Hermitean, therefore the Pauli Z gate is an involution:
+ * \[
+ *      Z Z \ket{\psi} = Z Z^\dagger \ket{\psi} = I \ket{\psi} = \ket{\psi}
+ * \]
+ *
+ * @see Phase
+ *
+ * */
+public class PauliZ implements Qgate {
+
+    /**
+     * The underlying qubit.
+     *
+     * */
+    private int qubit;
+
+    /**
+     * Constructs a Pauli Z gate acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     *
+     * */
+    public PauliZ(int qubit) {
+        this.qubit = qubit;
+    }
+
+    /**
+     * Returns the gate's qubit.
+     *
+     * @return the gate's qubit
+     *
+     * */
+    public int getQubit() {
+        return qubit;
+    }
+}
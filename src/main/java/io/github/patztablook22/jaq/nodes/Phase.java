@@ -0,0 +1,89 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Parametric;
+
+
+/**
+ * The phase shift gate, acting on a single qubit:
+ * \[
+ *      P(\theta) = 
+ *      \begin{pmatrix}
+ *      1 &amp; 0 \\
+ *      0 &amp; e^{i \theta} \\
+ *      \end{pmatrix}
+ * \]
+ *
+ * <p>
+ *   Shifts the phase of the coordinate corresponding to the 1
+ *   computational basis vector, leaving the measurement probabilities
+ *   unchanged. The {@link PauliZ}, {@link SGate S} and {@link TGate T}
+ *   gates are its special cases for \( \theta = \pi, \frac{\pi}{2}, \frac{\pi}{4} \).
+ * </p>
+ *
+ * */
+public class Phase implements Parametric {
+
+    /**
+     * The underlying qubit.
+     *
+     * */
+    private int qubit;
+
+    /**
+     * The phase shift angle, or the parameter's coefficient.
+     *
+     * */
+    private double angle;
+
+    /**
+     * The phase shift parameter, if any.
+     *
+     * */
+    private Parameter parameter;
+
+    /**
+     * Constructs a phase shift gate acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     * @param angle the phase shift angle (in radians)
+     *
+     * */
+    public Phase(int qubit, double angle) {
+        this(qubit, angle, null);
+    }
+
+    /**
+     * Constructs a parametrized phase shift gate acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     * @param coefficient the parameter's coefficient
+     * @param parameter the phase shift parameter, or {@code null} for a fixed angle
+     *
+     * */
+    public Phase(int qubit, double coefficient, Parameter parameter) {
+        this.qubit = qubit;
+        this.angle = coefficient;
+        this.parameter = parameter;
+    }
+
+    /**
+     * Returns the gate's qubit.
+     *
+     * @return the gate's qubit
+     *
+     * */
+    public int getQubit() {
+        return qubit;
+    }
+
+    @Override
+    public double getAngle() {
+        return angle;
+    }
+
+    @Override
+    public Parameter getParameter() {
+        return parameter;
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Qgate;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+
+/**
+ * Classical predicate phase oracle, acting on a register of qubits
+ * by flipping the phase of the marked computational basis vectors:
+ * \[
+ *      U_f \ket{x} = (-1)^{f(x)} \ket{x}
+ * \]
+ *
+ * <p>
+ *   The register consists of {@code m} given qubits, the first one being
+ *   the most significant digit of the register value {@code x}. The
+ *   oracle is diagonal, therefore backends can apply it as a single phase
+ *   multiplication pass, e.g. in Grover's search.
+ * </p>
+ *
+ * @see Oracle
+ *
+ * */
+public class PhaseOracle implements Qgate {
+
+    /**
+     * The register qubits, the most significant first.
+     *
+     * */
+    private int[] qubits;
+
+    /**
+     * The predicate marking the register values.
+     *
+     * */
+    private IntPredicate predicate;
+
+    /**
+     * Constructs the phase oracle acting on given qubits.
+     * The qubits must be unique and there must be at least one.
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param predicate the predicate marking the register values
+     *
+     * */
+    public PhaseOracle(int[] qubits, IntPredicate predicate) {
+        if (qubits.length == 0 || qubits.length >= Integer.SIZE - 1)
+            throw new IllegalArgumentException();
+        if (Arrays.stream(qubits).distinct().count() != qubits.length)
+            throw new IllegalArgumentException();
+
+        this.qubits = qubits.clone();
+        this.predicate = predicate;
+    }
+
+    /**
+     * Returns the register qubits, the most significant first.
+     *
+     * @return the register qubits
+     *
+     * */
+    public int[] getQubits() {
+        return qubits;
+    }
+
+    /**
+     * Returns the predicate marking the register values.
+     *
+     * @return the predicate marking the register values
+     *
+     * */
+    public IntPredicate getPredicate() {
+        return predicate;
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Qgate;
+
+import java.util.Arrays;
+
+
+/**
+ * The quantum Fourier transform (QFT) acting on a register of qubits:
+ * \[
+ *      \mathop{QFT} \ket{x} = \frac{1}{\sqrt{2^m}}
+ *      \sum_{y=0}^{2^m - 1} e^{2 \pi i x y / 2^m} \ket{y}
+ * \]
+ *
+ * <p>
+ *   The register consists of {@code m} given qubits, which need not be
+ *   contiguous. The first one is the most significant digit of the
+ *   register values {@code x} and {@code y}.
+ * </p>
+ *
+ * <p>
+ *   The QFT can be decomposed into \( O(m^2) \)
+ *   {@link Hadamard} and {@link ControlledPhase} gates followed by
+ *   reversing the order of the qubits. Backends may however
+ *   execute it directly, e.g. as the fast Fourier transform over the
+ *   corresponding axes of the state vector.
+ * </p>
+ *
+ * <p>
+ *   The inverse transform differs only in the sign of the exponent:
+ *   \[
+ *      \mathop{QFT}^\dagger \ket{y} = \frac{1}{\sqrt{2^m}}
+ *      \sum_{x=0}^{2^m - 1} e^{-2 \pi i x y / 2^m} \ket{x}
+ *   \]
+ * </p>
+ *
+ * */
+public class QuantumFourierTransform implements Qgate {
+
+    /**
+     * The register qubits, the most significant first.
+     *
+     * */
+    private int[] qubits;
+
+    /**
+     * Whether the transform is inverse.
+     *
+     * */
+    private boolean inverse;
+
+    /**
+     * Constructs the QFT acting on given qubits.
+     * The qubits must be unique and there must be at least one.
+     *
+     * @param qubits the register qubits, the most significant first
+     * @param inverse whether to construct the inverse transform
+     *
+     * */
+    public QuantumFourierTransform(int[] qubits, boolean inverse) {
+        if (qubits.length == 0)
+            throw new IllegalArgumentException();
+        if (Arrays.stream(qubits).distinct().count() != qubits.length)
+            throw new IllegalArgumentException();
+
+        this.qubits = qubits.clone();
+        this.inverse = inverse;
+    }
+
+    /**
+     * Returns the register qubits, the most significant first.
+     *
+     * @return the register qubits
+     *
+     * */
+    public int[] getQubits() {
+        return qubits;
+    }
+
+    /**
+     * Returns whether the transform is inverse.
+     *
+     * @return whether the transform is inverse
+     *
+     * */
+    public boolean isInverse() {
+        return inverse;
+    }
+}
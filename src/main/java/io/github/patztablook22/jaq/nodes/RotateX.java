@@ -1,22 +1,88 @@
 package io.github.patztablook22.jaq.nodes;
 
-import io.github.patztablook22.jaq.Qgate;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Parametric;
 
 
-public class RotateX implements Qgate {
+/**
+ * The rotation around the X axis, acting on a single qubit:
+ * \[
+ *      R_X(\theta) = e^{-i \frac{\theta}{2} X} =
+ *      \begin{pmatrix}
+ *      \cos \frac{\theta}{2} &amp; -i \sin \frac{\theta}{2} \\
+ *      -i \sin \frac{\theta}{2} &amp; \cos \frac{\theta}{2} \\
+ *      \end{pmatrix}
+ * \]
+ *
+ * <p>
+ *   The angle can be either fixed or given by a symbolic
+ *   {@link io.github.patztablook22.jaq.Parameter Parameter},
+ *   see {@link io.github.patztablook22.jaq.Parametric Parametric}.
+ * </p>
+ *
+ * */
+public class RotateX implements Parametric {
+
+    /**
+     * The underlying qubit.
+     *
+     * */
     private int qubit;
+
+    /**
+     * The rotation angle, or the parameter's coefficient.
+     *
+     * */
     private double angle;
 
+    /**
+     * The rotation parameter, if any.
+     *
+     * */
+    private Parameter parameter;
+
+    /**
+     * Constructs an X rotation by a fixed angle acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     * @param angle the rotation angle (in radians)
+     *
+     * */
     public RotateX(int qubit, double angle) {
+        this(qubit, angle, null);
+    }
+
+    /**
+     * Constructs a parametrized X rotation acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     * @param coefficient the parameter's coefficient
+     * @param parameter the rotation parameter, or {@code null} for a fixed angle
+     *
+     * */
+    public RotateX(int qubit, double coefficient, Parameter parameter) {
         this.qubit = qubit;
-        this.angle = angle;
+        this.angle = coefficient;
+        this.parameter = parameter;
     }
 
+    /**
+     * Returns the gate's qubit.
+     *
+     * @return the gate's qubit
+     *
+     * */
     public int getQubit() {
         return qubit;
     }
 
+    @Override
     public double getAngle() {
         return angle;
     }
+
+    @Override
+    public Parameter getParameter() {
+        return parameter;
+    }
 }
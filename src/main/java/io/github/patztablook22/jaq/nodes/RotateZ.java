@@ -0,0 +1,87 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.Parametric;
+
+
+/**
+ * The rotation around the Z axis, acting on a single qubit:
+ * \[
+ *      R_Z(\theta) = e^{-i \frac{\theta}{2} Z} =
+ *      \begin{pmatrix}
+ *      e^{-i \theta / 2} &amp; 0 \\
+ *      0 &amp; e^{i \theta / 2} \\
+ *      \end{pmatrix}
+ * \]
+ *
+ * <p>
+ *   Up to the global phase \( e^{-i \theta / 2} \), it is equal to
+ *   the {@link Phase} gate with the same angle.
+ * </p>
+ *
+ * */
+public class RotateZ implements Parametric {
+
+    /**
+     * The underlying qubit.
+     *
+     * */
+    private int qubit;
+
+    /**
+     * The rotation angle, or the parameter's coefficient.
+     *
+     * */
+    private double angle;
+
+    /**
+     * The rotation parameter, if any.
+     *
+     * */
+    private Parameter parameter;
+
+    /**
+     * Constructs a Z rotation acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     * @param angle the rotation angle (in radians)
+     *
+     * */
+    public RotateZ(int qubit, double angle) {
+        this(qubit, angle, null);
+    }
+
+    /**
+     * Constructs a parametrized Z rotation acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     * @param coefficient the parameter's coefficient
+     * @param parameter the rotation parameter, or {@code null} for a fixed angle
+     *
+     * */
+    public RotateZ(int qubit, double coefficient, Parameter parameter) {
+        this.qubit = qubit;
+        this.angle = coefficient;
+        this.parameter = parameter;
+    }
+
+    /**
+     * Returns the gate's qubit.
+     *
+     * @return the gate's qubit
+     *
+     * */
+    public int getQubit() {
+        return qubit;
+    }
+
+    @Override
+    public double getAngle() {
+        return angle;
+    }
+
+    @Override
+    public Parameter getParameter() {
+        return parameter;
+    }
+}
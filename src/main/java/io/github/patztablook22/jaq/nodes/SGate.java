@@ -0,0 +1,52 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Qgate;
+
+
+/**
+ * The S gate, a quarter turn around the Z axis:
+ * \[
+ *      S = 
+ *      \begin{pmatrix}
+ *      1 &amp; 0 \\
+ *      0 &amp; i \\
+ *      \end{pmatrix}
+ * \]
+ *
+ * Equivalent to the {@link Phase} gate with the angle \( \frac{\pi}{2} \).
+ * Applying it twice yields the {@link PauliZ} gate:
+ * \[
+ *      S S = Z
+ * \]
+ *
+ * @see Phase
+ *
+ * */
+public class SGate implements Qgate {
+
+    /**
+     * The underlying qubit.
+     *
+     * */
+    private int qubit;
+
+    /**
+     * Constructs an S gate acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     *
+     * */
+    public SGate(int qubit) {
+        this.qubit = qubit;
+    }
+
+    /**
+     * Returns the gate's qubit.
+     *
+     * @return the gate's qubit
+     *
+     * */
+    public int getQubit() {
+        return qubit;
+    }
+}
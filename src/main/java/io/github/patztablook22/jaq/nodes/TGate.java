@@ -0,0 +1,52 @@
+package io.github.patztablook22.jaq.nodes;
+
+import io.github.patztablook22.jaq.Qgate;
+
+
+/**
+ * The T gate, an eighth turn around the Z axis:
+ * \[
+ *      T = 
+ *      \begin{pmatrix}
+ *      1 &amp; 0 \\
+ *      0 &amp; e^{i \pi / 4} \\
+ *      \end{pmatrix}
+ * \]
+ *
+ * Equivalent to the {@link Phase} gate with the angle \( \frac{\pi}{4} \).
+ * Applying it twice yields the {@link SGate S} gate:
+ * \[
+ *      T T = S
+ * \]
+ *
+ * @see Phase
+ *
+ * */
+public class TGate implements Qgate {
+
+    /**
+     * The underlying qubit.
+     *
+     * */
+    private int qubit;
+
+    /**
+     * Constructs a T gate acting on a given qubit.
+     *
+     * @param qubit the gate's qubit
+     *
+     * */
+    public TGate(int qubit) {
+        this.qubit = qubit;
+    }
+
+    /**
+     * Returns the gate's qubit.
+     *
+     * @return the gate's qubit
+     *
+     * */
+    public int getQubit() {
+        return qubit;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.patztablook22.jaq;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+
+public class HistogramTest {
+
+    @Test
+    public void countsSurviveResizing() {
+        var histogram = new Histogram();
+        var random = new Random(1);
+        long[] outcomes = new long[5000];
+        for (int i = 0; i < outcomes.length; i++)
+            outcomes[i] = i % 3 == 0 ? i : random.nextLong();
+
+        for (int round = 1; round <= 3; round++)
+            for (int i = 0; i < outcomes.length; i++)
+                histogram.add(outcomes[i], i + 1);
+
+        assertEquals(outcomes.length, histogram.size());
+        assertEquals(3L * outcomes.length * (outcomes.length + 1) / 2, histogram.total());
+        for (int i = 0; i < outcomes.length; i++)
+            assertEquals(3L * (i + 1), histogram.count(outcomes[i]));
+        assertEquals(0, histogram.count(-7));
+    }
+
+    @Test
+    public void outcomesInUnsignedOrder() {
+        var histogram = new Histogram();
+        long[] outcomes = {-1, 5, Long.MIN_VALUE, 0, Long.MAX_VALUE, 1L << 40, -2};
+        for (long outcome: outcomes)
+            histogram.add(outcome, 2);
+        histogram.add(3, 0);
+
+        assertArrayEquals(new long[] {0, 5, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE, -2, -1},
+                          histogram.outcomes());
+        assertEquals(0, histogram.count(3));
+    }
+
+    @Test
+    public void mergeAddsCounts() {
+        var a = new Histogram();
+        var b = new Histogram();
+        for (int i = 0; i < 100; i++) {
+            a.add(i, 1);
+            b.add(i + 50, 2);
+        }
+        a.merge(b);
+
+        assertEquals(150, a.size());
+        assertEquals(300, a.total());
+        assertEquals(1, a.count(0));
+        assertEquals(3, a.count(75));
+        assertEquals(2, a.count(149));
+
+        long[] seen = new long[2];
+        a.forEach((outcome, count) -> {
+            seen[0]++;
+            seen[1] += count;
+        });
+        assertArrayEquals(new long[] {150, 300}, seen);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeCounts() {
+        new Histogram().add(0, -1);
+    }
+}
@@ -0,0 +1,309 @@
+package io.github.patztablook22.jaq;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+public class QflowTest {
+
+    /**
+     * Minimal state vector simulator implementing only the elementary
+     * gates, as the {@link Qflow} subclasses predating the other gates do.
+     *
+     * */
+    static class Elementary extends Qflow {
+        final int n;
+        final double[] re, im;
+
+        Elementary(Qcircuit circuit) {
+            super(circuit);
+            n = circuit.qubits();
+            re = new double[1 << n];
+            im = new double[1 << n];
+            re[0] = 1;
+        }
+
+        int bit(int qubit) {
+            return 1 << (n - qubit - 1);
+        }
+
+        @Override
+        protected void hadamard(int qubit) {
+            int b = bit(qubit);
+            double r = Math.sqrt(0.5);
+            for (int k = 0; k < re.length; k++) {
+                if ((k & b) != 0)
+                    continue;
+                double ar = re[k], ai = im[k], br = re[k | b], bi = im[k | b];
+                re[k] = (ar + br) * r;
+                im[k] = (ai + bi) * r;
+                re[k | b] = (ar - br) * r;
+                im[k | b] = (ai - bi) * r;
+            }
+        }
+
+        @Override
+        protected void measure(int source, int target) {
+        }
+
+        @Override
+        protected void cnot(int control, int target) {
+            int c = bit(control), t = bit(target);
+            for (int k = 0; k < re.length; k++) {
+                if ((k & c) == 0 || (k & t) != 0)
+                    continue;
+                double r = re[k], i = im[k];
+                re[k] = re[k | t];
+                im[k] = im[k | t];
+                re[k | t] = r;
+                im[k | t] = i;
+            }
+        }
+
+        @Override
+        protected void pauliX(int qubit) {
+            int b = bit(qubit);
+            for (int k = 0; k < re.length; k++) {
+                if ((k & b) != 0)
+                    continue;
+                double r = re[k], i = im[k];
+                re[k] = re[k | b];
+                im[k] = im[k | b];
+                re[k | b] = r;
+                im[k | b] = i;
+            }
+        }
+
+        @Override
+        protected void rotateX(int qubit, double angle) {
+            int b = bit(qubit);
+            double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+            for (int k = 0; k < re.length; k++) {
+                if ((k & b) != 0)
+                    continue;
+                double ar = re[k], ai = im[k], br = re[k | b], bi = im[k | b];
+                re[k] = c * ar + s * bi;
+                im[k] = c * ai - s * br;
+                re[k | b] = c * br + s * ai;
+                im[k | b] = c * bi - s * ar;
+            }
+        }
+    }
+
+    /**
+     * The same simulator executing the phase gates exactly, the reference
+     * for their default decompositions, and optionally the oracles too.
+     *
+     * */
+    static class Exact extends Elementary {
+        final boolean oracles;
+
+        Exact(Qcircuit circuit, boolean oracles) {
+            super(circuit);
+            this.oracles = oracles;
+        }
+
+        /**
+         * Shifts the phase of the basis states having all the given bits set.
+         *
+         * */
+        void shift(int bits, double angle) {
+            double c = Math.cos(angle), s = Math.sin(angle);
+            for (int k = 0; k < re.length; k++) {
+                if ((k & bits) != bits)
+                    continue;
+                double r = re[k], i = im[k];
+                re[k] = c * r - s * i;
+                im[k] = s * r + c * i;
+            }
+        }
+
+        /**
+         * Returns the value of the register in the basis state.
+         *
+         * */
+        int value(int k, int[] qubits) {
+            int value = 0;
+            for (int q: qubits)
+                value = value << 1 | ((k & bit(q)) != 0 ? 1 : 0);
+            return value;
+        }
+
+        /**
+         * Returns the basis state with the register set to the value.
+         *
+         * */
+        int assign(int k, int[] qubits, int value) {
+            for (int j = 0; j < qubits.length; j++) {
+                int b = bit(qubits[qubits.length - j - 1]);
+                k = (value >>> j & 1) != 0 ? k | b : k & ~b;
+            }
+            return k;
+        }
+
+        @Override
+        protected void phase(int qubit, double angle) {
+            shift(bit(qubit), angle);
+        }
+
+        @Override
+        protected void rotateZ(int qubit, double angle) {
+            shift(0, -angle / 2);
+            shift(bit(qubit), angle);
+        }
+
+        @Override
+        protected void controlledPhase(int control, int target, double angle) {
+            shift(bit(control) | bit(target), angle);
+        }
+
+        @Override
+        protected void oracle(int[] qubits, IntUnaryOperator permutation) {
+            if (!oracles) {
+                super.oracle(qubits, permutation);
+                return;
+            }
+
+            double[] r = new double[re.length], i = new double[im.length];
+            for (int k = 0; k < re.length; k++) {
+                int image = assign(k, qubits, permutation.applyAsInt(value(k, qubits)));
+                r[image] = re[k];
+                i[image] = im[k];
+            }
+            System.arraycopy(r, 0, re, 0, re.length);
+            System.arraycopy(i, 0, im, 0, im.length);
+        }
+
+        @Override
+        protected void phaseOracle(int[] qubits, IntPredicate predicate) {
+            if (!oracles) {
+                super.phaseOracle(qubits, predicate);
+                return;
+            }
+
+            for (int k = 0; k < re.length; k++) {
+                if (!predicate.test(value(k, qubits)))
+                    continue;
+                re[k] = -re[k];
+                im[k] = -im[k];
+            }
+        }
+    }
+
+    /**
+     * Returns the fidelity of the states simulated by the flows,
+     * i.e. their overlap insensitive to the global phase.
+     *
+     * */
+    static double fidelity(Qcircuit circuit) {
+        var elementary = new Elementary(circuit);
+        var exact = new Exact(circuit, true);
+        elementary.flow();
+        exact.flow();
+
+        double re = 0, im = 0;
+        for (int k = 0; k < exact.re.length; k++) {
+            re += exact.re[k] * elementary.re[k] + exact.im[k] * elementary.im[k];
+            im += exact.re[k] * elementary.im[k] - exact.im[k] * elementary.re[k];
+        }
+        return re * re + im * im;
+    }
+
+    /**
+     * Asserts that the default decompositions of the oracles produce
+     * exactly the same amplitudes, global phase included, given that
+     * the phase gates are exact.
+     *
+     * */
+    static void assertOracles(Qcircuit circuit) {
+        var decomposed = new Exact(circuit, false);
+        var exact = new Exact(circuit, true);
+        decomposed.flow();
+        exact.flow();
+        assertArrayEquals(exact.re, decomposed.re, 1e-9);
+        assertArrayEquals(exact.im, decomposed.im, 1e-9);
+    }
+
+    @Test
+    public void derivedGates() {
+        var circuit = new Qcircuit(3, 0) {{
+            hadamard(0);
+            hadamard(1);
+            rotateX(2, 0.7);
+            phase(0, 0.9);
+            rotateZ(1, 1.3);
+            controlledPhase(0, 2, 2.1);
+            hadamard(0);
+            cnot(1, 2);
+            controlledPhase(2, 1, -0.4);
+            sGate(2);
+            tGate(1);
+            hadamard(1);
+            hadamard(2);
+        }};
+        assertEquals(1, fidelity(circuit), 1e-9);
+    }
+
+    @Test
+    public void oracleDecomposition() {
+        var circuit = new Qcircuit(4, 0) {{
+            for (int i = 0; i < 4; i++)
+                hadamard(i);
+            rotateX(0, 0.4);
+            rotateX(2, 1.9);
+            phase(1, 0.6);
+            oracle(x -> (5 * x + 3) % 8, 2, 0, 3);
+            oracle(x -> x ^ 1, 1, 3);
+            oracle(x -> Integer.bitCount(x) % 2, new int[] {3, 0}, new int[] {1});
+        }};
+        assertEquals(1, fidelity(circuit), 1e-9);
+        assertOracles(circuit);
+    }
+
+    @Test
+    public void phaseOracleDecomposition() {
+        var circuit = new Qcircuit(4, 0) {{
+            for (int i = 0; i < 4; i++)
+                hadamard(i);
+            rotateX(1, 0.8);
+            phaseOracle(x -> x == 0 || x == 5, 3, 1, 0);
+            phaseOracle(x -> x == 2, 2, 0);
+            phaseOracle(x -> true, 1);
+            for (int i = 0; i < 4; i++)
+                hadamard(i);
+        }};
+        assertEquals(1, fidelity(circuit), 1e-9);
+        assertOracles(circuit);
+    }
+
+    @Test
+    public void defaultBindings() {
+        Qvm backend = new Qvm() {
+            @Override
+            public byte[] run(Qcircuit circuit) {
+                return new byte[circuit.cbits()];
+            }
+        };
+
+        var circuit = new Qcircuit(1, 1) {{
+            hadamard(0);
+            measure(0, 0);
+        }};
+        assertEquals(1, backend.run(circuit, Map.of()).length);
+        assertEquals(3, backend.run(circuit, Map.of(), 3).length);
+
+        var theta = new Parameter("theta");
+        var parametrized = new Qcircuit(1, 1) {{
+            rotateX(0, theta);
+        }};
+        try {
+            backend.run(parametrized, Map.of(theta, 1.0));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
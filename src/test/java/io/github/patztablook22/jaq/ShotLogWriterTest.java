@@ -0,0 +1,63 @@
+package io.github.patztablook22.jaq;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.backends.SimpleSimulator;
+
+import java.nio.file.Files;
+import java.util.concurrent.CompletionException;
+
+
+public class ShotLogWriterTest {
+
+    @Test
+    public void subscriberWritesStream() throws Exception {
+        var circuit = new Qcircuit(2, 2) {{
+            hadamard(0);
+            cnot(0, 1);
+            measure(0, 0);
+            measure(1, 1);
+        }};
+
+        var path = Files.createTempFile("jaq", ".jaqs");
+        try {
+            try (var log = new ShotLogWriter(path, circuit, 100)) {
+                var subscriber = log.subscriber();
+                new SimpleSimulator(1).stream(circuit, 1234, 50).subscribe(subscriber);
+                subscriber.getCompletion().join();
+            }
+
+            try (var reader = new ShotLogReader(path)) {
+                assertEquals(1234, reader.shots());
+                var histogram = reader.histogram();
+                assertEquals(1234, histogram.count(0) + histogram.count(3));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void subscriberFailsOnMismatch() throws Exception {
+        var logged = new Qcircuit(1, 1) {{
+            measure(0, 0);
+        }};
+        var published = new Qcircuit(2, 2) {{
+            measure(0, 0);
+        }};
+
+        var path = Files.createTempFile("jaq", ".jaqs");
+        try (var log = new ShotLogWriter(path, logged)) {
+            var subscriber = log.subscriber();
+            new SimpleSimulator(1).stream(published, 1000, 10).subscribe(subscriber);
+            try {
+                subscriber.getCompletion().join();
+                fail();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package io.github.patztablook22.jaq;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+public class ShotPublisherTest {
+
+    @Test
+    public void deliversOnlyRequestedBatches() {
+        var source = new CountingSource();
+        var subscriber = new Recorder(0);
+        new ShotPublisher(1000, 100, () -> source, Runnable::run).subscribe(subscriber);
+
+        assertEquals(0, subscriber.batches.get());
+        assertEquals(0, source.produced.get());
+
+        subscriber.subscription.request(3);
+        assertEquals(3, subscriber.batches.get());
+        assertEquals(3, source.produced.get());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(10, subscriber.batches.get());
+        assertEquals(1000, subscriber.shots.get());
+        assertEquals(1, subscriber.completed.get());
+        assertEquals(1, source.closed.get());
+    }
+
+    @Test
+    public void boundedDemandUnderConcurrency() throws Exception {
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var source = new CountingSource();
+            var outstanding = new AtomicLong();
+            var overrun = new AtomicInteger();
+            var requester = Executors.newSingleThreadExecutor();
+            var subscriber = new Recorder(0) {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    super.onSubscribe(subscription);
+                    outstanding.addAndGet(2);
+                    subscription.request(2);
+                }
+
+                @Override
+                public void onNext(Shots batch) {
+                    super.onNext(batch);
+                    if (outstanding.decrementAndGet() < 0)
+                        overrun.incrementAndGet();
+                    /* request from another thread, racing the delivery */
+                    requester.execute(() -> {
+                        outstanding.incrementAndGet();
+                        subscription.request(1);
+                    });
+                }
+            };
+
+            new ShotPublisher(100_000, 37, () -> source, executor).subscribe(subscriber);
+            assertTrue(subscriber.terminated.await(30, TimeUnit.SECONDS));
+            assertTrue(source.closing.await(30, TimeUnit.SECONDS));
+            requester.shutdown();
+            assertTrue(requester.awaitTermination(30, TimeUnit.SECONDS));
+
+            assertEquals(0, overrun.get());
+            assertEquals(100_000, subscriber.shots.get());
+            assertEquals(1, subscriber.completed.get());
+            assertEquals(1, source.closed.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelClosesSourceWithoutFurtherBatches() throws Exception {
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var source = new CountingSource();
+            var subscriber = new Recorder(Long.MAX_VALUE) {
+                @Override
+                public void onNext(Shots batch) {
+                    super.onNext(batch);
+                    if (batches.get() == 3)
+                        subscription.cancel();
+                }
+            };
+
+            new ShotPublisher(Long.MAX_VALUE, 10, () -> source, executor).subscribe(subscriber);
+            assertTrue(source.closing.await(30, TimeUnit.SECONDS));
+            subscriber.subscription.request(5);
+            subscriber.subscription.cancel();
+            drain(executor);
+
+            assertEquals(3, subscriber.batches.get());
+            assertEquals(3, source.produced.get());
+            assertEquals(1, source.closed.get());
+            assertEquals(0, subscriber.completed.get());
+            assertEquals(0, subscriber.errors.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failingFactorySignalsAfterSubscribe() {
+        var failure = new IllegalStateException();
+        var subscriber = new Recorder(1);
+        new ShotPublisher(100, 10, () -> {
+            throw failure;
+        }, Runnable::run).subscribe(subscriber);
+
+        assertNotNull(subscriber.subscription);
+        assertSame(failure, subscriber.error);
+        assertEquals(1, subscriber.errors.get());
+        assertEquals(0, subscriber.batches.get());
+    }
+
+    @Test
+    public void failingSourceSignalsError() {
+        var failure = new IllegalStateException();
+        var source = new CountingSource() {
+            @Override
+            public Shots next(int shots) {
+                if (produced.get() == 2)
+                    throw failure;
+                return super.next(shots);
+            }
+        };
+        var subscriber = new Recorder(Long.MAX_VALUE);
+        new ShotPublisher(100, 10, () -> source, Runnable::run).subscribe(subscriber);
+
+        assertEquals(2, subscriber.batches.get());
+        assertSame(failure, subscriber.error);
+        assertEquals(0, subscriber.completed.get());
+        assertEquals(1, source.closed.get());
+    }
+
+    @Test
+    public void throwingSubscriberCancels() throws Exception {
+        var failure = new IllegalStateException();
+        var propagated = new AtomicReference<Throwable>();
+        var pool = Executors.newSingleThreadExecutor();
+        Executor executor = task -> pool.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                propagated.set(e);
+            }
+        });
+        try {
+            var source = new CountingSource();
+            var subscriber = new Recorder(0) {
+                @Override
+                public void onNext(Shots batch) {
+                    super.onNext(batch);
+                    throw failure;
+                }
+            };
+
+            new ShotPublisher(100, 10, () -> source, executor).subscribe(subscriber);
+            subscriber.subscription.request(1);
+            assertTrue(source.closing.await(30, TimeUnit.SECONDS));
+
+            /* the drain loop must not stay marked as running */
+            subscriber.subscription.request(5);
+            drain(executor);
+
+            assertSame(failure, propagated.get());
+            assertEquals(1, subscriber.batches.get());
+            assertEquals(1, source.produced.get());
+            assertEquals(1, source.closed.get());
+            assertEquals(0, subscriber.errors.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Waits until the tasks submitted to the single-threaded executor so far finish.
+     *
+     * @param executor the executor
+     *
+     * */
+    private static void drain(Executor executor) throws Exception {
+        var latch = new CountDownLatch(1);
+        executor.execute(latch::countDown);
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+    }
+
+    private static class CountingSource implements ShotPublisher.Source {
+
+        final AtomicInteger produced = new AtomicInteger();
+
+        final AtomicInteger closed = new AtomicInteger();
+
+        final CountDownLatch closing = new CountDownLatch(1);
+
+        @Override
+        public Shots next(int shots) {
+            produced.incrementAndGet();
+            var out = new Shots(1, shots);
+            for (int i = 0; i < shots; i++)
+                out.add(0L);
+            return out;
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+            closing.countDown();
+        }
+    }
+
+    private static class Recorder implements Flow.Subscriber<Shots> {
+
+        private final long initial;
+
+        volatile Flow.Subscription subscription;
+
+        final AtomicInteger batches = new AtomicInteger();
+
+        final AtomicLong shots = new AtomicLong();
+
+        final AtomicInteger completed = new AtomicInteger();
+
+        final AtomicInteger errors = new AtomicInteger();
+
+        final CountDownLatch terminated = new CountDownLatch(1);
+
+        volatile Throwable error;
+
+        Recorder(long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initial > 0)
+                subscription.request(initial);
+        }
+
+        @Override
+        public void onNext(Shots batch) {
+            batches.incrementAndGet();
+            shots.addAndGet(batch.size());
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            errors.incrementAndGet();
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.incrementAndGet();
+            terminated.countDown();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.patztablook22.jaq;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.backends.SimpleSimulator;
+
+
+public class ShotsTest {
+
+    @Test
+    public void packsBeyond64Cbits() {
+        var shots = new Shots(130, 0);
+        assertEquals(3, shots.words());
+
+        int[] ones = {0, 63, 64, 127, 129};
+        for (int i = 0; i < 10; i++) {
+            byte[] register = new byte[130];
+            for (int cbit: ones)
+                register[(cbit + i) % 130] = 1;
+            shots.add(register);
+        }
+        shots.add(1L << 63, 1, 1L << 1);
+
+        assertEquals(11, shots.size());
+        assertArrayEquals(new long[] {1L | 1L << 63, 1L | 1L << 63, 1L << 1}, shots.getWords(0));
+        for (int i = 0; i < 10; i++) {
+            byte[] register = shots.toBytes(i);
+            int set = 0;
+            for (int cbit = 0; cbit < 130; cbit++)
+                set += register[cbit];
+            assertEquals(ones.length, set);
+            for (int cbit: ones)
+                assertEquals(1, shots.bit(i, (cbit + i) % 130));
+        }
+        assertEquals(1, shots.bit(10, 63));
+        assertEquals(1, shots.bit(10, 64));
+        assertEquals(1, shots.bit(10, 129));
+        assertEquals(0, shots.bit(10, 128));
+
+        var copy = new Shots(130, 1);
+        copy.addAll(shots);
+        copy.addAll(shots);
+        assertEquals(22, copy.size());
+        for (int i = 0; i < 22; i++)
+            assertArrayEquals(shots.getWords(i % 11), copy.getWords(i));
+    }
+
+    @Test
+    public void simulatorFillsWideRegisters() {
+        var circuit = new Qcircuit(2, 130) {{
+            pauliX(0);
+            measure(0, 65);
+            measure(0, 129);
+            measure(1, 64);
+            measure(0, 0);
+        }};
+
+        var shots = new SimpleSimulator(1).sample(circuit, 100);
+        assertEquals(100, shots.size());
+        for (int i = 0; i < shots.size(); i++)
+            assertArrayEquals(new long[] {1, 1L << 1, 1L << 1}, shots.getWords(i));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void wideRegistersHaveNoSingleWord() {
+        var shots = new Shots(65, 1);
+        shots.add(new byte[65]);
+        shots.get(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void wideRegistersHaveNoHistogram() {
+        new Shots(65, 1).histogram();
+    }
+}
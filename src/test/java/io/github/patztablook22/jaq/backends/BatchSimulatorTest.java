@@ -0,0 +1,114 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.PauliSum;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Shots;
+
+import java.util.Map;
+
+
+public class BatchSimulatorTest {
+
+    @Test
+    public void matchesStateVector() {
+        var simulator = new BatchSimulator(3);
+        for (int qubits = 4; qubits <= 6; qubits++) {
+            var circuit = Reference.random(qubits, 40, qubits, true);
+            var shots = simulator.sample(circuit, 20000);
+            assertEquals(0, Reference.distance(shots, Reference.probabilities(circuit)), 0.03);
+        }
+    }
+
+    @Test
+    public void sweepMatchesStateVector() {
+        var theta = new Parameter("theta");
+        var circuit = new Qcircuit(3, 3) {{
+            hadamard(0);
+            rotateX(1, theta);
+            cnot(0, 2);
+            controlledPhase(1, 2, theta);
+            hadamard(2);
+            rotateZ(0, theta);
+            hadamard(0);
+            for (int i = 0; i < 3; i++)
+                measure(i, i);
+        }};
+
+        double[][] bindings = {{0.3}, {1.1}, {2.5}, {-0.8}};
+        var data = new BatchSimulator(3).sweep(circuit, new Parameter[] {theta}, bindings, 20000);
+
+        for (int r = 0; r < bindings.length; r++) {
+            var shots = new Shots(3, data[r].length);
+            for (byte[] classical: data[r])
+                shots.add(classical);
+
+            double[] expected = new SimpleSimulator(0).state(circuit, Map.of(theta, bindings[r][0]))
+                .probabilities();
+            assertEquals(0, Reference.distance(shots, expected), 0.03);
+        }
+    }
+
+    @Test
+    public void compositeGatesMatchStateVector() {
+        var circuit = Reference.composite(50, true);
+        var shots = new BatchSimulator(3).sample(circuit, 20000);
+        assertEquals(0, Reference.distance(shots, Reference.probabilities(circuit)), 0.03);
+    }
+
+    @Test
+    public void pauliRotationSweepMatchesStateVector() {
+        var theta = new Parameter("theta");
+        var hamiltonian = new PauliSum()
+            .add(-1.0, "ZZ", 3, 1)
+            .add(0.7, "XY", 2, 0)
+            .add(-0.5, "YIX", 1, 3, 0);
+        var circuit = new Qcircuit(4, 4) {{
+            for (int q = 0; q < 4; q++)
+                hadamard(q);
+            pauliRotation("XYZ", theta, 3, 1, 2);
+            oracle(x -> (x + 3) % 8, 2, 0, 3);
+            pauliRotation("YY", 0.9, 0, 2);
+            evolve(hamiltonian, theta, 2);
+            phaseOracle(x -> x == 1 || x == 2, 1, 3);
+            hadamard(1);
+            for (int i = 0; i < 4; i++)
+                measure(i, i);
+        }};
+
+        /* more bindings than lanes, the last block partially filled */
+        double[][] bindings = {{0.3}, {1.1}, {2.5}, {-0.8}, {0}, {Math.PI / 2}, {-2.2}};
+        var data = new BatchSimulator(3, 7).sweep(circuit, new Parameter[] {theta}, bindings, 20000);
+
+        for (int r = 0; r < bindings.length; r++) {
+            var shots = new Shots(4, data[r].length);
+            for (byte[] classical: data[r])
+                shots.add(classical);
+
+            double[] expected = new SimpleSimulator(0).state(circuit, Map.of(theta, bindings[r][0]))
+                .probabilities();
+            assertEquals("binding " + r, 0, Reference.distance(shots, expected), 0.03);
+        }
+    }
+
+    @Test
+    public void collapsesPerShot() {
+        var circuit = new Qcircuit(3, 3) {{
+            hadamard(0);
+            rotateX(1, 0.7);
+            cnot(0, 2);
+            measure(0, 0);
+            controlledPhase(2, 1, 1.3);
+            hadamard(1);
+            hadamard(2);
+            measure(1, 1);
+            measure(2, 2);
+        }};
+
+        double[] expected = Reference.frequencies(new SimpleSimulator(5).sample(circuit, 100000));
+        var shots = new BatchSimulator(3).sample(circuit, 20000);
+        assertEquals(0, Reference.distance(shots, expected), 0.03);
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.backends.DecisionDiagram.Edge;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+
+public class DecisionDiagramSimulatorTest {
+
+    @Test
+    public void matchesStateVector() {
+        var simulator = new DecisionDiagramSimulator(3);
+        for (int qubits = 4; qubits <= 6; qubits++) {
+            var circuit = Reference.random(qubits, 40, qubits, true);
+            var shots = simulator.sample(circuit, 20000);
+            assertEquals(0, Reference.distance(shots, Reference.probabilities(circuit)), 0.03);
+        }
+    }
+
+    @Test
+    public void compositeGatesMatchStateVector() {
+        var circuit = Reference.composite(42, true);
+        var shots = new DecisionDiagramSimulator(3).sample(circuit, 20000);
+        assertEquals(0, Reference.distance(shots, Reference.probabilities(circuit)), 0.03);
+    }
+
+    @Test
+    public void oraclesMatchStateVector() {
+        int n = 5;
+        double[] angles = {0.3, 1.1, 2.5, -0.8, 1.9};
+        IntUnaryOperator permutation = x -> (3 * x + 5) % 8;
+        IntPredicate predicate = x -> x == 1 || x == 6;
+        var circuit = new Qcircuit(n, 0) {{
+            for (int q = 0; q < n; q++)
+                rotateX(q, angles[q]);
+            oracle(permutation, 4, 0, 2);
+            phaseOracle(predicate, 3, 4, 1);
+        }};
+
+        var dd = new DecisionDiagram(n);
+        var state = dd.basis();
+        for (int q = 0; q < n; q++)
+            state = rotateX(dd, state, q, angles[q]);
+        state = dd.oracle(state, new int[] {4, 0, 2}, permutation);
+        state = dd.phaseOracle(state, new int[] {3, 4, 1}, predicate);
+
+        var expected = new SimpleSimulator(0).state(circuit);
+        for (int k = 0; k < 1 << n; k++) {
+            var bitstring = Reference.bitstring(k, n);
+            assertArrayEquals(bitstring, expected.amplitude(bitstring), amplitude(state, bitstring), 1e-6);
+        }
+    }
+
+    @Test
+    public void sharesNodes() {
+        int n = 30;
+        double h = Math.sqrt(0.5);
+        var dd = new DecisionDiagram(n);
+
+        /* the uniform superposition, a single node per level */
+        var uniform = dd.basis();
+        for (int q = 0; q < n; q++)
+            uniform = dd.gate(uniform, q, -1, new double[] {h, h, h, -h}, new double[4]);
+        dd.collect(List.of(uniform));
+        assertEquals(n, dd.size());
+        assertArrayEquals(new double[] {Math.pow(h, n), 0}, amplitude(uniform, "01".repeat(n / 2)), 1e-12);
+
+        /* the GHZ state, the zero and the one chains below the top */
+        var ghz = dd.gate(dd.basis(), 0, -1, new double[] {h, h, h, -h}, new double[4]);
+        for (int q = 0; q + 1 < n; q++)
+            ghz = dd.gate(ghz, q + 1, q, new double[] {0, 1, 1, 0}, new double[4]);
+        dd.collect(List.of(ghz));
+        assertEquals(2 * n - 1, dd.size());
+
+        /* states equal up to a factor share the node, the edge keeping the factor */
+        var plus = dd.gate(dd.basis(), n - 1, -1, new double[] {h, h, h, -h}, new double[4]);
+        var rotated = dd.gate(dd.basis(), n - 1, -1, new double[4], new double[] {h, h, h, -h});
+        assertSame(plus.node, rotated.node);
+        assertEquals(0, rotated.re, 1e-12);
+        assertEquals(plus.re, rotated.im, 1e-12);
+    }
+
+    @Test
+    public void collectsDeadNodes() {
+        var circuit = Reference.random(8, 150, 8, true);
+        var result = new DecisionDiagramSimulator(3, 64).execute(circuit, Map.of(), 20000);
+
+        var statistics = result.getStatistics();
+        assertTrue(statistics.getCollections() > 0);
+        assertTrue(statistics.getCollected() > 0);
+        assertTrue(statistics.getNodes() < statistics.getPeakNodes());
+        assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(circuit)), 0.05);
+    }
+
+    @Test
+    public void wideGhz() {
+        var circuit = new Qcircuit(60, 60) {{
+            hadamard(0);
+            for (int i = 0; i + 1 < 60; i++)
+                cnot(i, i + 1);
+            for (int i = 0; i < 60; i++)
+                measure(i, i);
+        }};
+
+        var result = new DecisionDiagramSimulator(3).execute(circuit, Map.of(), 1000);
+        assertTrue(result.getStatistics().getPeakNodes() < 10000);
+
+        var histogram = result.getShots().histogram();
+        long zeros = histogram.count(0), ones = histogram.count((1L << 60) - 1);
+        assertEquals(1000, zeros + ones);
+        assertTrue(zeros > 400 && ones > 400);
+    }
+
+    private static Edge rotateX(DecisionDiagram dd, Edge state, int qubit, double angle) {
+        double c = Math.cos(angle / 2), s = Math.sin(angle / 2);
+        return dd.gate(state, qubit, -1, new double[] {c, 0, 0, c}, new double[] {0, -s, -s, 0});
+    }
+
+    /**
+     * Multiplies the weights along the path of the bitstring.
+     *
+     * */
+    private static double[] amplitude(Edge state, String bitstring) {
+        double re = state.re, im = state.im;
+        var e = state;
+        for (int q = 0; q < bitstring.length() && !e.isZero(); q++) {
+            e = bitstring.charAt(q) == '0' ? e.node.e0 : e.node.e1;
+            double r = re * e.re - im * e.im;
+            im = re * e.im + im * e.re;
+            re = r;
+        }
+        return new double[] {re, im};
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Qcircuit;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+public class DistributedSimulatorTest {
+
+    @Test
+    public void twoWorkers() throws Exception {
+        check(2);
+    }
+
+    @Test
+    public void fourWorkers() throws Exception {
+        check(4);
+    }
+
+    @Test
+    public void schedulesSwaps() throws Exception {
+        /* the qubit 0 is the global one for two workers */
+        var diagonal = new Qcircuit(3, 3) {{
+            hadamard(1);
+            hadamard(2);
+            controlledPhase(0, 1, 0.7);
+            rotateZ(0, 0.3);
+            phaseOracle(x -> x == 5, 0, 2, 1);
+            cnot(0, 2);
+            for (int q = 0; q < 3; q++)
+                measure(q, q);
+        }};
+
+        /* swapping out the qubit 2, needed the latest, takes two swaps instead of three */
+        var reuse = new Qcircuit(3, 3) {{
+            hadamard(0);
+            hadamard(1);
+            hadamard(0);
+            rotateX(1, 0.4);
+            hadamard(2);
+            for (int q = 0; q < 3; q++)
+                measure(q, q);
+        }};
+
+        /* the three-qubit oracle exceeds the two local qubits and is decomposed */
+        var oracles = new Qcircuit(3, 3) {{
+            for (int q = 0; q < 3; q++)
+                rotateX(q, 0.5 + q);
+            oracle(x -> (x + 1) % 4, 0, 2);
+            oracle(x -> (3 * x + 5) % 8, 2, 0, 1);
+            phaseOracle(x -> x == 1 || x == 6, 1, 0, 2);
+            hadamard(0);
+            for (int q = 0; q < 3; q++)
+                measure(q, q);
+        }};
+
+        try (var simulator = DistributedSimulator.local(2, 3, "-Xmx64m")) {
+            var result = simulator.execute(diagonal, Map.of(), 20000);
+            assertEquals(0, result.getSwaps());
+            assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(diagonal)), 0.03);
+
+            result = simulator.execute(reuse, Map.of(), 20000);
+            assertEquals(2, result.getSwaps());
+            assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(reuse)), 0.03);
+
+            result = simulator.execute(oracles, Map.of(), 20000);
+            assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(oracles)), 0.03);
+        }
+    }
+
+    /**
+     * Compares the distributions sampled by the given number of local
+     * workers with the reference ones, then checks that the worker
+     * processes are gone after closing the simulator.
+     *
+     * */
+    private static void check(int workers) throws Exception {
+        var before = ProcessHandle.current().children().collect(Collectors.toSet());
+
+        /* the qubits 0 and 1 are the global ones for four workers */
+        var random = Reference.random(5, 40, workers, true);
+        var midCircuit = new Qcircuit(3, 3) {{
+            hadamard(0);
+            rotateX(1, 0.7);
+            cnot(0, 2);
+            measure(0, 0);
+            controlledPhase(2, 1, 1.3);
+            hadamard(0);
+            hadamard(1);
+            cnot(1, 2);
+            measure(1, 1);
+            measure(2, 2);
+        }};
+
+        var simulator = DistributedSimulator.local(workers, 3, "-Xmx64m");
+        var spawned = ProcessHandle.current().children()
+            .filter(process -> !before.contains(process))
+            .collect(Collectors.toList());
+        try {
+            assertEquals(workers, simulator.workers());
+            assertEquals(workers, spawned.size());
+
+            var result = simulator.execute(random, Map.of(), 20000);
+            assertTrue(result.getSwaps() > 0);
+            assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(random)),
+                         0.03);
+
+            double[] expected = Reference.frequencies(new SimpleSimulator(5).sample(midCircuit, 100000));
+            assertEquals(0, Reference.distance(simulator.sample(midCircuit, 3000), expected), 0.06);
+        } finally {
+            simulator.close();
+        }
+
+        for (var process: spawned)
+            assertFalse(process.isAlive());
+    }
+}
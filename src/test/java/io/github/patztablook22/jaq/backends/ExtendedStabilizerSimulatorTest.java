@@ -0,0 +1,111 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Qcircuit;
+
+import java.util.Map;
+import java.util.Random;
+
+
+public class ExtendedStabilizerSimulatorTest {
+
+    @Test
+    public void matchesStateVector() {
+        var simulator = new ExtendedStabilizerSimulator(3);
+        for (int qubits = 4; qubits <= 6; qubits++) {
+            var circuit = Reference.random(qubits, 20, qubits, true);
+            double[] expected = Reference.probabilities(circuit);
+
+            for (int k = 0; k < expected.length; k++)
+                assertEquals(expected[k],
+                             simulator.probability(circuit, Reference.bitstring(k, qubits)), 1e-5);
+            assertEquals(0, Reference.distance(simulator.sample(circuit, 20000), expected), 0.05);
+        }
+    }
+
+    @Test
+    public void pauliRotationMatchesStateVector() {
+        var clifford = clifford(6);
+        var circuit = new Qcircuit(6, 6) {{
+            apply(clifford, new int[] {0, 1, 2, 3, 4, 5}, new int[] {0, 1, 2, 3, 4, 5});
+            pauliRotation("XYZ", 0.7, 4, 1, 2);
+            pauliRotation("ZIY", Math.PI / 2, 0, 3, 5);
+            pauliRotation("YX", -0.4, 3, 0);
+            pauliRotation("ZZZZZZ", Math.PI, 5, 4, 3, 2, 1, 0);
+        }};
+        assertProbabilities(circuit);
+
+        /* rotations by multiples of pi / 2 are Pauli operators up to a phase */
+        var simulator = new ExtendedStabilizerSimulator(3);
+        var pauli = new Qcircuit(6, 6) {{
+            apply(clifford, new int[] {0, 1, 2, 3, 4, 5}, new int[] {0, 1, 2, 3, 4, 5});
+            pauliRotation("ZIY", Math.PI / 2, 0, 3, 5);
+            pauliRotation("XX", Math.PI, 1, 2);
+        }};
+        assertEquals(1, simulator.stabilizerRank(pauli, Map.of()));
+        assertTrue(simulator.stabilizerRank(circuit, Map.of()) <= 4);
+    }
+
+    @Test
+    public void oraclesMatchStateVector() {
+        var clifford = clifford(5);
+        var circuit = new Qcircuit(5, 5) {{
+            apply(clifford, new int[] {0, 1, 2, 3, 4}, new int[] {0, 1, 2, 3, 4});
+            oracle(x -> x ^ 3, 4, 1);
+            phaseOracle(x -> x == 1 || x == 2, 2, 0);
+            oracle(x -> (x + 1) % 4, 0, 3);
+            phaseOracle(x -> x == 5, 1, 3, 4);
+        }};
+        assertProbabilities(circuit);
+    }
+
+    @Test
+    public void wideGhz() {
+        var circuit = new Qcircuit(60, 60) {{
+            hadamard(0);
+            for (int i = 0; i + 1 < 60; i++)
+                cnot(i, i + 1);
+            for (int i = 0; i < 60; i++)
+                measure(i, i);
+        }};
+
+        var simulator = new ExtendedStabilizerSimulator(3);
+        assertEquals(0.5, simulator.probability(circuit, "1".repeat(60)), 1e-9);
+
+        var histogram = simulator.sample(circuit, 1000).histogram();
+        long zeros = histogram.count(0), ones = histogram.count((1L << 60) - 1);
+        assertEquals(1000, zeros + ones);
+        assertTrue(zeros > 400 && ones > 400);
+    }
+
+    /**
+     * Returns a random Clifford circuit, i.e. one
+     * of the Hadamard, CNOT, S and Pauli gates.
+     *
+     * */
+    private static Qcircuit clifford(int qubits) {
+        var random = new Random(qubits);
+        return new Qcircuit(qubits, qubits) {{
+            for (int q = 0; q < qubits; q++)
+                hadamard(q);
+            for (int i = 0; i < 10 * qubits; i++) {
+                int q = random.nextInt(qubits);
+                switch (random.nextInt(4)) {
+                    case 0: hadamard(q); break;
+                    case 1: sGate(q); break;
+                    case 2: pauliX(q); break;
+                    default: cnot(q, (q + 1 + random.nextInt(qubits - 1)) % qubits); break;
+                }
+            }
+        }};
+    }
+
+    private static void assertProbabilities(Qcircuit circuit) {
+        var simulator = new ExtendedStabilizerSimulator(3);
+        double[] expected = Reference.probabilities(circuit);
+        for (int k = 0; k < expected.length; k++)
+            assertEquals(expected[k], simulator.probability(circuit, Reference.bitstring(k, circuit.qubits())),
+                         1e-5);
+    }
+}
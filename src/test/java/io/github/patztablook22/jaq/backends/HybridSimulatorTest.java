@@ -0,0 +1,81 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Qcircuit;
+
+import java.util.Map;
+
+
+public class HybridSimulatorTest {
+
+    @Test
+    public void matchesStateVector() {
+        var simulator = new HybridSimulator();
+        for (int qubits = 4; qubits <= 6; qubits++) {
+            var circuit = Reference.random(qubits, 40, qubits, false);
+            var state = new SimpleSimulator(0).state(circuit);
+
+            var bitstrings = bitstrings(qubits);
+
+            for (int cut = 1; cut < qubits; cut++) {
+                var amplitudes = simulator.amplitudes(circuit, cut, Map.of(), bitstrings);
+                for (int k = 0; k < bitstrings.length; k++)
+                    assertArrayEquals(state.amplitude(bitstrings[k]), amplitudes[k], 1e-5);
+            }
+        }
+    }
+
+    @Test
+    public void oraclesLocalOrDecomposed() {
+        var prepare = Reference.random(6, 30, 6, false);
+        var local = new Qcircuit(6, 6) {{
+            apply(prepare, new int[] {0, 1, 2, 3, 4, 5}, new int[] {0, 1, 2, 3, 4, 5});
+            oracle(x -> (5 * x + 3) % 8, 2, 0, 1);
+            phaseOracle(x -> x == 1 || x == 2, 5, 3);
+            oracle(x -> x ^ 1, new int[] {4}, new int[] {3});
+        }};
+        var crossing = new Qcircuit(6, 6) {{
+            apply(prepare, new int[] {0, 1, 2, 3, 4, 5}, new int[] {0, 1, 2, 3, 4, 5});
+            oracle(x -> (x + 1) % 4, 2, 4);
+            phaseOracle(x -> x == 1 || x == 2, 5, 1);
+        }};
+
+        var simulator = new HybridSimulator();
+        int base = simulator.crossings(prepare, 3);
+        assertEquals(base, simulator.crossings(local, 3));
+        assertTrue(simulator.crossings(crossing, 3) > base);
+
+        var bitstrings = bitstrings(6);
+        for (var circuit: new Qcircuit[] {local, crossing}) {
+            var state = new SimpleSimulator(0).state(circuit);
+            var amplitudes = simulator.amplitudes(circuit, 3, Map.of(), bitstrings);
+            for (int k = 0; k < bitstrings.length; k++)
+                assertArrayEquals(state.amplitude(bitstrings[k]), amplitudes[k], 1e-5);
+        }
+    }
+
+    @Test
+    public void wideGhz() {
+        var circuit = new Qcircuit(40, 0) {{
+            hadamard(0);
+            for (int i = 0; i + 1 < 40; i++)
+                cnot(i, i + 1);
+        }};
+
+        var simulator = new HybridSimulator();
+        assertEquals(1, simulator.crossings(circuit, 20));
+
+        double r = Math.sqrt(0.5);
+        assertArrayEquals(new double[] {r, 0}, simulator.amplitude(circuit, 20, "1".repeat(40)), 1e-6);
+        assertArrayEquals(new double[] {0, 0},
+                          simulator.amplitude(circuit, 20, "0".repeat(20) + "1".repeat(20)), 1e-6);
+    }
+
+    private static String[] bitstrings(int qubits) {
+        var out = new String[1 << qubits];
+        for (int k = 0; k < out.length; k++)
+            out[k] = Reference.bitstring(k, qubits);
+        return out;
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Shots;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+
+public class JobServerTest {
+
+    @Test
+    public void admitsWithinBudget() throws Exception {
+        var circuits = new Qcircuit[8];
+        for (int i = 0; i < circuits.length; i++)
+            circuits[i] = Reference.random(4, 30, i % 4, true);
+
+        /* the budget fits a single batch at a time */
+        var clients = Executors.newFixedThreadPool(circuits.length);
+        try (var server = new JobServer(new SimpleSimulator(3), 0, SimpleSimulator.footprint(4), 2);
+             var qvm = new RemoteQvm(server.getPort())) {
+            var tasks = new ArrayList<Callable<Shots>>();
+            for (var circuit: circuits)
+                tasks.add(() -> qvm.sample(circuit, 20000));
+
+            var results = clients.invokeAll(tasks);
+            for (int i = 0; i < circuits.length; i++) {
+                var shots = results.get(i).get();
+                assertEquals(20000, shots.size());
+                assertEquals(0, Reference.distance(shots, Reference.probabilities(circuits[i])), 0.03);
+            }
+
+            var statistics = qvm.statistics();
+            assertEquals(circuits.length, statistics.getCompleted());
+            assertEquals(0, statistics.getFailed());
+            assertEquals(0, statistics.getRunning());
+            assertEquals(0, statistics.getQueueDepth());
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
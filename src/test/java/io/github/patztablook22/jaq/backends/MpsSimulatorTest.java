@@ -0,0 +1,98 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Qcircuit;
+
+import java.util.Map;
+
+
+public class MpsSimulatorTest {
+
+    @Test
+    public void matchesStateVector() {
+        var simulator = new MpsSimulator(64, 0, 3);
+        for (int qubits = 4; qubits <= 6; qubits++) {
+            var circuit = Reference.random(qubits, 40, qubits, true);
+            var result = simulator.execute(circuit, Map.of(), 20000);
+
+            assertEquals(0, result.getTruncationError(), 1e-9);
+            assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(circuit)),
+                         0.03);
+        }
+    }
+
+    @Test
+    public void compositeGatesMatchStateVector() {
+        var circuit = Reference.composite(41, true);
+        var result = new MpsSimulator(64, 0, 3).execute(circuit, Map.of(), 20000);
+
+        assertEquals(0, result.getTruncationError(), 1e-9);
+        assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(circuit)), 0.03);
+    }
+
+    @Test
+    public void truncatesSchmidtState() {
+        /* cos(theta / 2) |00> - i sin(theta / 2) |11> */
+        double theta = 0.8, weight = Math.pow(Math.sin(theta / 2), 2);
+        var circuit = new Qcircuit(2, 2) {{
+            rotateX(0, theta);
+            cnot(0, 1);
+            measure(0, 0);
+            measure(1, 1);
+        }};
+
+        /* dropped by the bond limit or by the threshold */
+        for (var simulator: new MpsSimulator[] {new MpsSimulator(1, 0, 3),
+                                                new MpsSimulator(64, weight + 0.01, 3)}) {
+            var result = simulator.execute(circuit, Map.of(), 1000);
+            assertEquals(weight, result.getTruncationError(), 1e-9);
+            assertEquals(1, result.getMaxBond());
+            assertEquals(1000, result.getShots().histogram().count(0));
+        }
+
+        var result = new MpsSimulator(64, weight - 0.01, 3).execute(circuit, Map.of(), 20000);
+        assertEquals(0, result.getTruncationError(), 1e-9);
+        assertEquals(2, result.getMaxBond());
+        assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(circuit)), 0.03);
+    }
+
+    @Test
+    public void boundedBond() {
+        var circuit = Reference.random(8, 200, 8, true);
+
+        double previous = 1;
+        for (int bond = 1; bond <= 8; bond *= 2) {
+            var result = new MpsSimulator(bond, 0, 3).execute(circuit, Map.of(), 10);
+            assertTrue(result.getMaxBond() <= bond);
+            assertTrue(result.getTruncationError() > 0);
+            assertTrue(result.getTruncationError() <= previous + 1e-9);
+            previous = result.getTruncationError();
+        }
+
+        /* the middle bond of eight qubits needs at most 2^4 */
+        var result = new MpsSimulator(16, 0, 3).execute(circuit, Map.of(), 20000);
+        assertEquals(16, result.getMaxBond());
+        assertEquals(0, result.getTruncationError(), 1e-9);
+        assertEquals(0, Reference.distance(result.getShots(), Reference.probabilities(circuit)), 0.05);
+    }
+
+    @Test
+    public void wideGhz() {
+        var circuit = new Qcircuit(60, 60) {{
+            hadamard(0);
+            for (int i = 0; i + 1 < 60; i++)
+                cnot(i, i + 1);
+            for (int i = 0; i < 60; i++)
+                measure(i, i);
+        }};
+
+        var result = new MpsSimulator(2, 0, 3).execute(circuit, Map.of(), 1000);
+        assertEquals(2, result.getMaxBond());
+
+        var histogram = result.getShots().histogram();
+        long zeros = histogram.count(0), ones = histogram.count((1L << 60) - 1);
+        assertEquals(1000, zeros + ones);
+        assertTrue(zeros > 400 && ones > 400);
+    }
+}
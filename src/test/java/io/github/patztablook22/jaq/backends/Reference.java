@@ -0,0 +1,227 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Qflow;
+import io.github.patztablook22.jaq.Shots;
+
+import java.util.Random;
+
+
+/**
+ * Random circuits and their exact distributions computed
+ * by {@link SimpleSimulator}, the reference the other
+ * backends are checked against.
+ *
+ * */
+final class Reference {
+
+    private Reference() {
+    }
+
+    /**
+     * Returns a random circuit of the elementary gates, the parametric ones
+     * by random angles, optionally measuring every qubit into the cbit
+     * of the same index at the end.
+     *
+     * @param qubits the number of qubits
+     * @param gates the number of gates
+     * @param seed randomness seed
+     * @param measured whether to measure the qubits at the end
+     * @return the circuit
+     *
+     * */
+    static Qcircuit random(int qubits, int gates, long seed, boolean measured) {
+        var random = new Random(seed);
+        return new Qcircuit(qubits, qubits) {{
+            for (int i = 0; i < gates; i++) {
+                int q = random.nextInt(qubits);
+                int r = (q + 1 + random.nextInt(qubits - 1)) % qubits;
+                double angle = 2 * Math.PI * random.nextDouble();
+                switch (random.nextInt(7)) {
+                    case 0: hadamard(q); break;
+                    case 1: pauliX(q); break;
+                    case 2: rotateX(q, angle); break;
+                    case 3: phase(q, angle); break;
+                    case 4: rotateZ(q, angle); break;
+                    case 5: cnot(q, r); break;
+                    default: controlledPhase(q, r, angle); break;
+                }
+            }
+            if (measured)
+                for (int q = 0; q < qubits; q++)
+                    measure(q, q);
+        }};
+    }
+
+    /**
+     * Returns a random circuit of five qubits followed by the composite gates
+     * the backends may apply by dedicated code: oracles, phase oracles, Pauli
+     * rotations and the Fourier transform, optionally measuring every qubit
+     * into the cbit of the same index at the end.
+     *
+     * @param seed randomness seed
+     * @param measured whether to measure the qubits at the end
+     * @return the circuit
+     *
+     * */
+    static Qcircuit composite(long seed, boolean measured) {
+        var prepare = random(5, 30, seed, false);
+        return new Qcircuit(5, 5) {{
+            apply(prepare, new int[] {0, 1, 2, 3, 4}, new int[] {0, 1, 2, 3, 4});
+            oracle(x -> (3 * x + 5) % 8, 4, 0, 2);
+            phaseOracle(x -> x == 1 || x == 6, 2, 4, 0);
+            pauliRotation("XYZ", 0.7, 4, 1, 2);
+            oracle(x -> Integer.bitCount(x) % 4, new int[] {0, 3}, new int[] {4, 1});
+            phaseOracle(x -> Integer.bitCount(x) == 2, 1, 3, 0);
+            pauliRotation("ZX", -1.2, 0, 3);
+            qft(3, 0, 4);
+            if (measured)
+                for (int q = 0; q < 5; q++)
+                    measure(q, q);
+        }};
+    }
+
+    /**
+     * Returns the exact probabilities of the basis states in the final state
+     * of the circuit, indexed by the bitstrings read as binary numbers.
+     *
+     * @param circuit the circuit
+     * @return the probabilities
+     *
+     * */
+    static double[] probabilities(Qcircuit circuit) {
+        return new SimpleSimulator(0).state(circuit).probabilities();
+    }
+
+    /**
+     * Returns the empirical distribution of the shots measuring every
+     * qubit into the cbit of the same index.
+     *
+     * @param shots the shots
+     * @return the frequencies, indexed as by {@link #probabilities(Qcircuit)}
+     *
+     * */
+    static double[] frequencies(Shots shots) {
+        int n = shots.cbits();
+        double[] out = new double[1 << n];
+        for (int i = 0; i < shots.size(); i++) {
+            int k = 0;
+            for (int q = 0; q < n; q++)
+                k |= shots.bit(i, q) << (n - q - 1);
+            out[k] += 1.0 / shots.size();
+        }
+        return out;
+    }
+
+    /**
+     * Returns the total variation distance between the empirical distribution
+     * of the shots, see {@link #frequencies(Shots)}, and the given distribution.
+     *
+     * @param shots the shots
+     * @param expected the probabilities, indexed as by {@link #probabilities(Qcircuit)}
+     * @return the distance
+     *
+     * */
+    static double distance(Shots shots, double[] expected) {
+        double[] observed = frequencies(shots);
+
+        double distance = 0;
+        for (int k = 0; k < expected.length; k++)
+            distance += Math.abs(observed[k] - expected[k]);
+        return distance / 2;
+    }
+
+    /**
+     * Returns the basis state of the given index as a bitstring,
+     * the first qubit being the most significant digit.
+     *
+     * @param k the index
+     * @param qubits the number of qubits
+     * @return the bitstring
+     *
+     * */
+    static String bitstring(int k, int qubits) {
+        var s = Integer.toBinaryString(k);
+        return "0".repeat(qubits - s.length()) + s;
+    }
+
+    /**
+     * Returns the circuit decomposed by the default {@link Qflow} decompositions
+     * into the elementary and the phase gates, for checking the dedicated
+     * kernels of the other gates against.
+     *
+     * @param circuit the circuit
+     * @return the decomposed circuit
+     *
+     * */
+    static Qcircuit decomposed(Qcircuit circuit) {
+        return new Decomposition(circuit);
+    }
+
+    /**
+     * Asserts that the final states of the circuits are equal,
+     * the global phase included.
+     *
+     * @param expected the expected circuit
+     * @param actual the actual circuit
+     *
+     * */
+    static void assertSameState(Qcircuit expected, Qcircuit actual) {
+        var simulator = new SimpleSimulator(0);
+        var a = simulator.state(expected);
+        var b = simulator.state(actual);
+        for (int k = 0; k < 1 << expected.qubits(); k++) {
+            var bitstring = bitstring(k, expected.qubits());
+            assertArrayEquals(bitstring, a.amplitude(bitstring), b.amplitude(bitstring), 1e-5);
+        }
+    }
+
+    private static final class Decomposition extends Qcircuit {
+
+        Decomposition(Qcircuit circuit) {
+            super(circuit.qubits(), circuit.cbits());
+            new Qflow(circuit) {
+                @Override
+                protected void hadamard(int qubit) {
+                    Decomposition.this.hadamard(qubit);
+                }
+
+                @Override
+                protected void measure(int source, int target) {
+                    Decomposition.this.measure(source, target);
+                }
+
+                @Override
+                protected void cnot(int control, int target) {
+                    Decomposition.this.cnot(control, target);
+                }
+
+                @Override
+                protected void pauliX(int qubit) {
+                    Decomposition.this.pauliX(qubit);
+                }
+
+                @Override
+                protected void rotateX(int qubit, double angle) {
+                    Decomposition.this.rotateX(qubit, angle);
+                }
+
+                @Override
+                protected void phase(int qubit, double angle) {
+                    Decomposition.this.phase(qubit, angle);
+                }
+
+                @Override
+                protected void rotateZ(int qubit, double angle) {
+                    Decomposition.this.rotateZ(qubit, angle);
+                }
+
+                @Override
+                protected void controlledPhase(int control, int target, double angle) {
+                    Decomposition.this.controlledPhase(control, target, angle);
+                }
+            }.flow();
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Parameter;
+import io.github.patztablook22.jaq.PauliSum;
+import io.github.patztablook22.jaq.Qcircuit;
+import io.github.patztablook22.jaq.Shots;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class SimpleSimulatorTest {
+
+    @Test
+    public void sweepSharesPrefixes() {
+        var a = new Parameter("a");
+        var b = new Parameter("b");
+        var circuit = new Qcircuit(4, 4) {{
+            rotateX(0, a);
+            for (int i = 0; i < 4; i++)
+                hadamard(i);
+            cnot(0, 1);
+            cnot(2, 3);
+            rotateX(2, b);
+            phase(3, b);
+            measure(0, 0);
+            rotateX(1, 0.5);
+            for (int i = 0; i < 4; i++)
+                measure(i, i);
+        }};
+
+        /* the first column varies at the first gate, the second only late */
+        var parameters = new Parameter[] {a, b};
+        double[][] bindings = {{0.1, 0.2}, {0.1, 0.7}, {0.9, 0.2}, {0.9, 0.2}, {0.9, 1.5}};
+
+        var sweep = new SimpleSimulator(7).sweep(circuit, parameters, bindings, 200);
+
+        var single = new SimpleSimulator(7);
+        for (int r = 0; r < bindings.length; r++) {
+            var expected = single.sweep(circuit, parameters, new double[][] {bindings[r]}, 200)[0];
+            assertArrayEquals(expected, sweep[r]);
+        }
+    }
+
+    @Test
+    public void expectationIgnoresTrailingMeasurements() {
+        var circuit = new Qcircuit(2, 2) {{
+            hadamard(0);
+            cnot(0, 1);
+            rotateX(1, 0.6);
+            measure(0, 0);
+            measure(1, 1);
+        }};
+        var observable = new PauliSum().add(1, "ZZ", 0, 1).add(0.5, "Z", 1);
+
+        var simulator = new SimpleSimulator(1);
+        double[] p = simulator.state(circuit).probabilities();
+        double expected = p[0] - p[1] - p[2] + p[3] + 0.5 * (p[0] - p[1] + p[2] - p[3]);
+        assertEquals(expected, simulator.expectation(circuit, observable), 1e-5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expectationRejectsMidCircuitMeasurements() {
+        var circuit = new Qcircuit(1, 1) {{
+            measure(0, 0);
+            hadamard(0);
+        }};
+        new SimpleSimulator(1).expectation(circuit, new PauliSum().add(1, "Z", 0));
+    }
+
+    @Test
+    public void gradientIgnoresTrailingMeasurements() {
+        var theta = new Parameter("theta");
+        var circuit = new Qcircuit(1, 1) {{
+            rotateX(0, theta);
+            measure(0, 0);
+        }};
+
+        var gradient = new SimpleSimulator(1).gradient(circuit, new PauliSum().add(1, "Z", 0),
+                                                       Map.of(theta, 0.5));
+        assertEquals(-Math.sin(0.5), gradient.get(theta), 1e-5);
+    }
+
+    @Test
+    public void runAllWithinSingleVectorBudget() {
+        int n = 18;
+        var first = new Qcircuit(n, 2) {{
+            for (int i = 0; i < n; i++)
+                hadamard(i);
+            cnot(0, n - 1);
+            measure(0, 0);
+            rotateX(n - 1, 0.3);
+            measure(n - 1, 1);
+        }};
+        var second = new Qcircuit(n, 1) {{
+            rotateX(3, 1.1);
+            measure(3, 0);
+        }};
+
+        /* the budget is a single state vector, less than a footprint */
+        var simulator = new SimpleSimulator(7, 1L << 30, ForkJoinPool.commonPool(), 8L << n);
+        simulator.runAll(List.of(first, second), 300);
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        var results = simulator.runAll(List.of(first, second), 300);
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        /* run by a single worker from the pooled buffers */
+        assertTrue(allocated < 8L << n);
+
+        var reference = new SimpleSimulator(7);
+        reference.run(first, 300);
+        reference.run(second, 300);
+        assertArrayEquals(reference.run(first, 300), results.get(0));
+        assertArrayEquals(reference.run(second, 300), results.get(1));
+    }
+
+    @Test
+    public void deepCircuitRetainsLittle() {
+        int n = 16;
+        var circuit = Reference.random(n, 3000, 5, false);
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        var plan = Plan.compile(circuit);
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        /* the elementary gates keep their index bits, no global operators,
+         * so the whole compilation takes less than a few state vectors */
+        assertTrue(allocated < 64L << n);
+        assertTrue(plan.memory < 8L << n);
+        assertTrue(SimpleSimulator.footprint(plan) < SimpleSimulator.footprint(n + 1));
+
+        /* the state and the spare buffer, reused by the next run */
+        var buffers = new BufferPool(1L << 30);
+        buffers.release(plan.simulate(new double[0], buffers));
+        assertEquals(2 * (8L << n), buffers.retained());
+
+        allocated = threads.getThreadAllocatedBytes(thread);
+        buffers.release(plan.simulate(new double[0], buffers));
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        assertTrue(allocated < 8L << n);
+        assertEquals(2 * (8L << n), buffers.retained());
+    }
+
+    @Test
+    public void cancelStopsRunningJob() throws Exception {
+        /* minutes of gates, unless stopped */
+        var circuit = Reference.random(18, 100000, 3, true);
+
+        var pool = Executors.newSingleThreadExecutor();
+        var started = new CountDownLatch(1);
+        Executor executor = task -> pool.execute(() -> {
+            started.countDown();
+            task.run();
+        });
+        try {
+            var simulator = new SimpleSimulator(1, 1L << 30, executor, 1L << 30);
+            var job = simulator.sampleAsync(circuit, 10);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            assertTrue(job.cancel(true));
+
+            /* the single thread is free again */
+            pool.submit(() -> { }).get(10, TimeUnit.SECONDS);
+            assertTrue(job.isCancelled());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void budgetLimitsConcurrency() throws Exception {
+        int n = 14;
+        var circuits = new ArrayList<Qcircuit>();
+        for (int i = 0; i < 6; i++)
+            circuits.add(Reference.random(n, 400, i, true));
+
+        /* the jobs started and not completed yet, completed before being released */
+        var pool = Executors.newFixedThreadPool(4);
+        var active = new AtomicInteger();
+        var peak = new AtomicInteger();
+        Executor executor = task -> pool.execute(() -> {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            task.run();
+        });
+        try {
+            /* two footprints and change, the plan tables included */
+            long budget = 2 * SimpleSimulator.footprint(n) + SimpleSimulator.footprint(n) / 2;
+            var simulator = new SimpleSimulator(5, 1L << 30, executor, budget);
+            var jobs = new ArrayList<CompletableFuture<Shots>>();
+            for (var circuit: circuits) {
+                var job = simulator.sampleAsync(circuit, 200);
+                job.whenComplete((shots, e) -> active.decrementAndGet());
+                jobs.add(job);
+            }
+
+            var reference = new SimpleSimulator(5);
+            for (int i = 0; i < circuits.size(); i++)
+                assertArrayEquals(reference.run(circuits.get(i), 200),
+                                  jobs.get(i).get(60, TimeUnit.SECONDS).toBytes());
+            assertEquals(2, peak.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void runAllWaitsForBudget() throws Exception {
+        /* minutes of gates, holding the whole budget until cancelled */
+        var slow = Reference.random(18, 100000, 3, true);
+        var small = Reference.random(4, 40, 3, true);
+
+        var pool = Executors.newSingleThreadExecutor();
+        try {
+            var simulator = new SimpleSimulator(1, 1L << 30, pool, SimpleSimulator.footprint(18));
+            var job = simulator.sampleAsync(slow, 10);
+            new Thread(() -> {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                }
+                job.cancel(true);
+            }).start();
+
+            long start = System.nanoTime();
+            var results = simulator.runAll(List.of(small), 100);
+            assertTrue(job.isCancelled());
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+
+            /* the cancelled job drew the first seed */
+            var reference = new SimpleSimulator(1);
+            reference.sample(new Qcircuit(1, 0) {}, 1);
+            assertArrayEquals(reference.run(small, 100), results.get(0));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void fourierMatchesDecomposition() {
+        var prepare = Reference.random(5, 40, 11, false);
+        var circuit = new Qcircuit(5, 5) {{
+            apply(prepare, new int[] {0, 1, 2, 3, 4}, new int[] {0, 1, 2, 3, 4});
+            qft(3, 0, 4);
+            inverseQft(1, 4, 2);
+            qft(4, 3, 2, 1, 0);
+            inverseQft(0, 1, 2, 3, 4);
+            qft(2);
+        }};
+        Reference.assertSameState(Reference.decomposed(circuit), circuit);
+    }
+
+    @Test
+    public void oracleMatchesDecomposition() {
+        var prepare = Reference.random(5, 40, 12, false);
+        var circuit = new Qcircuit(5, 5) {{
+            apply(prepare, new int[] {0, 1, 2, 3, 4}, new int[] {0, 1, 2, 3, 4});
+            oracle(x -> (3 * x + 5) % 8, 4, 0, 2);
+            oracle(x -> 15 - x, 3, 2, 1, 0);
+            oracle(x -> Integer.bitCount(x) % 4, new int[] {0, 3}, new int[] {4, 1});
+            oracle(x -> x ^ 1, 2);
+        }};
+        Reference.assertSameState(Reference.decomposed(circuit), circuit);
+    }
+
+    @Test
+    public void phaseOracleMatchesDecomposition() {
+        var prepare = Reference.random(5, 40, 13, false);
+        var circuit = new Qcircuit(5, 5) {{
+            apply(prepare, new int[] {0, 1, 2, 3, 4}, new int[] {0, 1, 2, 3, 4});
+            phaseOracle(x -> x == 1 || x == 6, 2, 4, 0);
+            phaseOracle(x -> Integer.bitCount(x) == 2, 4, 3, 2, 1, 0);
+            phase(1, 0.3);
+            phaseOracle(x -> x == 0, 3, 1);
+        }};
+        Reference.assertSameState(Reference.decomposed(circuit), circuit);
+    }
+
+    @Test
+    public void oracleRejectsNonBijective() {
+        var collision = new Qcircuit(3, 0) {{
+            oracle(x -> x / 2, 0, 2);
+        }};
+        var overflow = new Qcircuit(3, 0) {{
+            oracle(x -> x + 1, 1, 0);
+        }};
+
+        for (var circuit: List.of(collision, overflow)) {
+            try {
+                new SimpleSimulator(1).state(circuit);
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    @Test
+    public void pauliRotationMatchesDecomposition() {
+        var prepare = Reference.random(5, 40, 14, false);
+        var hamiltonian = new PauliSum()
+            .add(-1.0, "ZZ", 3, 1)
+            .add(0.7, "XY", 4, 0)
+            .add(-0.5, "YIX", 2, 3, 0);
+        var circuit = new Qcircuit(5, 5) {{
+            apply(prepare, new int[] {0, 1, 2, 3, 4}, new int[] {0, 1, 2, 3, 4});
+            pauliRotation("XYZ", 0.7, 4, 1, 2);
+            pauliRotation("ZIY", -1.2, 0, 3, 4);
+            pauliRotation("YX", 0.4, 3, 0);
+            pauliRotation("Z", 2.1, 2);
+            pauliRotation("ZZZZZ", 0.9, 4, 3, 2, 1, 0);
+            evolve(hamiltonian, 1.3, 3);
+        }};
+        Reference.assertSameState(Reference.decomposed(circuit), circuit);
+    }
+
+    @Test
+    public void fidelityInDoublePrecision() {
+        int n = 14;
+        var simulator = new SimpleSimulator(1);
+        var a = simulator.state(Reference.random(n, 200, 1, false));
+        var b = simulator.state(Reference.random(n, 200, 2, false));
+
+        double re = 0, im = 0;
+        for (int k = 0; k < 1 << n; k++) {
+            var bitstring = Reference.bitstring(k, n);
+            double[] x = a.amplitude(bitstring), y = b.amplitude(bitstring);
+            re += x[0] * y[0] + x[1] * y[1];
+            im += x[0] * y[1] - x[1] * y[0];
+        }
+        double norm = 0;
+        for (double p: a.probabilities())
+            norm += p;
+
+        assertEquals((re * re + im * im) / norm, b.fidelity(a), 1e-12);
+        assertEquals(norm, a.fidelity(a), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void marginalsRejectRepeatedQubits() {
+        var state = new SimpleSimulator(1).state(Reference.random(3, 10, 1, false));
+        state.marginals(new int[] {0, 1}, new int[] {2, 0, 2});
+    }
+
+    @Test
+    public void shotsIndependentOfThreads() throws Exception {
+        /* every shot measures twice, drawing from its random stream mid-circuit */
+        var circuit = new Qcircuit(4, 8) {{
+            for (int round = 0; round < 2; round++) {
+                for (int q = 0; q < 4; q++) {
+                    hadamard(q);
+                    rotateX(q, 0.3 + q + round);
+                }
+                cnot(0, 1);
+                cnot(2, 3);
+                controlledPhase(1, 2, 1.1);
+                for (int q = 0; q < 4; q++)
+                    measure(q, 4 * round + q);
+            }
+        }};
+        int shots = 3000;
+
+        var expected = new SimpleSimulator(42).sample(circuit, shots, 1);
+        assertTrue(expected.histogram().size() > 100);
+
+        for (int threads: new int[] {1, 2, 3, 8}) {
+            var pool = new ForkJoinPool(threads);
+            try {
+                for (int workers: new int[] {2, 5, Integer.MAX_VALUE}) {
+                    var actual = pool.submit(() -> new SimpleSimulator(42).sample(circuit, shots, workers))
+                        .get();
+                    assertSameShots(expected, actual);
+                }
+                assertSameShots(expected, pool.submit(() -> new SimpleSimulator(42).sample(circuit, shots))
+                                .get());
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        assertSameShots(expected, new SimpleSimulator(42).sampleAsync(circuit, shots).get());
+        assertArrayEquals(expected.toBytes(), new SimpleSimulator(42).run(circuit, shots));
+
+        /* the batches of uneven size continue the same streams */
+        var streamed = new Shots(circuit.cbits(), shots);
+        var done = new CompletableFuture<Void>();
+        new SimpleSimulator(42).stream(circuit, shots, 77).subscribe(new Flow.Subscriber<Shots>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(Shots batch) {
+                streamed.addAll(batch);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.get(60, TimeUnit.SECONDS);
+        assertSameShots(expected, streamed);
+    }
+
+    @Test
+    public void sharedAcrossThreads() throws Exception {
+        int threads = 8, calls = 6;
+        var sampled = Reference.random(6, 80, 4, true);
+        var queried = new ArrayList<Qcircuit>();
+        for (int i = 0; i < threads; i++)
+            queried.add(Reference.random(7, 120, 100 + i, false));
+
+        var simulator = new SimpleSimulator(9);
+        var pool = Executors.newFixedThreadPool(threads);
+        var start = new CountDownLatch(1);
+        try {
+            var futures = new ArrayList<Future<List<String>>>();
+            for (int t = 0; t < threads; t++) {
+                var circuit = queried.get(t);
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    var out = new ArrayList<String>();
+                    for (int c = 0; c < calls; c++) {
+                        assertStateEquals(new SimpleSimulator(0).state(circuit), simulator.state(circuit));
+                        out.add(Arrays.deepToString(simulator.run(sampled, 500)));
+                    }
+                    return out;
+                }));
+            }
+            start.countDown();
+
+            /* every call drew its own seed, no seed was lost or repeated */
+            var actual = new ArrayList<String>();
+            for (var future: futures)
+                actual.addAll(future.get(120, TimeUnit.SECONDS));
+
+            var reference = new SimpleSimulator(9);
+            var expected = new ArrayList<String>();
+            for (int i = 0; i < threads * calls; i++)
+                expected.add(Arrays.deepToString(reference.run(sampled, 500)));
+
+            Collections.sort(actual);
+            Collections.sort(expected);
+            assertEquals(expected, actual);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertSameShots(Shots expected, Shots actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals("shot " + i, expected.get(i), actual.get(i));
+    }
+
+    private static void assertStateEquals(FinalState expected, FinalState actual) {
+        int n = expected.qubits();
+        for (int k = 0; k < 1 << n; k++) {
+            var bitstring = Reference.bitstring(k, n);
+            assertArrayEquals(bitstring, expected.amplitude(bitstring), actual.amplitude(bitstring), 0);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.patztablook22.jaq.backends;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import io.github.patztablook22.jaq.Qcircuit;
+
+
+public class TensorNetworkSimulatorTest {
+
+    @Test
+    public void matchesStateVector() {
+        var simulator = new TensorNetworkSimulator();
+        for (int qubits = 4; qubits <= 6; qubits++) {
+            var circuit = Reference.random(qubits, 40, qubits, false);
+            var state = new SimpleSimulator(0).state(circuit);
+
+            for (int k = 0; k < 1 << qubits; k++) {
+                var bitstring = Reference.bitstring(k, qubits);
+                assertArrayEquals(state.amplitude(bitstring),
+                                  simulator.amplitude(circuit, bitstring), 1e-5);
+            }
+            assertArrayEquals(state.marginal(2, 0), simulator.marginal(circuit, 2, 0), 1e-5);
+        }
+    }
+
+    @Test
+    public void compositeGatesMatchStateVector() {
+        var circuit = Reference.composite(43, false);
+        var state = new SimpleSimulator(0).state(circuit);
+
+        var simulator = new TensorNetworkSimulator();
+        for (int k = 0; k < 1 << 5; k++) {
+            var bitstring = Reference.bitstring(k, 5);
+            assertArrayEquals(state.amplitude(bitstring), simulator.amplitude(circuit, bitstring), 1e-5);
+        }
+        assertArrayEquals(state.marginal(4, 1), simulator.marginal(circuit, 4, 1), 1e-5);
+        assertArrayEquals(state.marginal(2), simulator.marginal(circuit, 2), 1e-5);
+    }
+
+    @Test
+    public void wideOracleLightCone() {
+        var angles = new double[50];
+        for (int q = 0; q < angles.length; q++)
+            angles[q] = 0.1 * q;
+        var wide = new Qcircuit(50, 0) {{
+            for (int q = 0; q < 50; q++)
+                rotateX(q, angles[q]);
+            oracle(x -> (x + 3) % 8, 10, 30, 49);
+            phaseOracle(x -> x == 2, 30, 10);
+            hadamard(30);
+            cnot(0, 1);
+        }};
+        var narrow = new Qcircuit(3, 0) {{
+            rotateX(0, angles[10]);
+            rotateX(1, angles[30]);
+            rotateX(2, angles[49]);
+            oracle(x -> (x + 3) % 8, 0, 1, 2);
+            phaseOracle(x -> x == 2, 1, 0);
+            hadamard(1);
+        }};
+
+        assertArrayEquals(new SimpleSimulator(0).state(narrow).marginal(1, 0),
+                          new TensorNetworkSimulator().marginal(wide, 30, 10), 1e-6);
+    }
+
+    @Test
+    public void cachesOrderPerStructure() {
+        var simulator = new TensorNetworkSimulator();
+        for (int i = 0; i < 3; i++) {
+            int shift = i + 1;
+            var circuit = new Qcircuit(6, 0) {{
+                for (int q = 0; q < 6; q++)
+                    rotateX(q, 0.4 * q + shift);
+                oracle(x -> (x + shift) % 8, 5, 1, 3);
+                cnot(0, 5);
+                phaseOracle(x -> x == shift, 2, 4);
+            }};
+
+            /* the angles and the oracles differ, the structure does not */
+            var state = new SimpleSimulator(0).state(circuit);
+            assertArrayEquals(state.amplitude("010110"), simulator.amplitude(circuit, "010110"), 1e-5);
+            assertArrayEquals(state.marginal(3, 0), simulator.marginal(circuit, 3, 0), 1e-5);
+            assertEquals(2, simulator.cachedOrders());
+        }
+    }
+
+    @Test
+    public void wideGhz() {
+        var circuit = new Qcircuit(60, 0) {{
+            hadamard(0);
+            for (int i = 0; i + 1 < 60; i++)
+                cnot(i, i + 1);
+        }};
+
+        var simulator = new TensorNetworkSimulator();
+        assertEquals(0.5, simulator.probability(circuit, "1".repeat(60)), 1e-9);
+        assertEquals(0, simulator.probability(circuit, "1".repeat(59) + "0"), 1e-9);
+        assertArrayEquals(new double[] {0.5, 0, 0, 0.5}, simulator.marginal(circuit, 0, 59), 1e-9);
+    }
+}